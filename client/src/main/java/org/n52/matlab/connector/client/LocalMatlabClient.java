@@ -24,7 +24,6 @@ import java.util.concurrent.Future;
 import org.n52.matlab.connector.MatlabException;
 import org.n52.matlab.connector.MatlabRequest;
 import org.n52.matlab.connector.MatlabResult;
-import org.n52.matlab.connector.instance.MatlabInstance;
 import org.n52.matlab.connector.instance.MatlabInstancePool;
 
 /**
@@ -47,12 +46,7 @@ public class LocalMatlabClient extends MatlabClient {
     @Override
     public MatlabResult execSync(MatlabRequest request)
             throws MatlabException {
-        MatlabInstance instance = this.pool.getInstance();
-        try {
-            return instance.handle(request);
-        } finally {
-            this.pool.returnInstance(instance);
-        }
+        return this.pool.handle(request);
     }
 
     @Override
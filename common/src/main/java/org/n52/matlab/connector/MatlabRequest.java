@@ -24,10 +24,12 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.n52.matlab.connector.value.MatlabType;
 import org.n52.matlab.connector.value.MatlabValue;
+import org.n52.matlab.connector.value.MatlabValueSnapshot;
 import org.n52.matlab.connector.value.MatlabValueVisitor;
 
 import com.google.common.base.MoreObjects;
@@ -44,6 +46,8 @@ public class MatlabRequest {
     private final String function;
     private final List<MatlabValue> parameters;
     private final Map<String, MatlabType> results;
+    private long timeout;
+    private MatlabValueSnapshot snapshot;
 
     /**
      * Creates a new <code>MLRequest</code> instance for the given function
@@ -67,13 +71,39 @@ public class MatlabRequest {
         this.function = function;
         this.results = new LinkedHashMap<>();
         this.parameters = new LinkedList<>();
-        this.id = ids.incrementAndGet();
+        this.id = id;
     }
 
     public long getId() {
         return this.id;
     }
 
+    /**
+     * Returns the time the server may spend on this request.
+     *
+     * @return the timeout in milliseconds, or <code>0</code> if the request
+     *         may run indefinitely
+     */
+    public long getTimeout() {
+        return this.timeout;
+    }
+
+    /**
+     * Sets the time the server may spend on this request. If the timeout
+     * elapses the request fails and the MATLAB instance evaluating it is
+     * replaced.
+     *
+     * @param timeout the timeout, or <code>0</code> to run indefinitely
+     * @param unit    the unit of the timeout
+     *
+     * @return {@code this}
+     */
+    public MatlabRequest setTimeout(long timeout, TimeUnit unit) {
+        checkArgument(timeout >= 0);
+        this.timeout = unit.toMillis(timeout);
+        return this;
+    }
+
     /**
      * Adds a parameter {@link MatlabValue} to this request.
      *
@@ -81,8 +111,9 @@ public class MatlabRequest {
      *
      * @return {@code this}
      */
-    public MatlabRequest addParameter(MatlabValue parameter) {
+    public synchronized MatlabRequest addParameter(MatlabValue parameter) {
         this.parameters.add(Objects.requireNonNull(parameter));
+        this.snapshot = null;
         return this;
     }
 
@@ -99,8 +130,9 @@ public class MatlabRequest {
      *
      * @return{@code this}
      */
-    public MatlabRequest clearParameters() {
+    public synchronized MatlabRequest clearParameters() {
         this.parameters.clear();
+        this.snapshot = null;
         return this;
     }
 
@@ -128,6 +160,24 @@ public class MatlabRequest {
         return Collections.unmodifiableList(parameters);
     }
 
+    /**
+     * Returns an immutable snapshot of the parameters and their digest. The
+     * snapshot is taken once and kept until parameters are added or cleared.
+     * Taking it replaces the parameters of this request by the copies of the
+     * snapshot, so later changes to the original values neither change the
+     * request nor invalidate the digest.
+     *
+     * @return the snapshot
+     */
+    public synchronized MatlabValueSnapshot getParameterSnapshot() {
+        if (this.snapshot == null) {
+            this.snapshot = MatlabValueSnapshot.of(parameters);
+            this.parameters.clear();
+            this.parameters.addAll(this.snapshot.getValues());
+        }
+        return this.snapshot;
+    }
+
     /**
      * Returns the number of parameters.
      *
@@ -156,12 +206,13 @@ public class MatlabRequest {
                 .add("function", getFunction())
                 .add("results", getResults())
                 .add("parameters", getParameters())
+                .add("timeout", getTimeout())
                 .toString();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getFunction(), getParameters());
+        return Objects.hash(getFunction(), getParameterSnapshot());
 
     }
 
@@ -170,7 +221,8 @@ public class MatlabRequest {
         if (o instanceof MatlabRequest) {
             MatlabRequest other = (MatlabRequest) o;
             return Objects.equals(getFunction(), other.getFunction()) &&
-                   Objects.equals(getParameters(), other.getParameters());
+                   Objects.equals(getParameterSnapshot(),
+                                  other.getParameterSnapshot());
         }
         return false;
 
@@ -24,6 +24,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.n52.matlab.connector.value.MatlabValue;
+import org.n52.matlab.connector.value.MatlabValueVisitor;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Joiner.MapJoiner;
@@ -89,6 +90,10 @@ public class MatlabResult implements Iterable<MatlabValue>, MatlabResponse {
         return getResults().size();
     }
 
+    public void visitResults(MatlabValueVisitor visitor) {
+        getResults().values().forEach(v -> v.accept(visitor));
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder().append("MatlabResult[");
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.engine;
+
+import org.n52.matlab.control.extensions.MatlabNumericArray;
+
+/**
+ * The operations a {@link org.n52.matlab.connector.instance.MatlabInstance}
+ * needs from the MATLAB session it is attached to. Values are exchanged using
+ * the same Java representations as <code>matlabcontrol</code> (e.g.
+ * <code>double[]</code> for numeric arrays, <code>String</code> for character
+ * arrays and <code>Object[]</code> for cells).
+ *
+ * @author Christian Autermann
+ */
+public interface MatlabEngine {
+
+    /**
+     * Evaluates a MATLAB command.
+     *
+     * @param command the command
+     *
+     * @throws MatlabEngineException if the evaluation fails
+     */
+    void eval(String command) throws MatlabEngineException;
+
+    /**
+     * Evaluates a MATLAB expression and returns its first
+     * <code>nargout</code> values.
+     *
+     * @param command the expression
+     * @param nargout the number of values to return
+     *
+     * @return the values
+     *
+     * @throws MatlabEngineException if the evaluation fails
+     */
+    Object[] returningEval(String command, int nargout)
+            throws MatlabEngineException;
+
+    /**
+     * Returns the value of a workspace variable.
+     *
+     * @param name the name of the variable
+     *
+     * @return the value
+     *
+     * @throws MatlabEngineException if the variable can not be retrieved
+     */
+    Object getVariable(String name) throws MatlabEngineException;
+
+    /**
+     * Sets the value of a workspace variable.
+     *
+     * @param name  the name of the variable
+     * @param value the value
+     *
+     * @throws MatlabEngineException if the variable can not be set
+     */
+    void setVariable(String name, Object value) throws MatlabEngineException;
+
+    /**
+     * Returns a numeric workspace variable including its dimensions.
+     *
+     * @param name the name of the variable
+     *
+     * @return the array
+     *
+     * @throws MatlabEngineException if the variable can not be retrieved
+     */
+    MatlabNumericArray getNumericArray(String name)
+            throws MatlabEngineException;
+
+    /**
+     * Sets a numeric workspace variable including its dimensions.
+     *
+     * @param name  the name of the variable
+     * @param array the array
+     *
+     * @throws MatlabEngineException if the variable can not be set
+     */
+    void setNumericArray(String name, MatlabNumericArray array)
+            throws MatlabEngineException;
+
+    /**
+     * Checks if this engine is still connected to its MATLAB session.
+     *
+     * @return if the engine is connected
+     */
+    boolean isConnected();
+
+    /**
+     * Terminates the MATLAB session.
+     *
+     * @throws MatlabEngineException if the session can not be terminated
+     */
+    void destroy() throws MatlabEngineException;
+
+    /**
+     * Forcibly terminates the MATLAB session without waiting for a running
+     * evaluation to finish. In contrast to {@link #destroy()} this must not
+     * block on the session, e.g. because an evaluation does not return.
+     *
+     * @throws MatlabEngineException if the session can not be terminated
+     */
+    void kill() throws MatlabEngineException;
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.engine;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.n52.matlab.control.MatlabInvocationException;
+import org.n52.matlab.control.MatlabProxy;
+import org.n52.matlab.control.extensions.MatlabNumericArray;
+import org.n52.matlab.control.extensions.MatlabTypeConverter;
+
+import com.google.common.base.StandardSystemProperty;
+
+/**
+ * {@link MatlabEngine} backed by a <code>matlabcontrol</code>
+ * {@link MatlabProxy}. The process id of the MATLAB session is queried on
+ * creation so that {@link #kill()} can terminate the process even if it does
+ * not respond anymore.
+ *
+ * @author Christian Autermann
+ */
+public class ProxyMatlabEngine implements MatlabEngine {
+    private static final Logger log = LoggerFactory
+            .getLogger(ProxyMatlabEngine.class);
+    private static final String GETPID_COMMAND = "feature('getpid')";
+    private static final long KILL_TIMEOUT = 10;
+    private final MatlabProxy proxy;
+    private final MatlabTypeConverter processor;
+    /** the process id of the MATLAB session or <code>-1</code> if unknown */
+    private final long pid;
+
+    public ProxyMatlabEngine(MatlabProxy proxy) {
+        this.proxy = Objects.requireNonNull(proxy);
+        this.processor = new MatlabTypeConverter(proxy);
+        this.pid = queryPid(proxy);
+    }
+
+    @Override
+    public void eval(String command) throws MatlabEngineException {
+        try {
+            proxy.eval(command);
+        } catch (MatlabInvocationException e) {
+            throw wrap(e);
+        }
+    }
+
+    @Override
+    public Object[] returningEval(String command, int nargout)
+            throws MatlabEngineException {
+        try {
+            return proxy.returningEval(command, nargout);
+        } catch (MatlabInvocationException e) {
+            throw wrap(e);
+        }
+    }
+
+    @Override
+    public Object getVariable(String name) throws MatlabEngineException {
+        try {
+            return proxy.getVariable(name);
+        } catch (MatlabInvocationException e) {
+            throw wrap(e);
+        }
+    }
+
+    @Override
+    public void setVariable(String name, Object value)
+            throws MatlabEngineException {
+        try {
+            proxy.setVariable(name, value);
+        } catch (MatlabInvocationException e) {
+            throw wrap(e);
+        }
+    }
+
+    @Override
+    public MatlabNumericArray getNumericArray(String name)
+            throws MatlabEngineException {
+        try {
+            return processor.getNumericArray(name);
+        } catch (MatlabInvocationException e) {
+            throw wrap(e);
+        }
+    }
+
+    @Override
+    public void setNumericArray(String name, MatlabNumericArray array)
+            throws MatlabEngineException {
+        try {
+            processor.setNumericArray(name, array);
+        } catch (MatlabInvocationException e) {
+            throw wrap(e);
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return proxy.isConnected();
+    }
+
+    @Override
+    public void destroy() throws MatlabEngineException {
+        try {
+            proxy.exit();
+        } catch (MatlabInvocationException e) {
+            throw wrap(e);
+        }
+    }
+
+    /**
+     * Kills the MATLAB process using <code>kill</code> or
+     * <code>taskkill</code>. If the process id is unknown, this falls back to
+     * {@link #destroy()}, which may block until a running evaluation returns.
+     *
+     * @throws MatlabEngineException if the process can not be killed
+     */
+    @Override
+    public void kill() throws MatlabEngineException {
+        if (pid < 0) {
+            log.warn("Process id of MATLAB is unknown, exiting instead");
+            destroy();
+            return;
+        }
+        try {
+            Process process = Runtime.getRuntime().exec(killCommand(pid));
+            if (!process.waitFor(KILL_TIMEOUT, TimeUnit.SECONDS)) {
+                process.destroy();
+                throw new MatlabEngineException(String.format(
+                        "Killing MATLAB process %d timed out.", pid));
+            }
+            if (process.exitValue() != 0) {
+                throw new MatlabEngineException(String.format(
+                        "Could not kill MATLAB process %d (exit code %d).",
+                        pid, process.exitValue()));
+            }
+        } catch (IOException e) {
+            throw new MatlabEngineException(String.format(
+                    "Could not kill MATLAB process %d.", pid), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MatlabEngineException("Interrupted.", e);
+        } finally {
+            proxy.disconnect();
+        }
+    }
+
+    private static String[] killCommand(long pid) {
+        String os = StandardSystemProperty.OS_NAME.value();
+        if (os != null && os.startsWith("Windows")) {
+            return new String[] { "taskkill", "/F", "/T", "/PID",
+                                  String.valueOf(pid) };
+        }
+        return new String[] { "kill", "-9", String.valueOf(pid) };
+    }
+
+    private static long queryPid(MatlabProxy proxy) {
+        try {
+            Object pid = proxy.returningEval(GETPID_COMMAND, 1)[0];
+            if (pid instanceof double[] && ((double[]) pid).length == 1) {
+                return (long) ((double[]) pid)[0];
+            }
+            log.warn("Unexpected process id of MATLAB: {}", pid);
+        } catch (MatlabInvocationException e) {
+            log.warn("Could not query the process id of MATLAB", e);
+        }
+        return -1;
+    }
+
+    private MatlabEngineException wrap(MatlabInvocationException e) {
+        return new MatlabEngineException(e.getMessage(), e);
+    }
+
+}
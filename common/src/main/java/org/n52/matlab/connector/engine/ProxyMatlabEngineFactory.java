@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.engine;
+
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.instance.MatlabInstanceConfiguration;
+import org.n52.matlab.control.MatlabConnectionException;
+import org.n52.matlab.control.MatlabProxyFactory;
+import org.n52.matlab.control.MatlabProxyFactoryOptions;
+
+/**
+ * Starts a MATLAB process and connects to it using
+ * <code>matlabcontrol</code>.
+ *
+ * @author Christian Autermann
+ */
+public class ProxyMatlabEngineFactory implements MatlabEngineFactory {
+
+    @Override
+    public MatlabEngine create(MatlabInstanceConfiguration config)
+            throws MatlabException {
+        try {
+            return new ProxyMatlabEngine(createProxyFactory(config).getProxy());
+        } catch (MatlabConnectionException e) {
+            throw new MatlabException("Unable to connect to MATLAB.", e);
+        }
+    }
+
+    private MatlabProxyFactory createProxyFactory(
+            MatlabInstanceConfiguration config) {
+        MatlabProxyFactoryOptions.Builder builder
+                = new MatlabProxyFactoryOptions.Builder()
+                .setHidden(config.isHidden())
+                .setPort(config.getPort());
+        if (config.getBaseDir().isPresent()) {
+            builder.setMatlabStartingDirectory(config.getBaseDir().get());
+        }
+        return new MatlabProxyFactory(builder.build());
+    }
+
+}
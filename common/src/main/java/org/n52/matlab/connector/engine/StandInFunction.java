@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.engine;
+
+/**
+ * A function callable from code evaluated by a {@link StandInMatlabEngine}.
+ *
+ * @author Christian Autermann
+ */
+@FunctionalInterface
+interface StandInFunction {
+
+    /**
+     * Calls the function.
+     *
+     * @param interpreter the calling interpreter
+     * @param args        the arguments
+     * @param nargout     the number of requested outputs
+     *
+     * @return the outputs, at least <code>nargout</code> of them
+     *
+     * @throws MatlabEngineException if the call fails
+     */
+    StandInValue[] apply(StandInInterpreter interpreter, StandInValue[] args,
+                         int nargout) throws MatlabEngineException;
+
+}
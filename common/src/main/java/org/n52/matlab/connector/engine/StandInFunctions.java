@@ -0,0 +1,894 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.engine;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.primitives.Doubles;
+
+/**
+ * The functions known to a {@link StandInMatlabEngine}: the MATLAB built-ins
+ * used by the connector itself and a handful of user functions to benchmark
+ * against.
+ * <p>
+ * The <code>matlab_connector_*</code> helpers are implemented natively
+ * instead of running the <code>.m</code> files shipped with the connector.
+ * Tests against the stand-in therefore do not verify the shipped helpers;
+ * <code>MatlabHelperFunctionsTest</code> compares both against a real MATLAB
+ * if one is available.
+ *
+ * @author Christian Autermann
+ */
+final class StandInFunctions {
+    private static final StandInValue[] NONE = new StandInValue[0];
+    private static final int MAX_NAME_LENGTH = StandInInterpreter.NAMELENGTHMAX;
+    /** <code>datenum(1970, 1, 1)</code> */
+    private static final double DATENUM_EPOCH = 719529;
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "break", "case", "catch", "classdef", "continue", "else",
+            "elseif", "end", "for", "function", "global", "if", "otherwise",
+            "parfor", "persistent", "return", "spmd", "switch", "try",
+            "while"));
+
+    private StandInFunctions() {
+    }
+
+    static Map<String, StandInFunction> create() {
+        Map<String, StandInFunction> functions = new HashMap<>();
+        // built-ins
+        functions.put("addpath", StandInFunctions::addpath);
+        functions.put("cd", StandInFunctions::cd);
+        functions.put("class", StandInFunctions::clazz);
+        functions.put("clear", StandInFunctions::clear);
+        functions.put("datenum", StandInFunctions::datenum);
+        functions.put("datetime", StandInFunctions::datetime);
+        functions.put("double", StandInFunctions::toDouble);
+        functions.put("error", StandInFunctions::error);
+        functions.put("false", (i, a, n) -> one(StandInValue.logical(false)));
+        functions.put("feval", StandInFunctions::feval);
+        functions.put("fieldnames", StandInFunctions::fieldnames);
+        functions.put("find", StandInFunctions::find);
+        functions.put("full", StandInFunctions::full);
+        functions.put("genvarname", StandInFunctions::genvarname);
+        functions.put("height", StandInFunctions::height);
+        functions.put("Inf", (i, a, n) -> one(StandInValue.scalar(Double.POSITIVE_INFINITY)));
+        functions.put("isnumeric", StandInFunctions::isnumeric);
+        functions.put("issparse", StandInFunctions::issparse);
+        functions.put("logical", StandInFunctions::logical);
+        functions.put("NaN", (i, a, n) -> one(StandInValue.scalar(Double.NaN)));
+        functions.put("numel", StandInFunctions::numel);
+        functions.put("pi", (i, a, n) -> one(StandInValue.scalar(Math.PI)));
+        functions.put("pwd", (i, a, n) -> one(StandInValue.string(i.pwd())));
+        functions.put("repmat", StandInFunctions::repmat);
+        functions.put("reshape", StandInFunctions::reshape);
+        functions.put("single", StandInFunctions::single);
+        functions.put("size", StandInFunctions::size);
+        functions.put("sparse", StandInFunctions::sparse);
+        functions.put("struct", StandInFunctions::struct);
+        functions.put("table", StandInFunctions::table);
+        functions.put("true", (i, a, n) -> one(StandInValue.logical(true)));
+        functions.put("who", StandInFunctions::who);
+        for (String clazz : StandInValue.INTEGER_CLASSES.keySet()) {
+            functions.put(clazz, (i, a, n) -> cast(clazz, a));
+        }
+        // user functions
+        functions.put("add", StandInFunctions::add);
+        functions.put("echo", StandInFunctions::echo);
+        functions.put("identity", StandInFunctions::identity);
+        functions.put("matlab_connector_column", StandInFunctions::column);
+        functions.put("matlab_connector_flatten", StandInFunctions::flatten);
+        functions.put("matlab_connector_pack", StandInFunctions::pack);
+        functions.put("sleep", StandInFunctions::sleep);
+        return functions;
+    }
+
+    private static StandInValue[] one(StandInValue value) {
+        return new StandInValue[] { value };
+    }
+
+    private static void checkArgs(String name, StandInValue[] args, int min,
+                                  int max) throws MatlabEngineException {
+        if (args.length < min) {
+            throw new MatlabEngineException(String
+                    .format("Error using %s\nNot enough input arguments.", name));
+        }
+        if (args.length > max) {
+            throw new MatlabEngineException(String
+                    .format("Error using %s\nToo many input arguments.", name));
+        }
+    }
+
+    private static StandInValue[] addpath(StandInInterpreter interpreter,
+                                          StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("addpath", args, 1, Integer.MAX_VALUE);
+        for (StandInValue arg : args) {
+            String dir = arg.string();
+            interpreter.addPath(dir.equals(".") ? interpreter.pwd() : dir);
+        }
+        return NONE;
+    }
+
+    private static StandInValue[] cd(StandInInterpreter interpreter,
+                                     StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("cd", args, 0, 1);
+        if (args.length == 1) {
+            String dir = args[0].string();
+            File file = new File(dir);
+            if (!file.isAbsolute()) {
+                file = new File(interpreter.pwd(), dir);
+            }
+            if (!file.isDirectory()) {
+                throw new MatlabEngineException(String.format(
+                        "Error using cd\nCannot CD to %s (Name is nonexistent or not a directory).",
+                        dir));
+            }
+            interpreter.cd(file.getAbsolutePath());
+        }
+        return nargout > 0 ? one(StandInValue.string(interpreter.pwd())) : NONE;
+    }
+
+    private static StandInValue[] clazz(StandInInterpreter interpreter,
+                                        StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("class", args, 1, 1);
+        return one(StandInValue.string(args[0].type()));
+    }
+
+    private static StandInValue[] clear(StandInInterpreter interpreter,
+                                        StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        if (args.length == 0) {
+            interpreter.clearAll();
+        }
+        for (StandInValue arg : args) {
+            String name = arg.string();
+            if (name.equals("all") || name.equals("variables")) {
+                interpreter.clearAll();
+            } else {
+                interpreter.clear(name);
+            }
+        }
+        return NONE;
+    }
+
+    private static StandInValue[] datenum(StandInInterpreter interpreter,
+                                          StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("datenum", args, 1, 1);
+        double[] v = args[0].doubles();
+        if (v.length != 6) {
+            throw new MatlabEngineException(
+                    "Error using datenum\nExpected a date vector.");
+        }
+        double seconds = v[5];
+        LocalDateTime time = LocalDateTime.of((int) v[0], (int) v[1],
+                                              (int) v[2], (int) v[3],
+                                              (int) v[4], 0);
+        double millis = ChronoUnit.MILLIS.between(EPOCH, time) + seconds * 1000;
+        return one(StandInValue.scalar(DATENUM_EPOCH + millis / TimeUnit.DAYS
+                .toMillis(1)));
+    }
+
+    /**
+     * Only supports <code>datetime(d, 'ConvertFrom', 'datenum')</code>.
+     */
+    private static StandInValue[] datetime(StandInInterpreter interpreter,
+                                           StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("datetime", args, 3, 3);
+        if (!args[1].string().equals("ConvertFrom") ||
+            !args[2].string().equals("datenum")) {
+            throw new MatlabEngineException(
+                    "Error using datetime\nOnly conversion from datenum is supported.");
+        }
+        return one(StandInValue.datetime(args[0].doubles(), args[0].dims()));
+    }
+
+    private static StandInValue[] toDouble(StandInInterpreter interpreter,
+                                           StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("double", args, 1, 1);
+        return one(StandInValue.numeric(args[0].doubles(), args[0].dims()));
+    }
+
+    private static StandInValue[] error(StandInInterpreter interpreter,
+                                        StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("error", args, 1, Integer.MAX_VALUE);
+        throw new MatlabEngineException(args[0].string());
+    }
+
+    private static StandInValue[] feval(StandInInterpreter interpreter,
+                                        StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("feval", args, 1, Integer.MAX_VALUE);
+        return interpreter.call(args[0].string(),
+                                Arrays.copyOfRange(args, 1, args.length),
+                                nargout);
+    }
+
+    private static StandInValue[] fieldnames(StandInInterpreter interpreter,
+                                             StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("fieldnames", args, 1, 1);
+        return one(column(args[0].columns().keySet()));
+    }
+
+    private static StandInValue column(Iterable<String> strings) {
+        StandInValue[] elements = new StandInValue[0];
+        for (String s : strings) {
+            elements = Arrays.copyOf(elements, elements.length + 1);
+            elements[elements.length - 1] = StandInValue.string(s);
+        }
+        return StandInValue.cell(elements, new int[] { elements.length, 1 });
+    }
+
+    private static StandInValue[] genvarname(StandInInterpreter interpreter,
+                                             StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("genvarname", args, 1, 2);
+        String name = validName(args[0].string());
+        Set<String> exclusions = new HashSet<>();
+        if (args.length > 1) {
+            if (args[1].is(StandInValue.CELL)) {
+                for (StandInValue exclusion : args[1].elements()) {
+                    exclusions.add(exclusion.string());
+                }
+            } else {
+                exclusions.add(args[1].string());
+            }
+        }
+        String unique = name;
+        for (int i = 1; exclusions.contains(unique); ++i) {
+            String suffix = String.valueOf(i);
+            unique = name.substring(0, Math
+                    .min(name.length(), MAX_NAME_LENGTH - suffix.length())) +
+                     suffix;
+        }
+        return one(StandInValue.string(unique));
+    }
+
+    private static String validName(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        boolean upper = false;
+        for (int i = 0; i < name.length(); ++i) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c)) {
+                upper = sb.length() > 0;
+            } else if (c < 128 && (Character.isLetterOrDigit(c) || c == '_')) {
+                sb.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            } else {
+                sb.append('_');
+                upper = false;
+            }
+        }
+        if (sb.length() == 0 || !Character.isLetter(sb.charAt(0))) {
+            sb.insert(0, 'x');
+        }
+        String valid = sb.toString();
+        if (KEYWORDS.contains(valid)) {
+            valid = "x" + Character.toUpperCase(valid.charAt(0)) +
+                    valid.substring(1);
+        }
+        return valid.length() > MAX_NAME_LENGTH
+               ? valid.substring(0, MAX_NAME_LENGTH) : valid;
+    }
+
+    private static StandInValue[] height(StandInInterpreter interpreter,
+                                         StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("height", args, 1, 1);
+        return one(StandInValue.scalar(args[0].dims()[0]));
+    }
+
+    private static StandInValue[] isnumeric(StandInInterpreter interpreter,
+                                            StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("isnumeric", args, 1, 1);
+        return one(StandInValue.logical(args[0].isNumeric()));
+    }
+
+    private static StandInValue[] issparse(StandInInterpreter interpreter,
+                                           StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("issparse", args, 1, 1);
+        return one(StandInValue.logical(args[0].isSparse()));
+    }
+
+    private static StandInValue[] sparse(StandInInterpreter interpreter,
+                                         StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("sparse", args, 1, 5);
+        if (args.length == 1) {
+            int[] dims = args[0].dims();
+            if (dims.length > 2 || !(args[0].is(StandInValue.DOUBLE) ||
+                                     args[0].is(StandInValue.LOGICAL))) {
+                throw new MatlabEngineException(
+                        "Error using sparse\nExpected a 2-D double matrix.");
+            }
+            return one(StandInValue.sparse(args[0].doubles(), dims[0], dims[1]));
+        }
+        if (args.length != 3 && args.length != 5) {
+            throw new MatlabEngineException(
+                    "Error using sparse\nWrong number of input arguments.");
+        }
+        double[] i = args[0].doubles();
+        double[] j = args[1].doubles();
+        double[] v = args[2].doubles();
+        if (i.length != j.length || (v.length != i.length && v.length != 1)) {
+            throw new MatlabEngineException(
+                    "Error using sparse\nVectors must be the same length.");
+        }
+        int rows = 0;
+        int columns = 0;
+        if (args.length == 5) {
+            rows = (int) args[3].scalar();
+            columns = (int) args[4].scalar();
+        } else {
+            for (int k = 0; k < i.length; ++k) {
+                rows = Math.max(rows, (int) i[k]);
+                columns = Math.max(columns, (int) j[k]);
+            }
+        }
+        double[] values = new double[rows * columns];
+        for (int k = 0; k < i.length; ++k) {
+            if (i[k] < 1 || i[k] > rows || j[k] < 1 || j[k] > columns) {
+                throw new MatlabEngineException(
+                        "Error using sparse\nIndex exceeds matrix dimensions.");
+            }
+            values[((int) j[k] - 1) * rows + (int) i[k] - 1]
+                    += v[v.length == 1 ? 0 : k];
+        }
+        return one(StandInValue.sparse(values, rows, columns));
+    }
+
+    private static StandInValue[] full(StandInInterpreter interpreter,
+                                       StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("full", args, 1, 1);
+        if (!args[0].isSparse()) {
+            return one(args[0]);
+        }
+        return one(StandInValue.numeric(args[0].doubles(), args[0].dims()));
+    }
+
+    /**
+     * Returns the linear indices or, with three outputs, the row indices,
+     * column indices and values of the non-zero elements in column-major
+     * order.
+     */
+    private static StandInValue[] find(StandInInterpreter interpreter,
+                                       StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("find", args, 1, 1);
+        double[] d = args[0].doubles();
+        int rows = args[0].dims()[0];
+        int nnz = 0;
+        for (double e : d) {
+            if (e != 0) {
+                ++nnz;
+            }
+        }
+        double[] linear = new double[nnz];
+        double[] i = new double[nnz];
+        double[] j = new double[nnz];
+        double[] v = new double[nnz];
+        for (int k = 0, n = 0; k < d.length; ++k) {
+            if (d[k] != 0) {
+                linear[n] = k + 1;
+                i[n] = k % rows + 1;
+                j[n] = k / rows + 1;
+                v[n++] = d[k];
+            }
+        }
+        // row vectors yield rows, everything else columns
+        int[] dims = rows == 1 && args[0].dims().length == 2
+                     ? new int[] { 1, nnz } : new int[] { nnz, 1 };
+        if (nargout <= 1) {
+            return one(StandInValue.numeric(linear, dims));
+        }
+        StandInValue values;
+        if (args[0].is(StandInValue.LOGICAL)) {
+            boolean[] b = new boolean[nnz];
+            Arrays.fill(b, true);
+            values = StandInValue.logical(b, dims);
+        } else {
+            values = StandInValue.numeric(args[0].type(), v, dims);
+        }
+        return new StandInValue[] {
+            StandInValue.numeric(i, dims),
+            StandInValue.numeric(j, dims),
+            values
+        };
+    }
+
+    private static StandInValue[] logical(StandInInterpreter interpreter,
+                                          StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("logical", args, 1, 1);
+        double[] d = args[0].doubles();
+        boolean[] b = new boolean[d.length];
+        for (int i = 0; i < d.length; ++i) {
+            if (Double.isNaN(d[i])) {
+                throw new MatlabEngineException(
+                        "NaN's cannot be converted to logicals.");
+            }
+            b[i] = d[i] != 0;
+        }
+        return one(StandInValue.logical(b, args[0].dims()));
+    }
+
+    private static StandInValue[] numel(StandInInterpreter interpreter,
+                                        StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("numel", args, 1, 1);
+        return one(StandInValue.scalar(args[0].numel()));
+    }
+
+    private static StandInValue[] reshape(StandInInterpreter interpreter,
+                                          StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("reshape", args, 2, Integer.MAX_VALUE);
+        boolean struct = args[0].is(StandInValue.STRUCT);
+        boolean cell = args[0].is(StandInValue.CELL);
+        if (!args[0].isNumeric() && !struct && !cell) {
+            throw new MatlabEngineException(
+                    "Error using reshape\nExpected a numeric, cell or struct array.");
+        }
+        int[] dims = dims(args, 1);
+        int numel = 1;
+        for (int dim : dims) {
+            numel *= dim;
+        }
+        if (dims.length < 2 || numel != args[0].numel()) {
+            throw new MatlabEngineException(
+                    "Error using reshape\nTo RESHAPE the number of elements must not change.");
+        }
+        if (struct) {
+            return one(StandInValue.struct(args[0].columns(), dims));
+        }
+        if (cell) {
+            return one(StandInValue.cell(args[0].elements(), dims));
+        }
+        return one(StandInValue.numeric(args[0].type(), args[0].doubles(),
+                                        dims));
+    }
+
+    /**
+     * Reads the dimensions given either as a single size vector or as one
+     * argument per dimension, starting at the given argument.
+     */
+    private static int[] dims(StandInValue[] args, int from)
+            throws MatlabEngineException {
+        int[] dims;
+        if (args.length == from + 1) {
+            double[] d = args[from].doubles();
+            dims = new int[d.length];
+            for (int i = 0; i < d.length; ++i) {
+                dims[i] = (int) d[i];
+            }
+        } else {
+            dims = new int[args.length - from];
+            for (int i = from; i < args.length; ++i) {
+                dims[i - from] = (int) args[i].scalar();
+            }
+        }
+        return dims;
+    }
+
+    /**
+     * Only supports replicating scalar structs.
+     */
+    private static StandInValue[] repmat(StandInInterpreter interpreter,
+                                         StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("repmat", args, 2, Integer.MAX_VALUE);
+        int[] dims = dims(args, 1);
+        if (dims.length == 1) {
+            dims = new int[] { dims[0], dims[0] };
+        }
+        Map<String, StandInValue> fields = args[0].fields();
+        int numel = 1;
+        for (int dim : dims) {
+            numel *= Math.max(dim, 0);
+        }
+        Map<String, StandInValue[]> columns = new LinkedHashMap<>();
+        for (Map.Entry<String, StandInValue> e : fields.entrySet()) {
+            StandInValue[] column = new StandInValue[numel];
+            Arrays.fill(column, e.getValue());
+            columns.put(e.getKey(), column);
+        }
+        return one(StandInValue.struct(columns, dims));
+    }
+
+    private static StandInValue[] size(StandInInterpreter interpreter,
+                                       StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("size", args, 1, 2);
+        int[] dims = args[0].dims();
+        if (args.length == 2) {
+            int dim = (int) args[1].scalar();
+            return one(StandInValue.scalar(dim <= dims.length ? dims[dim - 1] : 1));
+        }
+        double[] d = new double[dims.length];
+        for (int i = 0; i < dims.length; ++i) {
+            d[i] = dims[i];
+        }
+        return one(StandInValue.row(d));
+    }
+
+    private static StandInValue[] struct(StandInInterpreter interpreter,
+                                         StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        if (args.length % 2 != 0) {
+            throw new MatlabEngineException(
+                    "Error using struct\nField and value input arguments must come in pairs.");
+        }
+        // non-scalar cells create a struct array of their size
+        int[] dims = { 1, 1 };
+        for (int i = 1; i < args.length; i += 2) {
+            if (args[i].is(StandInValue.CELL) && args[i].numel() != 1) {
+                if (dims.length == 2 && dims[0] == 1 && dims[1] == 1) {
+                    dims = args[i].dims();
+                } else if (!Arrays.equals(dims, args[i].dims())) {
+                    throw new MatlabEngineException(
+                            "Error using struct\nArray dimensions of cell arrays must match.");
+                }
+            }
+        }
+        int numel = 1;
+        for (int dim : dims) {
+            numel *= dim;
+        }
+        Map<String, StandInValue[]> columns = new LinkedHashMap<>(args.length / 2);
+        for (int i = 0; i < args.length; i += 2) {
+            StandInValue value = args[i + 1];
+            StandInValue[] column = new StandInValue[numel];
+            if (value.is(StandInValue.CELL) && value.numel() != 1) {
+                System.arraycopy(value.elements(), 0, column, 0, numel);
+            } else {
+                Arrays.fill(column, value.is(StandInValue.CELL)
+                                    ? value.elements()[0] : value);
+            }
+            columns.put(args[i].string(), column);
+        }
+        return one(StandInValue.struct(columns, dims));
+    }
+
+    /**
+     * Only supports column vectors followed by <code>'VariableNames'</code>.
+     */
+    private static StandInValue[] table(StandInInterpreter interpreter,
+                                        StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        int n = args.length;
+        StandInValue[] names = NONE;
+        if (n >= 2 && args[n - 2].is(StandInValue.CHAR) &&
+            args[n - 2].string().equals("VariableNames")) {
+            names = args[n - 1].elements();
+            n -= 2;
+        }
+        if (names.length != n) {
+            throw new MatlabEngineException(
+                    "Error using table\nThe VariableNames property must contain one name for each variable in the table.");
+        }
+        int height = 0;
+        Map<String, StandInValue> variables = new LinkedHashMap<>(n);
+        for (int i = 0; i < n; ++i) {
+            int[] dims = args[i].dims();
+            if (dims.length != 2 || dims[1] != 1 ||
+                i > 0 && dims[0] != height) {
+                throw new MatlabEngineException(
+                        "Error using table\nAll variables must be column vectors with the same number of rows.");
+            }
+            height = dims[0];
+            String name = names[i].string();
+            if (variables.put(name, args[i]) != null) {
+                throw new MatlabEngineException(String.format(
+                        "Error using table\nDuplicate table variable name: '%s'.",
+                        name));
+            }
+        }
+        return one(StandInValue.table(variables, height));
+    }
+
+    private static StandInValue[] single(StandInInterpreter interpreter,
+                                         StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("single", args, 1, 1);
+        double[] d = args[0].doubles().clone();
+        for (int i = 0; i < d.length; ++i) {
+            d[i] = (float) d[i];
+        }
+        return one(StandInValue.numeric(StandInValue.SINGLE, d, args[0].dims()));
+    }
+
+    /**
+     * Converts to an integer class, rounding half away from zero and
+     * saturating like MATLAB does.
+     */
+    private static StandInValue[] cast(String clazz, StandInValue[] args)
+            throws MatlabEngineException {
+        checkArgs(clazz, args, 1, 1);
+        double[] range = StandInValue.INTEGER_CLASSES.get(clazz);
+        double[] d = args[0].doubles().clone();
+        for (int i = 0; i < d.length; ++i) {
+            double v = Double.isNaN(d[i]) ? 0 : Math.signum(d[i]) * Math
+                    .floor(Math.abs(d[i]) + 0.5);
+            d[i] = Math.min(Math.max(v, range[0]), range[1]);
+        }
+        return one(StandInValue.numeric(clazz, d, args[0].dims()));
+    }
+
+    private static StandInValue[] who(StandInInterpreter interpreter,
+                                      StandInValue[] args, int nargout) {
+        return one(column(interpreter.variables()));
+    }
+
+    private static StandInValue[] add(StandInInterpreter interpreter,
+                                      StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("add", args, 2, 2);
+        StandInValue a = args[0];
+        StandInValue b = args[1];
+        double[] x = a.doubles();
+        double[] y = b.doubles();
+        if (x.length == 1) {
+            double[] sum = y.clone();
+            for (int i = 0; i < sum.length; ++i) {
+                sum[i] += x[0];
+            }
+            return one(StandInValue.numeric(sum, b.dims()));
+        }
+        if (y.length != 1 && !Arrays.equals(a.dims(), b.dims())) {
+            throw new MatlabEngineException(
+                    "Error using +\nMatrix dimensions must agree.");
+        }
+        double[] sum = x.clone();
+        for (int i = 0; i < sum.length; ++i) {
+            sum[i] += y.length == 1 ? y[0] : y[i];
+        }
+        return one(StandInValue.numeric(sum, a.dims()));
+    }
+
+    private static StandInValue[] echo(StandInInterpreter interpreter,
+                                       StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("echo", args, 1, 1);
+        if (!args[0].isNumeric()) {
+            throw new MatlabEngineException(
+                    "Error using echo\nExpected a numeric matrix.");
+        }
+        return one(args[0]);
+    }
+
+    private static StandInValue[] identity(StandInInterpreter interpreter,
+                                           StandInValue[] args, int nargout) {
+        return args;
+    }
+
+    /**
+     * Native implementation of the <code>matlab_connector_flatten</code>
+     * helper shipped with the connector.
+     */
+    private static StandInValue[] flatten(StandInInterpreter interpreter,
+                                          StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("matlab_connector_flatten", args, 1, 1);
+        List<Double> tags = new ArrayList<>();
+        List<Double> dims = new ArrayList<>();
+        List<Double> doubles = new ArrayList<>();
+        StringBuilder chars = new StringBuilder();
+        Deque<StandInValue> stack = new ArrayDeque<>();
+        stack.push(args[0]);
+        while (!stack.isEmpty()) {
+            StandInValue v = stack.pop();
+            int[] size = v.dims();
+            dims.add((double) size.length);
+            for (int dim : size) {
+                dims.add((double) dim);
+            }
+            if (v.isSparse()) {
+                tags.add(6d);
+                StandInValue[] triplets = find(interpreter,
+                                               new StandInValue[] { v }, 3);
+                dims.add((double) triplets[2].numel());
+                for (StandInValue triplet : triplets) {
+                    for (double d : triplet.doubles()) {
+                        doubles.add(d);
+                    }
+                }
+                continue;
+            }
+            if (v.isNumeric() && !v.is(StandInValue.DOUBLE)) {
+                tags.add(5d);
+                dims.add((double) v.type().length());
+                chars.append(v.type());
+                boolean words = v.is("int64") || v.is("uint64");
+                for (double d : v.doubles()) {
+                    if (words) {
+                        long l = StandInValue.toLong(v.type(), d);
+                        doubles.add((double) (l & 0xffffffffL));
+                        doubles.add((double) (l >>> 32));
+                    } else {
+                        doubles.add(d);
+                    }
+                }
+                continue;
+            }
+            switch (v.type()) {
+                case StandInValue.DOUBLE:
+                    tags.add(0d);
+                    for (double d : v.doubles()) {
+                        doubles.add(d);
+                    }
+                    break;
+                case StandInValue.LOGICAL:
+                    tags.add(1d);
+                    for (double d : pack(v.doubles())) {
+                        doubles.add(d);
+                    }
+                    break;
+                case StandInValue.CHAR:
+                    if (!v.isRow()) {
+                        throw new MatlabEngineException(
+                                "Unable to transfer multi-row char arrays.");
+                    }
+                    tags.add(2d);
+                    chars.append(v.string());
+                    break;
+                case StandInValue.CELL:
+                    tags.add(3d);
+                    StandInValue[] elements = v.elements();
+                    for (int i = elements.length - 1; i >= 0; --i) {
+                        stack.push(elements[i]);
+                    }
+                    break;
+                case StandInValue.STRUCT:
+                    // struct array values follow field by field
+                    tags.add(v.numel() == 1 ? 4d : 7d);
+                    Map<String, StandInValue[]> columns = v.columns();
+                    dims.add((double) columns.size());
+                    List<StandInValue> values = new ArrayList<>();
+                    for (Map.Entry<String, StandInValue[]> e : columns
+                            .entrySet()) {
+                        dims.add((double) e.getKey().length());
+                        chars.append(e.getKey());
+                        values.addAll(Arrays.asList(e.getValue()));
+                    }
+                    for (int i = values.size() - 1; i >= 0; --i) {
+                        stack.push(values.get(i));
+                    }
+                    break;
+                default:
+                    throw new MatlabEngineException(String.format(
+                            "Unable to transfer values of type %s.", v.type()));
+            }
+        }
+        return new StandInValue[] {
+            StandInValue.row(Doubles.toArray(tags)),
+            StandInValue.row(Doubles.toArray(dims)),
+            StandInValue.row(Doubles.toArray(doubles)),
+            StandInValue.string(chars.toString())
+        };
+    }
+
+    /**
+     * Native implementation of the <code>matlab_connector_column</code>
+     * helper shipped with the connector.
+     */
+    private static StandInValue[] column(StandInInterpreter interpreter,
+                                         StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("matlab_connector_column", args, 2, 2);
+        int k = (int) args[1].scalar();
+        List<Map.Entry<String, StandInValue>> variables
+                = new ArrayList<>(args[0].variables().entrySet());
+        if (k < 1 || k > variables.size()) {
+            throw new MatlabEngineException(
+                    "Variable index exceeds table dimensions.");
+        }
+        StandInValue v = variables.get(k - 1).getValue();
+        if (v.is(StandInValue.CHAR)) {
+            return new StandInValue[] {
+                StandInValue.scalar(2), StandInValue.cell(one(v))
+            };
+        }
+        if (v.isNumeric()) {
+            return new StandInValue[] {
+                StandInValue.scalar(0), StandInValue.row(v.doubles())
+            };
+        }
+        switch (v.type()) {
+            case StandInValue.LOGICAL:
+                return new StandInValue[] {
+                    StandInValue.scalar(1), StandInValue.row(pack(v.doubles()))
+                };
+            case StandInValue.CELL:
+                StandInValue[] elements = v.elements();
+                for (StandInValue element : elements) {
+                    element.string();
+                }
+                return new StandInValue[] {
+                    StandInValue.scalar(2), StandInValue.cell(elements)
+                };
+            case StandInValue.DATETIME:
+                return new StandInValue[] {
+                    StandInValue.scalar(3), StandInValue.row(v.datenums())
+                };
+            default:
+                throw new MatlabEngineException(String.format(
+                        "Unable to transfer columns of type %s.", v.type()));
+        }
+    }
+
+    /**
+     * Native implementation of the <code>matlab_connector_pack</code> helper
+     * shipped with the connector.
+     */
+    private static StandInValue[] pack(StandInInterpreter interpreter,
+                                       StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("matlab_connector_pack", args, 1, 1);
+        double[] values = args[0].doubles();
+        for (double d : values) {
+            if (Double.isNaN(d)) {
+                throw new MatlabEngineException(
+                        "NaN's cannot be converted to logicals.");
+            }
+        }
+        return one(StandInValue.row(pack(values)));
+    }
+
+    private static double[] pack(double[] values) {
+        double[] words = new double[(values.length + 31) / 32];
+        for (int i = 0; i < values.length; ++i) {
+            if (values[i] != 0) {
+                words[i / 32] += 1L << (i % 32);
+            }
+        }
+        return words;
+    }
+
+    private static StandInValue[] sleep(StandInInterpreter interpreter,
+                                        StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        checkArgs("sleep", args, 1, 1);
+        double seconds = args[0].scalar();
+        interpreter.pause(TimeUnit.MICROSECONDS.toNanos(
+                (long) (seconds * 1000000)));
+        return nargout > 0 ? args : NONE;
+    }
+
+}
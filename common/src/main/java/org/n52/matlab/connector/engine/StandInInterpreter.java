@@ -0,0 +1,1101 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Evaluates the subset of the MATLAB language the connector generates:
+ * assignments (including multiple assignment), command syntax,
+ * <code>try</code>/<code>catch</code> blocks, numeric, string, matrix and cell
+ * literals as well as function calls and paren, brace and field indexing.
+ *
+ * @author Christian Autermann
+ */
+class StandInInterpreter {
+    /** <code>namelengthmax</code>, longer identifiers are truncated */
+    static final int NAMELENGTHMAX = 63;
+    private final Map<String, StandInValue> workspace = new TreeMap<>();
+    private final Map<String, StandInFunction> functions;
+    private final Set<String> path = new LinkedHashSet<>();
+    /** released once the session is killed */
+    private final CountDownLatch killed = new CountDownLatch(1);
+    private String pwd;
+
+    StandInInterpreter(Map<String, StandInFunction> functions, String pwd) {
+        this.functions = functions;
+        this.pwd = pwd;
+    }
+
+    void execute(String command) throws MatlabEngineException {
+        execute(new Parser(command).parseProgram());
+    }
+
+    StandInValue[] evaluate(String expression, int nargout)
+            throws MatlabEngineException {
+        Parser parser = new Parser(expression);
+        Expr expr = parser.parseExpression();
+        parser.expectEnd();
+        return evaluate(expr, nargout);
+    }
+
+    StandInValue getVariable(String name) throws MatlabEngineException {
+        StandInValue value = workspace.get(truncate(name));
+        if (value == null) {
+            throw undefined(name);
+        }
+        return value;
+    }
+
+    void setVariable(String name, StandInValue value) {
+        workspace.put(truncate(name), value);
+    }
+
+    Set<String> variables() {
+        return Collections.unmodifiableSet(workspace.keySet());
+    }
+
+    void clear(String name) {
+        workspace.remove(name);
+    }
+
+    void clearAll() {
+        workspace.clear();
+    }
+
+    void kill() {
+        killed.countDown();
+    }
+
+    /**
+     * Pauses the session like MATLAB does: the pause can not be interrupted
+     * by the calling thread but ends if the session is killed.
+     *
+     * @param nanos the time to pause in nanoseconds
+     *
+     * @throws MatlabEngineException if the session was killed
+     */
+    void pause(long nanos) throws MatlabEngineException {
+        if (Uninterruptibles.awaitUninterruptibly(killed, nanos,
+                                                  TimeUnit.NANOSECONDS)) {
+            throw new MatlabEngineException(
+                    "MATLAB session has been terminated.");
+        }
+    }
+
+    String pwd() {
+        return pwd;
+    }
+
+    void cd(String directory) {
+        this.pwd = directory;
+    }
+
+    void addPath(String directory) {
+        path.add(directory);
+    }
+
+    StandInValue[] call(String name, StandInValue[] args, int nargout)
+            throws MatlabEngineException {
+        StandInFunction function = functions.get(name);
+        if (function == null) {
+            throw undefined(name);
+        }
+        StandInValue[] result = function.apply(this, args, nargout);
+        if (result.length < nargout) {
+            throw new MatlabEngineException(String.format(
+                    "Error using %s\nToo many output arguments.", name));
+        }
+        return result;
+    }
+
+    private static String truncate(String name) {
+        return name.length() > NAMELENGTHMAX
+               ? name.substring(0, NAMELENGTHMAX) : name;
+    }
+
+    private static MatlabEngineException undefined(String name) {
+        return new MatlabEngineException(String.format(
+                "Undefined function or variable '%s'.", name));
+    }
+
+    private void execute(List<Statement> statements)
+            throws MatlabEngineException {
+        for (Statement statement : statements) {
+            statement.execute();
+        }
+    }
+
+    private StandInValue[] evaluate(Expr expr, int nargout)
+            throws MatlabEngineException {
+        if (expr instanceof Index) {
+            Index index = (Index) expr;
+            if (index.base instanceof Name &&
+                !workspace.containsKey(((Name) index.base).name)) {
+                if (index.brace) {
+                    throw undefined(((Name) index.base).name);
+                }
+                return call(((Name) index.base).name,
+                            evaluateAll(index.args), nargout);
+            }
+        } else if (expr instanceof Name) {
+            String name = ((Name) expr).name;
+            if (!workspace.containsKey(name)) {
+                return call(name, new StandInValue[0], nargout);
+            }
+        }
+        if (nargout > 1) {
+            throw new MatlabEngineException("Too many output arguments.");
+        }
+        return new StandInValue[] { expr.evaluate() };
+    }
+
+    private StandInValue evaluateSingle(Expr expr)
+            throws MatlabEngineException {
+        StandInValue[] values = evaluate(expr, 1);
+        return values[0];
+    }
+
+    private StandInValue[] evaluateAll(List<Expr> exprs)
+            throws MatlabEngineException {
+        List<StandInValue> values = new ArrayList<>(exprs.size());
+        for (Expr expr : exprs) {
+            if (expr instanceof Field) {
+                // dot indexing of struct arrays yields a comma-separated list
+                values.addAll(Arrays.asList(((Field) expr).list()));
+            } else {
+                values.add(evaluateSingle(expr));
+            }
+        }
+        return values.toArray(new StandInValue[values.size()]);
+    }
+
+    private interface Statement {
+        void execute() throws MatlabEngineException;
+    }
+
+    private interface Expr {
+        StandInValue evaluate() throws MatlabEngineException;
+    }
+
+    private class Assignment implements Statement {
+        private final List<String> targets;
+        private final Expr value;
+
+        Assignment(List<String> targets, Expr value) {
+            this.targets = targets;
+            this.value = value;
+        }
+
+        @Override
+        public void execute() throws MatlabEngineException {
+            StandInValue[] values = evaluate(value, targets.size());
+            for (int i = 0; i < targets.size(); ++i) {
+                if (targets.get(i) != null) {
+                    workspace.put(targets.get(i), values[i]);
+                }
+            }
+        }
+    }
+
+    private class ExpressionStatement implements Statement {
+        private final Expr expr;
+
+        ExpressionStatement(Expr expr) {
+            this.expr = expr;
+        }
+
+        @Override
+        public void execute() throws MatlabEngineException {
+            evaluate(expr, 0);
+        }
+    }
+
+    private class Command implements Statement {
+        private final String name;
+        private final List<String> words;
+
+        Command(String name, List<String> words) {
+            this.name = name;
+            this.words = words;
+        }
+
+        @Override
+        public void execute() throws MatlabEngineException {
+            StandInValue[] args = new StandInValue[words.size()];
+            for (int i = 0; i < args.length; ++i) {
+                args[i] = StandInValue.string(words.get(i));
+            }
+            call(name, args, 0);
+        }
+    }
+
+    private class TryCatch implements Statement {
+        private final List<Statement> body;
+        private final String identifier;
+        private final List<Statement> handler;
+
+        TryCatch(List<Statement> body, String identifier,
+                 List<Statement> handler) {
+            this.body = body;
+            this.identifier = identifier;
+            this.handler = handler;
+        }
+
+        @Override
+        public void execute() throws MatlabEngineException {
+            try {
+                StandInInterpreter.this.execute(body);
+            } catch (MatlabEngineException e) {
+                if (identifier != null) {
+                    Map<String, StandInValue> error = new LinkedHashMap<>(2);
+                    error.put("identifier", StandInValue.string(""));
+                    error.put("message", StandInValue.string(e.getMessage()));
+                    workspace.put(identifier, StandInValue.struct(error));
+                }
+                StandInInterpreter.this.execute(handler);
+            }
+        }
+    }
+
+    private static class Literal implements Expr {
+        private final StandInValue value;
+
+        Literal(StandInValue value) {
+            this.value = value;
+        }
+
+        @Override
+        public StandInValue evaluate() {
+            return value;
+        }
+    }
+
+    private static class Colon implements Expr {
+        @Override
+        public StandInValue evaluate() throws MatlabEngineException {
+            throw new MatlabEngineException("Unexpected ':'.");
+        }
+    }
+
+    private class Name implements Expr {
+        private final String name;
+
+        Name(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public StandInValue evaluate() throws MatlabEngineException {
+            return getVariable(name);
+        }
+    }
+
+    private class Negate implements Expr {
+        private final Expr operand;
+
+        Negate(Expr operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public StandInValue evaluate() throws MatlabEngineException {
+            StandInValue value = evaluateSingle(operand);
+            double[] d = value.doubles().clone();
+            for (int i = 0; i < d.length; ++i) {
+                d[i] = -d[i];
+            }
+            return StandInValue.numeric(d, value.dims());
+        }
+    }
+
+    private class Transpose implements Expr {
+        private final Expr operand;
+
+        Transpose(Expr operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public StandInValue evaluate() throws MatlabEngineException {
+            StandInValue value = evaluateSingle(operand);
+            int[] dims = value.dims();
+            if (dims.length > 2) {
+                throw new MatlabEngineException(
+                        "Transpose on ND array is not defined.");
+            }
+            if (value.is(StandInValue.CHAR) && dims[0] == 1) {
+                throw new MatlabEngineException(
+                        "Column character arrays are not supported.");
+            }
+            double[] d = value.doubles();
+            double[] t = new double[d.length];
+            int rows = dims[0];
+            int cols = dims[1];
+            for (int r = 0; r < rows; ++r) {
+                for (int c = 0; c < cols; ++c) {
+                    t[c + r * cols] = d[r + c * rows];
+                }
+            }
+            return StandInValue.numeric(t, new int[] { cols, rows });
+        }
+    }
+
+    private class Field implements Expr {
+        private final Expr base;
+        private final Expr name;
+
+        Field(Expr base, Expr name) {
+            this.base = base;
+            this.name = name;
+        }
+
+        @Override
+        public StandInValue evaluate() throws MatlabEngineException {
+            StandInValue value = evaluateSingle(base);
+            return value.field(fieldName(value));
+        }
+
+        StandInValue[] list() throws MatlabEngineException {
+            StandInValue value = evaluateSingle(base);
+            return value.column(fieldName(value));
+        }
+
+        /**
+         * Table variables can also be referenced by their number.
+         */
+        private String fieldName(StandInValue value)
+                throws MatlabEngineException {
+            StandInValue n = evaluateSingle(name);
+            if (value.is(StandInValue.TABLE) && n.isNumeric()) {
+                int index = (int) n.scalar() - 1;
+                List<String> names = new ArrayList<>(value.variables().keySet());
+                if (index < 0 || index >= names.size()) {
+                    throw new MatlabEngineException(
+                            "Variable index exceeds table dimensions.");
+                }
+                return names.get(index);
+            }
+            return n.string();
+        }
+    }
+
+    private class Index implements Expr {
+        private final Expr base;
+        private final List<Expr> args;
+        private final boolean brace;
+
+        Index(Expr base, List<Expr> args, boolean brace) {
+            this.base = base;
+            this.args = args;
+            this.brace = brace;
+        }
+
+        @Override
+        public StandInValue evaluate() throws MatlabEngineException {
+            if (base instanceof Name &&
+                !workspace.containsKey(((Name) base).name)) {
+                return evaluateSingle(this);
+            }
+            StandInValue value = evaluateSingle(base);
+            if (args.size() == 1 && args.get(0) instanceof Colon) {
+                return all(value);
+            }
+            int linear = linearIndex(value);
+            if (brace) {
+                return value.elements()[linear];
+            }
+            if (value.is(StandInValue.CELL)) {
+                return StandInValue.cell(value.elements()[linear]);
+            } else if (value.is(StandInValue.CHAR)) {
+                return StandInValue.string(String.valueOf(
+                        value.string().charAt(linear)));
+            } else if (value.is(StandInValue.LOGICAL)) {
+                return StandInValue.logical(value.doubles()[linear] != 0);
+            } else {
+                return StandInValue.scalar(value.doubles()[linear]);
+            }
+        }
+
+        private StandInValue all(StandInValue value)
+                throws MatlabEngineException {
+            int[] column = new int[] { value.numel(), 1 };
+            if (value.is(StandInValue.CELL)) {
+                if (brace) {
+                    throw new MatlabEngineException(
+                            "Comma separated lists are not supported.");
+                }
+                return StandInValue.cell(value.elements(), column);
+            }
+            return StandInValue.numeric(value.doubles(), column);
+        }
+
+        private int linearIndex(StandInValue value)
+                throws MatlabEngineException {
+            StandInValue[] subscripts = evaluateAll(args);
+            int[] dims = value.dims();
+            int linear = 0;
+            int stride = 1;
+            for (int i = 0; i < subscripts.length; ++i) {
+                int subscript = (int) subscripts[i].scalar() - 1;
+                int extent = i < subscripts.length - 1 && i < dims.length
+                             ? dims[i] : value.numel() / stride;
+                if (subscript < 0 || subscript >= extent) {
+                    throw new MatlabEngineException(
+                            "Index exceeds matrix dimensions.");
+                }
+                linear += subscript * stride;
+                stride *= extent;
+            }
+            return linear;
+        }
+    }
+
+    private class Concatenation implements Expr {
+        private final List<List<Expr>> rows;
+        private final boolean cell;
+
+        Concatenation(List<List<Expr>> rows, boolean cell) {
+            this.rows = rows;
+            this.cell = cell;
+        }
+
+        @Override
+        public StandInValue evaluate() throws MatlabEngineException {
+            List<StandInValue[]> values = new ArrayList<>(rows.size());
+            for (List<Expr> row : rows) {
+                values.add(evaluateAll(row));
+            }
+            return cell ? cell(values) : matrix(values);
+        }
+
+        private StandInValue cell(List<StandInValue[]> values)
+                throws MatlabEngineException {
+            int numRows = values.size();
+            int numCols = numRows == 0 ? 0 : values.get(0).length;
+            StandInValue[] elements = new StandInValue[numRows * numCols];
+            for (int r = 0; r < numRows; ++r) {
+                StandInValue[] row = values.get(r);
+                if (row.length != numCols) {
+                    throw inconsistent();
+                }
+                for (int c = 0; c < numCols; ++c) {
+                    elements[r + c * numRows] = row[c];
+                }
+            }
+            return StandInValue.cell(elements, new int[] { numRows, numCols });
+        }
+
+        private StandInValue matrix(List<StandInValue[]> values)
+                throws MatlabEngineException {
+            boolean chars = true;
+            boolean logical = true;
+            for (StandInValue[] row : values) {
+                for (StandInValue v : row) {
+                    chars &= v.is(StandInValue.CHAR);
+                    logical &= v.is(StandInValue.LOGICAL);
+                    if (v.is(StandInValue.CELL) || v.is(StandInValue.STRUCT)) {
+                        throw new MatlabEngineException(
+                                "Concatenation of " + v.type() +
+                                " values is not supported.");
+                    }
+                }
+            }
+            if (chars && !values.isEmpty()) {
+                return chars(values);
+            }
+            List<double[]> blocks = new ArrayList<>();
+            int totalRows = 0;
+            int totalCols = -1;
+            List<int[]> rowShapes = new ArrayList<>();
+            for (StandInValue[] row : values) {
+                int rowHeight = -1;
+                int rowWidth = 0;
+                for (StandInValue v : row) {
+                    int[] dims = v.dims();
+                    if (dims.length > 2) {
+                        throw inconsistent();
+                    }
+                    if (v.numel() == 0) {
+                        continue;
+                    }
+                    if (rowHeight < 0) {
+                        rowHeight = dims[0];
+                    } else if (rowHeight != dims[0]) {
+                        throw inconsistent();
+                    }
+                    rowWidth += dims[1];
+                }
+                if (rowHeight < 0) {
+                    rowShapes.add(new int[] { 0, 0 });
+                    continue;
+                }
+                if (totalCols < 0) {
+                    totalCols = rowWidth;
+                } else if (totalCols != rowWidth) {
+                    throw inconsistent();
+                }
+                totalRows += rowHeight;
+                rowShapes.add(new int[] { rowHeight, rowWidth });
+            }
+            totalCols = Math.max(totalCols, 0);
+            double[] data = new double[totalRows * totalCols];
+            int rowOffset = 0;
+            for (int i = 0; i < values.size(); ++i) {
+                int rowHeight = rowShapes.get(i)[0];
+                int colOffset = 0;
+                for (StandInValue v : values.get(i)) {
+                    if (v.numel() == 0) {
+                        continue;
+                    }
+                    int[] dims = v.dims();
+                    double[] d = v.doubles();
+                    for (int c = 0; c < dims[1]; ++c) {
+                        for (int r = 0; r < dims[0]; ++r) {
+                            data[(rowOffset + r) + (colOffset + c) * totalRows]
+                                    = d[r + c * dims[0]];
+                        }
+                    }
+                    colOffset += dims[1];
+                }
+                rowOffset += rowHeight;
+            }
+            int[] dims = new int[] { totalRows, totalCols };
+            if (logical && !values.isEmpty() && data.length > 0) {
+                boolean[] b = new boolean[data.length];
+                for (int i = 0; i < b.length; ++i) {
+                    b[i] = data[i] != 0;
+                }
+                return StandInValue.logical(b, dims);
+            }
+            return StandInValue.numeric(data, dims);
+        }
+
+        /**
+         * Stacks rows of characters into a character matrix; empty rows are
+         * skipped like in MATLAB.
+         */
+        private StandInValue chars(List<StandInValue[]> values)
+                throws MatlabEngineException {
+            List<String> lines = new ArrayList<>(values.size());
+            for (StandInValue[] row : values) {
+                StringBuilder sb = new StringBuilder();
+                for (StandInValue v : row) {
+                    if (!v.isRow()) {
+                        throw new MatlabEngineException(
+                                "Concatenation of character matrices is not supported.");
+                    }
+                    sb.append(v.string());
+                }
+                if (sb.length() > 0 || values.size() == 1) {
+                    lines.add(sb.toString());
+                }
+            }
+            if (lines.size() == 1) {
+                return StandInValue.string(lines.get(0));
+            }
+            int width = lines.isEmpty() ? 0 : lines.get(0).length();
+            StringBuilder columnMajor = new StringBuilder();
+            for (int c = 0; c < width; ++c) {
+                for (String line : lines) {
+                    if (line.length() != width) {
+                        throw inconsistent();
+                    }
+                    columnMajor.append(line.charAt(c));
+                }
+            }
+            return StandInValue.chars(columnMajor.toString(),
+                                      new int[] { lines.size(), width });
+        }
+
+        private MatlabEngineException inconsistent() {
+            return new MatlabEngineException(
+                    "Dimensions of arrays being concatenated are not consistent.");
+        }
+    }
+
+    private enum TokenType {
+        NUMBER, STRING, IDENTIFIER, OPERATOR, NEWLINE, END
+    }
+
+    private static class Token {
+        private final TokenType type;
+        private final String text;
+        private final boolean spaceBefore;
+
+        Token(TokenType type, String text, boolean spaceBefore) {
+            this.type = type;
+            this.text = text;
+            this.spaceBefore = spaceBefore;
+        }
+
+        boolean is(String operator) {
+            return type == TokenType.OPERATOR && text.equals(operator);
+        }
+
+        boolean isKeyword(String keyword) {
+            return type == TokenType.IDENTIFIER && text.equals(keyword);
+        }
+
+        @Override
+        public String toString() {
+            return type == TokenType.END ? "end of input" : "'" + text + "'";
+        }
+    }
+
+    private static class Lexer {
+        private static final String OPERATORS = "()[]{},;=.@-+:~*/";
+        private final String input;
+        private int pos;
+
+        Lexer(String input) {
+            this.input = input;
+        }
+
+        List<Token> tokenize() throws MatlabEngineException {
+            List<Token> tokens = new ArrayList<>();
+            boolean space = false;
+            while (pos < input.length()) {
+                char c = input.charAt(pos);
+                if (c == ' ' || c == '\t' || c == '\r') {
+                    ++pos;
+                    space = true;
+                    continue;
+                }
+                if (c == '%') {
+                    while (pos < input.length() && input.charAt(pos) != '\n') {
+                        ++pos;
+                    }
+                    continue;
+                }
+                if (input.startsWith("...", pos)) {
+                    while (pos < input.length() && input.charAt(pos) != '\n') {
+                        ++pos;
+                    }
+                    ++pos;
+                    space = true;
+                    continue;
+                }
+                if (c == '\n') {
+                    ++pos;
+                    tokens.add(new Token(TokenType.NEWLINE, "\n", space));
+                } else if (Character.isDigit(c) ||
+                           (c == '.' && pos + 1 < input.length() &&
+                            Character.isDigit(input.charAt(pos + 1)))) {
+                    tokens.add(new Token(TokenType.NUMBER, number(), space));
+                } else if (Character.isLetter(c)) {
+                    tokens.add(new Token(TokenType.IDENTIFIER, identifier(), space));
+                } else if (c == '\'') {
+                    if (isTranspose(tokens, space)) {
+                        ++pos;
+                        tokens.add(new Token(TokenType.OPERATOR, "'", space));
+                    } else {
+                        tokens.add(new Token(TokenType.STRING, string(), space));
+                    }
+                } else if (input.startsWith("==", pos) ||
+                           input.startsWith("~=", pos)) {
+                    tokens.add(new Token(TokenType.OPERATOR,
+                                         input.substring(pos, pos + 2), space));
+                    pos += 2;
+                } else if (OPERATORS.indexOf(c) >= 0) {
+                    ++pos;
+                    tokens.add(new Token(TokenType.OPERATOR, String.valueOf(c), space));
+                } else {
+                    throw new MatlabEngineException(String.format(
+                            "Invalid character '%s' in expression.", c));
+                }
+                space = false;
+            }
+            tokens.add(new Token(TokenType.END, "", space));
+            return tokens;
+        }
+
+        private boolean isTranspose(List<Token> tokens, boolean space) {
+            if (tokens.isEmpty() || space) {
+                return false;
+            }
+            Token last = tokens.get(tokens.size() - 1);
+            return last.type == TokenType.IDENTIFIER ||
+                   last.type == TokenType.NUMBER ||
+                   last.is(")") || last.is("]") || last.is("}") ||
+                   last.is("'");
+        }
+
+        private String number() {
+            int start = pos;
+            while (pos < input.length() &&
+                   (Character.isDigit(input.charAt(pos)) ||
+                    input.charAt(pos) == '.')) {
+                ++pos;
+            }
+            if (pos < input.length() &&
+                (input.charAt(pos) == 'e' || input.charAt(pos) == 'E')) {
+                ++pos;
+                if (pos < input.length() &&
+                    (input.charAt(pos) == '+' || input.charAt(pos) == '-')) {
+                    ++pos;
+                }
+                while (pos < input.length() &&
+                       Character.isDigit(input.charAt(pos))) {
+                    ++pos;
+                }
+            }
+            return input.substring(start, pos);
+        }
+
+        private String identifier() {
+            int start = pos;
+            while (pos < input.length() &&
+                   (Character.isLetterOrDigit(input.charAt(pos)) ||
+                    input.charAt(pos) == '_')) {
+                ++pos;
+            }
+            return truncate(input.substring(start, pos));
+        }
+
+        private String string() throws MatlabEngineException {
+            StringBuilder sb = new StringBuilder();
+            ++pos;
+            while (pos < input.length()) {
+                char c = input.charAt(pos++);
+                if (c == '\'') {
+                    if (pos < input.length() && input.charAt(pos) == '\'') {
+                        sb.append('\'');
+                        ++pos;
+                    } else {
+                        return sb.toString();
+                    }
+                } else {
+                    sb.append(c);
+                }
+            }
+            throw new MatlabEngineException(
+                    "A MATLAB string constant is not terminated properly.");
+        }
+    }
+
+    private class Parser {
+        private final List<Token> tokens;
+        private int pos;
+
+        Parser(String input) throws MatlabEngineException {
+            this.tokens = new Lexer(input).tokenize();
+        }
+
+        List<Statement> parseProgram() throws MatlabEngineException {
+            List<Statement> statements = parseStatements();
+            expectEnd();
+            return statements;
+        }
+
+        void expectEnd() throws MatlabEngineException {
+            if (peek().type != TokenType.END) {
+                throw unexpected(peek());
+            }
+        }
+
+        private List<Statement> parseStatements()
+                throws MatlabEngineException {
+            List<Statement> statements = new ArrayList<>();
+            while (true) {
+                skipSeparators();
+                Token token = peek();
+                if (token.type == TokenType.END ||
+                    token.isKeyword("catch") || token.isKeyword("end")) {
+                    return statements;
+                }
+                statements.add(parseStatement());
+            }
+        }
+
+        private void skipSeparators() {
+            while (peek().is(";") || peek().is(",") ||
+                   peek().type == TokenType.NEWLINE) {
+                ++pos;
+            }
+        }
+
+        private Statement parseStatement() throws MatlabEngineException {
+            Token token = peek();
+            if (token.isKeyword("try")) {
+                return parseTryCatch();
+            }
+            if (token.is("[") && isMultipleAssignment()) {
+                return parseMultipleAssignment();
+            }
+            if (token.type == TokenType.IDENTIFIER) {
+                Token next = peek(1);
+                if (next.is("=")) {
+                    pos += 2;
+                    return new Assignment(Collections.singletonList(token.text),
+                                          parseExpression());
+                }
+                if (next.spaceBefore &&
+                    (next.type == TokenType.IDENTIFIER ||
+                     next.type == TokenType.NUMBER ||
+                     next.is("-"))) {
+                    return parseCommand();
+                }
+            }
+            return new ExpressionStatement(parseExpression());
+        }
+
+        private Statement parseTryCatch() throws MatlabEngineException {
+            ++pos;
+            List<Statement> body = parseStatements();
+            String identifier = null;
+            List<Statement> handler = Collections.emptyList();
+            if (peek().isKeyword("catch")) {
+                ++pos;
+                if (peek().type == TokenType.IDENTIFIER &&
+                    !peek().isKeyword("end")) {
+                    identifier = next().text;
+                }
+                handler = parseStatements();
+            }
+            if (!peek().isKeyword("end")) {
+                throw unexpected(peek());
+            }
+            ++pos;
+            return new TryCatch(body, identifier, handler);
+        }
+
+        private boolean isMultipleAssignment() {
+            int depth = 0;
+            for (int i = pos; i < tokens.size(); ++i) {
+                Token t = tokens.get(i);
+                if (t.is("[")) {
+                    ++depth;
+                } else if (t.is("]") && --depth == 0) {
+                    return tokens.get(i + 1).is("=");
+                } else if (t.type == TokenType.END) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        private Statement parseMultipleAssignment()
+                throws MatlabEngineException {
+            expect("[");
+            List<String> targets = new ArrayList<>();
+            while (!peek().is("]")) {
+                Token t = next();
+                if (t.is("~")) {
+                    targets.add(null);
+                } else if (t.type == TokenType.IDENTIFIER) {
+                    targets.add(t.text);
+                } else if (!t.is(",")) {
+                    throw unexpected(t);
+                }
+            }
+            expect("]");
+            expect("=");
+            return new Assignment(targets, parseExpression());
+        }
+
+        private Statement parseCommand() {
+            String name = next().text;
+            List<String> words = new ArrayList<>();
+            StringBuilder word = null;
+            while (true) {
+                Token t = peek();
+                if (t.type == TokenType.END || t.type == TokenType.NEWLINE ||
+                    t.is(";") || t.is(",")) {
+                    break;
+                }
+                ++pos;
+                if (word == null || t.spaceBefore) {
+                    if (word != null) {
+                        words.add(word.toString());
+                    }
+                    word = new StringBuilder();
+                }
+                word.append(t.text);
+            }
+            if (word != null) {
+                words.add(word.toString());
+            }
+            return new Command(name, words);
+        }
+
+        Expr parseExpression() throws MatlabEngineException {
+            if (peek().is("-")) {
+                ++pos;
+                return new Negate(parseExpression());
+            }
+            if (peek().is("+")) {
+                ++pos;
+                return parseExpression();
+            }
+            return parsePostfix(parsePrimary());
+        }
+
+        private Expr parsePrimary() throws MatlabEngineException {
+            Token t = next();
+            switch (t.type) {
+                case NUMBER:
+                    return new Literal(StandInValue
+                            .scalar(Double.parseDouble(t.text)));
+                case STRING:
+                    return new Literal(StandInValue.string(t.text));
+                case IDENTIFIER:
+                    return new Name(t.text);
+                default:
+                    if (t.is("(")) {
+                        Expr expr = parseExpression();
+                        expect(")");
+                        return expr;
+                    } else if (t.is("[")) {
+                        return new Concatenation(parseRows("]"), false);
+                    } else if (t.is("{")) {
+                        return new Concatenation(parseRows("}"), true);
+                    }
+                    throw unexpected(t);
+            }
+        }
+
+        private Expr parsePostfix(Expr expr) throws MatlabEngineException {
+            while (true) {
+                Token t = peek();
+                if (t.is("(") && !t.spaceBefore) {
+                    ++pos;
+                    expr = new Index(expr, parseArguments(")"), false);
+                } else if (t.is("{") && !t.spaceBefore) {
+                    ++pos;
+                    expr = new Index(expr, parseArguments("}"), true);
+                } else if (t.is(".") && !t.spaceBefore) {
+                    ++pos;
+                    if (peek().is("(")) {
+                        ++pos;
+                        Expr name = parseExpression();
+                        expect(")");
+                        expr = new Field(expr, name);
+                    } else {
+                        Token name = next();
+                        if (name.type != TokenType.IDENTIFIER) {
+                            throw unexpected(name);
+                        }
+                        expr = new Field(expr, new Literal(
+                                StandInValue.string(name.text)));
+                    }
+                } else if (t.is("'")) {
+                    ++pos;
+                    expr = new Transpose(expr);
+                } else {
+                    return expr;
+                }
+            }
+        }
+
+        private List<Expr> parseArguments(String close)
+                throws MatlabEngineException {
+            List<Expr> args = new ArrayList<>();
+            if (peek().is(close)) {
+                ++pos;
+                return args;
+            }
+            while (true) {
+                if (peek().is(":") &&
+                    (peek(1).is(",") || peek(1).is(close))) {
+                    ++pos;
+                    args.add(new Colon());
+                } else {
+                    args.add(parseExpression());
+                }
+                Token t = next();
+                if (t.is(close)) {
+                    return args;
+                } else if (!t.is(",")) {
+                    throw unexpected(t);
+                }
+            }
+        }
+
+        private List<List<Expr>> parseRows(String close)
+                throws MatlabEngineException {
+            List<List<Expr>> rows = new ArrayList<>();
+            List<Expr> row = new ArrayList<>();
+            while (true) {
+                Token t = peek();
+                if (t.is(close)) {
+                    ++pos;
+                    break;
+                } else if (t.is(";") || t.type == TokenType.NEWLINE) {
+                    ++pos;
+                    if (!row.isEmpty()) {
+                        rows.add(row);
+                        row = new ArrayList<>();
+                    }
+                } else if (t.is(",")) {
+                    ++pos;
+                } else if (t.type == TokenType.END) {
+                    throw unexpected(t);
+                } else {
+                    row.add(parseExpression());
+                }
+            }
+            if (!row.isEmpty()) {
+                rows.add(row);
+            }
+            return rows;
+        }
+
+        private Token peek() {
+            return peek(0);
+        }
+
+        private Token peek(int offset) {
+            return tokens.get(Math.min(pos + offset, tokens.size() - 1));
+        }
+
+        private Token next() {
+            Token t = peek();
+            if (t.type != TokenType.END) {
+                ++pos;
+            }
+            return t;
+        }
+
+        private void expect(String operator) throws MatlabEngineException {
+            Token t = next();
+            if (!t.is(operator)) {
+                throw unexpected(t);
+            }
+        }
+
+        private MatlabEngineException unexpected(Token t) {
+            return new MatlabEngineException(String.format(
+                    "Unexpected MATLAB expression: %s in %s", t,
+                    Arrays.toString(tokens.stream()
+                            .map(x -> x.text).toArray())));
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.n52.matlab.control.extensions.MatlabNumericArray;
+
+/**
+ * A deterministic, in-process stand-in for a MATLAB session. It understands
+ * the commands a {@link org.n52.matlab.connector.instance.MatlabInstance}
+ * issues and implements the functions <code>add(a, b)</code>,
+ * <code>identity(varargin)</code>, <code>sleep(seconds)</code> and
+ * <code>echo(matrix)</code>. Every call into the engine is delayed by a
+ * configurable latency to simulate the round trip to a MATLAB process. Like a
+ * call to a MATLAB process, a running <code>sleep</code> can not be
+ * interrupted; it only ends early if the engine is {@linkplain #kill()
+ * killed}.
+ *
+ * @author Christian Autermann
+ */
+public class StandInMatlabEngine implements MatlabEngine {
+    private final StandInInterpreter interpreter;
+    private final long latency;
+    private volatile boolean connected = true;
+
+    /**
+     * Creates a new engine.
+     *
+     * @param pwd     the initial working directory
+     * @param latency the latency of every call in nanoseconds
+     */
+    public StandInMatlabEngine(String pwd, long latency) {
+        this.interpreter = new StandInInterpreter(StandInFunctions.create(), pwd);
+        this.latency = latency;
+    }
+
+    @Override
+    public synchronized void eval(String command)
+            throws MatlabEngineException {
+        roundTrip();
+        interpreter.execute(command);
+    }
+
+    @Override
+    public synchronized Object[] returningEval(String command, int nargout)
+            throws MatlabEngineException {
+        roundTrip();
+        StandInValue[] values = interpreter.evaluate(command, nargout);
+        Object[] result = new Object[nargout];
+        for (int i = 0; i < nargout; ++i) {
+            result[i] = values[i].toJava();
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Object getVariable(String name)
+            throws MatlabEngineException {
+        roundTrip();
+        return interpreter.getVariable(name).toJava();
+    }
+
+    @Override
+    public synchronized void setVariable(String name, Object value)
+            throws MatlabEngineException {
+        roundTrip();
+        interpreter.setVariable(name, StandInValue.fromJava(value));
+    }
+
+    @Override
+    public synchronized MatlabNumericArray getNumericArray(String name)
+            throws MatlabEngineException {
+        roundTrip();
+        return interpreter.getVariable(name).toNumericArray();
+    }
+
+    @Override
+    public synchronized void setNumericArray(String name,
+                                             MatlabNumericArray array)
+            throws MatlabEngineException {
+        roundTrip();
+        interpreter.setVariable(name, StandInValue.fromNumericArray(array));
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        connected = false;
+        interpreter.clearAll();
+    }
+
+    /**
+     * Terminates the session without acquiring the lock a running evaluation
+     * holds; a running <code>sleep</code> is aborted.
+     */
+    @Override
+    public void kill() {
+        connected = false;
+        interpreter.kill();
+    }
+
+    private void roundTrip() throws MatlabEngineException {
+        if (!connected) {
+            throw new MatlabEngineException("MATLAB session has been terminated.");
+        }
+        if (latency > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MatlabEngineException("Interrupted.", e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.engine;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.instance.MatlabInstanceConfiguration;
+
+import com.google.common.base.StandardSystemProperty;
+
+/**
+ * Creates {@link StandInMatlabEngine}s, optionally simulating the latency of
+ * starting and talking to a MATLAB process.
+ *
+ * @author Christian Autermann
+ */
+public class StandInMatlabEngineFactory implements MatlabEngineFactory {
+    private final long callLatency;
+    private final long startupLatency;
+
+    public StandInMatlabEngineFactory() {
+        this(0, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a new factory.
+     *
+     * @param callLatency    the latency of every call into an engine
+     * @param startupLatency the time it takes to start an engine
+     * @param unit           the unit of the latencies
+     */
+    public StandInMatlabEngineFactory(long callLatency, long startupLatency,
+                                      TimeUnit unit) {
+        checkArgument(callLatency >= 0);
+        checkArgument(startupLatency >= 0);
+        this.callLatency = checkNotNull(unit).toNanos(callLatency);
+        this.startupLatency = unit.toNanos(startupLatency);
+    }
+
+    @Override
+    public MatlabEngine create(MatlabInstanceConfiguration config)
+            throws MatlabException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(startupLatency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MatlabException("Unable to connect to MATLAB.", e);
+        }
+        String pwd = config.getBaseDir().isPresent()
+                     ? config.getBaseDir().get().getAbsolutePath()
+                     : StandardSystemProperty.USER_DIR.value();
+        return new StandInMatlabEngine(pwd, callLatency);
+    }
+
+}
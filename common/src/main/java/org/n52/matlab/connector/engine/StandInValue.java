@@ -0,0 +1,565 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.engine;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.n52.matlab.control.extensions.MatlabNumericArray;
+import org.n52.matlab.control.extensions.MatlabNumericArray.DoubleArrayType;
+
+/**
+ * A value in the workspace of a {@link StandInMatlabEngine}. Numeric and
+ * logical data is stored in column-major order, like MATLAB does.
+ *
+ * @author Christian Autermann
+ */
+final class StandInValue {
+    static final String DOUBLE = "double";
+    static final String CHAR = "char";
+    static final String LOGICAL = "logical";
+    static final String CELL = "cell";
+    static final String STRUCT = "struct";
+    static final String SINGLE = "single";
+    static final String TABLE = "table";
+    static final String DATETIME = "datetime";
+    /** The integer classes and their value ranges. */
+    static final Map<String, double[]> INTEGER_CLASSES;
+
+    static {
+        Map<String, double[]> classes = new LinkedHashMap<>();
+        classes.put("int8", new double[] { Byte.MIN_VALUE, Byte.MAX_VALUE });
+        classes.put("int16", new double[] { Short.MIN_VALUE, Short.MAX_VALUE });
+        classes.put("int32", new double[] { Integer.MIN_VALUE, Integer.MAX_VALUE });
+        classes.put("int64", new double[] { Long.MIN_VALUE, Long.MAX_VALUE });
+        classes.put("uint8", new double[] { 0, 0xFF });
+        classes.put("uint16", new double[] { 0, 0xFFFF });
+        classes.put("uint32", new double[] { 0, 0xFFFFFFFFL });
+        classes.put("uint64", new double[] { 0, 0x1p64 });
+        INTEGER_CLASSES = Collections.unmodifiableMap(classes);
+    }
+
+    private final String type;
+    private final int[] dims;
+    private final Object data;
+    private final boolean sparse;
+
+    private StandInValue(String type, int[] dims, Object data) {
+        this(type, dims, data, false);
+    }
+
+    private StandInValue(String type, int[] dims, Object data,
+                         boolean sparse) {
+        this.type = type;
+        this.dims = dims;
+        this.data = data;
+        this.sparse = sparse;
+    }
+
+    String type() {
+        return type;
+    }
+
+    int[] dims() {
+        return dims.clone();
+    }
+
+    int numel() {
+        int numel = 1;
+        for (int dim : dims) {
+            numel *= dim;
+        }
+        return numel;
+    }
+
+    boolean isNumeric() {
+        return type.equals(DOUBLE) || type.equals(SINGLE) ||
+               INTEGER_CLASSES.containsKey(type);
+    }
+
+    /**
+     * Sparse values are only flagged as such; their elements are kept dense.
+     */
+    boolean isSparse() {
+        return sparse;
+    }
+
+    boolean is(String type) {
+        return this.type.equals(type);
+    }
+
+    /**
+     * Checks if this is an empty value or a row vector.
+     */
+    boolean isRow() {
+        return numel() == 0 || dims.length == 2 && dims[0] == 1;
+    }
+
+    double[] doubles() throws MatlabEngineException {
+        switch (type) {
+            case DOUBLE:
+                return (double[]) data;
+            case LOGICAL:
+                boolean[] b = (boolean[]) data;
+                double[] d = new double[b.length];
+                for (int i = 0; i < b.length; ++i) {
+                    d[i] = b[i] ? 1 : 0;
+                }
+                return d;
+            case CHAR:
+                String s = (String) data;
+                double[] c = new double[s.length()];
+                for (int i = 0; i < c.length; ++i) {
+                    c[i] = s.charAt(i);
+                }
+                return c;
+            default:
+                if (isNumeric()) {
+                    return (double[]) data;
+                }
+                throw new MatlabEngineException(String.format(
+                        "Conversion to double from %s is not possible.", type));
+        }
+    }
+
+    double scalar() throws MatlabEngineException {
+        double[] d = doubles();
+        if (d.length != 1) {
+            throw new MatlabEngineException("Expected a scalar value.");
+        }
+        return d[0];
+    }
+
+    String string() throws MatlabEngineException {
+        if (!is(CHAR)) {
+            throw new MatlabEngineException("Expected a character array.");
+        }
+        return (String) data;
+    }
+
+    StandInValue[] elements() throws MatlabEngineException {
+        if (!is(CELL)) {
+            throw new MatlabEngineException(
+                    "Brace indexing is not supported for variables of this type.");
+        }
+        return (StandInValue[]) data;
+    }
+
+    /**
+     * Returns the fields of a scalar struct.
+     */
+    Map<String, StandInValue> fields() throws MatlabEngineException {
+        Map<String, StandInValue[]> columns = columns();
+        if (numel() != 1) {
+            throw new MatlabEngineException(String.format(
+                    "Expected one output from a curly brace or dot indexing " +
+                    "expression, but there were %d results.", numel()));
+        }
+        Map<String, StandInValue> fields = new LinkedHashMap<>(columns.size());
+        for (Map.Entry<String, StandInValue[]> e : columns.entrySet()) {
+            fields.put(e.getKey(), e.getValue()[0]);
+        }
+        return Collections.unmodifiableMap(fields);
+    }
+
+    /**
+     * Returns the values of every field of a struct (array) in column-major
+     * order.
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, StandInValue[]> columns() throws MatlabEngineException {
+        if (!is(STRUCT)) {
+            throw new MatlabEngineException(
+                    "Dot indexing is not supported for variables of this type.");
+        }
+        return Collections.unmodifiableMap((Map<String, StandInValue[]>) data);
+    }
+
+    /**
+     * Returns the variables of a table.
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, StandInValue> variables() throws MatlabEngineException {
+        if (!is(TABLE)) {
+            throw new MatlabEngineException("Expected a table.");
+        }
+        return Collections.unmodifiableMap((Map<String, StandInValue>) data);
+    }
+
+    /**
+     * Returns the date numbers of a datetime value.
+     */
+    double[] datenums() throws MatlabEngineException {
+        if (!is(DATETIME)) {
+            throw new MatlabEngineException("Expected a datetime value.");
+        }
+        return (double[]) data;
+    }
+
+    StandInValue field(String name) throws MatlabEngineException {
+        if (is(TABLE)) {
+            if (name.equals("Properties")) {
+                StandInValue[] names = new StandInValue[0];
+                for (String variable : variables().keySet()) {
+                    names = Arrays.copyOf(names, names.length + 1);
+                    names[names.length - 1] = string(variable);
+                }
+                return struct(Collections.singletonMap("VariableNames",
+                                                       cell(names)));
+            }
+            StandInValue variable = variables().get(name);
+            if (variable == null) {
+                throw new MatlabEngineException(String.format(
+                        "Unrecognized table variable name '%s'.", name));
+            }
+            return variable;
+        }
+        StandInValue value = fields().get(name);
+        if (value == null) {
+            throw new MatlabEngineException(
+                    String.format("Reference to non-existent field '%s'.", name));
+        }
+        return value;
+    }
+
+    StandInValue[] column(String name) throws MatlabEngineException {
+        if (is(TABLE)) {
+            return new StandInValue[] { field(name) };
+        }
+        StandInValue[] column = columns().get(name);
+        if (column == null) {
+            throw new MatlabEngineException(
+                    String.format("Reference to non-existent field '%s'.", name));
+        }
+        return column.clone();
+    }
+
+    /**
+     * Converts this value to the Java representation
+     * <code>matlabcontrol</code> would return.
+     *
+     * @return the Java value
+     *
+     * @throws MatlabEngineException if the value can not be converted
+     */
+    Object toJava() throws MatlabEngineException {
+        switch (type) {
+            case DOUBLE:
+                return ((double[]) data).clone();
+            case SINGLE:
+            case "int8":
+            case "uint8":
+            case "int16":
+            case "uint16":
+            case "int32":
+            case "uint32":
+            case "int64":
+            case "uint64":
+                return toPrimitiveArray();
+            case LOGICAL:
+                return ((boolean[]) data).clone();
+            case CHAR:
+                return isRow() ? data : rows();
+            case CELL:
+                StandInValue[] elements = elements();
+                boolean cellstr = true;
+                for (StandInValue element : elements) {
+                    cellstr &= element.is(CHAR);
+                }
+                Object[] java = cellstr ? new String[elements.length]
+                                : new Object[elements.length];
+                for (int i = 0; i < elements.length; ++i) {
+                    java[i] = elements[i].toJava();
+                }
+                return java;
+            default:
+                throw new MatlabEngineException(String.format(
+                        "Values of type %s can not be transferred.", type));
+        }
+    }
+
+    /**
+     * Splits a character matrix into its rows.
+     */
+    private String[] rows() throws MatlabEngineException {
+        if (dims.length > 2) {
+            throw new MatlabEngineException(String.format(
+                    "Values of type %s can not be transferred.", type));
+        }
+        String s = (String) data;
+        String[] rows = new String[dims[0]];
+        for (int r = 0; r < rows.length; ++r) {
+            StringBuilder row = new StringBuilder(dims[1]);
+            for (int c = 0; c < dims[1]; ++c) {
+                row.append(s.charAt(r + c * dims[0]));
+            }
+            rows[r] = row.toString();
+        }
+        return rows;
+    }
+
+    /**
+     * Narrows the elements of an integer or single-precision value to the
+     * Java type of the same width, keeping the bit pattern of unsigned
+     * values.
+     */
+    private Object toPrimitiveArray() {
+        double[] d = (double[]) data;
+        switch (type) {
+            case SINGLE:
+                float[] f = new float[d.length];
+                for (int i = 0; i < d.length; ++i) {
+                    f[i] = (float) d[i];
+                }
+                return f;
+            case "int8":
+            case "uint8":
+                byte[] b = new byte[d.length];
+                for (int i = 0; i < d.length; ++i) {
+                    b[i] = (byte) (long) d[i];
+                }
+                return b;
+            case "int16":
+            case "uint16":
+                short[] s = new short[d.length];
+                for (int i = 0; i < d.length; ++i) {
+                    s[i] = (short) (long) d[i];
+                }
+                return s;
+            case "int32":
+            case "uint32":
+                int[] n = new int[d.length];
+                for (int i = 0; i < d.length; ++i) {
+                    n[i] = (int) (long) d[i];
+                }
+                return n;
+            default:
+                long[] l = new long[d.length];
+                for (int i = 0; i < d.length; ++i) {
+                    l[i] = toLong(type, d[i]);
+                }
+                return l;
+        }
+    }
+
+    /**
+     * Narrows an element of a 64 bit integer value. As elements are kept as
+     * doubles, <code>intmax('int64')</code> is stored as 2^63 and saturates
+     * like in MATLAB; only <code>uint64</code> elements beyond 2^63 are
+     * wrapped to keep their bit pattern.
+     */
+    static long toLong(String type, double d) {
+        if (type.equals("uint64") && d >= 0x1p63) {
+            return (long) (d - 0x1p63) ^ Long.MIN_VALUE;
+        }
+        return (long) d;
+    }
+
+    MatlabNumericArray toNumericArray() throws MatlabEngineException {
+        double[] linear = doubles();
+        Object real = Array.newInstance(double.class, dims);
+        for (int i = 0; i < linear.length; ++i) {
+            setElement(real, dims, i, linear[i]);
+        }
+        return newNumericArray(real);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> MatlabNumericArray newNumericArray(Object real) {
+        DoubleArrayType<T> type = DoubleArrayType
+                .getInstance((Class<T>) real.getClass());
+        return new MatlabNumericArray(type, (T) real, null);
+    }
+
+    private static void setElement(Object array, int[] dims, int linear,
+                                   double value) {
+        Object current = array;
+        int stride = 1;
+        int[] subscripts = new int[dims.length];
+        for (int d = 0; d < dims.length; ++d) {
+            subscripts[d] = (linear / stride) % dims[d];
+            stride *= dims[d];
+        }
+        for (int d = 0; d < dims.length - 1; ++d) {
+            current = Array.get(current, subscripts[d]);
+        }
+        Array.setDouble(current, subscripts[dims.length - 1], value);
+    }
+
+    static StandInValue fromNumericArray(MatlabNumericArray array) {
+        double[] linear = new double[array.getLength()];
+        for (int i = 0; i < linear.length; ++i) {
+            linear[i] = array.getRealValue(i);
+        }
+        return numeric(linear, array.getLengths());
+    }
+
+    /**
+     * Converts a Java value as <code>matlabcontrol</code> would accept it.
+     *
+     * @param value the Java value
+     *
+     * @return the workspace value
+     *
+     * @throws MatlabEngineException if the value can not be converted
+     */
+    static StandInValue fromJava(Object value) throws MatlabEngineException {
+        if (value instanceof StandInValue) {
+            return (StandInValue) value;
+        } else if (value instanceof Number) {
+            return scalar(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            return logical((Boolean) value);
+        } else if (value instanceof String) {
+            return string((String) value);
+        } else if (value instanceof double[]) {
+            return row(((double[]) value).clone());
+        } else if (value instanceof float[]) {
+            float[] f = (float[]) value;
+            double[] d = new double[f.length];
+            for (int i = 0; i < f.length; ++i) {
+                d[i] = f[i];
+            }
+            return numeric(SINGLE, d, new int[] { 1, d.length });
+        } else if (value instanceof byte[] || value instanceof short[] ||
+                   value instanceof int[] || value instanceof long[]) {
+            double[] d = new double[Array.getLength(value)];
+            for (int i = 0; i < d.length; ++i) {
+                d[i] = ((Number) Array.get(value, i)).doubleValue();
+            }
+            String clazz = value instanceof byte[] ? "int8"
+                           : value instanceof short[] ? "int16"
+                             : value instanceof int[] ? "int32" : "int64";
+            return numeric(clazz, d, new int[] { 1, d.length });
+        } else if (value instanceof boolean[]) {
+            boolean[] b = ((boolean[]) value).clone();
+            return new StandInValue(LOGICAL, new int[] { 1, b.length }, b);
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            StandInValue[] cell = new StandInValue[array.length];
+            for (int i = 0; i < array.length; ++i) {
+                cell[i] = fromJava(array[i]);
+            }
+            return cell(cell);
+        } else {
+            throw new MatlabEngineException(
+                    "Unsupported Java type: " + (value == null ? null : value.getClass()));
+        }
+    }
+
+    static StandInValue scalar(double value) {
+        return numeric(new double[] { value }, new int[] { 1, 1 });
+    }
+
+    static StandInValue row(double[] values) {
+        return numeric(values, new int[] { 1, values.length });
+    }
+
+    static StandInValue numeric(double[] values, int[] dims) {
+        return new StandInValue(DOUBLE, normalize(dims), values);
+    }
+
+    /**
+     * Creates a numeric value of the given class. The values have to be
+     * representable in that class.
+     */
+    static StandInValue numeric(String clazz, double[] values, int[] dims) {
+        return new StandInValue(clazz, normalize(dims), values);
+    }
+
+    static StandInValue sparse(double[] values, int rows, int columns) {
+        return new StandInValue(DOUBLE, new int[] { rows, columns }, values,
+                                true);
+    }
+
+    static StandInValue logical(boolean value) {
+        return new StandInValue(LOGICAL, new int[] { 1, 1 },
+                                new boolean[] { value });
+    }
+
+    static StandInValue logical(boolean[] values, int[] dims) {
+        return new StandInValue(LOGICAL, normalize(dims), values);
+    }
+
+    /**
+     * Creates a character row; like in MATLAB the empty string is 0x0.
+     */
+    static StandInValue string(String value) {
+        int[] dims = value.isEmpty() ? new int[] { 0, 0 }
+                     : new int[] { 1, value.length() };
+        return new StandInValue(CHAR, dims, value);
+    }
+
+    /**
+     * Creates a character array from its column-major characters.
+     */
+    static StandInValue chars(String columnMajor, int[] dims) {
+        return new StandInValue(CHAR, normalize(dims), columnMajor);
+    }
+
+    static StandInValue cell(StandInValue... elements) {
+        return new StandInValue(CELL, new int[] { 1, elements.length },
+                                elements);
+    }
+
+    static StandInValue cell(StandInValue[] elements, int[] dims) {
+        return new StandInValue(CELL, normalize(dims), elements);
+    }
+
+    static StandInValue struct(Map<String, StandInValue> fields) {
+        Map<String, StandInValue[]> columns = new LinkedHashMap<>(fields.size());
+        for (Map.Entry<String, StandInValue> e : fields.entrySet()) {
+            columns.put(e.getKey(), new StandInValue[] { e.getValue() });
+        }
+        return new StandInValue(STRUCT, new int[] { 1, 1 }, columns);
+    }
+
+    /**
+     * Creates a struct array from the values of every field in column-major
+     * order.
+     */
+    static StandInValue struct(Map<String, StandInValue[]> columns,
+                               int[] dims) {
+        return new StandInValue(STRUCT, normalize(dims),
+                                new LinkedHashMap<>(columns));
+    }
+
+    /**
+     * Creates a table of column vectors of the same height.
+     */
+    static StandInValue table(Map<String, StandInValue> variables,
+                              int height) {
+        return new StandInValue(TABLE, new int[] { height, variables.size() },
+                                new LinkedHashMap<>(variables));
+    }
+
+    static StandInValue datetime(double[] datenums, int[] dims) {
+        return new StandInValue(DATETIME, normalize(dims), datenums);
+    }
+
+    private static int[] normalize(int[] dims) {
+        int n = dims.length;
+        while (n > 2 && dims[n - 1] == 1) {
+            --n;
+        }
+        return n == dims.length ? dims.clone() : Arrays.copyOf(dims, n);
+    }
+
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.value.MatlabArray;
+import org.n52.matlab.connector.value.MatlabBoolean;
+import org.n52.matlab.connector.value.MatlabByteArray;
+import org.n52.matlab.connector.value.MatlabCell;
+import org.n52.matlab.connector.value.MatlabIntArray;
+import org.n52.matlab.connector.value.MatlabLogicalArray;
+import org.n52.matlab.connector.value.MatlabLongArray;
+import org.n52.matlab.connector.value.MatlabMatrix;
+import org.n52.matlab.connector.value.MatlabNDArray;
+import org.n52.matlab.connector.value.MatlabScalar;
+import org.n52.matlab.connector.value.MatlabShortArray;
+import org.n52.matlab.connector.value.MatlabSingleArray;
+import org.n52.matlab.connector.value.MatlabSparseMatrix;
+import org.n52.matlab.connector.value.MatlabString;
+import org.n52.matlab.connector.value.MatlabStruct;
+import org.n52.matlab.connector.value.MatlabStructArray;
+import org.n52.matlab.connector.value.MatlabType;
+import org.n52.matlab.connector.value.MatlabValue;
+
+/**
+ * Rebuilds a value from the buffers returned by the
+ * <code>matlab_connector_flatten</code> helper function.
+ *
+ * @author Christian Autermann
+ */
+class FlattenedValueReader {
+    static final String FUNCTION = "matlab_connector_flatten";
+    static final String PACK_FUNCTION = "matlab_connector_pack";
+    static final int NARGOUT = 4;
+    private static final int BITS_PER_WORD = 32;
+    private static final int NUMERIC = 0;
+    private static final int LOGICAL = 1;
+    private static final int CHAR = 2;
+    private static final int CELL = 3;
+    private static final int STRUCT = 4;
+    private static final int TYPED = 5;
+    private static final int SPARSE = 6;
+    private static final int STRUCT_ARRAY = 7;
+    private final double[] tags;
+    private final double[] dims;
+    private final double[] doubles;
+    private final String chars;
+    private int tagIndex;
+    private int dimIndex;
+    private int doubleIndex;
+    private int charIndex;
+
+    FlattenedValueReader(Object[] buffers) {
+        this.tags = (double[]) buffers[0];
+        this.dims = (double[]) buffers[1];
+        this.doubles = (double[]) buffers[2];
+        this.chars = Objects.toString(buffers[3], "");
+    }
+
+    MatlabValue read() throws MatlabException {
+        int tag = (int) tags[tagIndex++];
+        int[] size = new int[(int) dims[dimIndex++]];
+        int numel = 1;
+        for (int i = 0; i < size.length; ++i) {
+            size[i] = (int) dims[dimIndex++];
+            numel *= size[i];
+        }
+        switch (tag) {
+            case NUMERIC:
+                return readNumeric(size, numel);
+            case LOGICAL:
+                return readLogical(size, numel);
+            case TYPED:
+                String clazz = readChars((int) dims[dimIndex++]);
+                return readTyped(MatlabType.fromString(clazz), size, numel);
+            case SPARSE:
+                return readSparse(size, (int) dims[dimIndex++]);
+            case CHAR:
+                if (numel > 0 && (size.length > 2 || size[0] != 1)) {
+                    throw new MatlabException(
+                            "Unable to transfer multi-row char arrays.");
+                }
+                return new MatlabString(readChars(numel));
+            case CELL:
+                MatlabValue[] cell = new MatlabValue[numel];
+                for (int i = 0; i < numel; ++i) {
+                    cell[i] = read();
+                }
+                return new MatlabCell(cell);
+            case STRUCT:
+                MatlabStruct struct = new MatlabStruct();
+                for (String name : readFieldNames()) {
+                    struct.set(name, read());
+                }
+                return struct;
+            case STRUCT_ARRAY:
+                // field by field, every field in linear order
+                Map<MatlabString, MatlabValue[]> columns = new TreeMap<>();
+                for (String name : readFieldNames()) {
+                    MatlabValue[] column = new MatlabValue[numel];
+                    for (int i = 0; i < numel; ++i) {
+                        column[i] = read();
+                    }
+                    columns.put(new MatlabString(name), column);
+                }
+                return new MatlabStructArray(columns, size);
+            default:
+                throw new MatlabException("Unsupported type tag " + tag);
+        }
+    }
+
+    private String[] readFieldNames() {
+        String[] names = new String[(int) dims[dimIndex++]];
+        for (int i = 0; i < names.length; ++i) {
+            names[i] = readChars((int) dims[dimIndex++]);
+        }
+        return names;
+    }
+
+    private MatlabValue readLogical(int[] size, int numel) {
+        MatlabValue value;
+        if (numel == 1) {
+            value = MatlabBoolean.fromBoolean(doubles[doubleIndex] != 0);
+        } else {
+            value = new MatlabLogicalArray(unpack(doubles, doubleIndex, numel),
+                                           size);
+        }
+        doubleIndex += packedLength(numel);
+        return value;
+    }
+
+    /**
+     * Returns the number of words <code>matlab_connector_pack</code> creates
+     * for the given number of elements.
+     */
+    static int packedLength(int numel) {
+        return (numel + BITS_PER_WORD - 1) / BITS_PER_WORD;
+    }
+
+    /**
+     * Converts the 32 bit words created by <code>matlab_connector_pack</code>
+     * to the bitset of a {@link MatlabLogicalArray}.
+     *
+     * @param words  the words
+     * @param offset the index of the first word
+     * @param numel  the number of elements
+     *
+     * @return the bitset
+     */
+    static long[] unpack(double[] words, int offset, int numel) {
+        long[] bits = new long[MatlabLogicalArray.words(numel)];
+        for (int i = 0; i < packedLength(numel); ++i) {
+            bits[i / 2] |= (long) words[offset + i] << (i % 2 * BITS_PER_WORD);
+        }
+        return bits;
+    }
+
+    /**
+     * Narrows the widened elements of an integer or single-precision array
+     * back to their class. 64 bit integers are transferred as two 32 bit
+     * words each, low word first.
+     */
+    private MatlabValue readTyped(MatlabType type, int[] size, int numel)
+            throws MatlabException {
+        int offset = doubleIndex;
+        doubleIndex += numel;
+        switch (type) {
+            case INT8:
+            case UINT8:
+                byte[] bytes = new byte[numel];
+                for (int i = 0; i < numel; ++i) {
+                    bytes[i] = (byte) (long) doubles[offset + i];
+                }
+                return new MatlabByteArray(bytes, type == MatlabType.UINT8, size);
+            case INT16:
+            case UINT16:
+                short[] shorts = new short[numel];
+                for (int i = 0; i < numel; ++i) {
+                    shorts[i] = (short) (long) doubles[offset + i];
+                }
+                return new MatlabShortArray(shorts, type == MatlabType.UINT16,
+                                            size);
+            case INT32:
+            case UINT32:
+                int[] ints = new int[numel];
+                for (int i = 0; i < numel; ++i) {
+                    ints[i] = (int) (long) doubles[offset + i];
+                }
+                return new MatlabIntArray(ints, type == MatlabType.UINT32, size);
+            case INT64:
+            case UINT64:
+                doubleIndex += numel;
+                long[] longs = new long[numel];
+                for (int i = 0; i < numel; ++i) {
+                    long low = (long) doubles[offset + 2 * i];
+                    long high = (long) doubles[offset + 2 * i + 1];
+                    longs[i] = high << BITS_PER_WORD | low;
+                }
+                return new MatlabLongArray(longs, type == MatlabType.UINT64, size);
+            case SINGLE:
+                float[] floats = new float[numel];
+                for (int i = 0; i < numel; ++i) {
+                    floats[i] = (float) doubles[offset + i];
+                }
+                return new MatlabSingleArray(floats, size);
+            default:
+                throw new MatlabException("Unsupported numeric class " + type);
+        }
+    }
+
+    /**
+     * Reads the one-based <code>find</code> triplets of a sparse matrix,
+     * which are ordered by column.
+     */
+    private MatlabValue readSparse(int[] size, int nnz) {
+        int[] pointers = new int[size[1] + 1];
+        int[] rows = new int[nnz];
+        double[] values = new double[nnz];
+        for (int k = 0; k < nnz; ++k) {
+            rows[k] = (int) doubles[doubleIndex + k] - 1;
+            ++pointers[(int) doubles[doubleIndex + nnz + k]];
+        }
+        for (int c = 0; c < size[1]; ++c) {
+            pointers[c + 1] += pointers[c];
+        }
+        System.arraycopy(doubles, doubleIndex + 2 * nnz, values, 0, nnz);
+        doubleIndex += 3 * nnz;
+        return new MatlabSparseMatrix(size[0], size[1], pointers, rows, values);
+    }
+
+    private String readChars(int length) {
+        String string = chars.substring(charIndex, charIndex + length);
+        charIndex += length;
+        return string;
+    }
+
+    private MatlabValue readNumeric(int[] size, int numel) {
+        int rows = size[0];
+        int cols = size[1];
+        MatlabValue value;
+        if (size.length > 2) {
+            double[] array = new double[numel];
+            System.arraycopy(doubles, doubleIndex, array, 0, numel);
+            value = new MatlabNDArray(array, size);
+        } else if (rows == 1 && cols == 1) {
+            value = new MatlabScalar(doubles[doubleIndex]);
+        } else if (rows == 1) {
+            double[] array = new double[cols];
+            System.arraycopy(doubles, doubleIndex, array, 0, cols);
+            value = new MatlabArray(array);
+        } else {
+            double[] matrix = new double[numel];
+            System.arraycopy(doubles, doubleIndex, matrix, 0, numel);
+            value = new MatlabMatrix(matrix, rows, cols);
+        }
+        doubleIndex += numel;
+        return value;
+    }
+
+}
@@ -17,54 +17,102 @@
 package org.n52.matlab.connector.instance;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.n52.matlab.connector.MatlabException;
 import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.MatlabResponse;
 import org.n52.matlab.connector.MatlabResult;
+import org.n52.matlab.connector.engine.MatlabEngine;
+import org.n52.matlab.connector.engine.MatlabEngineException;
 import org.n52.matlab.connector.value.AbstractMatlabValueVisitor;
 import org.n52.matlab.connector.value.MatlabArray;
 import org.n52.matlab.connector.value.MatlabBoolean;
+import org.n52.matlab.connector.value.MatlabByteArray;
 import org.n52.matlab.connector.value.MatlabCell;
 import org.n52.matlab.connector.value.MatlabEvalStringVisitor;
 import org.n52.matlab.connector.value.MatlabFile;
+import org.n52.matlab.connector.value.MatlabIntArray;
+import org.n52.matlab.connector.value.MatlabLogicalArray;
+import org.n52.matlab.connector.value.MatlabLongArray;
 import org.n52.matlab.connector.value.MatlabMatrix;
+import org.n52.matlab.connector.value.MatlabNDArray;
 import org.n52.matlab.connector.value.MatlabScalar;
+import org.n52.matlab.connector.value.MatlabShortArray;
+import org.n52.matlab.connector.value.MatlabSingleArray;
+import org.n52.matlab.connector.value.MatlabSparseMatrix;
 import org.n52.matlab.connector.value.MatlabString;
 import org.n52.matlab.connector.value.MatlabStruct;
+import org.n52.matlab.connector.value.MatlabStructArray;
+import org.n52.matlab.connector.value.MatlabTable;
 import org.n52.matlab.connector.value.MatlabType;
+import org.n52.matlab.connector.value.MatlabTypedArray;
 import org.n52.matlab.connector.value.MatlabValue;
-import org.n52.matlab.control.MatlabConnectionException;
-import org.n52.matlab.control.MatlabInvocationException;
-import org.n52.matlab.control.MatlabProxy;
-import org.n52.matlab.control.MatlabProxyFactory;
-import org.n52.matlab.control.MatlabProxyFactoryOptions;
 import org.n52.matlab.control.extensions.MatlabNumericArray;
-import org.n52.matlab.control.extensions.MatlabTypeConverter;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.Iterables;
+import com.google.common.primitives.Ints;
 
 
 public class MatlabInstance {
     private static final Joiner COMMA_JOINER = Joiner.on(",");
+    private static final Joiner SPACE_JOINER = Joiner.on(" ");
+    private static final Joiner SEMICOLON_JOINER = Joiner.on(";");
+    private static final String CLEAR_ALL_COMMAND = "clear all";
     private static final String CHAR_TYPE = "char";
     private static final String CELL_TYPE = "cell";
     private static final String STRUCT_TYPE = "struct";
+    private static final String TABLE_TYPE = "table";
+    private static final String COLUMN_FUNCTION = "matlab_connector_column";
+    private static final int NUMERIC_COLUMN = 0;
+    private static final int LOGICAL_COLUMN = 1;
+    private static final int TEXT_COLUMN = 2;
+    private static final int DATE_TIME_COLUMN = 3;
     private static final String LOGICAL_TYPE = "logical";
+    private static final String DOUBLE_TYPE = "double";
+    private static final Set<MatlabType> INTEGER_TYPES = EnumSet.of(
+            MatlabType.INT8, MatlabType.INT16, MatlabType.INT32,
+            MatlabType.INT64, MatlabType.UINT8, MatlabType.UINT16,
+            MatlabType.UINT32, MatlabType.UINT64);
+    private static final int MAX_NAME_LENGTH = 32;
+    /** <code>namelengthmax</code>, longer names are truncated by MATLAB */
+    private static final int NAMELENGTHMAX = 63;
+    private static final int MAX_RECENT_FUNCTIONS = 32;
     private final Logger log = LoggerFactory.getLogger(MatlabInstance.class);
-    private final MatlabProxy proxy;
-    private final MatlabTypeConverter processor;
+    private final MatlabEngine engine;
     private final MatlabInstanceConfiguration config;
+    private final Set<String> requestVariables = new LinkedHashSet<>();
+    private final ScratchDirectory scratch = new ScratchDirectory();
+    private boolean helpersInstalled = false;
+    private boolean prepared = false;
+    private long requests = 0;
+    /** counter for nested variable names that would be too long */
+    private long nestedVariables = 0;
+    private final long started = System.nanoTime();
+    /** the most recently evaluated functions, least recent first */
+    private final Set<String> recentFunctions = new LinkedHashSet<>();
 
     public MatlabInstance() throws MatlabException {
         this(MatlabInstanceConfiguration.builder().build());
@@ -73,100 +121,460 @@ public class MatlabInstance {
     public MatlabInstance(MatlabInstanceConfiguration config) throws
             MatlabException {
         this.config = Objects.requireNonNull(config);
+        this.engine = config.getEngineFactory().create(config);
+    }
+
+    public void destroy() throws MatlabException {
         try {
-            proxy = createProxyFactory(config).getProxy();
-            processor = new MatlabTypeConverter(proxy);
-        } catch (MatlabConnectionException e) {
-            throw new MatlabException("Unable to connect to MATLAB.", e);
+            engine.destroy();
+        } catch (MatlabEngineException e) {
+            throw new MatlabException("Couldn't exit MATLAB.", e);
+        } finally {
+            try {
+                scratch.delete();
+            } catch (IOException e) {
+                log.warn("Could not delete scratch directory", e);
+            }
+            helpersInstalled = false;
         }
     }
 
-    private MatlabProxyFactory createProxyFactory(
-            MatlabInstanceConfiguration config) {
-        MatlabProxyFactoryOptions.Builder builder
-                = new MatlabProxyFactoryOptions.Builder()
-                .setHidden(config.isHidden())
-                .setPort(config.getPort());
-        if (config.getBaseDir().isPresent()) {
-            builder.setMatlabStartingDirectory(config.getBaseDir().get());
+    /**
+     * Forcibly terminates the MATLAB session, even if it is still evaluating
+     * a request that does not return.
+     *
+     * @throws MatlabException if the session could not be terminated
+     * @see MatlabEngine#kill()
+     */
+    public void kill() throws MatlabException {
+        try {
+            engine.kill();
+        } catch (MatlabEngineException e) {
+            throw new MatlabException("Couldn't kill MATLAB.", e);
+        } finally {
+            try {
+                scratch.delete();
+            } catch (IOException e) {
+                log.warn("Could not delete scratch directory", e);
+            }
         }
-        return new MatlabProxyFactory(builder.build());
     }
 
-    public void destroy() throws MatlabException {
+    /**
+     * Checks if the MATLAB session is still connected and responds to a
+     * trivial evaluation.
+     *
+     * @return if the instance is alive
+     */
+    public boolean isAlive() {
+        if (!engine.isConnected()) {
+            return false;
+        }
         try {
-            proxy.exit();
-        } catch (MatlabInvocationException e) {
-            throw new MatlabException("Couldn't exit MATLAB.", e);
+            engine.eval("0;");
+            return true;
+        } catch (MatlabEngineException e) {
+            log.warn("MATLAB instance is not responding", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return the number of requests this instance has handled
+     */
+    public long getRequestCount() {
+        return requests;
+    }
+
+    /**
+     * @param unit the unit of the return value
+     *
+     * @return the time since this instance was started
+     */
+    public long getAge(TimeUnit unit) {
+        return unit.convert(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Checks if this instance recently evaluated the function and is likely
+     * to have it already loaded.
+     *
+     * @param function the function name
+     *
+     * @return if the function was recently evaluated
+     */
+    public boolean hasRecentlyEvaluated(String function) {
+        synchronized (recentFunctions) {
+            return recentFunctions.contains(function);
+        }
+    }
+
+    private void recordFunction(String function) {
+        synchronized (recentFunctions) {
+            recentFunctions.remove(function);
+            recentFunctions.add(function);
+            if (recentFunctions.size() > MAX_RECENT_FUNCTIONS) {
+                Iterator<String> iter = recentFunctions.iterator();
+                iter.next();
+                iter.remove();
+            }
+        }
+    }
+
+    private void installHelpers()
+            throws MatlabException, MatlabEngineException {
+        if (helpersInstalled) {
+            return;
+        }
+        Path dir;
+        try {
+            dir = scratch.getDirectory();
+            for (String function : new String[] {
+                FlattenedValueReader.FUNCTION,
+                FlattenedValueReader.PACK_FUNCTION,
+                COLUMN_FUNCTION }) {
+                String file = function + ".m";
+                try (InputStream in = MatlabInstance.class
+                        .getResourceAsStream(file)) {
+                    Files.copy(in, dir.resolve(file),
+                               StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } catch (IOException e) {
+            throw new MatlabException("Unable to install helper functions.", e);
         }
+        String safe = MatlabEvalStringVisitor.create()
+                .apply(new MatlabString(dir.toString()));
+        engine.eval(String.format("addpath(%s)", safe));
+        helpersInstalled = true;
     }
 
     private void preHandle() throws MatlabException {
+        // the working directory and path only have to be set up initially
+        // and after a failed request may have left them in a different state;
+        // postHandle restores the working directory after every request
+        if (prepared) {
+            return;
+        }
         try {
             if (config.getBaseDir().isPresent()) {
                 changeDir(config.getBaseDir().get().getAbsolutePath());
-                proxy.eval("addpath('.')");
+                engine.eval("addpath('.')");
             }
-        } catch (MatlabInvocationException e) {
+            prepared = true;
+        } catch (MatlabEngineException e) {
             throw new MatlabException("Unable to perform pre-request setup.", e);
         }
     }
 
-    private void postHandle() throws MatlabException {
+    private void postHandle(int count, boolean success) throws MatlabException {
+        requests += count;
+        if (!success) {
+            prepared = false;
+        }
         try {
-            clearAll();
-        } catch (MatlabInvocationException e) {
+            List<String> cleanup = new ArrayList<>(2);
+            int interval = config.getFullClearInterval();
+            if (interval > 0 && requests / interval != (requests - count) / interval) {
+                cleanup.add(CLEAR_ALL_COMMAND);
+            } else {
+                switch (config.getResetPolicy()) {
+                    case CLEAR_ALL:
+                        cleanup.add(CLEAR_ALL_COMMAND);
+                        break;
+                    case CLEAR_VARIABLES:
+                        cleanup.add("clear variables");
+                        break;
+                    default:
+                        if (!requestVariables.isEmpty()) {
+                            cleanup.add("clear " + SPACE_JOINER
+                                    .join(requestVariables));
+                        }
+                }
+            }
+            if (prepared && config.getBaseDir().isPresent()) {
+                // a successful function may have changed the directory as
+                // well; restored in the same call as the cleanup
+                cleanup.add(changeDirCommand(
+                        config.getBaseDir().get().getAbsolutePath()));
+            }
+            if (!cleanup.isEmpty()) {
+                engine.eval(SEMICOLON_JOINER.join(cleanup));
+            }
+        } catch (MatlabEngineException e) {
             throw new MatlabException("Unable to perform post-request clean.", e);
+        } finally {
+            requestVariables.clear();
         }
     }
 
     protected Map<String, MatlabValue> feval(String function,
                                              Map<String, MatlabType> results,
                                              List<MatlabValue> parameters)
-            throws MatlabInvocationException, MatlabException {
+            throws MatlabEngineException, MatlabException {
         int length = results.size();
         final String[] rarray = results.keySet().toArray(new String[length]);
-        final String[] varray = genvarnames(rarray);
-        final String cmd = buildFEval(function, varray, parameters);
+        final boolean batched = config.isBatchedProbing();
+        final String[] varray = batched ? varnames(rarray)
+                                : genvarnames(rarray);
+        requestVariables.addAll(Arrays.asList(varray));
+        final List<String> arguments = injectParameters(parameters);
+        final String cmd = buildFEval(function, varray, arguments);
         log.debug("Evaluation: {}", cmd);
-        proxy.eval(cmd);
+        engine.eval(cmd);
         log.info("Evaluation complete, parsing results...");
         Map<String, MatlabValue> result = new LinkedHashMap<>(rarray.length);
-        for (int i = 0; i < length; ++i) {
-            result.put(rarray[i], parseValue(varray[i], results.get(rarray[i])));
+        if (batched) {
+            MatlabType[] types = new MatlabType[length];
+            for (int i = 0; i < length; ++i) {
+                types[i] = results.get(rarray[i]);
+            }
+            MatlabValue[] values = parseValues(varray, types);
+            for (int i = 0; i < length; ++i) {
+                result.put(rarray[i], convert(values[i], results.get(rarray[i])));
+            }
+        } else {
+            for (int i = 0; i < length; ++i) {
+                result.put(rarray[i], parseValue(varray[i], results.get(rarray[i])));
+            }
         }
         return result;
     }
 
+    /**
+     * Generates valid and distinct MATLAB variable names for the supplied
+     * result names without asking MATLAB.
+     *
+     * @param rarray the result names
+     *
+     * @return the variable names
+     */
+    protected String[] varnames(String[] rarray) {
+        return varnames(rarray, "");
+    }
+
+    /**
+     * Generates valid and distinct MATLAB variable names for the supplied
+     * result names without asking MATLAB. The names start with the prefix
+     * and do not exceed <code>namelengthmax</code>.
+     *
+     * @param rarray the result names
+     * @param prefix the prefix of the variable names
+     *
+     * @return the variable names
+     */
+    protected String[] varnames(String[] rarray, String prefix) {
+        final String[] varray = new String[rarray.length];
+        for (int i = 0; i < rarray.length; ++i) {
+            // the index keeps truncated names distinct
+            String head = prefix + "out" + (i + 1) + "_";
+            String name = rarray[i].replaceAll("[^A-Za-z0-9_]", "_");
+            int length = Math.min(MAX_NAME_LENGTH, NAMELENGTHMAX - head.length());
+            if (name.length() > length) {
+                name = name.substring(0, Math.max(length, 0));
+            }
+            varray[i] = head + name;
+        }
+        return varray;
+    }
+
+    /**
+     * Derives the name of a variable holding a part of another variable. If
+     * the name would exceed <code>namelengthmax</code> a new short name is
+     * used instead.
+     */
+    private String nestedName(String varName, String suffix) {
+        String name = varName + suffix;
+        if (name.length() > NAMELENGTHMAX) {
+            name = "nested" + (++nestedVariables);
+        }
+        return name;
+    }
+
     protected String[] genvarnames(String[] rarray) throws
-            MatlabInvocationException {
+            MatlabEngineException {
         final int length = rarray.length;
         final String[] varray = new String[length];
         final MatlabEvalStringVisitor f = MatlabEvalStringVisitor.create();
         for (int i = 0; i < length; ++i) {
             String safe = f.apply(new MatlabString(rarray[i]));
             String cmd = String.format("genvarname(%s, who)", safe);
-            varray[i] = (String) proxy.returningEval(cmd, 1)[0];
+            varray[i] = (String) engine.returningEval(cmd, 1)[0];
         }
         return varray;
     }
 
     protected String buildFEval(String function, String[] varray,
                                 List<MatlabValue> parameters) {
+        return buildFEval(function, varray, Iterables
+                          .transform(parameters, MatlabEvalStringVisitor
+                                     .create()));
+    }
+
+    protected String buildFEval(String function, String[] varray,
+                                Iterable<String> arguments) {
         StringBuilder sb = new StringBuilder();
         COMMA_JOINER.appendTo(sb.append('['), varray).append("]");
         sb.append(" = ");
         sb.append("feval('").append(function).append('\'');
-        if (!parameters.isEmpty()) {
+        if (!Iterables.isEmpty(arguments)) {
             sb.append(", ");
-            COMMA_JOINER.appendTo(sb, Iterables
-                                  .transform(parameters, MatlabEvalStringVisitor
-                                             .create()));
+            COMMA_JOINER.appendTo(sb, arguments);
         }
         sb.append(')');
         return sb.toString();
     }
 
+    /**
+     * Transfers numeric parameters with at least
+     * {@link MatlabInstanceConfiguration#getInjectionThreshold()} elements as
+     * variables and renders all other parameters as MATLAB expressions.
+     *
+     * @param parameters the parameters
+     *
+     * @return the arguments to pass to the function
+     *
+     * @throws MatlabEngineException if a variable could not be set
+     */
+    protected List<String> injectParameters(List<MatlabValue> parameters)
+            throws MatlabEngineException {
+        return injectParameters(parameters, "");
+    }
+
+    /**
+     * Transfers numeric parameters with at least
+     * {@link MatlabInstanceConfiguration#getInjectionThreshold()} elements as
+     * variables and renders all other parameters as MATLAB expressions.
+     *
+     * @param parameters the parameters
+     * @param prefix     the prefix of the variable names
+     *
+     * @return the arguments to pass to the function
+     *
+     * @throws MatlabEngineException if a variable could not be set
+     */
+    protected List<String> injectParameters(List<MatlabValue> parameters,
+                                            String prefix)
+            throws MatlabEngineException {
+        final int threshold = config.getInjectionThreshold();
+        final MatlabEvalStringVisitor f = MatlabEvalStringVisitor.create();
+        List<String> arguments = new ArrayList<>(parameters.size());
+        for (MatlabValue parameter : parameters) {
+            if (parameter.isSparse() &&
+                parameter.asSparse().getNonZeros() >= threshold) {
+                String name = prefix + "in" + (arguments.size() + 1);
+                arguments.add(injectSparse(name, parameter.asSparse()));
+                continue;
+            }
+            MatlabNumericArray array = toNumericArray(parameter, threshold);
+            if (array == null) {
+                arguments.add(f.apply(parameter));
+            } else {
+                String name = prefix + "in" + (arguments.size() + 1);
+                requestVariables.add(name);
+                engine.setNumericArray(name, array);
+                if (parameter.isNDArray()) {
+                    // transferred as a row vector to avoid nested arrays
+                    arguments.add(String.format("reshape(%s,%s)", name,
+                            COMMA_JOINER.join(Ints.asList(
+                                    parameter.asNDArray().getShape()))));
+                } else if (parameter instanceof MatlabTypedArray) {
+                    // transferred as a double row vector and cast back
+                    MatlabTypedArray typed = (MatlabTypedArray) parameter;
+                    arguments.add(String.format("%s(reshape(%s,%s))",
+                            typed.getMatlabClass(), name,
+                            COMMA_JOINER.join(Ints.asList(typed.getShape()))));
+                } else {
+                    arguments.add(name);
+                }
+            }
+        }
+        return arguments;
+    }
+
+    /**
+     * Injects the one-based <code>find</code> triplets of a sparse matrix as
+     * three variables.
+     *
+     * @return the expression creating the sparse matrix from them
+     */
+    private String injectSparse(String name, MatlabSparseMatrix sparse)
+            throws MatlabEngineException {
+        int nnz = sparse.getNonZeros();
+        double[] i = new double[nnz];
+        double[] j = new double[nnz];
+        int[] pointers = sparse.getColumnPointers();
+        int[] rows = sparse.getRowIndices();
+        for (int c = 0; c < sparse.getColumns(); ++c) {
+            for (int k = pointers[c]; k < pointers[c + 1]; ++k) {
+                i[k] = rows[k] + 1;
+                j[k] = c + 1;
+            }
+        }
+        String[] names = {
+            nestedName(name, "_i"), nestedName(name, "_j"),
+            nestedName(name, "_v")
+        };
+        double[][] triplets = { i, j, sparse.getValues() };
+        for (int k = 0; k < names.length; ++k) {
+            requestVariables.add(names[k]);
+            engine.setNumericArray(names[k], new MatlabNumericArray(
+                                   new double[][] { triplets[k] }, null));
+        }
+        return String.format("sparse(%s,%s,%s,%d,%d)", names[0], names[1],
+                             names[2], sparse.getRows(), sparse.getColumns());
+    }
+
+    private static MatlabNumericArray toNumericArray(MatlabValue value,
+                                                     int threshold) {
+        switch (value.getType()) {
+            case SCALAR:
+                if (threshold > 1) {
+                    return null;
+                }
+                return new MatlabNumericArray(new double[][] {
+                    { value.asScalar().value() } }, null);
+            case ARRAY:
+                if (value.asArray().size() < threshold) {
+                    return null;
+                }
+                return new MatlabNumericArray(new double[][] {
+                    value.asArray().value() }, null);
+            case MATRIX:
+                MatlabMatrix matrix = value.asMatrix();
+                if (matrix.getRows() * matrix.getColumns() < threshold) {
+                    return null;
+                }
+                return new MatlabNumericArray(matrix.value(), null);
+            case ND_ARRAY:
+                double[] values = value.asNDArray().getColumnMajor();
+                if (values.length < threshold) {
+                    return null;
+                }
+                return new MatlabNumericArray(new double[][] { values }, null);
+            case INT8:
+            case INT16:
+            case INT32:
+            case UINT8:
+            case UINT16:
+            case UINT32:
+            case SINGLE:
+            case LOGICAL:
+                // 64 bit integers are not exactly representable as double
+                MatlabTypedArray typed = (MatlabTypedArray) value;
+                if (typed.size() < threshold) {
+                    return null;
+                }
+                double[] widened = new double[typed.size()];
+                for (int i = 0; i < widened.length; ++i) {
+                    widened[i] = typed.getDouble(i);
+                }
+                return new MatlabNumericArray(new double[][] { widened }, null);
+            default:
+                return null;
+        }
+    }
+
     public MatlabResult handle(MatlabRequest request) throws
             MatlabException {
         // anything we need to do before handling
@@ -174,55 +582,238 @@ public class MatlabInstance {
 
         // eval request
 
-        Path temp;
-        try {
-            temp = Files.createTempDirectory("matlab-connector");
-        } catch (IOException ex) {
-            throw new MatlabException("Unable to create temp dir", ex);
-        }
+        boolean success = false;
         try {
-            request.visitParameters(new FileSavingVisitor(temp));
+            request.visitParameters(new FileSavingVisitor(scratch));
             Map<String, MatlabValue> results;
             try {
             log.info("Evaluating function {}...", request.getFunction());
+                recordFunction(request.getFunction());
 
                 results = feval(request.getFunction(),
                                 request.getResults(),
                                 request.getParameters());
             } finally {
-                request.visitParameters(new FileDeletingVisitor(false));
+                request.visitParameters(new FileReleasingVisitor(scratch));
             }
 
-            FileDeletingVisitor delV = new FileDeletingVisitor(true);
+            FileSpoolingVisitor spoolV = new FileSpoolingVisitor(request);
             MatlabResult result = new MatlabResult(request.getId());
 
 
             for (Entry<String, MatlabValue> e : results.entrySet()) {
-                e.getValue().accept(delV);
+                e.getValue().accept(spoolV);
                 result.addResult(e.getKey(), e.getValue());
             }
-
+            success = true;
             return result;
-        } catch (MatlabInvocationException e) {
+        } catch (MatlabEngineException e) {
             throw new MatlabException("Unable to evaluate request.", e);
         } finally {
             try {
-                Files.delete(temp);
-            } catch (IOException ex) {
-                log.warn("Could not delete temp dir " + temp, ex);
+                postHandle(1, success);
+            } catch (MatlabException e) {
+                // this isn't too important
             }
+
+        }
+    }
+
+    /**
+     * Handles the requests in a single evaluation. Every request is evaluated
+     * in its own <code>try</code>/<code>catch</code> block, so a failing
+     * request does not affect the others.
+     *
+     * @param requests the requests
+     *
+     * @return a {@link MatlabResult} or a {@link MatlabException} for every
+     *         request, in the order of the requests
+     */
+    public List<MatlabResponse> handle(List<MatlabRequest> requests) {
+        final int size = requests.size();
+        final MatlabResponse[] responses = new MatlabResponse[size];
+        try {
+            preHandle();
+        } catch (MatlabException e) {
+            failPending(requests, responses, e.getMessage(), e);
+            return Arrays.asList(responses);
+        }
+        boolean success = false;
+        try {
+            final String[][] varrays = new String[size][];
+            final String[] errors = new String[size];
+            final StringBuilder cmd = new StringBuilder();
+            try {
+                for (int i = 0; i < size; ++i) {
+                    MatlabRequest request = requests.get(i);
+                    String prefix = "r" + (i + 1) + "_";
+                    try {
+                        request.visitParameters(new FileSavingVisitor(scratch));
+                        varrays[i] = varnames(request.getResults().keySet()
+                                .toArray(new String[0]), prefix);
+                        requestVariables.addAll(Arrays.asList(varrays[i]));
+                        List<String> arguments = injectParameters(
+                                request.getParameters(), prefix);
+                        errors[i] = prefix + "error";
+                        appendTryCatch(cmd, errors[i], prefix + "exception",
+                                       buildFEval(request.getFunction(),
+                                                  varrays[i], arguments));
+                        recordFunction(request.getFunction());
+                    } catch (MatlabEngineException | RuntimeException e) {
+                        responses[i] = failure(request,
+                                               "Unable to evaluate request.", e);
+                    }
+                }
+                if (cmd.length() > 0) {
+                    log.info("Evaluating {} requests...", size);
+                    log.debug("Evaluation: {}", cmd);
+                    engine.eval(cmd.toString());
+                    fetchErrors(requests, responses, errors);
+                }
+            } finally {
+                for (MatlabRequest request : requests) {
+                    request.visitParameters(new FileReleasingVisitor(scratch));
+                }
+            }
+            log.info("Evaluation complete, parsing results...");
+            parseResults(requests, responses, varrays);
+            success = true;
+            for (MatlabResponse response : responses) {
+                success &= response instanceof MatlabResult;
+            }
+        } catch (MatlabEngineException e) {
+            failPending(requests, responses, "Unable to evaluate request.", e);
+        } finally {
             try {
-                postHandle();
+                postHandle(size, success);
             } catch (MatlabException e) {
                 // this isn't too important
             }
+        }
+        return Arrays.asList(responses);
+    }
+
+    private void appendTryCatch(StringBuilder sb, String error,
+                                String exception, String statement) {
+        requestVariables.add(error);
+        requestVariables.add(exception);
+        sb.append(error).append("='';\n")
+                .append("try\n")
+                .append(statement).append(";\n")
+                .append("catch ").append(exception).append('\n')
+                .append(error).append('=').append(exception)
+                .append(".message;\n")
+                .append("end\n");
+    }
 
+    /**
+     * Fetches the error messages of all evaluated requests in a single call
+     * and fails the requests that caught an error.
+     */
+    private void fetchErrors(List<MatlabRequest> requests,
+                             MatlabResponse[] responses, String[] errors)
+            throws MatlabEngineException {
+        List<Integer> pending = new ArrayList<>(requests.size());
+        List<String> names = new ArrayList<>(requests.size());
+        for (int i = 0; i < responses.length; ++i) {
+            if (responses[i] == null) {
+                pending.add(i);
+                names.add(errors[i]);
+            }
+        }
+        Object[] messages = (Object[]) engine.returningEval(
+                "{" + COMMA_JOINER.join(names) + "}", 1)[0];
+        for (int i = 0; i < messages.length; ++i) {
+            if (messages[i] instanceof String &&
+                !((String) messages[i]).isEmpty()) {
+                int idx = pending.get(i);
+                responses[idx] = failure(requests.get(idx),
+                                         "Unable to evaluate request.",
+                                         new MatlabEngineException(
+                                                 (String) messages[i]));
+            }
         }
     }
 
+    /**
+     * Parses the results of all successful requests, describing all result
+     * variables at once. If this fails, the requests are parsed one by one to
+     * find the culprit.
+     */
+    private void parseResults(List<MatlabRequest> requests,
+                              MatlabResponse[] responses, String[][] varrays) {
+        final MatlabType[][] types = new MatlabType[responses.length][];
+        List<String> names = new ArrayList<>();
+        List<MatlabType> declared = new ArrayList<>();
+        for (int i = 0; i < responses.length; ++i) {
+            if (responses[i] == null) {
+                types[i] = requests.get(i).getResults().values()
+                        .toArray(new MatlabType[0]);
+                names.addAll(Arrays.asList(varrays[i]));
+                declared.addAll(Arrays.asList(types[i]));
+            }
+        }
+        MatlabValue[] values = null;
+        if (names.size() > 0) {
+            try {
+                values = parseValues(names.toArray(new String[names.size()]),
+                                     declared.toArray(new MatlabType[declared.size()]));
+            } catch (MatlabException e) {
+                log.debug("Unable to parse batched results", e);
+            }
+        }
+        int offset = 0;
+        for (int i = 0; i < responses.length; ++i) {
+            if (responses[i] != null) {
+                continue;
+            }
+            MatlabRequest request = requests.get(i);
+            try {
+                MatlabValue[] requestValues = values == null
+                        ? parseValues(varrays[i], types[i])
+                        : Arrays.copyOfRange(values, offset,
+                                             offset + varrays[i].length);
+                offset += varrays[i].length;
+                FileSpoolingVisitor spoolV = new FileSpoolingVisitor(request);
+                MatlabResult result = new MatlabResult(request.getId());
+                int j = 0;
+                for (Entry<String, MatlabType> e : request.getResults()
+                        .entrySet()) {
+                    MatlabValue value = convert(requestValues[j++], e.getValue());
+                    value.accept(spoolV);
+                    result.addResult(e.getKey(), value);
+                }
+                responses[i] = result;
+            } catch (MatlabException | RuntimeException e) {
+                responses[i] = failure(request, "Unable to parse value.", e);
+            }
+        }
+    }
+
+    private static void failPending(List<MatlabRequest> requests,
+                                    MatlabResponse[] responses,
+                                    String message, Throwable cause) {
+        for (int i = 0; i < responses.length; ++i) {
+            if (responses[i] == null) {
+                responses[i] = failure(requests.get(i), message, cause);
+            }
+        }
+    }
+
+    private static MatlabException failure(MatlabRequest request,
+                                           String message, Throwable cause) {
+        MatlabException e = new MatlabException(message, cause);
+        e.setId(request.getId());
+        return e;
+    }
+
     private MatlabValue parseValue(String varName, MatlabType toType)
             throws MatlabException {
-        MatlabValue value = parseValue(varName);
+        return convert(parseValue(varName), toType);
+    }
+
+    private MatlabValue convert(MatlabValue value, MatlabType toType)
+            throws MatlabException {
         MatlabType fromType = value.getType();
         if (fromType == toType) {
             return value;
@@ -236,6 +827,18 @@ public class MatlabInstance {
                         return value.asScalar().toBoolean();
                     case DATE_TIME:
                         return value.asScalar().toDateTime();
+                    case ARRAY:
+                        return new MatlabArray(new double[] {
+                            value.asScalar().value() });
+                    case MATRIX:
+                        return new MatlabMatrix(new double[] {
+                            value.asScalar().value() }, 1, 1);
+                    case ND_ARRAY:
+                        return new MatlabNDArray(new double[] {
+                            value.asScalar().value() }, 1, 1);
+                    case SPARSE:
+                        return MatlabSparseMatrix.fromDense(new double[] {
+                            value.asScalar().value() }, 1, 1);
                     default:
                         throw new MatlabException(message);
                 }
@@ -247,7 +850,8 @@ public class MatlabInstance {
                         return value.asString().toDateTime();
                     case FILE:
                         try {
-                            return value.asString().toFile(true);
+                            // spooled by the FileSpoolingVisitor
+                            return value.asString().toFile(false);
                         } catch (IOException ex) {
                             throw new MatlabException("error loading file", ex);
                         }
@@ -258,6 +862,123 @@ public class MatlabInstance {
                 switch (toType) {
                     case DATE_TIME:
                         return value.asArray().toDateTime();
+                    case MATRIX:
+                        MatlabArray vector = value.asArray();
+                        return new MatlabMatrix(vector.getBuffer(), 1,
+                                                vector.size());
+                    case ND_ARRAY:
+                        double[] array = value.asArray().value();
+                        return new MatlabNDArray(array, 1, array.length);
+                    case SPARSE:
+                        double[] row = value.asArray().value();
+                        return MatlabSparseMatrix.fromDense(row, 1, row.length);
+                    default:
+                        throw new MatlabException(message);
+                }
+            case BOOLEAN:
+                switch (toType) {
+                    case LOGICAL:
+                        return new MatlabLogicalArray(new boolean[] {
+                            value.asBoolean().value() }, 1, 1);
+                    default:
+                        throw new MatlabException(message);
+                }
+            case LOGICAL:
+                switch (toType) {
+                    case BOOLEAN:
+                        MatlabLogicalArray logical = value.asLogicalArray();
+                        return MatlabBoolean.fromBoolean(
+                                logical.size() > 0 && logical.get(0));
+                    default:
+                        throw new MatlabException(message);
+                }
+            case MATRIX:
+                MatlabMatrix matrix = value.asMatrix();
+                switch (toType) {
+                    case ARRAY:
+                        if (!isVector(matrix.getRows(), matrix.getColumns())) {
+                            throw new MatlabException(message);
+                        }
+                        return new MatlabArray(matrix.getBuffer());
+                    case ND_ARRAY:
+                        return new MatlabNDArray(matrix.getColumnMajor(),
+                                                 matrix.getRows(),
+                                                 matrix.getColumns());
+                    case SPARSE:
+                        return MatlabSparseMatrix.fromDense(
+                                matrix.getColumnMajor(), matrix.getRows(),
+                                matrix.getColumns());
+                    default:
+                        throw new MatlabException(message);
+                }
+            case SPARSE:
+                switch (toType) {
+                    case MATRIX:
+                        return value.asSparse().toMatrix();
+                    default:
+                        throw new MatlabException(message);
+                }
+            case STRUCT:
+                switch (toType) {
+                    case STRUCT_ARRAY:
+                        return MatlabStructArray.fromStructs(Arrays
+                                .asList(value.asStruct()), 1, 1);
+                    default:
+                        throw new MatlabException(message);
+                }
+            case STRUCT_ARRAY:
+                MatlabStructArray structs = value.asStructArray();
+                switch (toType) {
+                    case STRUCT:
+                        if (structs.size() != 1) {
+                            throw new MatlabException(message);
+                        }
+                        return structs.get(0);
+                    case CELL:
+                        MatlabCell cell = new MatlabCell();
+                        for (int i = 0; i < structs.size(); ++i) {
+                            cell.add(structs.get(i));
+                        }
+                        return cell;
+                    default:
+                        throw new MatlabException(message);
+                }
+            case INT8:
+            case INT16:
+            case INT32:
+            case INT64:
+            case UINT8:
+            case UINT16:
+            case UINT32:
+            case UINT64:
+            case SINGLE:
+                switch (toType) {
+                    case SCALAR:
+                    case ARRAY:
+                    case MATRIX:
+                    case ND_ARRAY:
+                        // declared as double, widen as parseDoubleValue does
+                        return convert(widen((MatlabTypedArray) value), toType);
+                    default:
+                        throw new MatlabException(message);
+                }
+            case CELL:
+                switch (toType) {
+                    case STRUCT_ARRAY:
+                        // a cell of structs with the same fields
+                        List<MatlabStruct> elements = new ArrayList<>();
+                        for (MatlabValue element : value.asCell()) {
+                            if (!element.isStruct()) {
+                                throw new MatlabException(message);
+                            }
+                            elements.add(element.asStruct());
+                        }
+                        try {
+                            return MatlabStructArray.fromStructs(
+                                    elements, 1, elements.size());
+                        } catch (IllegalArgumentException e) {
+                            throw new MatlabException(message, e);
+                        }
                     default:
                         throw new MatlabException(message);
                 }
@@ -270,38 +991,381 @@ public class MatlabInstance {
     private MatlabValue parseValue(String varName) throws
             MatlabException {
         try {
-
-            if (isNumerical(varName)) {
-                return parseDoubleValue(varName);
+            // class, sparsity and size in a single probe
+            Descriptor descriptor = describe(new String[] { varName })[0];
+            if (descriptor.isSparse()) {
+                return parseSparseValue(varName, descriptor.getShape());
+            }
+            if (descriptor.isNumeric()) {
+                MatlabType type = toIntegerOrSingleType(descriptor.getType());
+                if (type != null) {
+                    return parseTypedValue(varName, type,
+                                           descriptor.getShape());
+                }
+                return parseDoubleValue(varName, descriptor.getShape());
             }
-            String clazz = getType(varName);
+            String clazz = descriptor.getType();
             switch (clazz) {
                 case LOGICAL_TYPE:
-                    return parseBooleanValue(varName);
+                    return parseLogicalValue(varName, descriptor.getShape());
                 case CHAR_TYPE:
                     return parseCharValue(varName);
                 case CELL_TYPE:
-                    return parseCellValue(varName);
+                    return parseCellValue(varName, descriptor.getShape());
                 case STRUCT_TYPE:
+                    if (descriptor.getSize() != 1) {
+                        return parseStructArrayValue(varName,
+                                                     descriptor.getShape());
+                    }
                     return parseStructValue(varName);
+                case TABLE_TYPE:
+                    return parseTableValue(varName, descriptor.getShape());
                 default:
                     throw new MatlabException("Unable to parse value of type " +
                                               clazz + ", unsupported.");
             }
-        } catch (MatlabInvocationException e) {
+        } catch (MatlabEngineException e) {
             throw new MatlabException("Unable to parse value.", e);
         }
     }
 
-    private String getType(String varName) throws MatlabInvocationException {
-        String cmd = String.format("class(%s)", varName);
-        return (String) proxy.returningEval(cmd, 1)[0];
+    private MatlabValue[] parseValues(String[] varNames)
+            throws MatlabException {
+        try {
+            Descriptor[] descriptors = describe(varNames);
+            MatlabValue[] values = new MatlabValue[varNames.length];
+            for (int i = 0; i < varNames.length; ++i) {
+                values[i] = parseValue(varNames[i], descriptors[i]);
+            }
+            return values;
+        } catch (MatlabEngineException e) {
+            throw new MatlabException("Unable to parse value.", e);
+        }
+    }
+
+    /**
+     * Parses the values of the variables. Variables declared as scalar,
+     * array, matrix, string or boolean are fetched in a single call without
+     * probing; all others and those whose value does not match the declared
+     * type are probed.
+     */
+    private MatlabValue[] parseValues(String[] varNames, MatlabType[] types)
+            throws MatlabException {
+        MatlabValue[] values = new MatlabValue[varNames.length];
+        if (config.isDeclaredTypes()) {
+            fetchDeclared(varNames, types, values);
+        }
+        List<Integer> probe = new ArrayList<>(varNames.length);
+        for (int i = 0; i < values.length; ++i) {
+            if (values[i] == null) {
+                probe.add(i);
+            }
+        }
+        if (!probe.isEmpty()) {
+            String[] names = new String[probe.size()];
+            for (int i = 0; i < names.length; ++i) {
+                names[i] = varNames[probe.get(i)];
+            }
+            MatlabValue[] probed = parseValues(names);
+            for (int i = 0; i < names.length; ++i) {
+                values[probe.get(i)] = probed[i];
+            }
+        }
+        return values;
+    }
+
+    private void fetchDeclared(String[] varNames, MatlabType[] types,
+                               MatlabValue[] values) {
+        List<Integer> fetched = new ArrayList<>(varNames.length);
+        StringBuilder sb = new StringBuilder().append('{');
+        for (int i = 0; i < varNames.length; ++i) {
+            if (!isDirectlyTransferable(types[i])) {
+                continue;
+            }
+            if (!fetched.isEmpty()) {
+                sb.append(',');
+            }
+            if (types[i] == MatlabType.LOGICAL) {
+                sb.append(FlattenedValueReader.PACK_FUNCTION).append('(')
+                        .append(varNames[i]).append(')');
+            } else {
+                sb.append(varNames[i]);
+            }
+            if (isSized(types[i])) {
+                sb.append(",size(").append(varNames[i]).append(')');
+            }
+            if (isClassChecked(types[i])) {
+                sb.append(",class(").append(varNames[i]).append(')');
+            }
+            fetched.add(i);
+        }
+        if (fetched.isEmpty()) {
+            return;
+        }
+        if (Arrays.asList(types).contains(MatlabType.LOGICAL)) {
+            try {
+                installHelpers();
+            } catch (MatlabException | MatlabEngineException e) {
+                log.debug("Unable to install helpers, probing results", e);
+                return;
+            }
+        }
+        Object[] cell;
+        try {
+            cell = (Object[]) engine.returningEval(sb.append('}').toString(), 1)[0];
+        } catch (MatlabEngineException | ClassCastException e) {
+            log.debug("Unable to fetch declared results, probing them", e);
+            return;
+        }
+        int pos = 0;
+        for (int i : fetched) {
+            Object value = cell[pos++];
+            Object size = null;
+            if (isSized(types[i])) {
+                size = cell[pos++];
+            }
+            if (isClassChecked(types[i]) &&
+                !types[i].toString().equals(cell[pos++])) {
+                continue;
+            }
+            values[i] = toDeclaredType(value, size, types[i]);
+        }
+    }
+
+    private static boolean isDirectlyTransferable(MatlabType type) {
+        switch (type) {
+            case SCALAR:
+            case ARRAY:
+            case MATRIX:
+            case ND_ARRAY:
+            case STRING:
+            case BOOLEAN:
+            case SINGLE:
+            case LOGICAL:
+                return true;
+            default:
+                return INTEGER_TYPES.contains(type);
+        }
+    }
+
+    /**
+     * Types whose values could also be converted from other classes, so the
+     * class of the variable has to be checked.
+     */
+    private static boolean isClassChecked(MatlabType type) {
+        return type == MatlabType.LOGICAL || INTEGER_TYPES.contains(type);
     }
 
-    private boolean isNumerical(String varName)
-            throws MatlabInvocationException {
-        String cmd = String.format("isnumeric(%s)", varName);
-        Object ret = proxy.returningEval(cmd, 1)[0];
+    private static boolean isSized(MatlabType type) {
+        switch (type) {
+            case ARRAY:
+            case MATRIX:
+            case ND_ARRAY:
+            case SINGLE:
+            case LOGICAL:
+                return true;
+            default:
+                return INTEGER_TYPES.contains(type);
+        }
+    }
+
+    /**
+     * Converts a transferred value of the declared type.
+     *
+     * @return the value or <code>null</code> if it does not match the type
+     */
+    private static MatlabValue toDeclaredType(Object value, Object size,
+                                              MatlabType type) {
+        switch (type) {
+            case SCALAR:
+                if (value instanceof double[] && ((double[]) value).length == 1) {
+                    return new MatlabScalar(((double[]) value)[0]);
+                }
+                return null;
+            case ARRAY:
+                if (value instanceof double[] && size instanceof double[] &&
+                    ((double[]) size).length == 2 &&
+                    isVector((int) ((double[]) size)[0],
+                             (int) ((double[]) size)[1])) {
+                    return new MatlabArray((double[]) value);
+                }
+                return null;
+            case MATRIX:
+                if (value instanceof double[] && size instanceof double[] &&
+                    ((double[]) size).length == 2 &&
+                    ((double[]) value).length ==
+                    ((double[]) size)[0] * ((double[]) size)[1]) {
+                    return new MatlabMatrix((double[]) value,
+                                            (int) ((double[]) size)[0],
+                                            (int) ((double[]) size)[1]);
+                }
+                return null;
+            case ND_ARRAY:
+                if (value instanceof double[] && size instanceof double[]) {
+                    int[] shape = toShape((double[]) size);
+                    if (shape.length >= 2 &&
+                        ((double[]) value).length == numel(shape)) {
+                        return new MatlabNDArray((double[]) value, shape);
+                    }
+                }
+                return null;
+            case STRING:
+                if (value instanceof String) {
+                    return new MatlabString((String) value);
+                }
+                return null;
+            case LOGICAL:
+                // packed by matlab_connector_pack
+                if (value instanceof double[] && size instanceof double[]) {
+                    int[] shape = toShape((double[]) size);
+                    int numel = Ints.checkedCast(numel(shape));
+                    if (((double[]) value).length ==
+                        FlattenedValueReader.packedLength(numel)) {
+                        return new MatlabLogicalArray(FlattenedValueReader
+                                .unpack((double[]) value, 0, numel), shape);
+                    }
+                }
+                return null;
+            case BOOLEAN:
+                if (value instanceof boolean[] && ((boolean[]) value).length > 0) {
+                    return MatlabBoolean.fromBoolean(((boolean[]) value)[0]);
+                } else if (value instanceof Boolean) {
+                    return MatlabBoolean.fromBoolean((Boolean) value);
+                }
+                return null;
+            default:
+                if (size instanceof double[]) {
+                    return toTypedArray(value, type, toShape((double[]) size));
+                }
+                return null;
+        }
+    }
+
+    /**
+     * Checks if a matrix can be returned as {@link MatlabArray}, i.e. it has
+     * at most one row or column. Both the declared and the probed result
+     * have to agree on this.
+     */
+    private static boolean isVector(int rows, int columns) {
+        return Math.min(rows, columns) <= 1;
+    }
+
+    private static int[] toShape(double[] size) {
+        int[] shape = new int[size.length];
+        for (int i = 0; i < size.length; ++i) {
+            shape[i] = (int) size[i];
+        }
+        return shape;
+    }
+
+    private static long numel(int[] shape) {
+        long numel = 1;
+        for (int dim : shape) {
+            numel *= dim;
+        }
+        return numel;
+    }
+
+    private MatlabValue parseValue(String varName, Descriptor descriptor)
+            throws MatlabException, MatlabEngineException {
+        if (descriptor.isSparse()) {
+            return parseSparseValue(varName, descriptor.getShape());
+        }
+        if (descriptor.isNumeric()) {
+            MatlabType type = toIntegerOrSingleType(descriptor.getType());
+            if (type != null) {
+                return parseTypedValue(varName, type, descriptor.getShape());
+            }
+            return parseDoubleValue(varName, descriptor.getShape());
+        }
+        switch (descriptor.getType()) {
+            case LOGICAL_TYPE:
+                return parseLogicalValue(varName, descriptor.getShape());
+            case CHAR_TYPE:
+                return parseCharValue(varName);
+            case CELL_TYPE:
+                if (config.isFlattening()) {
+                    MatlabValue flattened = parseFlattenedValue(varName);
+                    if (flattened != null) {
+                        return flattened;
+                    }
+                }
+                return parseCellValue(varName, descriptor.getSize());
+            case STRUCT_TYPE:
+                if (config.isFlattening()) {
+                    MatlabValue flattened = parseFlattenedValue(varName);
+                    if (flattened != null) {
+                        return flattened;
+                    }
+                }
+                if (descriptor.getSize() != 1) {
+                    return parseStructArrayValue(varName,
+                                                 descriptor.getShape());
+                }
+                return parseStructValue(varName, fieldNames(varName));
+            case TABLE_TYPE:
+                return parseTableValue(varName, descriptor.getShape());
+            default:
+                throw new MatlabException("Unable to parse value of type " +
+                                          descriptor.getType() +
+                                          ", unsupported.");
+        }
+    }
+
+    /**
+     * Transfers a complete cell or struct tree in a single call.
+     *
+     * @return the value, or <code>null</code> if the tree contains values
+     *         the flattened format does not support (e.g. tables) and has to
+     *         be parsed node by node
+     */
+    private MatlabValue parseFlattenedValue(String varName)
+            throws MatlabException, MatlabEngineException {
+        installHelpers();
+        String cmd = FlattenedValueReader.FUNCTION + "(" + varName + ")";
+        Object[] buffers;
+        try {
+            buffers = engine.returningEval(cmd, FlattenedValueReader.NARGOUT);
+        } catch (MatlabEngineException e) {
+            log.debug("Unable to flatten {}, parsing it node by node: {}",
+                      varName, e.getMessage());
+            return null;
+        }
+        return new FlattenedValueReader(buffers).read();
+    }
+
+    /**
+     * Gets the class, the numeric-ness and the size of all supplied variables
+     * in a single evaluation.
+     */
+    private Descriptor[] describe(String[] varNames)
+            throws MatlabEngineException {
+        Descriptor[] descriptors = new Descriptor[varNames.length];
+        if (varNames.length == 0) {
+            return descriptors;
+        }
+        StringBuilder sb = new StringBuilder().append('{');
+        for (int i = 0; i < varNames.length; ++i) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("class(").append(varNames[i]).append("),")
+                    .append("isnumeric(").append(varNames[i]).append("),")
+                    .append("issparse(").append(varNames[i]).append("),")
+                    .append("size(").append(varNames[i]).append(')');
+        }
+        sb.append('}');
+        Object[] cell = (Object[]) engine.returningEval(sb.toString(), 1)[0];
+        for (int i = 0; i < varNames.length; ++i) {
+            descriptors[i] = new Descriptor((String) cell[4 * i],
+                                            toBoolean(cell[4 * i + 1]),
+                                            toBoolean(cell[4 * i + 2]),
+                                            (double[]) cell[4 * i + 3]);
+        }
+        return descriptors;
+    }
+
+    private static boolean toBoolean(Object ret) {
         if (ret instanceof boolean[]) {
             return ((boolean[]) ret)[0];
         } else {
@@ -309,61 +1373,213 @@ public class MatlabInstance {
         }
     }
 
-    private void clearAll() throws MatlabInvocationException {
-        proxy.eval("clear all");
+    private void changeDir(String path) throws MatlabEngineException {
+        engine.eval(changeDirCommand(path));
     }
 
-    private void changeDir(String path) throws MatlabInvocationException {
+    private static String changeDirCommand(String path) {
         // matlab needs escaped slashes too
-        proxy.eval(String.format("cd('%s')", path.replace("\\", "\\\\")));
+        return String.format("cd('%s')", path.replace("\\", "\\\\"));
     }
 
-    private String[] fieldNames(String name) throws MatlabInvocationException {
-        return (String[]) (Object[]) proxy
+    private String[] fieldNames(String name) throws MatlabEngineException {
+        return (String[]) (Object[]) engine
                 .returningEval("fieldnames(" + name + ")", 1)[0];
     }
 
     private void assign(String name, String expression)
-            throws MatlabInvocationException {
-        proxy.eval(name + "=" + expression);
+            throws MatlabEngineException {
+        requestVariables.add(name);
+        engine.eval(name + "=" + expression);
     }
 
-    private Object[] getVariable(String name)
-            throws MatlabInvocationException {
-        return (Object[]) proxy.getVariable(name);
+    /**
+     * Parses a <code>double</code> value. The column-major array transferred
+     * by the engine is wrapped by the value without copying it.
+     */
+    private MatlabValue parseDoubleValue(String varName, int[] shape)
+            throws MatlabEngineException {
+        Object value = engine.getVariable(varName);
+        if (value instanceof double[] &&
+            ((double[]) value).length == numel(shape)) {
+            return toDoubleValue((double[]) value, shape);
+        }
+        // not transferred as a plain array of the expected length
+        MatlabNumericArray array = engine.getNumericArray(varName);
+        int[] lengths = array.getLengths();
+        // read in linear (column-major) order instead of transposing
+        double[] values = new double[array.getLength()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = array.getRealValue(i);
+        }
+        return toDoubleValue(values, lengths);
     }
 
-    private MatlabValue parseDoubleValue(String varName)
-            throws MatlabInvocationException {
-        MatlabNumericArray array = processor.getNumericArray(varName);
-        int[] lengths = array.getLengths();
-        double[][] realArray = array.getRealArray2D();
-        if (lengths[0] == 1 && lengths[1] == 1) {
-            return new MatlabScalar(realArray[0][0]);
+    /**
+     * Widens an integer or single-precision array to the <code>double</code>
+     * value of the same shape.
+     */
+    private static MatlabValue widen(MatlabTypedArray typed) {
+        double[] values = new double[typed.size()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = typed.getDouble(i);
+        }
+        return toDoubleValue(values, typed.getShape());
+    }
+
+    private static MatlabValue toDoubleValue(double[] values, int[] lengths) {
+        if (lengths.length > 2) {
+            return new MatlabNDArray(values, lengths);
+        } else if (lengths[0] == 1 && lengths[1] == 1) {
+            return new MatlabScalar(values[0]);
         } else if (lengths[0] == 1) {
-            return new MatlabArray(realArray[0]);
+            return new MatlabArray(values);
         } else {
-            return new MatlabMatrix(realArray);
+            return new MatlabMatrix(values, lengths[0], lengths[1]);
         }
     }
-       private MatlabBoolean parseBooleanValue(String varName)
-            throws MatlabInvocationException {
-        boolean[] variable = (boolean[]) proxy.getVariable(varName);
-        return MatlabBoolean.fromBoolean(variable[0]);
+    /**
+     * Parses a logical value. Single values are returned as
+     * {@link MatlabBoolean}, all others as {@link MatlabLogicalArray}.
+     */
+    private MatlabValue parseLogicalValue(String varName, int[] shape)
+            throws MatlabException, MatlabEngineException {
+        int numel = Ints.checkedCast(numel(shape));
+        if (numel == 1) {
+            boolean[] variable = (boolean[]) engine.getVariable(varName);
+            return MatlabBoolean.fromBoolean(variable[0]);
+        }
+        // packed in MATLAB to transfer 32 elements per double
+        installHelpers();
+        String cmd = FlattenedValueReader.PACK_FUNCTION + "(" + varName + ")";
+        double[] words = (double[]) engine.returningEval(cmd, 1)[0];
+        return new MatlabLogicalArray(
+                FlattenedValueReader.unpack(words, 0, numel), shape);
+    }
+
+    /**
+     * Parses an integer or single-precision value without widening it to
+     * <code>double</code>.
+     */
+    private MatlabValue parseTypedValue(String varName, MatlabType type,
+                                        int[] shape)
+            throws MatlabEngineException {
+        MatlabValue value = toTypedArray(engine.getVariable(varName),
+                                         type, shape);
+        return value == null ? parseDoubleValue(varName, shape) : value;
+    }
+
+    /**
+     * Transfers the non-zero elements of a sparse matrix as
+     * <code>find</code> triplets, without creating a dense copy on either
+     * side. Sparse logical matrices are returned with numeric values.
+     */
+    private MatlabSparseMatrix parseSparseValue(String varName, int[] shape)
+            throws MatlabEngineException {
+        Object[] triplets = engine.returningEval("find(" + varName + ")", 3);
+        double[] i = (double[]) triplets[0];
+        double[] j = (double[]) triplets[1];
+        double[] values;
+        if (triplets[2] instanceof boolean[]) {
+            boolean[] b = (boolean[]) triplets[2];
+            values = new double[b.length];
+            for (int k = 0; k < b.length; ++k) {
+                values[k] = b[k] ? 1 : 0;
+            }
+        } else {
+            values = (double[]) triplets[2];
+        }
+        // find returns the elements in column-major order
+        int columns = shape[1];
+        int[] pointers = new int[columns + 1];
+        int[] rows = new int[i.length];
+        for (int k = 0; k < i.length; ++k) {
+            rows[k] = (int) i[k] - 1;
+            ++pointers[(int) j[k]];
+        }
+        for (int c = 0; c < columns; ++c) {
+            pointers[c + 1] += pointers[c];
+        }
+        return new MatlabSparseMatrix(shape[0], columns, pointers, rows,
+                                      values);
+    }
+
+    private static MatlabType toIntegerOrSingleType(String clazz) {
+        for (MatlabType type : INTEGER_TYPES) {
+            if (type.toString().equals(clazz)) {
+                return type;
+            }
+        }
+        return clazz.equals(MatlabType.SINGLE.toString())
+               ? MatlabType.SINGLE : null;
+    }
+
+    /**
+     * Wraps the transferred primitive array of a typed array.
+     *
+     * @return the value or <code>null</code> if it does not match the type
+     */
+    private static MatlabTypedArray toTypedArray(Object value,
+                                                 MatlabType type,
+                                                 int[] shape) {
+        if (value == null || !value.getClass().isArray() ||
+            shape.length < 2 || Array.getLength(value) != numel(shape)) {
+            return null;
+        }
+        switch (type) {
+            case INT8:
+            case UINT8:
+                return value instanceof byte[]
+                       ? new MatlabByteArray((byte[]) value,
+                                             type == MatlabType.UINT8, shape)
+                       : null;
+            case INT16:
+            case UINT16:
+                return value instanceof short[]
+                       ? new MatlabShortArray((short[]) value,
+                                              type == MatlabType.UINT16, shape)
+                       : null;
+            case INT32:
+            case UINT32:
+                return value instanceof int[]
+                       ? new MatlabIntArray((int[]) value,
+                                            type == MatlabType.UINT32, shape)
+                       : null;
+            case INT64:
+            case UINT64:
+                return value instanceof long[]
+                       ? new MatlabLongArray((long[]) value,
+                                             type == MatlabType.UINT64, shape)
+                       : null;
+            case SINGLE:
+                return value instanceof float[]
+                       ? new MatlabSingleArray((float[]) value, shape) : null;
+            case LOGICAL:
+                return value instanceof boolean[]
+                       ? new MatlabLogicalArray((boolean[]) value, shape) : null;
+            default:
+                return null;
+        }
     }
 
     private MatlabString parseCharValue(String varName)
-            throws MatlabInvocationException {
-        String string = (String) proxy.getVariable(varName);
-        return new MatlabString(string);
+            throws MatlabException, MatlabEngineException {
+        Object value = engine.getVariable(varName);
+        if (!(value instanceof String)) {
+            throw new MatlabException(
+                    "Unable to transfer multi-row char arrays.");
+        }
+        return new MatlabString((String) value);
     }
 
-    private MatlabCell parseCellValue(String varName)
-            throws MatlabException, MatlabInvocationException {
-        // cell looks like ["key", ["another", 0.1]]
-        Object[] obj = getVariable(varName);
-        MatlabValue[] cell = new MatlabValue[obj.length];
-        final String subvarName = varName + "s";
+    /**
+     * Parses a cell element by element. The size is taken from the probe, as
+     * transferring the cell itself fails if it contains structs.
+     */
+    private MatlabCell parseCellValue(String varName, int[] shape)
+            throws MatlabException, MatlabEngineException {
+        MatlabValue[] cell = new MatlabValue[Ints.checkedCast(numel(shape))];
+        final String subvarName = nestedName(varName, "s");
         for (int i = 0; i < cell.length; i++) {
             assign(subvarName, varName + "{" + (i + 1) + "}");
             cell[i] = parseValue(subvarName);
@@ -372,21 +1588,170 @@ public class MatlabInstance {
     }
 
     private MatlabStruct parseStructValue(String varName)
-            throws MatlabException, MatlabInvocationException {
+            throws MatlabException, MatlabEngineException {
         MatlabStruct struct = new MatlabStruct();
+        String subvarName = nestedName(varName, "s");
         for (String name : fieldNames(varName)) {
-            String subvarName = varName + "s";
             assign(subvarName, varName + "." + name);
             struct.set(name, parseValue(subvarName));
         }
         return struct;
     }
 
+    private MatlabCell parseCellValue(String varName, int size)
+            throws MatlabException, MatlabEngineException {
+        String[] subvarNames = new String[size];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; ++i) {
+            subvarNames[i] = nestedName(varName, "_" + (i + 1));
+            requestVariables.add(subvarNames[i]);
+            sb.append(subvarNames[i]).append('=').append(varName)
+                    .append('{').append(i + 1).append("};");
+        }
+        if (size > 0) {
+            engine.eval(sb.toString());
+        }
+        return new MatlabCell(parseValues(subvarNames));
+    }
+
+    private MatlabStruct parseStructValue(String varName, String[] fieldNames)
+            throws MatlabException, MatlabEngineException {
+        String[] subvarNames = new String[fieldNames.length];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fieldNames.length; ++i) {
+            subvarNames[i] = nestedName(varName, "_" + (i + 1));
+            requestVariables.add(subvarNames[i]);
+            sb.append(subvarNames[i]).append('=').append(varName)
+                    .append('.').append(fieldNames[i]).append(';');
+        }
+        if (fieldNames.length > 0) {
+            engine.eval(sb.toString());
+        }
+        MatlabValue[] values = parseValues(subvarNames);
+        MatlabStruct struct = new MatlabStruct();
+        for (int i = 0; i < fieldNames.length; ++i) {
+            struct.set(fieldNames[i], values[i]);
+        }
+        return struct;
+    }
+
+    /**
+     * Transfers the values of every field of a struct array as a single
+     * flattened cell.
+     */
+    private MatlabStructArray parseStructArrayValue(String varName,
+                                                    int[] shape)
+            throws MatlabException, MatlabEngineException {
+        installHelpers();
+        Map<MatlabString, MatlabValue[]> columns = new TreeMap<>();
+        for (String name : fieldNames(varName)) {
+            String cmd = String.format("%s({%s.%s})",
+                                       FlattenedValueReader.FUNCTION,
+                                       varName, name);
+            Object[] buffers = engine
+                    .returningEval(cmd, FlattenedValueReader.NARGOUT);
+            List<MatlabValue> column = new FlattenedValueReader(buffers)
+                    .read().asCell().value();
+            columns.put(new MatlabString(name),
+                        column.toArray(new MatlabValue[column.size()]));
+        }
+        return new MatlabStructArray(columns, shape);
+    }
+
+    /**
+     * Transfers a table one column at a time.
+     */
+    private MatlabTable parseTableValue(String varName, int[] shape)
+            throws MatlabException, MatlabEngineException {
+        installHelpers();
+        Object[] names = (Object[]) engine.returningEval(
+                varName + ".Properties.VariableNames", 1)[0];
+        int rows = shape[0];
+        MatlabTable.Builder builder = MatlabTable.builder(rows);
+        for (int i = 0; i < names.length; ++i) {
+            String name = (String) names[i];
+            String cmd = String.format("%s(%s,%d)", COLUMN_FUNCTION,
+                                       varName, i + 1);
+            Object[] column = engine.returningEval(cmd, 2);
+            int kind = (int) ((double[]) column[0])[0];
+            switch (kind) {
+                case NUMERIC_COLUMN:
+                    builder.addNumeric(name, (double[]) column[1]);
+                    break;
+                case LOGICAL_COLUMN:
+                    builder.addLogical(name, FlattenedValueReader
+                                       .unpack((double[]) column[1], 0, rows));
+                    break;
+                case TEXT_COLUMN:
+                    Object[] text = (Object[]) column[1];
+                    String[] strings = new String[text.length];
+                    for (int j = 0; j < strings.length; ++j) {
+                        strings[j] = (String) text[j];
+                    }
+                    builder.addString(name, strings);
+                    break;
+                case DATE_TIME_COLUMN:
+                    double[] datenums = (double[]) column[1];
+                    long[] times = new long[datenums.length];
+                    for (int j = 0; j < times.length; ++j) {
+                        times[j] = MatlabTable.fromDatenum(datenums[j]);
+                    }
+                    builder.addDateTime(name, times);
+                    break;
+                default:
+                    throw new MatlabException("Unsupported column kind " + kind);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * The class, numeric-ness and size of a MATLAB variable.
+     */
+    private static class Descriptor {
+        private final String type;
+        private final boolean numeric;
+        private final boolean sparse;
+        private final double[] dims;
+
+        Descriptor(String type, boolean numeric, boolean sparse,
+                   double[] dims) {
+            this.type = Objects.requireNonNull(type);
+            this.numeric = numeric;
+            this.sparse = sparse;
+            this.dims = Objects.requireNonNull(dims);
+        }
+
+        String getType() {
+            return type;
+        }
+
+        boolean isNumeric() {
+            return numeric;
+        }
+
+        boolean isSparse() {
+            return sparse;
+        }
+
+        int getSize() {
+            int size = 1;
+            for (double dim : dims) {
+                size *= (int) dim;
+            }
+            return size;
+        }
+
+        int[] getShape() {
+            return toShape(dims);
+        }
+    }
+
     private static class FileSavingVisitor extends AbstractMatlabValueVisitor {
-        private final Path directory;
+        private final ScratchDirectory scratch;
 
-        FileSavingVisitor(Path directory) {
-            this.directory = Objects.requireNonNull(directory);
+        FileSavingVisitor(ScratchDirectory scratch) {
+            this.scratch = Objects.requireNonNull(scratch);
         }
 
         @Override
@@ -399,23 +1764,30 @@ public class MatlabInstance {
             struct.value().values().forEach(v -> v.accept(this));
         }
 
+        @Override
+        public void visit(MatlabStructArray array) {
+            array.stream().forEach(v -> v.accept(this));
+        }
+
         @Override
         public void visit(MatlabFile file) {
+            // path-backed files are passed by their location
+            if (file.isSaved()) {
+                return;
+            }
             try {
-                Path f = Files.createTempFile(directory, "matlab-file", ".bin");
-                file.save(f);
-                file.unload();
+                file.save(scratch.acquire());
             } catch (IOException ex) {
                 throw new RuntimeException(ex);
             }
         }
     }
 
-    private static class FileDeletingVisitor extends AbstractMatlabValueVisitor {
-        private final boolean load;
+    private static class FileReleasingVisitor extends AbstractMatlabValueVisitor {
+        private final ScratchDirectory scratch;
 
-        FileDeletingVisitor(boolean load) {
-            this.load = load;
+        FileReleasingVisitor(ScratchDirectory scratch) {
+            this.scratch = Objects.requireNonNull(scratch);
         }
 
         @Override
@@ -428,14 +1800,81 @@ public class MatlabInstance {
             struct.value().values().forEach(v -> v.accept(this));
         }
 
+        @Override
+        public void visit(MatlabStructArray array) {
+            array.stream().forEach(v -> v.accept(this));
+        }
+
         @Override
         public void visit(MatlabFile file) {
-            try {
-                if (file.isSaved()) {
-                    if (load && !file.isLoaded()) {
-                        file.load();
+            if (file.isLoaded() && scratch.release(file.getFile())) {
+                file.detach();
+            }
+        }
+    }
+
+    /**
+     * Moves result files out of the reach of MATLAB without reading them, see
+     * {@link MatlabFile#spool(boolean)}. Files that were passed as path-backed
+     * parameters of the request are copied instead. Files that are already
+     * loaded are deleted.
+     */
+    private static class FileSpoolingVisitor extends AbstractMatlabValueVisitor {
+        private final Set<Path> parameters = new HashSet<>();
+
+        FileSpoolingVisitor(MatlabRequest request) {
+            request.visitParameters(new AbstractMatlabValueVisitor() {
+                @Override
+                public void visit(MatlabCell cell) {
+                    cell.stream().forEach(v -> v.accept(this));
+                }
+
+                @Override
+                public void visit(MatlabStruct struct) {
+                    struct.value().values().forEach(v -> v.accept(this));
+                }
+
+                @Override
+                public void visit(MatlabStructArray array) {
+                    array.stream().forEach(v -> v.accept(this));
+                }
+
+                @Override
+                public void visit(MatlabFile file) {
+                    if (file.isSaved() && !file.isLoaded()) {
+                        parameters.add(normalize(file.getFile()));
                     }
+                }
+            });
+        }
+
+        private static Path normalize(Path path) {
+            return path.toAbsolutePath().normalize();
+        }
+
+
+        @Override
+        public void visit(MatlabCell cell) {
+            cell.stream().forEach(v -> v.accept(this));
+        }
+
+        @Override
+        public void visit(MatlabStruct struct) {
+            struct.value().values().forEach(v -> v.accept(this));
+        }
+
+        @Override
+        public void visit(MatlabStructArray array) {
+            array.stream().forEach(v -> v.accept(this));
+        }
+
+        @Override
+        public void visit(MatlabFile file) {
+            try {
+                if (file.isLoaded()) {
                     file.delete();
+                } else if (file.isSaved()) {
+                    file.spool(parameters.contains(normalize(file.getFile())));
                 }
             } catch (IOException ex) {
                 throw new RuntimeException(ex);
@@ -21,6 +21,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.File;
 
+import org.n52.matlab.connector.engine.MatlabEngineFactory;
+import org.n52.matlab.connector.engine.ProxyMatlabEngineFactory;
+
 import com.google.common.base.Optional;
 
 /**
@@ -32,11 +35,32 @@ public class MatlabInstanceConfiguration {
     private final File baseDir;
     private final int port;
     private final boolean hidden;
-
-    private MatlabInstanceConfiguration(File baseDir, int port, boolean hidden) {
+    private final MatlabEngineFactory engineFactory;
+    private final boolean batchedProbing;
+    private final boolean flattening;
+    private final boolean declaredTypes;
+    private final int injectionThreshold;
+    private final MatlabResetPolicy resetPolicy;
+    private final int fullClearInterval;
+
+    private MatlabInstanceConfiguration(File baseDir, int port, boolean hidden,
+                                        MatlabEngineFactory engineFactory,
+                                        boolean batchedProbing,
+                                        boolean flattening,
+                                        boolean declaredTypes,
+                                        int injectionThreshold,
+                                        MatlabResetPolicy resetPolicy,
+                                        int fullClearInterval) {
         this.baseDir = baseDir;
         this.port = port;
         this.hidden = hidden;
+        this.engineFactory = engineFactory;
+        this.batchedProbing = batchedProbing;
+        this.flattening = flattening;
+        this.declaredTypes = declaredTypes;
+        this.injectionThreshold = injectionThreshold;
+        this.resetPolicy = resetPolicy;
+        this.fullClearInterval = fullClearInterval;
     }
 
     public Optional<File> getBaseDir() {
@@ -51,15 +75,81 @@ public class MatlabInstanceConfiguration {
         return this.hidden;
     }
 
+    public MatlabEngineFactory getEngineFactory() {
+        return this.engineFactory;
+    }
+
+    /**
+     * @return if the class and size of all results should be fetched in a
+     *         single evaluation instead of probing every result separately
+     */
+    public boolean isBatchedProbing() {
+        return this.batchedProbing;
+    }
+
+    /**
+     * Cells and structs containing tables can not be flattened and are
+     * transferred node by node.
+     *
+     * @return if cell and struct results should be flattened by a MATLAB
+     *         helper function and transferred in a single call
+     */
+    public boolean isFlattening() {
+        return this.flattening;
+    }
+
+    /**
+     * @return if results declared as scalar, array, matrix, string or boolean
+     *         should be fetched directly without probing their class first
+     */
+    public boolean isDeclaredTypes() {
+        return this.declaredTypes;
+    }
+
+    /**
+     * @return the number of elements from which on numeric parameters are
+     *         transferred as variables instead of being rendered into the
+     *         evaluated command
+     */
+    public int getInjectionThreshold() {
+        return this.injectionThreshold;
+    }
+
+    /**
+     * @return how the workspace is cleaned after every request,
+     *         {@link MatlabResetPolicy#CLEAR_ALL} by default
+     */
+    public MatlabResetPolicy getResetPolicy() {
+        return this.resetPolicy;
+    }
+
+    /**
+     * @return the number of requests after which a <code>clear all</code> is
+     *         issued regardless of the reset policy, or <code>0</code> if never
+     */
+    public int getFullClearInterval() {
+        return this.fullClearInterval;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
 
     public static class Builder {
         public static final int DEFAULT_PORT = 2100;
+        public static final int DEFAULT_INJECTION_THRESHOLD = 100;
         private int port = DEFAULT_PORT;
         private File baseDir;
         private boolean hidden = false;
+        private MatlabEngineFactory engineFactory
+                = new ProxyMatlabEngineFactory();
+        private boolean batchedProbing = true;
+        private boolean flattening = true;
+        private boolean declaredTypes = true;
+        private int injectionThreshold = DEFAULT_INJECTION_THRESHOLD;
+        private MatlabResetPolicy resetPolicy
+                = MatlabResetPolicy.CLEAR_ALL;
+        private int fullClearInterval = 0;
 
         public Builder withBaseDir(String baseDir) {
             return withBaseDir(new File(checkNotNull(baseDir)));
@@ -89,8 +179,52 @@ public class MatlabInstanceConfiguration {
             return this;
         }
 
+        public Builder withEngineFactory(MatlabEngineFactory engineFactory) {
+            this.engineFactory = checkNotNull(engineFactory);
+            return this;
+        }
+
+        public Builder withBatchedProbing(boolean batchedProbing) {
+            this.batchedProbing = batchedProbing;
+            return this;
+        }
+
+        public Builder withFlattening(boolean flattening) {
+            this.flattening = flattening;
+            return this;
+        }
+
+        public Builder withDeclaredTypes(boolean declaredTypes) {
+            this.declaredTypes = declaredTypes;
+            return this;
+        }
+
+        public Builder withInjectionThreshold(int injectionThreshold) {
+            checkArgument(injectionThreshold > 0);
+            this.injectionThreshold = injectionThreshold;
+            return this;
+        }
+
+        public Builder withResetPolicy(MatlabResetPolicy resetPolicy) {
+            this.resetPolicy = checkNotNull(resetPolicy);
+            return this;
+        }
+
+        public Builder withFullClearInterval(int fullClearInterval) {
+            checkArgument(fullClearInterval >= 0);
+            this.fullClearInterval = fullClearInterval;
+            return this;
+        }
+
         public MatlabInstanceConfiguration build() {
-            return new MatlabInstanceConfiguration(baseDir, port, hidden);
+            return new MatlabInstanceConfiguration(baseDir, port, hidden,
+                                                   engineFactory,
+                                                   batchedProbing,
+                                                   flattening,
+                                                   declaredTypes,
+                                                   injectionThreshold,
+                                                   resetPolicy,
+                                                   fullClearInterval);
         }
     }
 }
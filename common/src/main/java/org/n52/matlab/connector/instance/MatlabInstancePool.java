@@ -16,64 +16,808 @@
  */
 package org.n52.matlab.connector.instance;
 
-import org.apache.commons.pool.BasePoolableObjectFactory;
-import org.apache.commons.pool.impl.GenericObjectPool;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.MatlabResponse;
+import org.n52.matlab.connector.MatlabResult;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+/**
+ * A pool of {@link MatlabInstance}s. Callers that find no free instance wait
+ * in a bounded FIFO queue, optionally with a timeout. Idle instances are kept
+ * in a lock-free deque and handed out most recently used first. Requests
+ * handled by the pool are subject to a deadline; instances that exceed it are
+ * destroyed and replaced in the background.
+ *
+ * @author Christian Autermann
+ */
 public class MatlabInstancePool {
     private static final Logger log = LoggerFactory
             .getLogger(MatlabInstancePool.class);
-    private final GenericObjectPool<MatlabInstance> pool;
+    private final MatlabInstanceConfiguration instanceConfig;
+    private final int maxActive;
+    private final int minIdle;
+    private final int maxWaiting;
+    private final long borrowTimeout;
+    private final long requestTimeout;
+    private final long maxRequests;
+    private final long maxAge;
+    private final long minEvictableIdleTime;
+    private final boolean testOnBorrow;
+    private final boolean testWhileIdle;
+    private final boolean affinity;
+    /** the right to use an instance; fair to serve waiting callers in order */
+    private final Semaphore permits;
+    private final Deque<IdleInstance> idle = new ConcurrentLinkedDeque<>();
+    /** borrowed instances and the time they were borrowed at */
+    private final Map<MatlabInstance, Long> borrowed = new ConcurrentHashMap<>();
+    /** running and starting instances */
+    private final AtomicInteger instances = new AtomicInteger();
+    /** instances that are currently started in the background */
+    private final AtomicInteger starting = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger peakWaiting = new AtomicInteger();
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong requestTimeouts = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+    private final AtomicLong busyTime = new AtomicLong();
+    private final AtomicLong affinityHits = new AtomicLong();
+    private final AtomicLong affinityMisses = new AtomicLong();
+    private final long createdAt = System.nanoTime();
+    /** notified if an instance becomes idle or an instance slot is freed */
+    private final Object available = new Object();
+    private final ExecutorService starter;
+    /** evaluates requests that are subject to a timeout */
+    private final ExecutorService executor;
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
 
     public MatlabInstancePool(MatlabInstancePoolConfiguration config) {
-        final InstanceFactory factory = new InstanceFactory(config.getInstanceConfig());
-        this.pool = new GenericObjectPool<MatlabInstance>(factory);
-        this.pool.setMaxActive(config.getNumThreads());
-        this.pool.setWhenExhaustedAction(GenericObjectPool.WHEN_EXHAUSTED_BLOCK);
+        this.instanceConfig = config.getInstanceConfig();
+        this.maxActive = config.getNumThreads();
+        this.minIdle = Math.min(config.getMinIdle(), maxActive);
+        this.maxWaiting = config.getMaxWaiting();
+        this.borrowTimeout = config.getBorrowTimeout();
+        this.requestTimeout = config.getRequestTimeout();
+        this.maxRequests = config.getMaxRequestsPerInstance();
+        this.maxAge = config.getMaxInstanceAge();
+        this.minEvictableIdleTime = config.getMinEvictableIdleTime();
+        this.testOnBorrow = config.isTestOnBorrow();
+        this.testWhileIdle = config.isTestWhileIdle();
+        this.affinity = config.isAffinity();
+        this.permits = new Semaphore(maxActive, true);
+        // every task of these executors occupies an instance slot
+        this.starter = newExecutor(maxActive, "matlab-instance-starter-%d");
+        this.executor = newExecutor(maxActive, "matlab-request-%d");
+        if (config.getEvictionInterval() > 0) {
+            this.evictor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder()
+                    .setNameFormat("matlab-instance-evictor-%d")
+                    .setDaemon(true).build());
+            this.evictor.scheduleWithFixedDelay(this::evict,
+                                                config.getEvictionInterval(),
+                                                config.getEvictionInterval(),
+                                                TimeUnit.MILLISECONDS);
+        } else {
+            this.evictor = null;
+        }
+        if (config.isPrestart()) {
+            prestart();
+        }
+    }
+
+    /**
+     * Starts instances in parallel until {@link #minIdle} instances are idle
+     * and waits for them to come up.
+     */
+    private void prestart() {
+        List<Future<?>> futures = new ArrayList<>(minIdle);
+        for (int i = 0; i < minIdle && reserve(); ++i) {
+            futures.add(starter.submit(this::startIdleInstance));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                log.error("Unable to start instance", ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        log.info("Started {} MATLAB instances", idle.size());
     }
 
-    public MatlabInstance getInstance() {
+    /**
+     * Starts instances in the background until {@link #minIdle} instances are
+     * idle or the maximal number of instances is reached.
+     */
+    private void replenish() {
+        while (!closed && idle.size() + starting.get() < minIdle && reserve()) {
+            if (!startInBackground()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Starts an instance in the slot reserved by {@link #reserve()} in the
+     * background.
+     *
+     * @return if the instance is starting
+     */
+    private boolean startInBackground() {
+        starting.incrementAndGet();
         try {
-            return pool.borrowObject();
-        } catch (Exception ex) {
-            throw new RuntimeException("Unable to borrow instance from pool" +
-                                       ex.toString(), ex);
+            starter.execute(() -> {
+                try {
+                    startIdleInstance();
+                } finally {
+                    starting.decrementAndGet();
+                }
+            });
+            return true;
+        } catch (RuntimeException ex) {
+            starting.decrementAndGet();
+            release();
+            return false;
         }
     }
 
-    public void destroy() {
+    private void startIdleInstance() {
+        MatlabInstance instance;
         try {
-            pool.close();
-        } catch (Exception ex) {
-            throw new RuntimeException("Unable to close pool" + ex.toString(), ex);
+            instance = create();
+        } catch (MatlabException ex) {
+            log.error("Unable to start instance", ex);
+            return;
+        }
+        if (closed) {
+            destroy(instance);
+        } else {
+            idle.offerLast(new IdleInstance(instance));
+            signal();
+        }
+    }
+
+    /**
+     * Reserves a slot for a new instance.
+     *
+     * @return if the maximal number of instances was not reached
+     */
+    private boolean reserve() {
+        while (true) {
+            int current = instances.get();
+            if (current >= maxActive) {
+                return false;
+            }
+            if (instances.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Frees a slot reserved by {@link #reserve()}.
+     */
+    private void release() {
+        instances.decrementAndGet();
+        signal();
+    }
+
+    private void signal() {
+        synchronized (available) {
+            available.notifyAll();
+        }
+    }
+
+    private MatlabInstance create() throws MatlabException {
+        try {
+            MatlabInstance instance = new MatlabInstance(instanceConfig);
+            created.incrementAndGet();
+            return instance;
+        } catch (MatlabException | RuntimeException ex) {
+            release();
+            throw ex;
+        }
+    }
+
+    private void destroy(MatlabInstance instance) {
+        stop(instance, false);
+    }
+
+    /**
+     * Stops the instance in the background and frees its slot once it is
+     * stopped. A killed instance is replaced by a new one.
+     *
+     * @param instance the instance
+     * @param kill     if the instance should be killed instead of being
+     *                 exited, e.g. because it does not respond anymore
+     */
+    private void stop(MatlabInstance instance, boolean kill) {
+        Runnable task = () -> {
+            try {
+                if (kill) {
+                    instance.kill();
+                } else {
+                    instance.destroy();
+                }
+            } catch (MatlabException | RuntimeException ex) {
+                log.warn("Unable to destroy instance", ex);
+            } finally {
+                destroyed.incrementAndGet();
+                release();
+                if (kill && !closed && reserve()) {
+                    startInBackground();
+                }
+            }
+        };
+        if (closed) {
+            task.run();
+        } else {
+            try {
+                starter.execute(task);
+            } catch (RuntimeException ex) {
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * Borrows an instance, waiting at most the configured borrow timeout.
+     *
+     * @return the instance
+     *
+     * @throws MatlabException if no instance could be borrowed
+     * @see MatlabInstancePoolConfiguration#getBorrowTimeout()
+     */
+    public MatlabInstance getInstance() throws MatlabException {
+        return getInstance(null);
+    }
+
+    /**
+     * Borrows an instance to evaluate the supplied function, waiting at most
+     * the configured borrow timeout.
+     *
+     * @param function the function to evaluate, may be <code>null</code>
+     *
+     * @return the instance
+     *
+     * @throws MatlabException if no instance could be borrowed
+     * @see MatlabInstancePoolConfiguration#isAffinity()
+     */
+    public MatlabInstance getInstance(String function) throws MatlabException {
+        return getInstance(function, borrowTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows an instance.
+     *
+     * @param timeout the maximal time to wait, or <code>0</code> to wait
+     *                indefinitely
+     * @param unit    the unit of the timeout
+     *
+     * @return the instance
+     *
+     * @throws MatlabException if no instance could be borrowed
+     */
+    public MatlabInstance getInstance(long timeout, TimeUnit unit)
+            throws MatlabException {
+        return getInstance(null, timeout, unit);
+    }
+
+    /**
+     * Borrows an instance to evaluate the supplied function.
+     *
+     * @param function the function to evaluate, may be <code>null</code>
+     * @param timeout  the maximal time to wait, or <code>0</code> to wait
+     *                 indefinitely
+     * @param unit     the unit of the timeout
+     *
+     * @return the instance
+     *
+     * @throws MatlabException if no instance could be borrowed
+     */
+    public MatlabInstance getInstance(String function, long timeout,
+                                      TimeUnit unit)
+            throws MatlabException {
+        checkOpen();
+        final long start = System.nanoTime();
+        final long deadline = timeout > 0 ? start + unit.toNanos(timeout) : 0;
+        acquire(deadline);
+        MatlabInstance instance;
+        try {
+            instance = take(function, deadline);
+        } catch (MatlabException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+        long now = System.nanoTime();
+        long wait = now - start;
+        borrowed.put(instance, now);
+        borrows.incrementAndGet();
+        totalWaitTime.addAndGet(wait);
+        updateMax(maxWaitTime, wait);
+        replenish();
+        return instance;
+    }
+
+    private void acquire(long deadline) throws MatlabException {
+        try {
+            // a zero timeout respects the fairness of the semaphore
+            if (permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                return;
+            }
+            int w = waiting.incrementAndGet();
+            try {
+                if (w > maxWaiting) {
+                    rejected.incrementAndGet();
+                    throw new MatlabException(String.format(
+                            "Too many requests (%d) waiting for a MATLAB instance.",
+                            maxWaiting));
+                }
+                updateMax(peakWaiting, w);
+                if (deadline == 0) {
+                    permits.acquire();
+                } else if (!permits.tryAcquire(deadline - System.nanoTime(),
+                                               TimeUnit.NANOSECONDS)) {
+                    timeouts.incrementAndGet();
+                    throw new MatlabException(
+                            "Timed out waiting for a MATLAB instance.");
+                }
+            } finally {
+                waiting.decrementAndGet();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MatlabException(
+                    "Interrupted while waiting for a MATLAB instance.", ex);
+        }
+    }
+
+    /**
+     * Takes an idle instance or starts a new one. The caller has to hold a
+     * permit.
+     */
+    private MatlabInstance take(String function, long deadline)
+            throws MatlabException {
+        final boolean preferred = affinity && function != null;
+        while (true) {
+            checkOpen();
+            IdleInstance entry = preferred ? pollPreferred(function) : null;
+            final boolean hit = entry != null;
+            if (entry == null) {
+                entry = idle.pollFirst();
+            }
+            if (entry != null) {
+                if (!testOnBorrow || isValid(entry.instance)) {
+                    if (preferred) {
+                        (hit ? affinityHits : affinityMisses).incrementAndGet();
+                    }
+                    return entry.instance;
+                }
+                log.info("Discarding invalid MATLAB instance");
+                destroy(entry.instance);
+            } else if (reserve()) {
+                if (preferred) {
+                    affinityMisses.incrementAndGet();
+                }
+                return create();
+            } else {
+                // all free slots are taken by instances started in the
+                // background, wait for one of them to come up
+                awaitAvailable(deadline);
+            }
+        }
+    }
+
+    /**
+     * Takes the most recently used idle instance that recently evaluated the
+     * function.
+     */
+    private IdleInstance pollPreferred(String function) {
+        for (IdleInstance entry : idle) {
+            if (entry.instance.hasRecentlyEvaluated(function) &&
+                idle.removeFirstOccurrence(entry)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void awaitAvailable(long deadline) throws MatlabException {
+        try {
+            synchronized (available) {
+                if (idle.isEmpty() && instances.get() >= maxActive) {
+                    if (deadline == 0) {
+                        available.wait();
+                    } else {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            timeouts.incrementAndGet();
+                            throw new MatlabException(
+                                    "Timed out waiting for a MATLAB instance.");
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(available, remaining);
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MatlabException(
+                    "Interrupted while waiting for a MATLAB instance.", ex);
         }
     }
 
     public void returnInstance(MatlabInstance obj) {
+        if (obj == null) {
+            return;
+        }
+        Long since = borrowed.remove(obj);
+        if (since == null) {
+            log.error("Instance {} was not borrowed from this pool", obj);
+            return;
+        }
+        busyTime.addAndGet(System.nanoTime() - since);
+        try {
+            if (closed) {
+                destroy(obj);
+            } else if (isExpired(obj)) {
+                log.info("Recycling MATLAB instance after {} requests",
+                         obj.getRequestCount());
+                destroy(obj);
+            } else {
+                idle.offerFirst(new IdleInstance(obj));
+                signal();
+            }
+        } finally {
+            permits.release();
+        }
+        replenish();
+    }
+
+    /**
+     * Removes a borrowed instance from the pool and kills it in the
+     * background, e.g. because it does not respond anymore. The slot of the
+     * instance is freed once its MATLAB session is gone, so a hung instance
+     * is never running next to its replacement, which is started afterwards.
+     *
+     * @param obj the instance
+     */
+    public void invalidateInstance(MatlabInstance obj) {
+        if (obj == null) {
+            return;
+        }
+        Long since = borrowed.remove(obj);
+        if (since == null) {
+            log.error("Instance {} was not borrowed from this pool", obj);
+            return;
+        }
+        busyTime.addAndGet(System.nanoTime() - since);
+        try {
+            // exiting a hung instance would block, kill it instead
+            stop(obj, true);
+        } finally {
+            permits.release();
+        }
+        replenish();
+    }
+
+    /**
+     * Handles the request using an instance of this pool. If the request or
+     * the pool specifies a timeout, the request fails once it elapses and the
+     * instance evaluating it is replaced.
+     *
+     * @param request the request
+     *
+     * @return the result
+     *
+     * @throws MatlabException if no instance could be borrowed, the request
+     *                         failed or timed out
+     * @see MatlabRequest#getTimeout()
+     * @see MatlabInstancePoolConfiguration#getRequestTimeout()
+     */
+    public MatlabResult handle(MatlabRequest request) throws MatlabException {
+        return handle(request.getFunction(), getTimeout(request),
+                      String.format("Request %s", request.getId()),
+                      instance -> instance.handle(request));
+    }
+
+    /**
+     * Handles the requests using a single instance of this pool and a single
+     * evaluation per distinct timeout. The timeout of the requests applies to
+     * their evaluation as a whole: once it elapses, all requests evaluated
+     * with them fail and the instance is replaced.
+     *
+     * @param requests the requests
+     *
+     * @return a {@link MatlabResult} or a {@link MatlabException} for every
+     *         request, in the order of the requests
+     *
+     * @see MatlabInstance#handle(List)
+     * @see #getTimeout(MatlabRequest)
+     */
+    public List<MatlabResponse> handle(List<MatlabRequest> requests) {
+        Map<Long, List<Integer>> batches = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); ++i) {
+            batches.computeIfAbsent(getTimeout(requests.get(i)),
+                                    timeout -> new ArrayList<>()).add(i);
+        }
+        MatlabResponse[] responses = new MatlabResponse[requests.size()];
+        for (Map.Entry<Long, List<Integer>> entry : batches.entrySet()) {
+            List<MatlabRequest> batch = new ArrayList<>(entry.getValue().size());
+            for (int i : entry.getValue()) {
+                batch.add(requests.get(i));
+            }
+            Iterator<MatlabResponse> iter
+                    = handleBatch(batch, entry.getKey()).iterator();
+            for (int i : entry.getValue()) {
+                responses[i] = iter.next();
+            }
+        }
+        return Arrays.asList(responses);
+    }
+
+    private List<MatlabResponse> handleBatch(List<MatlabRequest> batch,
+                                             long timeout) {
+        try {
+            return handle(batch.get(0).getFunction(), timeout,
+                          String.format("Batch of %d requests", batch.size()),
+                          instance -> instance.handle(batch));
+        } catch (MatlabException e) {
+            List<MatlabResponse> responses = new ArrayList<>(batch.size());
+            for (MatlabRequest request : batch) {
+                MatlabException failure
+                        = new MatlabException(e.getMessage(), e);
+                failure.setId(request.getId());
+                responses.add(failure);
+            }
+            return responses;
+        }
+    }
+
+    /**
+     * Evaluates using a borrowed instance. If the timeout elapses, the
+     * evaluation fails and the instance is killed and replaced.
+     *
+     * @param function    the function to borrow an instance for
+     * @param timeout     the timeout in milliseconds, or <code>0</code>
+     * @param description the description of the evaluation for logging
+     * @param evaluation  the evaluation
+     *
+     * @return the result of the evaluation
+     *
+     * @throws MatlabException if no instance could be borrowed, the
+     *                         evaluation failed or timed out
+     */
+    private <T> T handle(String function, long timeout, String description,
+                         Evaluation<T> evaluation) throws MatlabException {
+        if (timeout == 0) {
+            MatlabInstance instance = getInstance(function);
+            try {
+                return evaluation.evaluate(instance);
+            } finally {
+                returnInstance(instance);
+            }
+        }
+        final long deadline = System.nanoTime() +
+                              TimeUnit.MILLISECONDS.toNanos(timeout);
+        MatlabInstance instance = getInstance(function,
+                borrowTimeout > 0 ? Math.min(timeout, borrowTimeout) : timeout,
+                TimeUnit.MILLISECONDS);
+        if (deadline - System.nanoTime() <= 0) {
+            // the deadline passed while waiting, the instance is not to blame
+            returnInstance(instance);
+            requestTimeouts.incrementAndGet();
+            throw new MatlabException(String.format(
+                    "Request timed out after %dms.", timeout));
+        }
+        Future<T> future;
+        try {
+            future = executor.submit(() -> evaluation.evaluate(instance));
+        } catch (RuntimeException ex) {
+            returnInstance(instance);
+            throw new MatlabException("Could not execute request", ex);
+        }
         try {
-            pool.returnObject(obj);
-        } catch (Exception ex) {
-            log.error("Unable to return instance to pool" + ex.toString(), ex);
+            T result = future.get(deadline - System.nanoTime(),
+                                  TimeUnit.NANOSECONDS);
+            returnInstance(instance);
+            return result;
+        } catch (ExecutionException ex) {
+            returnInstance(instance);
+            if (ex.getCause() instanceof MatlabException) {
+                throw (MatlabException) ex.getCause();
+            }
+            throw new MatlabException("Could not execute request",
+                                      ex.getCause());
+        } catch (TimeoutException ex) {
+            future.cancel(true);
+            requestTimeouts.incrementAndGet();
+            log.warn("{} for function '{}' timed out after {}ms, " +
+                     "replacing MATLAB instance", description, function,
+                     timeout);
+            invalidateInstance(instance);
+            throw new MatlabException(String.format(
+                    "Request timed out after %dms.", timeout));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            invalidateInstance(instance);
+            throw new MatlabException("Interrupted while executing request",
+                                      ex);
         }
     }
 
-    private class InstanceFactory extends BasePoolableObjectFactory<MatlabInstance> {
-        private final MatlabInstanceConfiguration config;
+    /**
+     * @param request the request
+     *
+     * @return the timeout in milliseconds that applies to the request, or
+     *         <code>0</code> if it may run indefinitely
+     */
+    public long getTimeout(MatlabRequest request) {
+        return request.getTimeout() > 0 ? request.getTimeout() : requestTimeout;
+    }
+
+    /**
+     * Checks idle instances and stops those that are idle for too long, have
+     * expired or are not responding.
+     */
+    private void evict() {
+        try {
+            long now = System.nanoTime();
+            for (IdleInstance entry : new ArrayList<>(idle)) {
+                boolean evictable = minEvictableIdleTime > 0 &&
+                        idle.size() > minIdle &&
+                        now - entry.since >= TimeUnit.MILLISECONDS
+                        .toNanos(minEvictableIdleTime);
+                if (evictable || isExpired(entry.instance)) {
+                    if (idle.removeFirstOccurrence(entry)) {
+                        destroy(entry.instance);
+                    }
+                } else if (testWhileIdle && idle.removeFirstOccurrence(entry)) {
+                    if (entry.instance.isAlive()) {
+                        idle.offerLast(entry);
+                        signal();
+                    } else {
+                        log.info("Discarding invalid MATLAB instance");
+                        destroy(entry.instance);
+                    }
+                }
+            }
+            replenish();
+        } catch (RuntimeException ex) {
+            log.error("Error evicting instances", ex);
+        }
+    }
+
+    private boolean isValid(MatlabInstance instance) {
+        return !isExpired(instance) && instance.isAlive();
+    }
 
-        InstanceFactory(MatlabInstanceConfiguration config) {
-            this.config = config;
+    /**
+     * Checks if the instance has handled too many requests or is running for
+     * too long and should be replaced by a fresh one.
+     */
+    private boolean isExpired(MatlabInstance instance) {
+        return (maxRequests > 0 && instance.getRequestCount() >= maxRequests) ||
+               (maxAge > 0 && instance.getAge(TimeUnit.MILLISECONDS) >= maxAge);
+    }
+
+    private void checkOpen() throws MatlabException {
+        if (closed) {
+            throw new MatlabException("Pool is closed.");
         }
+    }
 
-        @Override
-        public MatlabInstance makeObject() throws Exception {
-            return new MatlabInstance(config);
+    private static ExecutorService newExecutor(int threads,
+                                               String nameFormat) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new ThreadFactoryBuilder()
+                .setNameFormat(nameFormat).setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while ((current = max.get()) < value) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
         }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while ((current = max.get()) < value) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return a snapshot of the counters of this pool
+     */
+    public MatlabInstancePoolStatistics getStatistics() {
+        long now = System.nanoTime();
+        long busy = busyTime.get();
+        for (Long since : borrowed.values()) {
+            busy += now - since;
+        }
+        long capacity = (now - createdAt) * maxActive;
+        return new MatlabInstancePoolStatistics(
+                maxActive, instances.get(), borrowed.size(), idle.size(),
+                waiting.get(), peakWaiting.get(), borrows.get(),
+                timeouts.get(), requestTimeouts.get(), rejected.get(),
+                created.get(), destroyed.get(),
+                TimeUnit.NANOSECONDS.toMillis(totalWaitTime.get()),
+                TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get()),
+                capacity == 0 ? 0 : (double) busy / capacity,
+                affinityHits.get(), affinityMisses.get());
+    }
+
+    public void destroy() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        starter.shutdown();
+        executor.shutdown();
+        IdleInstance entry;
+        while ((entry = idle.pollFirst()) != null) {
+            destroy(entry.instance);
+        }
+        signal();
+    }
+
+    /**
+     * An evaluation using a borrowed instance.
+     */
+    @FunctionalInterface
+    private interface Evaluation<T> {
+        T evaluate(MatlabInstance instance) throws MatlabException;
+    }
+
+    private static class IdleInstance {
+        private final MatlabInstance instance;
+        private final long since = System.nanoTime();
 
-        @Override
-        public void destroyObject(MatlabInstance instance) throws Exception {
-            instance.destroy();
+        IdleInstance(MatlabInstance instance) {
+            this.instance = instance;
         }
     }
 }
@@ -19,6 +19,8 @@ package org.n52.matlab.connector.instance;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * TODO JavaDoc
  *
@@ -26,20 +28,140 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public class MatlabInstancePoolConfiguration {
     private final int numThreads;
+    private final int minIdle;
+    private final boolean prestart;
+    private final boolean testOnBorrow;
+    private final boolean testWhileIdle;
+    private final long evictionInterval;
+    private final long minEvictableIdleTime;
+    private final long maxRequestsPerInstance;
+    private final long maxInstanceAge;
+    private final int maxWaiting;
+    private final long borrowTimeout;
+    private final long requestTimeout;
+    private final boolean affinity;
     private final MatlabInstanceConfiguration instanceConfig;
 
-    private MatlabInstancePoolConfiguration(int numThreads,
-                                            MatlabInstanceConfiguration instanceConfig) {
-        this.numThreads = numThreads;
-        this.instanceConfig = instanceConfig == null
+    private MatlabInstancePoolConfiguration(Builder builder) {
+        this.numThreads = builder.numThreads;
+        this.minIdle = builder.minIdle;
+        this.prestart = builder.prestart;
+        this.testOnBorrow = builder.testOnBorrow;
+        this.testWhileIdle = builder.testWhileIdle;
+        this.evictionInterval = builder.evictionInterval;
+        this.minEvictableIdleTime = builder.minEvictableIdleTime;
+        this.maxRequestsPerInstance = builder.maxRequestsPerInstance;
+        this.maxInstanceAge = builder.maxInstanceAge;
+        this.maxWaiting = builder.maxWaiting;
+        this.borrowTimeout = builder.borrowTimeout;
+        this.requestTimeout = builder.requestTimeout;
+        this.affinity = builder.affinity;
+        this.instanceConfig = builder.instanceConfig == null
                               ? MatlabInstanceConfiguration
-                .builder().build() : instanceConfig;
+                .builder().build() : builder.instanceConfig;
     }
 
     public int getNumThreads() {
         return numThreads;
     }
 
+    /**
+     * @return the number of idle instances the pool tries to keep available
+     */
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    /**
+     * @return if the pool should start {@link #getMinIdle()} instances on
+     *         creation instead of on first use
+     */
+    public boolean isPrestart() {
+        return prestart;
+    }
+
+    /**
+     * @return if instances should be checked for liveness before they are
+     *         handed out
+     */
+    public boolean isTestOnBorrow() {
+        return testOnBorrow;
+    }
+
+    /**
+     * @return if idle instances should be checked for liveness by the evictor
+     */
+    public boolean isTestWhileIdle() {
+        return testWhileIdle;
+    }
+
+    /**
+     * @return the interval between two runs of the idle evictor in
+     *         milliseconds, or <code>0</code> if there is no evictor
+     */
+    public long getEvictionInterval() {
+        return evictionInterval;
+    }
+
+    /**
+     * @return the time in milliseconds after which an idle instance may be
+     *         evicted, or <code>0</code> if idle instances are never evicted
+     */
+    public long getMinEvictableIdleTime() {
+        return minEvictableIdleTime;
+    }
+
+    /**
+     * @return the number of requests after which an instance is replaced by a
+     *         fresh one, or <code>0</code> for no limit
+     */
+    public long getMaxRequestsPerInstance() {
+        return maxRequestsPerInstance;
+    }
+
+    /**
+     * @return the age in milliseconds after which an instance is replaced by a
+     *         fresh one, or <code>0</code> for no limit
+     */
+    public long getMaxInstanceAge() {
+        return maxInstanceAge;
+    }
+
+    /**
+     * @return the maximal number of callers that may wait for an instance
+     */
+    public int getMaxWaiting() {
+        return maxWaiting;
+    }
+
+    /**
+     * @return the maximal time in milliseconds to wait for an instance, or
+     *         <code>0</code> to wait indefinitely
+     */
+    public long getBorrowTimeout() {
+        return borrowTimeout;
+    }
+
+    /**
+     * Requests that are evaluated in a single batch share the timeout, i.e.
+     * it applies to the batch as a whole.
+     *
+     * @return the time in milliseconds a request may take if it does not
+     *         specify a timeout itself, or <code>0</code> to run indefinitely
+     * @see MatlabInstancePool#handle(java.util.List)
+     */
+    public long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * @return if idle instances that recently evaluated the requested
+     *         function should be preferred
+     */
+    public boolean isAffinity() {
+        return affinity;
+    }
+
     public MatlabInstanceConfiguration getInstanceConfig() {
         return instanceConfig;
     }
@@ -50,6 +172,18 @@ public class MatlabInstancePoolConfiguration {
 
     public static class Builder {
         private int numThreads = 1;
+        private int minIdle = 0;
+        private boolean prestart = false;
+        private boolean testOnBorrow = false;
+        private boolean testWhileIdle = false;
+        private long evictionInterval = 0;
+        private long minEvictableIdleTime = 0;
+        private long maxRequestsPerInstance = 0;
+        private long maxInstanceAge = 0;
+        private int maxWaiting = Integer.MAX_VALUE;
+        private long borrowTimeout = 0;
+        private long requestTimeout = 0;
+        private boolean affinity = false;
         private MatlabInstanceConfiguration instanceConfig;
 
         public Builder withMaximalNumInstances(int numThreads) {
@@ -58,6 +192,90 @@ public class MatlabInstancePoolConfiguration {
             return this;
         }
 
+        public Builder withMinIdle(int minIdle) {
+            checkArgument(minIdle >= 0);
+            this.minIdle = minIdle;
+            return this;
+        }
+
+        public Builder prestart() {
+            return prestart(true);
+        }
+
+        public Builder prestart(boolean prestart) {
+            this.prestart = prestart;
+            return this;
+        }
+
+        public Builder testOnBorrow() {
+            return testOnBorrow(true);
+        }
+
+        public Builder testOnBorrow(boolean testOnBorrow) {
+            this.testOnBorrow = testOnBorrow;
+            return this;
+        }
+
+        public Builder testWhileIdle() {
+            return testWhileIdle(true);
+        }
+
+        public Builder testWhileIdle(boolean testWhileIdle) {
+            this.testWhileIdle = testWhileIdle;
+            return this;
+        }
+
+        public Builder withEvictionInterval(long interval, TimeUnit unit) {
+            checkArgument(interval >= 0);
+            this.evictionInterval = checkNotNull(unit).toMillis(interval);
+            return this;
+        }
+
+        public Builder withMinEvictableIdleTime(long time, TimeUnit unit) {
+            checkArgument(time >= 0);
+            this.minEvictableIdleTime = checkNotNull(unit).toMillis(time);
+            return this;
+        }
+
+        public Builder withMaxRequestsPerInstance(long requests) {
+            checkArgument(requests >= 0);
+            this.maxRequestsPerInstance = requests;
+            return this;
+        }
+
+        public Builder withMaxInstanceAge(long age, TimeUnit unit) {
+            checkArgument(age >= 0);
+            this.maxInstanceAge = checkNotNull(unit).toMillis(age);
+            return this;
+        }
+
+        public Builder withMaxWaiting(int maxWaiting) {
+            checkArgument(maxWaiting >= 0);
+            this.maxWaiting = maxWaiting;
+            return this;
+        }
+
+        public Builder withBorrowTimeout(long timeout, TimeUnit unit) {
+            checkArgument(timeout >= 0);
+            this.borrowTimeout = checkNotNull(unit).toMillis(timeout);
+            return this;
+        }
+
+        public Builder withRequestTimeout(long timeout, TimeUnit unit) {
+            checkArgument(timeout >= 0);
+            this.requestTimeout = checkNotNull(unit).toMillis(timeout);
+            return this;
+        }
+
+        public Builder withAffinity() {
+            return withAffinity(true);
+        }
+
+        public Builder withAffinity(boolean affinity) {
+            this.affinity = affinity;
+            return this;
+        }
+
         public Builder withInstanceConfig(
                 MatlabInstanceConfiguration instanceConfig) {
             this.instanceConfig = checkNotNull(instanceConfig);
@@ -65,7 +283,7 @@ public class MatlabInstancePoolConfiguration {
         }
 
         public MatlabInstancePoolConfiguration build() {
-            return new MatlabInstancePoolConfiguration(numThreads, instanceConfig);
+            return new MatlabInstancePoolConfiguration(this);
         }
     }
 }
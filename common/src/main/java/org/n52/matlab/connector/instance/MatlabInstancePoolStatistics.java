@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * A snapshot of the counters of a {@link MatlabInstancePool}.
+ *
+ * @author Christian Autermann
+ */
+public class MatlabInstancePoolStatistics {
+    private final int maxInstances;
+    private final int instances;
+    private final int active;
+    private final int idle;
+    private final int waiting;
+    private final int peakWaiting;
+    private final long borrowed;
+    private final long timeouts;
+    private final long requestTimeouts;
+    private final long rejected;
+    private final long created;
+    private final long destroyed;
+    private final long totalWaitTime;
+    private final long maxWaitTime;
+    private final double utilization;
+    private final long affinityHits;
+    private final long affinityMisses;
+
+    MatlabInstancePoolStatistics(int maxInstances, int instances, int active,
+                                 int idle, int waiting, int peakWaiting,
+                                 long borrowed, long timeouts,
+                                 long requestTimeouts, long rejected,
+                                 long created, long destroyed,
+                                 long totalWaitTime, long maxWaitTime,
+                                 double utilization, long affinityHits,
+                                 long affinityMisses) {
+        this.maxInstances = maxInstances;
+        this.instances = instances;
+        this.active = active;
+        this.idle = idle;
+        this.waiting = waiting;
+        this.peakWaiting = peakWaiting;
+        this.borrowed = borrowed;
+        this.timeouts = timeouts;
+        this.requestTimeouts = requestTimeouts;
+        this.rejected = rejected;
+        this.created = created;
+        this.destroyed = destroyed;
+        this.totalWaitTime = totalWaitTime;
+        this.maxWaitTime = maxWaitTime;
+        this.utilization = utilization;
+        this.affinityHits = affinityHits;
+        this.affinityMisses = affinityMisses;
+    }
+
+    /**
+     * @return the maximal number of instances
+     */
+    public int getMaxInstances() {
+        return maxInstances;
+    }
+
+    /**
+     * @return the number of running or starting instances
+     */
+    public int getInstances() {
+        return instances;
+    }
+
+    /**
+     * @return the number of borrowed instances
+     */
+    public int getActive() {
+        return active;
+    }
+
+    /**
+     * @return the number of idle instances
+     */
+    public int getIdle() {
+        return idle;
+    }
+
+    /**
+     * @return the number of callers waiting for an instance
+     */
+    public int getWaiting() {
+        return waiting;
+    }
+
+    /**
+     * @return the maximal number of callers that were waiting at once
+     */
+    public int getPeakWaiting() {
+        return peakWaiting;
+    }
+
+    /**
+     * @return the number of successful borrows
+     */
+    public long getBorrowed() {
+        return borrowed;
+    }
+
+    /**
+     * @return the number of borrows that timed out
+     */
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * @return the number of requests that exceeded their timeout
+     */
+    public long getRequestTimeouts() {
+        return requestTimeouts;
+    }
+
+    /**
+     * @return the number of borrows rejected because too many callers were
+     *         waiting
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return the number of instances started
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * @return the number of instances stopped
+     */
+    public long getDestroyed() {
+        return destroyed;
+    }
+
+    /**
+     * @return the accumulated time in milliseconds callers waited for an
+     *         instance
+     */
+    public long getTotalWaitTime() {
+        return totalWaitTime;
+    }
+
+    /**
+     * @return the longest time in milliseconds a caller waited for an
+     *         instance
+     */
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    /**
+     * @return the average time in milliseconds a caller waited for an
+     *         instance
+     */
+    public double getAverageWaitTime() {
+        return borrowed == 0 ? 0 : (double) totalWaitTime / borrowed;
+    }
+
+    /**
+     * @return the fraction of the pool's capacity that was in use since it
+     *         was created
+     */
+    public double getUtilization() {
+        return utilization;
+    }
+
+    /**
+     * @return the number of borrows served by an instance that recently
+     *         evaluated the requested function
+     */
+    public long getAffinityHits() {
+        return affinityHits;
+    }
+
+    /**
+     * @return the number of borrows for which no idle instance recently
+     *         evaluated the requested function
+     */
+    public long getAffinityMisses() {
+        return affinityMisses;
+    }
+
+    /**
+     * @return the fraction of borrows served by an instance that recently
+     *         evaluated the requested function
+     */
+    public double getAffinityHitRate() {
+        long total = affinityHits + affinityMisses;
+        return total == 0 ? 0 : (double) affinityHits / total;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("instances", getInstances())
+                .add("maxInstances", getMaxInstances())
+                .add("active", getActive())
+                .add("idle", getIdle())
+                .add("waiting", getWaiting())
+                .add("peakWaiting", getPeakWaiting())
+                .add("borrowed", getBorrowed())
+                .add("timeouts", getTimeouts())
+                .add("requestTimeouts", getRequestTimeouts())
+                .add("rejected", getRejected())
+                .add("created", getCreated())
+                .add("destroyed", getDestroyed())
+                .add("averageWaitTime", String.format("%.3fms", getAverageWaitTime()))
+                .add("maxWaitTime", getMaxWaitTime() + "ms")
+                .add("utilization", String.format("%.1f%%", getUtilization() * 100))
+                .add("affinityHitRate", String.format("%.1f%%", getAffinityHitRate() * 100))
+                .toString();
+    }
+
+}
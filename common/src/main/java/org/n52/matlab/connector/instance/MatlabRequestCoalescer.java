@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.MatlabResult;
+import org.n52.matlab.connector.value.MatlabArray;
+import org.n52.matlab.connector.value.MatlabScalar;
+import org.n52.matlab.connector.value.MatlabType;
+import org.n52.matlab.connector.value.MatlabValue;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Combines concurrent requests with scalar parameters to a vectorizable
+ * function into a single request with array parameters and splits the array
+ * results back into the individual results. Only requests with the same
+ * timeout are combined and the combined request is subject to it. If the
+ * combined request fails, the requests are executed one by one.
+ *
+ * @author Christian Autermann
+ */
+class MatlabRequestCoalescer {
+    private static final Logger log = LoggerFactory
+            .getLogger(MatlabRequestCoalescer.class);
+    private final MatlabVectorizationConfiguration config;
+    private final ScheduledExecutorService timer;
+    private final BiConsumer<MatlabRequest, SettableFuture<MatlabResult>> downstream;
+    private final Map<Key, List<PendingRequest>> groups = new HashMap<>();
+
+    /**
+     * @param config     the configuration
+     * @param timer      the executor to flush groups after the window with
+     * @param downstream executes single and combined requests
+     */
+    MatlabRequestCoalescer(MatlabVectorizationConfiguration config,
+                           ScheduledExecutorService timer,
+                           BiConsumer<MatlabRequest, SettableFuture<MatlabResult>> downstream) {
+        this.config = Objects.requireNonNull(config);
+        this.timer = Objects.requireNonNull(timer);
+        this.downstream = Objects.requireNonNull(downstream);
+    }
+
+    /**
+     * Checks if the request calls a vectorizable function with scalar
+     * parameters and expects scalar results only.
+     *
+     * @param request the request
+     *
+     * @return if the request can be coalesced
+     */
+    boolean accepts(MatlabRequest request) {
+        if (!config.isVectorizable(request.getFunction()) ||
+            request.getParameterCount() == 0 ||
+            request.getResults().isEmpty()) {
+            return false;
+        }
+        for (MatlabValue parameter : request.getParameters()) {
+            if (parameter.getType() != MatlabType.SCALAR) {
+                return false;
+            }
+        }
+        for (MatlabType type : request.getResults().values()) {
+            if (type != MatlabType.SCALAR) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the request to the group of requests with the same signature. The
+     * group is executed once it is full or the window elapsed.
+     *
+     * @param request the request
+     * @param future  the future to complete
+     */
+    void add(MatlabRequest request, SettableFuture<MatlabResult> future) {
+        Key key = new Key(request);
+        List<PendingRequest> full = null;
+        synchronized (groups) {
+            List<PendingRequest> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+                if (config.getMaxBatchSize() > 1) {
+                    final List<PendingRequest> scheduled = group;
+                    timer.schedule(() -> flush(key, scheduled),
+                                   config.getWindow(), TimeUnit.MILLISECONDS);
+                }
+            }
+            group.add(new PendingRequest(request, future));
+            if (group.size() >= config.getMaxBatchSize()) {
+                groups.remove(key);
+                full = group;
+            }
+        }
+        if (full != null) {
+            execute(full);
+        }
+    }
+
+    private void flush(Key key, List<PendingRequest> group) {
+        synchronized (groups) {
+            if (!groups.remove(key, group)) {
+                // already executed because it was full
+                return;
+            }
+        }
+        execute(group);
+    }
+
+    /**
+     * Executes all pending requests one by one.
+     */
+    void flushAll() {
+        List<List<PendingRequest>> pending;
+        synchronized (groups) {
+            pending = new ArrayList<>(groups.values());
+            groups.clear();
+        }
+        pending.forEach(this::executeIndividually);
+    }
+
+    private void execute(List<PendingRequest> group) {
+        if (group.size() == 1) {
+            executeIndividually(group);
+            return;
+        }
+        MatlabRequest combined = combine(group);
+        SettableFuture<MatlabResult> future = SettableFuture.create();
+        Futures.addCallback(future, new FutureCallback<MatlabResult>() {
+            @Override
+            public void onSuccess(MatlabResult result) {
+                try {
+                    split(group, result);
+                } catch (MatlabException | RuntimeException e) {
+                    onFailure(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.warn("Unable to evaluate {} coalesced requests to {}, " +
+                         "evaluating them one by one: {}", group.size(),
+                         combined.getFunction(), t.getMessage());
+                executeIndividually(group);
+            }
+        });
+        log.debug("Coalesced {} requests to {}", group.size(),
+                  combined.getFunction());
+        downstream.accept(combined, future);
+    }
+
+    private void executeIndividually(List<PendingRequest> group) {
+        group.forEach(p -> downstream.accept(p.request, p.future));
+    }
+
+    private static MatlabRequest combine(List<PendingRequest> group) {
+        MatlabRequest first = group.get(0).request;
+        MatlabRequest combined = new MatlabRequest(first.getFunction())
+                .setTimeout(first.getTimeout(), TimeUnit.MILLISECONDS);
+        for (int i = 0; i < first.getParameterCount(); ++i) {
+            double[] values = new double[group.size()];
+            for (int j = 0; j < values.length; ++j) {
+                values[j] = group.get(j).request.getParameter(i)
+                        .asScalar().value();
+            }
+            combined.addParameter(new MatlabArray(values));
+        }
+        first.getResults().keySet()
+                .forEach(name -> combined.addResult(name, MatlabType.ARRAY));
+        return combined;
+    }
+
+    private static void split(List<PendingRequest> group, MatlabResult combined)
+            throws MatlabException {
+        MatlabResult[] results = new MatlabResult[group.size()];
+        for (int i = 0; i < results.length; ++i) {
+            results[i] = new MatlabResult(group.get(i).request.getId());
+        }
+        for (String name : group.get(0).request.getResults().keySet()) {
+            double[] values = combined.getResult(name).asArray().value();
+            if (values.length != results.length) {
+                throw new MatlabException(String.format(
+                        "Expected %d values for %s but got %d",
+                        results.length, name, values.length));
+            }
+            for (int i = 0; i < results.length; ++i) {
+                results[i].addResult(name, new MatlabScalar(values[i]));
+            }
+        }
+        for (int i = 0; i < results.length; ++i) {
+            group.get(i).future.set(results[i]);
+        }
+    }
+
+    /**
+     * The function, the number of parameters, the results and the timeout of
+     * a request. Only requests with the same key can be combined.
+     */
+    private static class Key {
+        private final String function;
+        private final int parameters;
+        private final Map<String, MatlabType> results;
+        private final long timeout;
+
+        Key(MatlabRequest request) {
+            this.function = request.getFunction();
+            this.parameters = request.getParameterCount();
+            this.results = new HashMap<>(request.getResults());
+            this.timeout = request.getTimeout();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(function, parameters, results, timeout);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof Key) {
+                Key other = (Key) o;
+                return function.equals(other.function) &&
+                       parameters == other.parameters &&
+                       results.equals(other.results) &&
+                       timeout == other.timeout;
+            }
+            return false;
+        }
+    }
+
+    private static class PendingRequest {
+        private final MatlabRequest request;
+        private final SettableFuture<MatlabResult> future;
+
+        PendingRequest(MatlabRequest request,
+                       SettableFuture<MatlabResult> future) {
+            this.request = request;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.MatlabResponse;
+import org.n52.matlab.connector.MatlabResult;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Executes requests asynchronously using a {@link MatlabInstancePool}. A
+ * fixed number of workers takes requests from a queue; if requests queue up
+ * because all workers are busy, a worker takes all of them (up to the maximal
+ * batch size) and evaluates them in a single batch; the timeout of batched
+ * requests applies to the batch as a whole. Requests with scalar parameters to
+ * vectorizable functions are coalesced into a single request beforehand.
+ * Results of deterministic functions are served from a cache if one is
+ * supplied.
+ *
+ * @author Christian Autermann
+ * @see MatlabInstancePool#handle(List)
+ * @see MatlabVectorizationConfiguration
+ * @see MatlabResultCache
+ */
+public class MatlabRequestDispatcher implements Closeable {
+    private static final Logger log = LoggerFactory
+            .getLogger(MatlabRequestDispatcher.class);
+    private final MatlabInstancePool pool;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingRequest> queue
+            = new LinkedBlockingQueue<>();
+    private final ExecutorService workers;
+    private final ScheduledExecutorService timer;
+    private final MatlabRequestCoalescer coalescer;
+    private final MatlabResultCache cache;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a new dispatcher.
+     *
+     * @param pool         the pool to use
+     * @param workers      the number of workers, should match the maximal
+     *                     number of instances of the pool
+     * @param maxBatchSize the maximal number of requests to evaluate at once
+     */
+    public MatlabRequestDispatcher(MatlabInstancePool pool, int workers,
+                                   int maxBatchSize) {
+        this(pool, workers, maxBatchSize,
+             MatlabVectorizationConfiguration.builder().build());
+    }
+
+    /**
+     * Creates a new dispatcher.
+     *
+     * @param pool          the pool to use
+     * @param workers       the number of workers, should match the maximal
+     *                      number of instances of the pool
+     * @param maxBatchSize  the maximal number of requests to evaluate at once
+     * @param vectorization the vectorizable functions
+     */
+    public MatlabRequestDispatcher(MatlabInstancePool pool, int workers,
+                                   int maxBatchSize,
+                                   MatlabVectorizationConfiguration vectorization) {
+        this(pool, workers, maxBatchSize, vectorization, null);
+    }
+
+    /**
+     * Creates a new dispatcher.
+     *
+     * @param pool          the pool to use
+     * @param workers       the number of workers, should match the maximal
+     *                      number of instances of the pool
+     * @param maxBatchSize  the maximal number of requests to evaluate at once
+     * @param vectorization the vectorizable functions
+     * @param cache         the result cache, may be <code>null</code>
+     */
+    public MatlabRequestDispatcher(MatlabInstancePool pool, int workers,
+                                   int maxBatchSize,
+                                   MatlabVectorizationConfiguration vectorization,
+                                   MatlabResultCache cache) {
+        checkArgument(workers > 0);
+        checkArgument(maxBatchSize > 0);
+        this.pool = Objects.requireNonNull(pool);
+        this.maxBatchSize = maxBatchSize;
+        this.cache = cache;
+        this.workers = Executors.newFixedThreadPool(workers,
+                new ThreadFactoryBuilder()
+                .setNameFormat("matlab-request-dispatcher-%d")
+                .setDaemon(true).build());
+        if (vectorization.getFunctions().isEmpty()) {
+            this.timer = null;
+            this.coalescer = null;
+        } else {
+            this.timer = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder()
+                    .setNameFormat("matlab-request-coalescer-%d")
+                    .setDaemon(true).build());
+            this.coalescer = new MatlabRequestCoalescer(vectorization, timer,
+                                                        this::dispatch);
+        }
+        for (int i = 0; i < workers; ++i) {
+            this.workers.execute(this::work);
+        }
+    }
+
+    /**
+     * Submits the request for execution.
+     *
+     * @param request the request
+     *
+     * @return the future result
+     */
+    public ListenableFuture<MatlabResult> submit(MatlabRequest request) {
+        if (cache != null && cache.accepts(request)) {
+            return cache.get(request, this::execute);
+        }
+        return execute(request);
+    }
+
+    private ListenableFuture<MatlabResult> execute(MatlabRequest request) {
+        SettableFuture<MatlabResult> future = SettableFuture.create();
+        if (!closed && coalescer != null && coalescer.accepts(request)) {
+            coalescer.add(request, future);
+        } else {
+            dispatch(request, future);
+        }
+        return future;
+    }
+
+    private void dispatch(MatlabRequest request,
+                          SettableFuture<MatlabResult> future) {
+        if (closed) {
+            future.setException(new MatlabException("Dispatcher is closed."));
+        } else {
+            queue.add(new PendingRequest(request, future));
+        }
+    }
+
+    private void work() {
+        List<PendingRequest> batch = new ArrayList<>(maxBatchSize);
+        List<MatlabRequest> requests = new ArrayList<>(maxBatchSize);
+        try {
+            while (!closed) {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - 1);
+                for (PendingRequest pending : batch) {
+                    requests.add(pending.request);
+                }
+                if (batch.size() > 1) {
+                    log.debug("Dispatching batch of {} requests", batch.size());
+                }
+                try {
+                    complete(batch, pool.handle(requests));
+                } catch (RuntimeException e) {
+                    batch.forEach(p -> p.future.setException(e));
+                }
+                batch.clear();
+                requests.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void complete(List<PendingRequest> batch,
+                                 List<MatlabResponse> responses) {
+        for (int i = 0; i < batch.size(); ++i) {
+            MatlabResponse response = responses.get(i);
+            SettableFuture<MatlabResult> future = batch.get(i).future;
+            if (response instanceof MatlabResult) {
+                future.set((MatlabResult) response);
+            } else if (response instanceof MatlabException) {
+                future.setException((MatlabException) response);
+            } else {
+                future.setException(new MatlabException("unknown response"));
+            }
+        }
+    }
+
+    /**
+     * Stops the workers and fails all queued requests. The pool is not
+     * destroyed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (coalescer != null) {
+            timer.shutdownNow();
+            coalescer.flushAll();
+        }
+        workers.shutdownNow();
+        PendingRequest pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.setException(
+                    new MatlabException("Dispatcher is closed."));
+        }
+    }
+
+    private static class PendingRequest {
+        private final MatlabRequest request;
+        private final SettableFuture<MatlabResult> future;
+
+        PendingRequest(MatlabRequest request,
+                       SettableFuture<MatlabResult> future) {
+            this.request = request;
+            this.future = future;
+        }
+    }
+}
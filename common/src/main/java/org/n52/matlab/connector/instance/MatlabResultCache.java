@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.MatlabResult;
+import org.n52.matlab.connector.value.AbstractMatlabValueVisitor;
+import org.n52.matlab.connector.value.MatlabArray;
+import org.n52.matlab.connector.value.MatlabBoolean;
+import org.n52.matlab.connector.value.MatlabByteArray;
+import org.n52.matlab.connector.value.MatlabCell;
+import org.n52.matlab.connector.value.MatlabDateTime;
+import org.n52.matlab.connector.value.MatlabFile;
+import org.n52.matlab.connector.value.MatlabIntArray;
+import org.n52.matlab.connector.value.MatlabIntegerArray;
+import org.n52.matlab.connector.value.MatlabLogicalArray;
+import org.n52.matlab.connector.value.MatlabMatrix;
+import org.n52.matlab.connector.value.MatlabNDArray;
+import org.n52.matlab.connector.value.MatlabScalar;
+import org.n52.matlab.connector.value.MatlabShortArray;
+import org.n52.matlab.connector.value.MatlabSingleArray;
+import org.n52.matlab.connector.value.MatlabSparseMatrix;
+import org.n52.matlab.connector.value.MatlabString;
+import org.n52.matlab.connector.value.MatlabStruct;
+import org.n52.matlab.connector.value.MatlabStructArray;
+import org.n52.matlab.connector.value.MatlabTable;
+import org.n52.matlab.connector.value.MatlabType;
+import org.n52.matlab.connector.value.MatlabTypedArray;
+import org.n52.matlab.connector.value.MatlabValue;
+import org.n52.matlab.connector.value.MatlabValueDigest;
+import org.n52.matlab.connector.value.ReturningMatlabValueVisitor;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Caches the results of deterministic functions. Requests are keyed by their
+ * function, parameters and requested results; the least recently used
+ * results are evicted once the estimated size of all results exceeds the
+ * configured maximum. Concurrent identical requests are evaluated only once.
+ *
+ * @author Christian Autermann
+ */
+public class MatlabResultCache {
+    private static final int OVERHEAD = 16;
+    private final MatlabResultCacheConfiguration config;
+    private final Cache<Key, MatlabResult> cache;
+    private final Map<Key, ListenableFuture<MatlabResult>> loading
+            = new ConcurrentHashMap<>();
+    private final AtomicLong shared = new AtomicLong();
+
+    public MatlabResultCache(MatlabResultCacheConfiguration config) {
+        this.config = Objects.requireNonNull(config);
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .maximumWeight(config.getMaximumSize())
+                .recordStats();
+        if (config.getTimeToLive() > 0) {
+            builder.expireAfterWrite(config.getTimeToLive(),
+                                     TimeUnit.MILLISECONDS);
+        }
+        this.cache = builder.<Key, MatlabResult>weigher(
+                (key, result) -> weigh(key, result)).build();
+    }
+
+    /**
+     * Checks if the request calls a deterministic function and neither its
+     * parameters nor its results involve files.
+     *
+     * @param request the request
+     *
+     * @return if the result of the request may be cached
+     */
+    public boolean accepts(MatlabRequest request) {
+        if (!config.isDeterministic(request.getFunction()) ||
+            request.getResults().containsValue(MatlabType.FILE)) {
+            return false;
+        }
+        FileDetector detector = new FileDetector();
+        request.visitParameters(detector);
+        return !detector.found;
+    }
+
+    /**
+     * Gets the cached result of the request or evaluates it using the loader.
+     *
+     * @param request the request
+     * @param loader  evaluates the request
+     *
+     * @return the result, with the id of the request
+     */
+    public ListenableFuture<MatlabResult> get(
+            MatlabRequest request,
+            Function<MatlabRequest, ListenableFuture<MatlabResult>> loader) {
+        final Key key = new Key(request);
+        MatlabResult cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return Futures.immediateFuture(withId(cached, request.getId()));
+        }
+        SettableFuture<MatlabResult> future = SettableFuture.create();
+        ListenableFuture<MatlabResult> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            shared.incrementAndGet();
+            return Futures.transform(existing,
+                                     (MatlabResult r) -> withId(r, request.getId()));
+        }
+        Futures.addCallback(loader.apply(request), new FutureCallback<MatlabResult>() {
+            @Override
+            public void onSuccess(MatlabResult result) {
+                cache.put(key, result);
+                loading.remove(key);
+                future.set(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                loading.remove(key);
+                future.setException(t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return the number of cached results
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the hits, misses and evictions of the cache
+     */
+    public CacheStats getStatistics() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the number of requests that were served by an identical
+     *         request that was evaluated at the same time
+     */
+    public long getSharedEvaluations() {
+        return shared.get();
+    }
+
+    @Override
+    public String toString() {
+        CacheStats stats = getStatistics();
+        return MoreObjects.toStringHelper(this)
+                .add("size", size())
+                .add("hits", stats.hitCount())
+                .add("misses", stats.missCount())
+                .add("shared", getSharedEvaluations())
+                .add("evictions", stats.evictionCount())
+                .add("hitRate", String.format("%.1f%%", stats.hitRate() * 100))
+                .toString();
+    }
+
+    private static MatlabResult withId(MatlabResult result, long id) {
+        if (result.getId() == id) {
+            return result;
+        }
+        MatlabResult copy = new MatlabResult(id);
+        result.getResults().forEach(copy::addResult);
+        return copy;
+    }
+
+    private static int weigh(Key key, MatlabResult result) {
+        return (int) Math.min(OVERHEAD + key.weight + weigh(result),
+                              Integer.MAX_VALUE);
+    }
+
+    private static long weigh(Iterable<MatlabValue> values) {
+        long size = 0;
+        SizeEstimator estimator = new SizeEstimator();
+        for (MatlabValue value : values) {
+            size += value.accept(estimator);
+        }
+        return size;
+    }
+
+    /**
+     * The function, the digest of the parameters and the names and types of
+     * the results of a request. The digest is taken from the parameter
+     * snapshot of the request, which is computed once per request, and the
+     * estimated size of the parameters when the key is created, so the key
+     * neither keeps the parameters nor changes if the request is changed
+     * afterwards.
+     */
+    private static class Key {
+        private final String function;
+        private final MatlabValueDigest parameters;
+        private final Map<String, MatlabType> results;
+        private final int weight;
+        private final int hash;
+
+        Key(MatlabRequest request) {
+            this.weight = (int) Math.min(weigh(request.getParameters()),
+                                         Integer.MAX_VALUE);
+            this.function = request.getFunction();
+            this.parameters = request.getParameterSnapshot().getDigest();
+            this.results = new LinkedHashMap<>(request.getResults());
+            this.hash = Objects.hash(function, parameters, results);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof Key) {
+                Key other = (Key) o;
+                return hash == other.hash &&
+                       function.equals(other.function) &&
+                       parameters.equals(other.parameters) &&
+                       results.equals(other.results);
+            }
+            return false;
+        }
+    }
+
+    private static class FileDetector extends AbstractMatlabValueVisitor {
+        private boolean found = false;
+
+        @Override
+        public void visit(MatlabCell cell) {
+            cell.stream().forEach(v -> v.accept(this));
+        }
+
+        @Override
+        public void visit(MatlabStruct struct) {
+            struct.value().values().forEach(v -> v.accept(this));
+        }
+
+        @Override
+        public void visit(MatlabStructArray array) {
+            array.stream().forEach(v -> v.accept(this));
+        }
+
+        @Override
+        public void visit(MatlabFile file) {
+            found = true;
+        }
+    }
+
+    /**
+     * Estimates the memory occupied by a value in bytes.
+     */
+    private static class SizeEstimator
+            implements ReturningMatlabValueVisitor<Long> {
+
+        @Override
+        public Long visit(MatlabArray array) {
+            return OVERHEAD + 8L * array.size();
+        }
+
+        @Override
+        public Long visit(MatlabBoolean bool) {
+            return (long) OVERHEAD;
+        }
+
+        @Override
+        public Long visit(MatlabCell cell) {
+            long size = OVERHEAD;
+            for (MatlabValue value : cell) {
+                size += value.accept(this);
+            }
+            return size;
+        }
+
+        @Override
+        public Long visit(MatlabMatrix matrix) {
+            return 2 * OVERHEAD + 8L * matrix.getRows() * matrix.getColumns();
+        }
+
+        @Override
+        public Long visit(MatlabScalar scalar) {
+            return OVERHEAD + 8L;
+        }
+
+        @Override
+        public Long visit(MatlabString string) {
+            return OVERHEAD + 2L * string.value().length();
+        }
+
+        @Override
+        public Long visit(MatlabStruct struct) {
+            long size = OVERHEAD;
+            for (Map.Entry<MatlabString, MatlabValue> e : struct.value()
+                    .entrySet()) {
+                size += e.getKey().accept(this) + e.getValue().accept(this);
+            }
+            return size;
+        }
+
+        @Override
+        public Long visit(MatlabFile file) {
+            return (long) OVERHEAD;
+        }
+
+        @Override
+        public Long visit(MatlabDateTime time) {
+            return OVERHEAD + 8L;
+        }
+
+        @Override
+        public Long visit(MatlabNDArray array) {
+            return 3 * OVERHEAD + 4L * array.getDimensions() +
+                   8L * array.getColumnMajor().length;
+        }
+
+        @Override
+        public Long visit(MatlabIntegerArray array) {
+            int width = array instanceof MatlabByteArray ? 1
+                        : array instanceof MatlabShortArray ? 2
+                          : array instanceof MatlabIntArray ? 4 : 8;
+            return typed(array, width);
+        }
+
+        @Override
+        public Long visit(MatlabSingleArray array) {
+            return typed(array, 4);
+        }
+
+        @Override
+        public Long visit(MatlabLogicalArray array) {
+            return 3 * OVERHEAD + 4L * array.getDimensions() +
+                   8L * array.getBits().length;
+        }
+
+        @Override
+        public Long visit(MatlabSparseMatrix matrix) {
+            return 4 * OVERHEAD + 4L * matrix.getColumnPointers().length +
+                   12L * matrix.getNonZeros();
+        }
+
+        @Override
+        public Long visit(MatlabStructArray array) {
+            // the field names are shared with other arrays
+            long size = 3 * OVERHEAD + 4L * array.getShape().length +
+                        (long) OVERHEAD * array.getFieldNames().size();
+            return array.stream().mapToLong(v -> v.accept(this))
+                    .reduce(size, Long::sum);
+        }
+
+        @Override
+        public Long visit(MatlabTable table) {
+            long size = 3 * OVERHEAD;
+            for (int c = 0; c < table.getColumnCount(); ++c) {
+                size += OVERHEAD;
+                switch (table.getColumnType(c)) {
+                    case STRING:
+                        for (String s : table.getStringColumn(c)) {
+                            size += OVERHEAD + 2L * s.length();
+                        }
+                        break;
+                    case LOGICAL:
+                        size += 8L * table.getLogicalColumn(c).length;
+                        break;
+                    default:
+                        size += 8L * table.getRowCount();
+                }
+            }
+            return size;
+        }
+
+        private long typed(MatlabTypedArray array, int width) {
+            return 3 * OVERHEAD + 4L * array.getDimensions() +
+                   (long) width * array.size();
+        }
+    }
+}
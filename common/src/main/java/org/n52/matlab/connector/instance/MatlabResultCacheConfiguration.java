@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The deterministic functions whose results may be cached and the bounds of
+ * the cache.
+ *
+ * @author Christian Autermann
+ * @see MatlabResultCache
+ */
+public class MatlabResultCacheConfiguration {
+    public static final long DEFAULT_MAXIMUM_SIZE = 64L * 1024 * 1024;
+    public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(10);
+    private final Set<String> functions;
+    private final long maximumSize;
+    private final long timeToLive;
+
+    private MatlabResultCacheConfiguration(Builder builder) {
+        this.functions = builder.functions.build();
+        this.maximumSize = builder.maximumSize;
+        this.timeToLive = builder.timeToLive;
+    }
+
+    /**
+     * @return the names of the cacheable functions
+     */
+    public Set<String> getFunctions() {
+        return functions;
+    }
+
+    /**
+     * @param function the function name
+     *
+     * @return if the function always returns the same results for the same
+     *         parameters
+     */
+    public boolean isDeterministic(String function) {
+        return functions.contains(function);
+    }
+
+    /**
+     * @return the estimated maximal size of all cached results in bytes
+     */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return the time in milliseconds a result is cached, or <code>0</code>
+     *         to cache results until they are evicted
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final ImmutableSet.Builder<String> functions
+                = ImmutableSet.builder();
+        private long maximumSize = DEFAULT_MAXIMUM_SIZE;
+        private long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+        public Builder withFunction(String function) {
+            checkArgument(function != null && !function.isEmpty());
+            this.functions.add(function);
+            return this;
+        }
+
+        public Builder withFunctions(Iterable<String> functions) {
+            checkNotNull(functions).forEach(this::withFunction);
+            return this;
+        }
+
+        public Builder withMaximumSize(long bytes) {
+            checkArgument(bytes >= 0);
+            this.maximumSize = bytes;
+            return this;
+        }
+
+        public Builder withTimeToLive(long timeToLive, TimeUnit unit) {
+            checkArgument(timeToLive >= 0);
+            this.timeToLive = checkNotNull(unit).toMillis(timeToLive);
+            return this;
+        }
+
+        public MatlabResultCacheConfiguration build() {
+            return new MatlabResultCacheConfiguration(this);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The functions that operate element-wise on their inputs and how requests to
+ * them are coalesced. Concurrent requests with scalar parameters to such a
+ * function are combined into a single request with array parameters.
+ *
+ * @author Christian Autermann
+ * @see MatlabRequestDispatcher
+ */
+public class MatlabVectorizationConfiguration {
+    public static final long DEFAULT_WINDOW = 5;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    private final Set<String> functions;
+    private final long window;
+    private final int maxBatchSize;
+
+    private MatlabVectorizationConfiguration(Builder builder) {
+        this.functions = builder.functions.build();
+        this.window = builder.window;
+        this.maxBatchSize = builder.maxBatchSize;
+    }
+
+    /**
+     * @return the names of the vectorizable functions
+     */
+    public Set<String> getFunctions() {
+        return functions;
+    }
+
+    /**
+     * @param function the function name
+     *
+     * @return if the function operates element-wise on its inputs
+     */
+    public boolean isVectorizable(String function) {
+        return functions.contains(function);
+    }
+
+    /**
+     * @return the time in milliseconds to wait for further requests to
+     *         coalesce with
+     */
+    public long getWindow() {
+        return window;
+    }
+
+    /**
+     * @return the maximal number of requests to coalesce
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final ImmutableSet.Builder<String> functions
+                = ImmutableSet.builder();
+        private long window = DEFAULT_WINDOW;
+        private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+        public Builder withFunction(String function) {
+            checkArgument(function != null && !function.isEmpty());
+            this.functions.add(function);
+            return this;
+        }
+
+        public Builder withFunctions(Iterable<String> functions) {
+            checkNotNull(functions).forEach(this::withFunction);
+            return this;
+        }
+
+        public Builder withWindow(long window, TimeUnit unit) {
+            checkArgument(window >= 0);
+            this.window = checkNotNull(unit).toMillis(window);
+            return this;
+        }
+
+        public Builder withMaxBatchSize(int maxBatchSize) {
+            checkArgument(maxBatchSize > 0);
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        public MatlabVectorizationConfiguration build() {
+            return new MatlabVectorizationConfiguration(this);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A long-lived scratch directory of a {@link MatlabInstance}. The directory is
+ * created on first use and hands out file slots that are reused by later
+ * requests instead of being created and deleted every time. All files are
+ * removed in bulk by {@link #delete()}.
+ *
+ * @author Christian Autermann
+ */
+class ScratchDirectory {
+    private static final String PREFIX = "matlab-connector";
+    private final Deque<Path> free = new ArrayDeque<>();
+    private final Set<Path> slots = new HashSet<>();
+    private Path directory;
+
+    /**
+     * @return the directory, creating it if necessary
+     *
+     * @throws IOException if the directory can not be created
+     */
+    Path getDirectory() throws IOException {
+        if (directory == null) {
+            directory = Files.createTempDirectory(PREFIX);
+        }
+        return directory;
+    }
+
+    /**
+     * Gets a file slot that is not in use. The slot may still contain the
+     * content of an earlier request.
+     *
+     * @return the slot
+     *
+     * @throws IOException if the directory can not be created
+     */
+    Path acquire() throws IOException {
+        Path slot = free.poll();
+        if (slot == null) {
+            slot = getDirectory().resolve("slot-" + slots.size() + ".bin");
+            slots.add(slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Returns a slot for reuse.
+     *
+     * @param slot the slot
+     *
+     * @return if the path was a slot of this directory
+     */
+    boolean release(Path slot) {
+        if (slot == null || !slots.contains(slot)) {
+            return false;
+        }
+        free.push(slot);
+        return true;
+    }
+
+    /**
+     * Deletes the directory and everything in it.
+     *
+     * @throws IOException if the directory can not be deleted
+     */
+    void delete() throws IOException {
+        if (directory == null) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+        directory = null;
+        slots.clear();
+        free.clear();
+    }
+
+}
@@ -29,4 +29,14 @@ public interface MatlabJSONConstants {
     String TYPE = "type";
     String VALUE = "value";
     String ID = "id";
+    String TIMEOUT = "timeout";
+    String SIZE = "size";
+    String VALUES = "values";
+    String COLUMN_POINTERS = "columnPointers";
+    String ROW_INDICES = "rowIndices";
+    String BITS = "bits";
+    String FIELDS = "fields";
+    String ROWS = "rows";
+    String COLUMNS = "columns";
+    String NAME = "name";
 }
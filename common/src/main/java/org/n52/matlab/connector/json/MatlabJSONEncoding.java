@@ -16,11 +16,13 @@
  */
 package org.n52.matlab.connector.json;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.io.Writer;
 
 import org.n52.matlab.connector.MatlabEncoding;
@@ -31,13 +33,23 @@ import org.n52.matlab.connector.MatlabResult;
 
 import org.n52.matlab.connector.value.MatlabArray;
 import org.n52.matlab.connector.value.MatlabBoolean;
+import org.n52.matlab.connector.value.MatlabByteArray;
 import org.n52.matlab.connector.value.MatlabCell;
 import org.n52.matlab.connector.value.MatlabDateTime;
 import org.n52.matlab.connector.value.MatlabFile;
+import org.n52.matlab.connector.value.MatlabIntArray;
+import org.n52.matlab.connector.value.MatlabLogicalArray;
+import org.n52.matlab.connector.value.MatlabLongArray;
 import org.n52.matlab.connector.value.MatlabMatrix;
+import org.n52.matlab.connector.value.MatlabNDArray;
 import org.n52.matlab.connector.value.MatlabScalar;
+import org.n52.matlab.connector.value.MatlabShortArray;
+import org.n52.matlab.connector.value.MatlabSingleArray;
+import org.n52.matlab.connector.value.MatlabSparseMatrix;
 import org.n52.matlab.connector.value.MatlabString;
 import org.n52.matlab.connector.value.MatlabStruct;
+import org.n52.matlab.connector.value.MatlabStructArray;
+import org.n52.matlab.connector.value.MatlabTable;
 import org.n52.matlab.connector.value.MatlabValue;
 
 import com.google.common.base.Charsets;
@@ -63,7 +75,17 @@ public class MatlabJSONEncoding implements MatlabEncoding {
         MatlabScalar.class,
         MatlabString.class,
         MatlabStruct.class,
-        MatlabDateTime.class
+        MatlabDateTime.class,
+        MatlabNDArray.class,
+        MatlabByteArray.class,
+        MatlabShortArray.class,
+        MatlabIntArray.class,
+        MatlabLongArray.class,
+        MatlabSingleArray.class,
+        MatlabLogicalArray.class,
+        MatlabSparseMatrix.class,
+        MatlabStructArray.class,
+        MatlabTable.class
     };
 
     private MatlabResponse toResponse(JsonElement json)
@@ -96,7 +118,12 @@ public class MatlabJSONEncoding implements MatlabEncoding {
     }
 
     private void encode(Object o, Writer os) {
-        getGson().toJson(o, os);
+        try {
+            new MatlabJSONWriter(getGson(), os).write(o);
+            os.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     private void encode(Object o, OutputStream os) {
@@ -104,7 +131,9 @@ public class MatlabJSONEncoding implements MatlabEncoding {
     }
 
     private String encode(Object o) {
-        return getGson().toJson(o);
+        StringWriter writer = new StringWriter();
+        encode(o, writer);
+        return writer.toString();
     }
 
     public Gson getGson() {
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.DoubleBuffer;
+import java.util.Map.Entry;
+
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.MatlabResult;
+
+import org.n52.matlab.connector.value.MatlabMatrix;
+import org.n52.matlab.connector.value.MatlabNDArray;
+import org.n52.matlab.connector.value.MatlabString;
+import org.n52.matlab.connector.value.MatlabStructArray;
+import org.n52.matlab.connector.value.MatlabType;
+import org.n52.matlab.connector.value.MatlabValue;
+
+import com.google.gson.Gson;
+
+/**
+ * Writes requests and results directly to a {@link Writer}. Numeric arrays,
+ * matrices and N-dimensional arrays, also inside of cells, structs and struct
+ * arrays, are streamed from their (possibly direct or memory-mapped) storage
+ * instead of being converted to a JSON tree first. Files are compressed and
+ * encoded while they are read. All other values are delegated to the
+ * {@link Gson} instance, so the output is identical.
+ *
+ * @author Christian Autermann
+ */
+class MatlabJSONWriter {
+    private final Gson gson;
+    private final Writer out;
+
+    MatlabJSONWriter(Gson gson, Writer out) {
+        this.gson = gson;
+        this.out = out;
+    }
+
+    void write(Object o) throws IOException {
+        if (o instanceof MatlabResult) {
+            writeResult((MatlabResult) o);
+        } else if (o instanceof MatlabRequest) {
+            writeRequest((MatlabRequest) o);
+        } else {
+            gson.toJson(o, out);
+        }
+    }
+
+    private void writeResult(MatlabResult result) throws IOException {
+        out.write('{');
+        writeName(MatlabJSONConstants.ID);
+        out.write(Long.toString(result.getId()));
+        out.write(',');
+        writeName(MatlabJSONConstants.RESULTS);
+        out.write('{');
+        boolean first = true;
+        for (Entry<String, MatlabValue> e : result.getResults().entrySet()) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            writeName(e.getKey());
+            writeValue(e.getValue());
+        }
+        out.write("}}");
+    }
+
+    private void writeRequest(MatlabRequest request) throws IOException {
+        out.write('{');
+        writeName(MatlabJSONConstants.ID);
+        out.write(Long.toString(request.getId()));
+        out.write(',');
+        writeName(MatlabJSONConstants.FUNCTION);
+        out.write(gson.toJson(request.getFunction()));
+        out.write(',');
+        writeName(MatlabJSONConstants.PARAMETERS);
+        out.write('[');
+        boolean first = true;
+        for (MatlabValue parameter : request.getParameters()) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            writeValue(parameter);
+        }
+        out.write("],");
+        writeName(MatlabJSONConstants.RESULTS);
+        out.write('{');
+        first = true;
+        for (Entry<String, MatlabType> e : request.getResults().entrySet()) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            writeName(e.getKey());
+            out.write(gson.toJson(e.getValue().toString()));
+        }
+        out.write('}');
+        if (request.getTimeout() > 0) {
+            out.write(',');
+            writeName(MatlabJSONConstants.TIMEOUT);
+            out.write(Long.toString(request.getTimeout()));
+        }
+        out.write('}');
+    }
+
+    private void writeValue(MatlabValue value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        switch (value.getType()) {
+            case ARRAY:
+                writeHeader(value);
+                writeDoubles(value.asArray().getBuffer());
+                break;
+            case MATRIX:
+                writeHeader(value);
+                writeMatrix(value.asMatrix());
+                break;
+            case ND_ARRAY:
+                writeHeader(value);
+                writeNDArray(value.asNDArray());
+                break;
+            case CELL:
+                writeHeader(value);
+                writeCell(value.asCell());
+                break;
+            case FILE:
+                writeHeader(value);
+                out.write('"');
+                MatlabValueSerializer.gzip(value.asFile(), out);
+                out.write('"');
+                break;
+            case STRUCT:
+                writeHeader(value);
+                out.write('{');
+                boolean first = true;
+                for (Entry<MatlabString, MatlabValue> e : value.asStruct()
+                        .value().entrySet()) {
+                    if (!first) {
+                        out.write(',');
+                    }
+                    first = false;
+                    writeName(e.getKey().value());
+                    writeValue(e.getValue());
+                }
+                out.write('}');
+                break;
+            case STRUCT_ARRAY:
+                writeHeader(value);
+                writeStructArray(value.asStructArray());
+                break;
+            default:
+                gson.toJson(value, MatlabValue.class, out);
+                return;
+        }
+        out.write('}');
+    }
+
+    private void writeHeader(MatlabValue value) throws IOException {
+        out.write('{');
+        writeName(MatlabJSONConstants.TYPE);
+        out.write(gson.toJson(value.getType().toString()));
+        out.write(',');
+        writeName(MatlabJSONConstants.VALUE);
+    }
+
+    private void writeCell(Iterable<MatlabValue> cell) throws IOException {
+        out.write('[');
+        boolean first = true;
+        for (MatlabValue element : cell) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            writeValue(element);
+        }
+        out.write(']');
+    }
+
+    private void writeStructArray(MatlabStructArray array)
+            throws IOException {
+        out.write('{');
+        writeName(MatlabJSONConstants.SIZE);
+        out.write(gson.toJson(array.getShape()));
+        out.write(',');
+        writeName(MatlabJSONConstants.FIELDS);
+        out.write('{');
+        boolean first = true;
+        for (MatlabString field : array.getFieldNames()) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            writeName(field.value());
+            writeCell(array.getColumn(field));
+        }
+        out.write("}}");
+    }
+
+    private void writeMatrix(MatlabMatrix matrix) throws IOException {
+        DoubleBuffer values = matrix.getBuffer();
+        int rows = matrix.getRows();
+        int columns = matrix.getColumns();
+        out.write('[');
+        for (int i = 0; i < rows; ++i) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write('[');
+            for (int j = 0; j < columns; ++j) {
+                if (j > 0) {
+                    out.write(',');
+                }
+                out.write(Double.toString(values.get(j * rows + i)));
+            }
+            out.write(']');
+        }
+        out.write(']');
+    }
+
+    private void writeNDArray(MatlabNDArray array) throws IOException {
+        out.write('{');
+        writeName(MatlabJSONConstants.SIZE);
+        out.write(gson.toJson(array.getShape()));
+        out.write(',');
+        writeName(MatlabJSONConstants.VALUES);
+        writeDoubles(DoubleBuffer.wrap(array.getColumnMajor()));
+        out.write('}');
+    }
+
+    private void writeDoubles(DoubleBuffer values) throws IOException {
+        out.write('[');
+        for (int i = values.position(); i < values.limit(); ++i) {
+            if (i > values.position()) {
+                out.write(',');
+            }
+            out.write(Double.toString(values.get(i)));
+        }
+        out.write(']');
+    }
+
+    private void writeName(String name) throws IOException {
+        out.write(gson.toJson(name));
+        out.write(':');
+    }
+}
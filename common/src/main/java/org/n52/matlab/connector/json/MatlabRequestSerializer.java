@@ -18,6 +18,7 @@ package org.n52.matlab.connector.json;
 
 import java.lang.reflect.Type;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 
 import org.n52.matlab.connector.MatlabRequest;
 
@@ -51,6 +52,10 @@ public class MatlabRequestSerializer implements JsonSerializer<MatlabRequest>,
         String function = json.get(MatlabJSONConstants.FUNCTION).getAsString();
         long id = json.get(MatlabJSONConstants.ID).getAsLong();
         MatlabRequest request = new MatlabRequest(id, function);
+        if (json.has(MatlabJSONConstants.TIMEOUT)) {
+            request.setTimeout(json.get(MatlabJSONConstants.TIMEOUT)
+                    .getAsLong(), TimeUnit.MILLISECONDS);
+        }
 
         JsonObject results = json.get(MatlabJSONConstants.RESULTS).getAsJsonObject();
         for (Entry<String, JsonElement> result : results.entrySet()) {
@@ -85,6 +90,9 @@ public class MatlabRequestSerializer implements JsonSerializer<MatlabRequest>,
         o.addProperty(MatlabJSONConstants.FUNCTION, req.getFunction());
         o.add(MatlabJSONConstants.PARAMETERS, serializeParameters(req, ctx));
         o.add(MatlabJSONConstants.RESULTS, serializeResults(req));
+        if (req.getTimeout() > 0) {
+            o.addProperty(MatlabJSONConstants.TIMEOUT, req.getTimeout());
+        }
         return o;
     }
 
@@ -61,6 +61,7 @@ public class MatlabResultSerializer implements JsonDeserializer<MatlabResult>,
                                  JsonSerializationContext context) {
 
         JsonObject o = new JsonObject();
+        o.addProperty(MatlabJSONConstants.ID, src.getId());
         JsonObject results = new JsonObject();
         for (Entry<String, MatlabValue> result : src.getResults().entrySet()) {
             results.add(result.getKey(), context.serialize(result.getValue()));
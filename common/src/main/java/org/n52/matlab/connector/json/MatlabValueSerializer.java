@@ -17,10 +17,21 @@
 package org.n52.matlab.connector.json;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.FilterWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -29,14 +40,28 @@ import org.joda.time.format.ISODateTimeFormat;
 
 import org.n52.matlab.connector.value.MatlabArray;
 import org.n52.matlab.connector.value.MatlabBoolean;
+import org.n52.matlab.connector.value.MatlabBuffers;
+import org.n52.matlab.connector.value.MatlabByteArray;
 import org.n52.matlab.connector.value.MatlabCell;
 import org.n52.matlab.connector.value.MatlabDateTime;
 import org.n52.matlab.connector.value.MatlabFile;
+import org.n52.matlab.connector.value.MatlabIntArray;
+import org.n52.matlab.connector.value.MatlabIntegerArray;
+import org.n52.matlab.connector.value.MatlabLogicalArray;
+import org.n52.matlab.connector.value.MatlabLongArray;
 import org.n52.matlab.connector.value.MatlabMatrix;
+import org.n52.matlab.connector.value.MatlabNDArray;
 import org.n52.matlab.connector.value.MatlabScalar;
+import org.n52.matlab.connector.value.MatlabShortArray;
+import org.n52.matlab.connector.value.MatlabSingleArray;
+import org.n52.matlab.connector.value.MatlabSparseMatrix;
 import org.n52.matlab.connector.value.MatlabString;
 import org.n52.matlab.connector.value.MatlabStruct;
+import org.n52.matlab.connector.value.MatlabStructArray;
+import org.n52.matlab.connector.value.MatlabTable;
+import org.n52.matlab.connector.value.MatlabTable.ColumnType;
 import org.n52.matlab.connector.value.MatlabType;
+import org.n52.matlab.connector.value.MatlabTypedArray;
 import org.n52.matlab.connector.value.MatlabValue;
 import org.n52.matlab.connector.value.ReturningMatlabValueVisitor;
 
@@ -61,6 +86,12 @@ import com.google.gson.JsonSerializer;
  */
 public class MatlabValueSerializer implements JsonSerializer<MatlabValue>,
                                               JsonDeserializer<MatlabValue> {
+    /**
+     * Arrays and matrices with at least this many elements are decoded into
+     * direct buffers instead of the heap.
+     */
+    private static final int DIRECT_BUFFER_THRESHOLD = 1 << 16;
+
     @Override
     public JsonElement serialize(MatlabValue value, Type type,
                                  JsonSerializationContext ctx) {
@@ -116,6 +147,25 @@ public class MatlabValueSerializer implements JsonSerializer<MatlabValue>,
                 return parseMatlabStruct(value);
             case DATE_TIME:
                 return parseMatlabDateTime(value);
+            case ND_ARRAY:
+                return parseMatlabNDArray(value);
+            case INT8:
+            case INT16:
+            case INT32:
+            case INT64:
+            case UINT8:
+            case UINT16:
+            case UINT32:
+            case UINT64:
+            case SINGLE:
+            case LOGICAL:
+                return parseMatlabTypedArray(type, value);
+            case SPARSE:
+                return parseMatlabSparseMatrix(value);
+            case STRUCT_ARRAY:
+                return parseMatlabStructArray(value);
+            case TABLE:
+                return parseMatlabTable(value);
             default:
                 throw new JsonParseException("Unknown type: " + type);
         }
@@ -132,26 +182,200 @@ public class MatlabValueSerializer implements JsonSerializer<MatlabValue>,
 
     private MatlabMatrix parseMatlabMatrix(JsonElement value) {
         JsonArray array = value.getAsJsonArray();
-        double[][] values = new double[array.size()][array.get(0)
-                .getAsJsonArray().size()];
-        for (int i = 0; i < array.size(); i++) {
+        int rows = array.size();
+        int columns = rows == 0 ? 0 : array.get(0).getAsJsonArray().size();
+        DoubleBuffer values = allocate(rows * columns);
+        for (int i = 0; i < rows; i++) {
             JsonArray innerArray = array.get(i).getAsJsonArray();
-            for (int j = 0; j < innerArray.size(); j++) {
-                values[i][j] = innerArray.get(j).getAsDouble();
+            if (innerArray.size() != columns) {
+                throw new JsonParseException("Matrix is not rectangular.");
+            }
+            for (int j = 0; j < columns; j++) {
+                values.put(j * rows + i, innerArray.get(j).getAsDouble());
+            }
+        }
+        return new MatlabMatrix(values, rows, columns);
+    }
+
+    private MatlabNDArray parseMatlabNDArray(JsonElement value) {
+        JsonObject json = value.getAsJsonObject();
+        int[] shape = parseShape(json);
+        JsonArray array = json.get(MatlabJSONConstants.VALUES).getAsJsonArray();
+        double[] values = new double[array.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = array.get(i).getAsDouble();
+        }
+        try {
+            return new MatlabNDArray(values, shape);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException(e.getMessage());
+        }
+    }
+
+    private MatlabTypedArray parseMatlabTypedArray(MatlabType type,
+                                                   JsonElement value) {
+        JsonObject json = value.getAsJsonObject();
+        int[] shape = parseShape(json);
+        if (type == MatlabType.LOGICAL && json.has(MatlabJSONConstants.BITS)) {
+            return parseMatlabLogicalArray(json, shape);
+        }
+        JsonArray array = json.get(MatlabJSONConstants.VALUES).getAsJsonArray();
+        int n = array.size();
+        try {
+            switch (type) {
+                case INT8:
+                case UINT8:
+                    byte[] bytes = new byte[n];
+                    for (int i = 0; i < n; i++) {
+                        bytes[i] = (byte) array.get(i).getAsLong();
+                    }
+                    return new MatlabByteArray(bytes, type == MatlabType.UINT8,
+                                               shape);
+                case INT16:
+                case UINT16:
+                    short[] shorts = new short[n];
+                    for (int i = 0; i < n; i++) {
+                        shorts[i] = (short) array.get(i).getAsLong();
+                    }
+                    return new MatlabShortArray(shorts,
+                                                type == MatlabType.UINT16,
+                                                shape);
+                case INT32:
+                case UINT32:
+                    int[] ints = new int[n];
+                    for (int i = 0; i < n; i++) {
+                        ints[i] = (int) array.get(i).getAsLong();
+                    }
+                    return new MatlabIntArray(ints, type == MatlabType.UINT32,
+                                              shape);
+                case INT64:
+                case UINT64:
+                    long[] longs = new long[n];
+                    for (int i = 0; i < n; i++) {
+                        longs[i] = new BigInteger(array.get(i).getAsString())
+                                .longValue();
+                    }
+                    return new MatlabLongArray(longs, type == MatlabType.UINT64,
+                                               shape);
+                case SINGLE:
+                    float[] floats = new float[n];
+                    for (int i = 0; i < n; i++) {
+                        JsonPrimitive p = array.get(i).getAsJsonPrimitive();
+                        floats[i] = p.isString() ? Float.valueOf(p.getAsString())
+                                    : p.getAsFloat();
+                    }
+                    return new MatlabSingleArray(floats, shape);
+                default:
+                    boolean[] booleans = new boolean[n];
+                    for (int i = 0; i < n; i++) {
+                        booleans[i] = array.get(i).getAsBoolean();
+                    }
+                    return new MatlabLogicalArray(booleans, shape);
             }
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException(e.getMessage());
+        }
+    }
+
+    private MatlabSparseMatrix parseMatlabSparseMatrix(JsonElement value) {
+        JsonObject json = value.getAsJsonObject();
+        int[] shape = parseShape(json);
+        if (shape.length != 2) {
+            throw new JsonParseException("Sparse matrices are two-dimensional.");
+        }
+        int[] pointers = parseInts(json.get(MatlabJSONConstants.COLUMN_POINTERS));
+        int[] rows = parseInts(json.get(MatlabJSONConstants.ROW_INDICES));
+        JsonArray array = json.get(MatlabJSONConstants.VALUES).getAsJsonArray();
+        double[] values = new double[array.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = array.get(i).getAsDouble();
+        }
+        try {
+            return new MatlabSparseMatrix(shape[0], shape[1], pointers, rows,
+                                          values);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new JsonParseException(e.getMessage());
+        }
+    }
+
+    private int[] parseInts(JsonElement value) {
+        JsonArray array = value.getAsJsonArray();
+        int[] ints = new int[array.size()];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = array.get(i).getAsInt();
+        }
+        return ints;
+    }
+
+    /**
+     * Parses a packed logical array, see {@link #pack(long[], int)}.
+     */
+    private MatlabLogicalArray parseMatlabLogicalArray(JsonObject json,
+                                                       int[] shape) {
+        int size = 1;
+        for (int dim : shape) {
+            size *= dim;
+        }
+        long[] bits = unpack(json.get(MatlabJSONConstants.BITS), size);
+        try {
+            return new MatlabLogicalArray(bits, shape);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException(e.getMessage());
+        }
+    }
+
+    /**
+     * Packs a bitset of the given number of elements into the least number
+     * of bytes, eight elements per byte starting with the least significant
+     * bit.
+     */
+    private static String pack(long[] bits, int size) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 * bits.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asLongBuffer().put(bits);
+        return BaseEncoding.base64().encode(buffer.array(), 0, (size + 7) / 8);
+    }
+
+    private static long[] unpack(JsonElement value, int size) {
+        byte[] bytes;
+        try {
+            bytes = BaseEncoding.base64().decode(value.getAsString());
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException(e.getMessage());
         }
-        return new MatlabMatrix(values);
+        if (size < 0 || bytes.length != (size + 7) / 8) {
+            throw new JsonParseException("Invalid length of packed bits.");
+        }
+        long[] bits = new long[MatlabLogicalArray.words(size)];
+        ByteBuffer.wrap(Arrays.copyOf(bytes, 8 * bits.length))
+                .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(bits);
+        return bits;
+    }
+
+    private int[] parseShape(JsonObject json) {
+        return parseInts(json.get(MatlabJSONConstants.SIZE));
     }
 
     private MatlabArray parseMatlabArray(JsonElement value) {
         JsonArray array = value.getAsJsonArray();
-        double[] values = new double[array.size()];
+        DoubleBuffer values = allocate(array.size());
         for (int i = 0; i < array.size(); i++) {
-            values[i] = array.get(i).getAsDouble();
+            values.put(i, array.get(i).getAsDouble());
         }
         return new MatlabArray(values);
     }
 
+    /**
+     * Allocates the buffer to decode the elements of an array or matrix into,
+     * a direct buffer for large values.
+     */
+    private static DoubleBuffer allocate(int length) {
+        if (length >= DIRECT_BUFFER_THRESHOLD) {
+            return MatlabBuffers.allocateDirect(length);
+        }
+        return DoubleBuffer.allocate(length);
+    }
+
     private MatlabStruct parseMatlabStruct(JsonElement value) {
         MatlabStruct struct = new MatlabStruct();
         for (Entry<String, JsonElement> e : value.getAsJsonObject().entrySet()) {
@@ -160,6 +384,73 @@ public class MatlabValueSerializer implements JsonSerializer<MatlabValue>,
         return struct;
     }
 
+    private MatlabStructArray parseMatlabStructArray(JsonElement value) {
+        JsonObject json = value.getAsJsonObject();
+        int[] shape = parseShape(json);
+        Map<MatlabString, MatlabValue[]> columns = new TreeMap<>();
+        for (Entry<String, JsonElement> e : json
+                .get(MatlabJSONConstants.FIELDS).getAsJsonObject().entrySet()) {
+            columns.put(new MatlabString(e.getKey()),
+                        parseMatlabCell(e.getValue()).value()
+                        .toArray(new MatlabValue[0]));
+        }
+        try {
+            return new MatlabStructArray(columns, shape);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException(e.getMessage());
+        }
+    }
+
+    private MatlabTable parseMatlabTable(JsonElement value) {
+        JsonObject json = value.getAsJsonObject();
+        int rows = json.get(MatlabJSONConstants.ROWS).getAsInt();
+        try {
+            MatlabTable.Builder builder = MatlabTable.builder(rows);
+            for (JsonElement element : json.get(MatlabJSONConstants.COLUMNS)
+                    .getAsJsonArray()) {
+                JsonObject column = element.getAsJsonObject();
+                String name = column.get(MatlabJSONConstants.NAME)
+                        .getAsString();
+                ColumnType type = ColumnType.fromString(column
+                        .get(MatlabJSONConstants.TYPE).getAsString());
+                if (type == ColumnType.LOGICAL) {
+                    builder.addLogical(name, unpack(column
+                            .get(MatlabJSONConstants.BITS), rows));
+                    continue;
+                }
+                JsonArray values = column.get(MatlabJSONConstants.VALUES)
+                        .getAsJsonArray();
+                switch (type) {
+                    case NUMERIC:
+                        double[] doubles = new double[values.size()];
+                        for (int i = 0; i < doubles.length; ++i) {
+                            doubles[i] = parseMatlabScalar(values.get(i))
+                                    .value();
+                        }
+                        builder.addNumeric(name, doubles);
+                        break;
+                    case STRING:
+                        String[] strings = new String[values.size()];
+                        for (int i = 0; i < strings.length; ++i) {
+                            strings[i] = values.get(i).getAsString();
+                        }
+                        builder.addString(name, strings);
+                        break;
+                    default:
+                        long[] times = new long[values.size()];
+                        for (int i = 0; i < times.length; ++i) {
+                            times[i] = ISODateTimeFormat.dateTime()
+                                    .parseMillis(values.get(i).getAsString());
+                        }
+                        builder.addDateTime(name, times);
+                }
+            }
+            return builder.build();
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException(e.getMessage());
+        }
+    }
+
     private MatlabCell parseMatlabCell(JsonElement value) {
         JsonArray array = value.getAsJsonArray();
         MatlabValue[] cell = new MatlabValue[array.size()];
@@ -208,23 +499,32 @@ public class MatlabValueSerializer implements JsonSerializer<MatlabValue>,
         }
     }
 
-    private String gzip(byte[] bytes) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        GZIPOutputStream out = null;
-        try {
-            out = new GZIPOutputStream(baos);
-            out.write(bytes);
-            out.finish();
-            return BaseEncoding.base64().encode(baos.toByteArray());
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
-        } finally {
-            try {
-                if (out != null) {
-                    out.close();
-                }
-            } catch (IOException ex) {
+    private String gzip(MatlabFile file) throws IOException {
+        StringWriter writer = new StringWriter();
+        gzip(file, writer);
+        return writer.toString();
+    }
+
+    /**
+     * Writes the gzipped and Base64 encoded content of the file to the writer
+     * while reading it, without loading path-backed files into memory.
+     *
+     * @param file   the file
+     * @param writer the writer, that is not closed
+     *
+     * @throws IOException if the file can not be read or written
+     */
+    static void gzip(MatlabFile file, Writer writer) throws IOException {
+        Writer target = new FilterWriter(writer) {
+            @Override
+            public void close() throws IOException {
+                flush();
             }
+        };
+        try (InputStream in = file.openStream();
+             OutputStream out = new GZIPOutputStream(
+                     BaseEncoding.base64().encodingStream(target))) {
+            ByteStreams.copy(in, out);
         }
     }
 
@@ -259,7 +559,83 @@ public class MatlabValueSerializer implements JsonSerializer<MatlabValue>,
 
         @Override
         public JsonElement visit(MatlabMatrix matrix) {
-            return ctx.serialize(matrix.value());
+            double[] values = matrix.getColumnMajor();
+            int rows = matrix.getRows();
+            JsonArray array = new JsonArray();
+            for (int i = 0; i < rows; i++) {
+                JsonArray row = new JsonArray();
+                for (int j = 0; j < matrix.getColumns(); j++) {
+                    row.add(ctx.serialize(values[j * rows + i]));
+                }
+                array.add(row);
+            }
+            return array;
+        }
+
+        @Override
+        public JsonElement visit(MatlabNDArray array) {
+            JsonObject json = new JsonObject();
+            json.add(MatlabJSONConstants.SIZE, ctx.serialize(array.getShape()));
+            json.add(MatlabJSONConstants.VALUES,
+                     ctx.serialize(array.getColumnMajor()));
+            return json;
+        }
+
+        @Override
+        public JsonElement visit(MatlabIntegerArray array) {
+            JsonArray values = new JsonArray();
+            for (int i = 0; i < array.size(); i++) {
+                long v = array.getLong(i);
+                if (v < 0 && array.isUnsigned()) {
+                    values.add(new JsonPrimitive(new BigInteger(array.toString(i))));
+                } else {
+                    values.add(new JsonPrimitive(v));
+                }
+            }
+            return typed(array, values);
+        }
+
+        @Override
+        public JsonElement visit(MatlabSingleArray array) {
+            JsonArray values = new JsonArray();
+            for (float v : array.getColumnMajor()) {
+                if (Float.isNaN(v) || Float.isInfinite(v)) {
+                    values.add(new JsonPrimitive(Float.toString(v)));
+                } else {
+                    values.add(new JsonPrimitive(v));
+                }
+            }
+            return typed(array, values);
+        }
+
+        @Override
+        public JsonElement visit(MatlabLogicalArray array) {
+            JsonObject json = new JsonObject();
+            json.add(MatlabJSONConstants.SIZE, ctx.serialize(array.getShape()));
+            json.addProperty(MatlabJSONConstants.BITS,
+                             pack(array.getBits(), array.size()));
+            return json;
+        }
+
+        @Override
+        public JsonElement visit(MatlabSparseMatrix matrix) {
+            JsonObject json = new JsonObject();
+            json.add(MatlabJSONConstants.SIZE, ctx.serialize(new int[] {
+                matrix.getRows(), matrix.getColumns() }));
+            json.add(MatlabJSONConstants.COLUMN_POINTERS,
+                     ctx.serialize(matrix.getColumnPointers()));
+            json.add(MatlabJSONConstants.ROW_INDICES,
+                     ctx.serialize(matrix.getRowIndices()));
+            json.add(MatlabJSONConstants.VALUES,
+                     ctx.serialize(matrix.getValues()));
+            return json;
+        }
+
+        private JsonElement typed(MatlabTypedArray array, JsonElement values) {
+            JsonObject json = new JsonObject();
+            json.add(MatlabJSONConstants.SIZE, ctx.serialize(array.getShape()));
+            json.add(MatlabJSONConstants.VALUES, values);
+            return json;
         }
 
         @Override
@@ -287,10 +663,67 @@ public class MatlabValueSerializer implements JsonSerializer<MatlabValue>,
             return object;
         }
 
+        @Override
+        public JsonElement visit(MatlabStructArray array) {
+            JsonObject fields = new JsonObject();
+            for (MatlabString field : array.getFieldNames()) {
+                JsonArray column = new JsonArray();
+                for (MatlabValue v : array.getColumn(field)) {
+                    column.add(serialize(v, MatlabValue.class, ctx));
+                }
+                fields.add(field.value(), column);
+            }
+            JsonObject json = new JsonObject();
+            json.add(MatlabJSONConstants.SIZE, ctx.serialize(array.getShape()));
+            json.add(MatlabJSONConstants.FIELDS, fields);
+            return json;
+        }
+
+        @Override
+        public JsonElement visit(MatlabTable table) {
+            int rows = table.getRowCount();
+            JsonArray columns = new JsonArray();
+            for (int c = 0; c < table.getColumnCount(); ++c) {
+                JsonObject column = new JsonObject();
+                column.addProperty(MatlabJSONConstants.NAME,
+                                   table.getColumnNames().get(c));
+                column.addProperty(MatlabJSONConstants.TYPE,
+                                   table.getColumnType(c).toString());
+                if (table.getColumnType(c) == ColumnType.LOGICAL) {
+                    column.addProperty(MatlabJSONConstants.BITS,
+                                       pack(table.getLogicalColumn(c), rows));
+                    columns.add(column);
+                    continue;
+                }
+                JsonArray values = new JsonArray();
+                for (int r = 0; r < rows; ++r) {
+                    switch (table.getColumnType(c)) {
+                        case NUMERIC:
+                            values.add(visit(new MatlabScalar(
+                                    table.getDouble(r, c))));
+                            break;
+                        case STRING:
+                            values.add(new JsonPrimitive(table.getString(r, c)));
+                            break;
+                        default:
+                            values.add(new JsonPrimitive(ISODateTimeFormat
+                                    .dateTime().withZoneUTC()
+                                    .print(table.getDateTime(r, c))));
+                    }
+                }
+                column.add(MatlabJSONConstants.VALUES, values);
+                columns.add(column);
+            }
+            JsonObject json = new JsonObject();
+            json.addProperty(MatlabJSONConstants.ROWS, rows);
+            json.add(MatlabJSONConstants.COLUMNS, columns);
+            return json;
+        }
+
         @Override
         public JsonElement visit(MatlabFile file) {
             try {
-                return ctx.serialize(gzip(file.getContent()));
+                return ctx.serialize(gzip(file));
             } catch (IOException ex) {
                 throw new RuntimeException(ex);
             }
@@ -55,4 +55,32 @@ public class AbstractMatlabValueVisitor implements MatlabValueVisitor {
     public void visit(MatlabDateTime time) {
     }
 
+    @Override
+    public void visit(MatlabNDArray array) {
+    }
+
+    @Override
+    public void visit(MatlabIntegerArray array) {
+    }
+
+    @Override
+    public void visit(MatlabSingleArray array) {
+    }
+
+    @Override
+    public void visit(MatlabLogicalArray array) {
+    }
+
+    @Override
+    public void visit(MatlabSparseMatrix matrix) {
+    }
+
+    @Override
+    public void visit(MatlabStructArray array) {
+    }
+
+    @Override
+    public void visit(MatlabTable table) {
+    }
+
 }
@@ -18,7 +18,7 @@ package org.n52.matlab.connector.value;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.Arrays;
+import java.nio.DoubleBuffer;
 
 import org.joda.time.DateTime;
 
@@ -31,7 +31,7 @@ import org.joda.time.DateTime;
 // TODO: add support for struct
 public class MatlabArray extends MatlabValue {
 
-    private final double[] array;
+    private final DoubleBuffer array;
 
     /**
      * Creates a new <code>MLArray</code> instance from the given
@@ -40,7 +40,18 @@ public class MatlabArray extends MatlabValue {
      * @param array the <code>double</code> array
      */
     public MatlabArray(double[] array) {
-        this.array = checkNotNull(array);
+        this.array = DoubleBuffer.wrap(checkNotNull(array));
+    }
+
+    /**
+     * Creates a new <code>MLArray</code> instance backed by the remaining
+     * elements of the given buffer, e.g. a direct or memory-mapped buffer
+     * created by {@link MatlabBuffers}. The elements are not copied.
+     *
+     * @param array the buffer
+     */
+    public MatlabArray(DoubleBuffer array) {
+        this.array = checkNotNull(array).slice();
     }
 
     /**
@@ -55,34 +66,56 @@ public class MatlabArray extends MatlabValue {
         for (int i = 0; i < array.length; i++) {
             values[i] = checkNotNull(array[i]);
         }
-        this.array = values;
+        this.array = DoubleBuffer.wrap(values);
     }
 
     /**
-     * Returns the array.
+     * Returns the array. For arrays created from a <code>double</code> array
+     * this is that array, otherwise the elements are copied to the heap on
+     * every invocation; prefer {@link #getBuffer()} or {@link #get(int)}.
      *
      * @return the array
      */
     public double[] value() {
-        return array;
+        return MatlabBuffers.toArray(array);
+    }
+
+    /**
+     * Returns a view of the elements that shares the storage of this array.
+     *
+     * @return the buffer
+     */
+    public DoubleBuffer getBuffer() {
+        return array.duplicate();
+    }
+
+    /**
+     * Returns the element at the given index.
+     *
+     * @param index the zero-based index
+     *
+     * @return the element
+     */
+    public double get(int index) {
+        return array.get(index);
     }
 
     public int size() {
-        return array.length;
+        return array.limit();
     }
 
     @Override
     public boolean equals(Object o) {
         if (o instanceof MatlabArray) {
             MatlabArray other = (MatlabArray) o;
-            return Arrays.equals(value(), other.value());
+            return MatlabBuffers.equals(array, other.array);
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(value());
+        return MatlabBuffers.hashCode(array);
     }
 
     @Override
@@ -101,16 +134,16 @@ public class MatlabArray extends MatlabValue {
     }
 
     public MatlabDateTime toDateTime() {
-        if (value().length != 6) {
+        if (size() != 6) {
             throw new UnsupportedOperationException("invalid array length");
         }
-        int year = (int) array[0];
-        int month = (int) array[1];
-        int day = (int) array[2];
-        int hour = (int) array[3];
-        int minute = (int) array[4];
-        int second = (int) Math.floor(array[5]);
-        int millis = (int) ((array[5] - second) * 1000);
+        int year = (int) get(0);
+        int month = (int) get(1);
+        int day = (int) get(2);
+        int hour = (int) get(3);
+        int minute = (int) get(4);
+        int second = (int) Math.floor(get(5));
+        int millis = (int) ((get(5) - second) * 1000);
         return new MatlabDateTime(new DateTime(year, month, day, hour, minute, second, millis));
     }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.value;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Creates buffers that keep the elements of large numeric values outside of
+ * the Java heap, either in direct memory or in a memory-mapped file. Use them
+ * with {@link MatlabArray#MatlabArray(DoubleBuffer)} and
+ * {@link MatlabMatrix#MatlabMatrix(DoubleBuffer, int, int)}.
+ *
+ * @author Christian Autermann
+ */
+public final class MatlabBuffers {
+    private static final int BYTES = Double.SIZE / Byte.SIZE;
+    private static final int MAX_LENGTH = Integer.MAX_VALUE / BYTES;
+
+    private MatlabBuffers() {
+    }
+
+    /**
+     * Allocates a direct buffer in native byte order.
+     *
+     * @param length the number of elements
+     *
+     * @return the buffer
+     */
+    public static DoubleBuffer allocateDirect(int length) {
+        checkArgument(length >= 0 && length <= MAX_LENGTH);
+        return ByteBuffer.allocateDirect(length * BYTES)
+                .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+    }
+
+    /**
+     * Maps a region of a file containing little-endian doubles, the layout
+     * <code>fwrite(fid, x, 'double')</code> produces. In
+     * {@link MapMode#READ_WRITE} mode the file is created or extended as
+     * needed and changes to the buffer are written back to it.
+     *
+     * @param file     the file
+     * @param mode     the mapping mode
+     * @param position the offset of the region in bytes
+     * @param length   the number of elements
+     *
+     * @return the buffer
+     *
+     * @throws IOException if the file can not be mapped
+     */
+    public static DoubleBuffer map(Path file, MapMode mode, long position,
+                                   int length) throws IOException {
+        checkNotNull(file);
+        checkNotNull(mode);
+        checkArgument(position >= 0);
+        checkArgument(length >= 0 && length <= MAX_LENGTH);
+        OpenOption[] options = mode == MapMode.READ_ONLY
+                               ? new OpenOption[] { StandardOpenOption.READ }
+                               : new OpenOption[] { StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.CREATE };
+        // the mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            return channel.map(mode, position, (long) length * BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+    }
+
+    /**
+     * Returns the remaining elements of the buffer as an array. If the buffer
+     * wraps an array of exactly these elements, that array is returned.
+     */
+    static double[] toArray(DoubleBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 &&
+            buffer.position() == 0 &&
+            buffer.array().length == buffer.remaining()) {
+            return buffer.array();
+        }
+        double[] array = new double[buffer.remaining()];
+        buffer.duplicate().get(array);
+        return array;
+    }
+
+    /**
+     * Compares the remaining elements like {@link java.util.Arrays#equals(
+     * double[], double[])}.
+     */
+    static boolean equals(DoubleBuffer a, DoubleBuffer b) {
+        int length = a.remaining();
+        if (length != b.remaining()) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (Double.doubleToLongBits(a.get(a.position() + i)) !=
+                Double.doubleToLongBits(b.get(b.position() + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes the remaining elements like {@link java.util.Arrays#hashCode(
+     * double[])}.
+     */
+    static int hashCode(DoubleBuffer buffer) {
+        int hash = 1;
+        for (int i = buffer.position(); i < buffer.limit(); ++i) {
+            long bits = Double.doubleToLongBits(buffer.get(i));
+            hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+        }
+        return hash;
+    }
+}
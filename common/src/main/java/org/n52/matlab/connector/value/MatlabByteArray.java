@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.value;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+/**
+ * Represents a MATLAB <code>int8</code> or <code>uint8</code> array.
+ *
+ * @author Christian Autermann
+ */
+public class MatlabByteArray extends MatlabIntegerArray {
+    private final byte[] values;
+
+    /**
+     * Creates a new array from the given elements in column-major order. The
+     * array is not copied.
+     *
+     * @param columnMajor the elements in column-major order
+     * @param unsigned    if the elements are <code>uint8</code>
+     * @param shape       the size of each dimension, at least two
+     */
+    public MatlabByteArray(byte[] columnMajor, boolean unsigned, int... shape) {
+        super(checkNotNull(columnMajor).length, unsigned, shape);
+        this.values = columnMajor;
+    }
+
+    /**
+     * Returns the elements in column-major order. This is the backing array
+     * of this array.
+     *
+     * @return the elements
+     */
+    public byte[] getColumnMajor() {
+        return values;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public long getLong(int index) {
+        return isUnsigned() ? values[index] & 0xFFL : values[index];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof MatlabByteArray) {
+            MatlabByteArray other = (MatlabByteArray) o;
+            return isUnsigned() == other.isUnsigned() && hasShape(other) &&
+                   Arrays.equals(values, other.values);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * shapeHashCode() + Arrays.hashCode(values)) +
+               (isUnsigned() ? 1 : 0);
+    }
+
+    @Override
+    public MatlabType getType() {
+        return isUnsigned() ? MatlabType.UINT8 : MatlabType.INT8;
+    }
+}
@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.stream.Stream;
 
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
 /**
@@ -50,6 +51,21 @@ public class MatlabCell extends MatlabValue implements Iterable<MatlabValue> {
         this.value = Lists.newArrayList(checkNotNull(values));
     }
 
+    private MatlabCell(ImmutableList<MatlabValue> values) {
+        this.value = values;
+    }
+
+    /**
+     * Creates a cell that can not be added to.
+     *
+     * @param values the elements
+     *
+     * @return the cell
+     */
+    static MatlabCell unmodifiable(Iterable<? extends MatlabValue> values) {
+        return new MatlabCell(ImmutableList.<MatlabValue>copyOf(values));
+    }
+
     public MatlabCell add(MatlabValue value) {
         this.value.add(checkNotNull(value));
         return this;
@@ -26,6 +26,7 @@ import com.google.common.base.Joiner.MapJoiner;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Ints;
 
 /**
  * TODO JavaDoc
@@ -71,10 +72,16 @@ public class MatlabEvalStringVisitor
     public String visit(MatlabMatrix value) {
         StringBuilder builder = new StringBuilder();
         builder.append("[ ");
-        double[][] matrix = value.value();
-        for (int i = 0; i < matrix.length; ++i) {
-            COMMA_JOINER.appendTo(builder, toString(matrix[i]));
-            if (i < matrix.length - 1) {
+        double[] values = value.getColumnMajor();
+        int rows = value.getRows();
+        for (int i = 0; i < rows; ++i) {
+            for (int j = 0; j < value.getColumns(); ++j) {
+                if (j > 0) {
+                    builder.append(", ");
+                }
+                builder.append(toString(values[j * rows + i]));
+            }
+            if (i < rows - 1) {
                 builder.append("; ");
             }
         }
@@ -114,8 +121,12 @@ public class MatlabEvalStringVisitor
     public String visit(MatlabStruct value) {
         StringBuilder builder = new StringBuilder();
         builder.append("struct(");
-        STRUCT_JOINER.appendTo(builder, Iterables
-                .transform(value.value().entrySet(), mapTransformer()));
+        // cells have to be wrapped to not create a struct array
+        STRUCT_JOINER.appendTo(builder, Iterables.transform(
+                value.value().entrySet(), e -> Maps.immutableEntry(
+                        e.getKey().accept(this), e.getValue().isCell()
+                        ? "{ " + e.getValue().accept(this) + " }"
+                        : e.getValue().accept(this))));
         builder.append(')');
         return builder.toString();
     }
@@ -127,14 +138,14 @@ public class MatlabEvalStringVisitor
 
     @Override
     public String visit(MatlabFile file) {
-        if (file.isLoaded()) {
+        if (file.isSaved()) {
+            return toString(file.getFile().toAbsolutePath().toString());
+        } else {
             try {
                 return Arrays.toString(file.getContent());
             } catch (IOException ex) {
                 throw new RuntimeException(ex);
             }
-        } else {
-           return file.getFile().toAbsolutePath().toString();
         }
     }
 
@@ -157,6 +168,179 @@ public class MatlabEvalStringVisitor
         }
     }
 
+    @Override
+    public String visit(MatlabNDArray value) {
+        StringBuilder sb = new StringBuilder("reshape([ ");
+        COMMA_JOINER.appendTo(sb, toString(value.getColumnMajor()));
+        sb.append(" ], ");
+        COMMA_JOINER.appendTo(sb, Ints.asList(value.getShape()));
+        return sb.append(")").toString();
+    }
+
+    @Override
+    public String visit(MatlabIntegerArray value) {
+        String[] elements = new String[value.size()];
+        for (int i = 0; i < elements.length; ++i) {
+            elements[i] = value.toString(i);
+        }
+        return toString(value, Arrays.asList(elements));
+    }
+
+    @Override
+    public String visit(MatlabSingleArray value) {
+        String[] elements = new String[value.size()];
+        for (int i = 0; i < elements.length; ++i) {
+            float v = value.getColumnMajor()[i];
+            elements[i] = Float.isNaN(v) || Float.isInfinite(v)
+                          ? toString((double) v) : Float.toString(v);
+        }
+        return toString(value, Arrays.asList(elements));
+    }
+
+    @Override
+    public String visit(MatlabLogicalArray value) {
+        String[] elements = new String[value.size()];
+        for (int i = 0; i < elements.length; ++i) {
+            elements[i] = value.get(i) ? "1" : "0";
+        }
+        return toString(value, Arrays.asList(elements));
+    }
+
+    @Override
+    public String visit(MatlabSparseMatrix value) {
+        int nnz = value.getNonZeros();
+        double[] i = new double[nnz];
+        double[] j = new double[nnz];
+        int[] pointers = value.getColumnPointers();
+        int[] rows = value.getRowIndices();
+        for (int c = 0; c < value.getColumns(); ++c) {
+            for (int k = pointers[c]; k < pointers[c + 1]; ++k) {
+                i[k] = rows[k] + 1;
+                j[k] = c + 1;
+            }
+        }
+        StringBuilder sb = new StringBuilder("sparse([ ");
+        COMMA_JOINER.appendTo(sb, toString(i)).append(" ], [ ");
+        COMMA_JOINER.appendTo(sb, toString(j)).append(" ], [ ");
+        COMMA_JOINER.appendTo(sb, toString(value.getValues())).append(" ], ");
+        return sb.append(value.getRows()).append(", ")
+                .append(value.getColumns()).append(')').toString();
+    }
+
+    /**
+     * Creates the struct array from one cell of values per field, reshaping
+     * it if it is not a row vector.
+     */
+    @Override
+    public String visit(MatlabStructArray value) {
+        int[] shape = value.getShape();
+        StringBuilder sb = new StringBuilder();
+        if (value.getFieldNames().isEmpty()) {
+            sb.append("repmat(struct(), ");
+            return COMMA_JOINER.appendTo(sb, Ints.asList(shape))
+                    .append(')').toString();
+        }
+        boolean row = shape.length == 2 && shape[0] == 1 && shape[1] > 0;
+        if (!row) {
+            sb.append("reshape(");
+        }
+        sb.append("struct(");
+        boolean first = true;
+        for (MatlabString field : value.getFieldNames()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+            sb.append(visit(field)).append(", { ");
+            COMMA_JOINER.appendTo(sb, Iterables
+                    .transform(value.getColumn(field), this)).append(" }");
+        }
+        sb.append(')');
+        if (!row) {
+            COMMA_JOINER.appendTo(sb.append(", "), Ints.asList(shape))
+                    .append(')');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String visit(MatlabTable value) {
+        if (value.getColumnCount() == 0) {
+            return "table()";
+        }
+        int rows = value.getRowCount();
+        StringBuilder sb = new StringBuilder("table(");
+        for (int c = 0; c < value.getColumnCount(); ++c) {
+            String[] elements = new String[rows];
+            switch (value.getColumnType(c)) {
+                case NUMERIC:
+                    for (int r = 0; r < rows; ++r) {
+                        elements[r] = toString(value.getDouble(r, c));
+                    }
+                    sb.append(column(elements, false));
+                    break;
+                case STRING:
+                    for (int r = 0; r < rows; ++r) {
+                        elements[r] = toString(value.getString(r, c));
+                    }
+                    sb.append(column(elements, true));
+                    break;
+                case DATE_TIME:
+                    for (int r = 0; r < rows; ++r) {
+                        elements[r] = toString(MatlabTable
+                                .toDatenum(value.getDateTime(r, c)));
+                    }
+                    sb.append("datetime(").append(column(elements, false))
+                            .append(", 'ConvertFrom', 'datenum')");
+                    break;
+                default:
+                    for (int r = 0; r < rows; ++r) {
+                        elements[r] = value.getBoolean(r, c) ? "1" : "0";
+                    }
+                    sb.append("logical(").append(column(elements, false))
+                            .append(')');
+            }
+            sb.append(", ");
+        }
+        sb.append("'VariableNames', { ");
+        COMMA_JOINER.appendTo(sb, Iterables.transform(value.getColumnNames(),
+                                                      this::toString));
+        return sb.append(" })").toString();
+    }
+
+    /**
+     * Creates a column vector or column cell, which has to be reshaped if it
+     * is empty.
+     */
+    private String column(String[] elements, boolean cell) {
+        String open = cell ? "{ " : "[ ";
+        String close = cell ? " }" : " ]";
+        if (elements.length == 0) {
+            return "reshape(" + open + close.trim() + ", 0, 1)";
+        }
+        return open + Joiner.on("; ").join(elements) + close;
+    }
+
+    /**
+     * Creates the expression for a typed array, reshaping it if it is not a
+     * row vector.
+     */
+    private String toString(MatlabTypedArray value, Iterable<String> elements) {
+        StringBuilder sb = new StringBuilder(value.getMatlabClass())
+                .append('(');
+        int[] shape = value.getShape();
+        boolean row = shape.length == 2 && shape[0] == 1;
+        if (!row) {
+            sb.append("reshape(");
+        }
+        COMMA_JOINER.appendTo(sb.append("[ "), elements).append(" ]");
+        if (!row) {
+            COMMA_JOINER.appendTo(sb.append(", "), Ints.asList(shape))
+                    .append(')');
+        }
+        return sb.append(')').toString();
+    }
+
     public static MatlabEvalStringVisitor create() {
         return new MatlabEvalStringVisitor();
     }
@@ -18,20 +18,40 @@ package org.n52.matlab.connector.value;
 
 import static com.google.common.base.Preconditions.checkState;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Objects;
 
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+
 /**
- * TODO JavaDoc
+ * A file, either held in memory or backed by a path. Path-backed files are
+ * never read into memory unless {@link #load()} or {@link #getContent()} is
+ * called; use {@link #openStream()} or {@link #openChannel()} to access large
+ * files. Files returned as results are temporary files that should be
+ * deleted when they are no longer needed.
+ * <p>
+ * Files are compared by the SHA-256 digest of their content, which is
+ * computed once; the content of a file is assumed not to change afterwards.
  *
  * @author Christian Autermann
  */
 public class MatlabFile extends MatlabValue {
+    private static final String SPOOL_PREFIX = "matlab-connector-file";
     private Path file;
     private byte[] content;
+    private boolean temporary;
+    private volatile HashCode digest;
 
     public MatlabFile(Path file) {
         this(Objects.requireNonNull(file), null);
@@ -67,12 +87,92 @@ public class MatlabFile extends MatlabValue {
         return this;
     }
 
+    /**
+     * Writes this file to the given location. Path-backed files are copied
+     * channel to channel without reading them into memory.
+     *
+     * @param file the location
+     *
+     * @return this
+     *
+     * @throws IOException if the file can not be written
+     */
     public MatlabFile save(Path file)
             throws IOException {
         Objects.requireNonNull(file);
-        checkState(isLoaded());
-        Files.write(file, content);
+        checkState(isLoaded() || isSaved());
+        if (isLoaded()) {
+            Files.write(file, content);
+        } else if (!file.equals(this.file)) {
+            copy(this.file, file);
+        }
+        if (temporary && !file.equals(this.file)) {
+            Files.deleteIfExists(this.file);
+        }
         this.file = file;
+        this.temporary = false;
+        return this;
+    }
+
+    /**
+     * Moves or copies a path-backed file to a new temporary file, so that its
+     * original location can be reused. The move is a rename if both are on
+     * the same file system. The temporary file is removed by
+     * {@link #delete()}.
+     *
+     * @param copy if the original file should be kept
+     *
+     * @return this
+     *
+     * @throws IOException if the file can not be moved or copied
+     */
+    public MatlabFile spool(boolean copy)
+            throws IOException {
+        checkState(isSaved());
+        if (!temporary) {
+            Path spool = Files.createTempFile(SPOOL_PREFIX, null);
+            if (copy) {
+                copy(file, spool);
+            } else {
+                Files.move(file, spool, StandardCopyOption.REPLACE_EXISTING);
+            }
+            this.file = spool;
+            this.temporary = true;
+        }
+        return this;
+    }
+
+    private static void copy(Path source, Path target)
+            throws IOException {
+        try (FileChannel in = FileChannel.open(source);
+             FileChannel out = FileChannel.open(target,
+                     StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            for (long position = 0; position < size;) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    /**
+     * @return if this file is backed by a temporary file created by
+     *         {@link #spool(boolean)}
+     */
+    public boolean isTemporary() {
+        return temporary;
+    }
+
+    /**
+     * Forgets the location this file was saved to without deleting it.
+     *
+     * @return this
+     */
+    public MatlabFile detach() {
+        checkState(isLoaded());
+        this.file = null;
+        this.temporary = false;
         return this;
     }
 
@@ -81,10 +181,12 @@ public class MatlabFile extends MatlabValue {
         if (file != null) {
             Files.delete(file);
             file = null;
+            temporary = false;
         }
         return this;
     }
 
+
     @Override
     public void accept(MatlabValueVisitor visitor) {
         visitor.visit(this);
@@ -104,6 +206,13 @@ public class MatlabFile extends MatlabValue {
         return file;
     }
 
+    /**
+     * Returns the content, loading it into memory if necessary.
+     *
+     * @return the content
+     *
+     * @throws IOException if the file can not be read
+     */
     public byte[] getContent()
             throws IOException {
         if (!isLoaded()) {
@@ -112,12 +221,78 @@ public class MatlabFile extends MatlabValue {
         return content;
     }
 
+    /**
+     * @return the size of the content in bytes
+     *
+     * @throws IOException if the size can not be determined
+     */
+    public long size()
+            throws IOException {
+        return isLoaded() ? content.length : Files.size(file);
+    }
+
+    /**
+     * Opens a stream of the content without loading it into memory.
+     *
+     * @return the stream
+     *
+     * @throws IOException if the file can not be opened
+     */
+    public InputStream openStream()
+            throws IOException {
+        return isLoaded() ? new ByteArrayInputStream(content)
+               : Files.newInputStream(file);
+    }
+
+    /**
+     * Opens a channel of the content without loading it into memory. For
+     * path-backed files this is a {@link FileChannel}.
+     *
+     * @return the channel
+     *
+     * @throws IOException if the file can not be opened
+     */
+    public ReadableByteChannel openChannel()
+            throws IOException {
+        return isLoaded() ? Channels.newChannel(openStream())
+               : FileChannel.open(file);
+    }
+
+    private ByteSource asByteSource() {
+        return new ByteSource() {
+            @Override
+            public InputStream openStream() throws IOException {
+                return MatlabFile.this.openStream();
+            }
+        };
+    }
+
+    /**
+     * Returns the SHA-256 digest of the content. The content is read only the
+     * first time the digest is requested.
+     *
+     * @return the digest
+     *
+     * @throws IOException if the file can not be read
+     */
+    public HashCode getDigest()
+            throws IOException {
+        HashCode hash = digest;
+        if (hash == null) {
+            digest = hash = asByteSource().hash(Hashing.sha256());
+        }
+        return hash;
+    }
+
     @Override
     public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
         if (o instanceof MatlabFile) {
             MatlabFile that = (MatlabFile) o;
             try {
-                return Arrays.equals(this.getContent(), that.getContent());
+                return this.getDigest().equals(that.getDigest());
             } catch (IOException ex) {
                 throw new RuntimeException(ex);
             }
@@ -129,7 +304,7 @@ public class MatlabFile extends MatlabValue {
     @Override
     public int hashCode() {
         try {
-            return Objects.hash(getFile(), getContent());
+            return getDigest().asInt();
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
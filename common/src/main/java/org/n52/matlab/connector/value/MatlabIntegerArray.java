@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.value;
+
+/**
+ * Base class for arrays of the MATLAB integer classes. Unsigned values are
+ * stored with their bit pattern in the signed Java type of the same width.
+ *
+ * @author Christian Autermann
+ */
+public abstract class MatlabIntegerArray extends MatlabTypedArray {
+    private final boolean unsigned;
+
+    protected MatlabIntegerArray(int length, boolean unsigned, int[] shape) {
+        super(length, shape);
+        this.unsigned = unsigned;
+    }
+
+    /**
+     * Checks if the elements are unsigned.
+     *
+     * @return <code>true</code> if the elements are unsigned
+     */
+    public boolean isUnsigned() {
+        return unsigned;
+    }
+
+    /**
+     * Returns the element at the given linear index. Unsigned 64 bit values
+     * exceeding {@link Long#MAX_VALUE} are returned as their bit pattern.
+     *
+     * @param index the zero-based linear index
+     *
+     * @return the element
+     */
+    public abstract long getLong(int index);
+
+    /**
+     * Returns the element at the given linear index in decimal notation.
+     *
+     * @param index the zero-based linear index
+     *
+     * @return the element
+     */
+    public String toString(int index) {
+        return Long.toString(getLong(index));
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return getLong(index);
+    }
+
+    @Override
+    public void accept(MatlabValueVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public <T> T accept(ReturningMatlabValueVisitor<T> visitor) {
+        return visitor.visit(this);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.value;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+/**
+ * Represents a MATLAB <code>logical</code> array. Single logical values are
+ * usually represented by {@link MatlabBoolean}. The elements are stored as a
+ * bitset in column-major order: element <code>i</code> is bit
+ * <code>i % 64</code> of word <code>i / 64</code>.
+ *
+ * @author Christian Autermann
+ */
+public class MatlabLogicalArray extends MatlabTypedArray {
+    private final long[] bits;
+    private final int size;
+
+    /**
+     * Creates a new array from the given elements in column-major order. The
+     * elements are packed into a bitset.
+     *
+     * @param columnMajor the elements in column-major order
+     * @param shape       the size of each dimension, at least two
+     */
+    public MatlabLogicalArray(boolean[] columnMajor, int... shape) {
+        super(checkNotNull(columnMajor).length, shape);
+        this.size = columnMajor.length;
+        this.bits = new long[words(size)];
+        for (int i = 0; i < size; ++i) {
+            if (columnMajor[i]) {
+                bits[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * Creates a new array from the given bitset. The bitset is not copied.
+     *
+     * @param bits  the elements in column-major order, unused bits of the
+     *              last word have to be clear
+     * @param shape the size of each dimension, at least two
+     */
+    public MatlabLogicalArray(long[] bits, int... shape) {
+        super(numel(shape), shape);
+        this.size = numel(shape);
+        checkArgument(checkNotNull(bits).length == words(size),
+                      "Expected %s words for %s elements but got %s.",
+                      words(size), size, bits.length);
+        checkArgument(size % 64 == 0 || bits[bits.length - 1] >>> size == 0,
+                      "Unused bits have to be clear.");
+        this.bits = bits;
+    }
+
+    private static int numel(int[] shape) {
+        int numel = 1;
+        for (int dim : checkNotNull(shape)) {
+            numel *= dim;
+        }
+        return numel;
+    }
+
+    /**
+     * Returns the number of 64 bit words needed for the given number of
+     * elements.
+     *
+     * @param size the number of elements
+     *
+     * @return the number of words
+     */
+    public static int words(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * Returns the elements in column-major order. The array is unpacked on
+     * every invocation, prefer {@link #get(int)} or {@link #getBits()}.
+     *
+     * @return the elements
+     */
+    public boolean[] getColumnMajor() {
+        boolean[] values = new boolean[size];
+        for (int i = 0; i < size; ++i) {
+            values[i] = get(i);
+        }
+        return values;
+    }
+
+    /**
+     * Returns the bitset. This is the backing array of this array.
+     *
+     * @return the bitset
+     */
+    public long[] getBits() {
+        return bits;
+    }
+
+    /**
+     * Returns the element at the given linear index.
+     *
+     * @param index the zero-based linear index
+     *
+     * @return the element
+     */
+    public boolean get(int index) {
+        checkElementIndex(index, size);
+        return (bits[index >>> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * Returns the number of <code>true</code> elements.
+     *
+     * @return the number of <code>true</code> elements
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (long word : bits) {
+            cardinality += Long.bitCount(word);
+        }
+        return cardinality;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return get(index) ? 1 : 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof MatlabLogicalArray) {
+            MatlabLogicalArray other = (MatlabLogicalArray) o;
+            return hasShape(other) && Arrays.equals(bits, other.bits);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * shapeHashCode() + Arrays.hashCode(bits);
+    }
+
+    @Override
+    public void accept(MatlabValueVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public <T> T accept(ReturningMatlabValueVisitor<T> visitor) {
+        return visitor.visit(this);
+    }
+
+    @Override
+    public MatlabType getType() {
+        return MatlabType.LOGICAL;
+    }
+}
@@ -16,18 +16,23 @@
  */
 package org.n52.matlab.connector.value;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.Arrays;
+import java.nio.DoubleBuffer;
 
 /**
- * Represents a MATLAB value.
+ * Represents a MATLAB value. The elements are stored in a single array in
+ * column-major order, the same layout MATLAB uses.
  *
  * @author Richard Jones
  *
  */
 public class MatlabMatrix extends MatlabValue {
-    private final double[][] value;
+    private final DoubleBuffer values;
+    private final int rows;
+    private final int columns;
 
     /**
      * Creates a new <code>MLMatrix</code> instance from the given
@@ -36,7 +41,17 @@ public class MatlabMatrix extends MatlabValue {
      * @param matrix the <code>double</code> value
      */
     public MatlabMatrix(double[][] matrix) {
-        this.value = checkNotNull(matrix);
+        this.rows = checkNotNull(matrix).length;
+        this.columns = rows == 0 ? 0 : checkNotNull(matrix[0]).length;
+        double[] values = new double[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            checkArgument(checkNotNull(matrix[i]).length == columns,
+                          "Matrix is not rectangular.");
+            for (int j = 0; j < columns; j++) {
+                values[j * rows + i] = matrix[i][j];
+            }
+        }
+        this.values = DoubleBuffer.wrap(values);
     }
 
     /**
@@ -46,37 +61,134 @@ public class MatlabMatrix extends MatlabValue {
      * @param matrix the <code>Double</code> value
      */
     public MatlabMatrix(Double[][] matrix) {
-        double[][] values = new double[checkNotNull(matrix).length][];
-        for (int i = 0; i < matrix.length; i++) {
-            values[i] = new double[checkNotNull(matrix[i]).length];
-            for (int j = 0; j < matrix[i].length; j++) {
-                values[i][j] = checkNotNull(matrix[i][j]).doubleValue();
+        this.rows = checkNotNull(matrix).length;
+        this.columns = rows == 0 ? 0 : checkNotNull(matrix[0]).length;
+        double[] values = new double[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            checkArgument(checkNotNull(matrix[i]).length == columns,
+                          "Matrix is not rectangular.");
+            for (int j = 0; j < columns; j++) {
+                values[j * rows + i] = checkNotNull(matrix[i][j]).doubleValue();
             }
         }
-        this.value = values;
+        this.values = DoubleBuffer.wrap(values);
+    }
+
+    /**
+     * Creates a new <code>MLMatrix</code> instance from the given elements in
+     * column-major order. The array is not copied.
+     *
+     * @param columnMajor the elements in column-major order
+     * @param rows        the number of rows
+     * @param columns     the number of columns
+     */
+    public MatlabMatrix(double[] columnMajor, int rows, int columns) {
+        this(DoubleBuffer.wrap(checkNotNull(columnMajor)), rows, columns);
+    }
+
+    /**
+     * Creates a new <code>MLMatrix</code> instance backed by the remaining
+     * elements of the given buffer in column-major order, e.g. a direct or
+     * memory-mapped buffer created by {@link MatlabBuffers}. The elements are
+     * not copied.
+     *
+     * @param columnMajor the elements in column-major order
+     * @param rows        the number of rows
+     * @param columns     the number of columns
+     */
+    public MatlabMatrix(DoubleBuffer columnMajor, int rows, int columns) {
+        checkArgument(rows >= 0 && columns >= 0);
+        checkArgument(checkNotNull(columnMajor).remaining() == rows * columns,
+                      "Expected %s elements for a %sx%s matrix but got %s.",
+                      rows * columns, rows, columns, columnMajor.remaining());
+        this.values = columnMajor.slice();
+        this.rows = rows;
+        this.columns = columns;
     }
 
     /**
-     * Returns the value.
+     * Returns the value as an array of rows. The array is created on every
+     * invocation, prefer {@link #getColumnMajor()} or
+     * {@link #get(int, int)}.
      *
      * @return the value
      */
     public double[][] value() {
-        return value;
+        double[][] matrix = new double[rows][columns];
+        for (int j = 0; j < columns; j++) {
+            for (int i = 0; i < rows; i++) {
+                matrix[i][j] = values.get(j * rows + i);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Returns the elements in column-major order. For matrices created from a
+     * column-major array this is that array, otherwise the elements are
+     * copied to the heap on every invocation; prefer {@link #getBuffer()}.
+     *
+     * @return the elements
+     */
+    public double[] getColumnMajor() {
+        return MatlabBuffers.toArray(values);
+    }
+
+    /**
+     * Returns a view of the elements in column-major order that shares the
+     * storage of this matrix.
+     *
+     * @return the buffer
+     */
+    public DoubleBuffer getBuffer() {
+        return values.duplicate();
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return the number of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the element at the given position.
+     *
+     * @param row    the zero-based row
+     * @param column the zero-based column
+     *
+     * @return the element
+     */
+    public double get(int row, int column) {
+        checkElementIndex(row, rows);
+        checkElementIndex(column, columns);
+        return values.get(column * rows + row);
     }
 
     @Override
     public boolean equals(Object o) {
         if (o instanceof MatlabMatrix) {
             MatlabMatrix other = (MatlabMatrix) o;
-            return Arrays.deepEquals(value(), other.value());
+            return rows == other.rows && columns == other.columns &&
+                   MatlabBuffers.equals(values, other.values);
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(value());
+        return 31 * (31 * rows + columns) + MatlabBuffers.hashCode(values);
     }
 
     @Override
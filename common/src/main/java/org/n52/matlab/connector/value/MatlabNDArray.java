@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.value;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+/**
+ * Represents a N-dimensional MATLAB numeric array. The elements are stored in
+ * a single array in column-major order, the same layout MATLAB uses.
+ *
+ * @author Christian Autermann
+ */
+public class MatlabNDArray extends MatlabValue {
+    private final double[] values;
+    private final int[] shape;
+
+    /**
+     * Creates a new <code>MatlabNDArray</code> instance from the given
+     * elements in column-major order. The array is not copied.
+     *
+     * @param columnMajor the elements in column-major order
+     * @param shape       the size of each dimension, at least two
+     */
+    public MatlabNDArray(double[] columnMajor, int... shape) {
+        checkArgument(checkNotNull(shape).length >= 2,
+                      "At least two dimensions are required.");
+        long numel = 1;
+        for (int dim : shape) {
+            checkArgument(dim >= 0, "Invalid dimension: %s", dim);
+            numel *= dim;
+        }
+        checkArgument(checkNotNull(columnMajor).length == numel,
+                      "Expected %s elements for shape %s but got %s.",
+                      numel, Arrays.toString(shape), columnMajor.length);
+        this.values = columnMajor;
+        this.shape = shape.clone();
+    }
+
+    /**
+     * Returns the elements in column-major order. This is the backing array
+     * of this array.
+     *
+     * @return the elements
+     */
+    public double[] getColumnMajor() {
+        return values;
+    }
+
+    /**
+     * Returns the size of each dimension.
+     *
+     * @return the shape
+     */
+    public int[] getShape() {
+        return shape.clone();
+    }
+
+    /**
+     * Returns the number of dimensions.
+     *
+     * @return the number of dimensions
+     */
+    public int getDimensions() {
+        return shape.length;
+    }
+
+    /**
+     * Returns the size of the given dimension.
+     *
+     * @param dimension the zero-based dimension
+     *
+     * @return the size of the dimension
+     */
+    public int getSize(int dimension) {
+        checkElementIndex(dimension, shape.length);
+        return shape[dimension];
+    }
+
+    /**
+     * Returns the element at the given position.
+     *
+     * @param subscripts the zero-based subscript of every dimension
+     *
+     * @return the element
+     */
+    public double get(int... subscripts) {
+        checkArgument(subscripts.length == shape.length,
+                      "Expected %s subscripts but got %s.",
+                      shape.length, subscripts.length);
+        int index = 0;
+        int stride = 1;
+        for (int i = 0; i < shape.length; ++i) {
+            checkElementIndex(subscripts[i], shape[i]);
+            index += subscripts[i] * stride;
+            stride *= shape[i];
+        }
+        return values[index];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof MatlabNDArray) {
+            MatlabNDArray other = (MatlabNDArray) o;
+            return Arrays.equals(shape, other.shape) &&
+                   Arrays.equals(values, other.values);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(shape) + Arrays.hashCode(values);
+    }
+
+    @Override
+    public void accept(MatlabValueVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public <T> T accept(ReturningMatlabValueVisitor<T> visitor) {
+        return visitor.visit(this);
+    }
+
+    @Override
+    public MatlabType getType() {
+        return MatlabType.ND_ARRAY;
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.value;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+/**
+ * Represents a sparse MATLAB matrix. The non-zero elements are stored in
+ * compressed sparse column (CSC) format, the layout MATLAB uses: the row
+ * indices and values of column <code>j</code> are found between
+ * <code>columnPointers[j]</code> (inclusive) and
+ * <code>columnPointers[j + 1]</code> (exclusive), ordered by row. All indices
+ * are zero-based.
+ *
+ * @author Christian Autermann
+ */
+public class MatlabSparseMatrix extends MatlabValue {
+    private final int rows;
+    private final int columns;
+    private final int[] columnPointers;
+    private final int[] rowIndices;
+    private final double[] values;
+
+    /**
+     * Creates a new sparse matrix from the given CSC arrays. The arrays are
+     * not copied.
+     *
+     * @param rows           the number of rows
+     * @param columns        the number of columns
+     * @param columnPointers the offset of every column in the other arrays
+     *                       followed by the number of non-zero elements
+     * @param rowIndices     the row of every non-zero element
+     * @param values         the non-zero elements
+     */
+    public MatlabSparseMatrix(int rows, int columns, int[] columnPointers,
+                              int[] rowIndices, double[] values) {
+        checkArgument(rows >= 0 && columns >= 0);
+        checkArgument(checkNotNull(columnPointers).length == columns + 1,
+                      "Expected %s column pointers but got %s.",
+                      columns + 1, columnPointers.length);
+        checkArgument(checkNotNull(rowIndices).length ==
+                      checkNotNull(values).length,
+                      "Row indices and values differ in length.");
+        checkArgument(columnPointers[0] == 0 &&
+                      columnPointers[columns] == values.length,
+                      "Column pointers do not cover the values.");
+        for (int j = 0; j < columns; ++j) {
+            checkArgument(columnPointers[j] <= columnPointers[j + 1],
+                          "Column pointers are not ascending.");
+            for (int k = columnPointers[j]; k < columnPointers[j + 1]; ++k) {
+                checkElementIndex(rowIndices[k], rows);
+                checkArgument(k == columnPointers[j] ||
+                              rowIndices[k - 1] < rowIndices[k],
+                              "Row indices are not ascending in column %s.", j);
+            }
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.columnPointers = columnPointers;
+        this.rowIndices = rowIndices;
+        this.values = values;
+    }
+
+    /**
+     * Creates a new sparse matrix from <code>(row, column, value)</code>
+     * triplets in any order. Like MATLAB's <code>sparse</code>, values of
+     * duplicate positions are summed up and zeros are dropped.
+     *
+     * @param rows     the number of rows
+     * @param columns  the number of columns
+     * @param rowIdx   the zero-based rows
+     * @param colIdx   the zero-based columns
+     * @param elements the values
+     *
+     * @return the sparse matrix
+     */
+    public static MatlabSparseMatrix fromTriplets(int rows, int columns,
+                                                  int[] rowIdx, int[] colIdx,
+                                                  double[] elements) {
+        int n = checkNotNull(elements).length;
+        checkArgument(checkNotNull(rowIdx).length == n &&
+                      checkNotNull(colIdx).length == n,
+                      "Triplet arrays differ in length.");
+        // counting sort by column, then by row within every column
+        int[] pointers = new int[columns + 1];
+        for (int k = 0; k < n; ++k) {
+            checkElementIndex(rowIdx[k], rows);
+            checkElementIndex(colIdx[k], columns);
+            ++pointers[colIdx[k] + 1];
+        }
+        for (int j = 0; j < columns; ++j) {
+            pointers[j + 1] += pointers[j];
+        }
+        int[] next = Arrays.copyOf(pointers, columns);
+        int[] order = new int[n];
+        for (int k = 0; k < n; ++k) {
+            order[next[colIdx[k]]++] = k;
+        }
+        int[] r = new int[n];
+        double[] v = new double[n];
+        int[] compressed = new int[columns + 1];
+        int nnz = 0;
+        for (int j = 0; j < columns; ++j) {
+            int from = pointers[j];
+            int to = pointers[j + 1];
+            Integer[] column = new Integer[to - from];
+            for (int k = from; k < to; ++k) {
+                column[k - from] = order[k];
+            }
+            Arrays.sort(column, (a, b) -> Integer.compare(rowIdx[a], rowIdx[b]));
+            int start = nnz;
+            for (int k : column) {
+                if (nnz > start && r[nnz - 1] == rowIdx[k]) {
+                    v[nnz - 1] += elements[k];
+                } else {
+                    r[nnz] = rowIdx[k];
+                    v[nnz++] = elements[k];
+                }
+            }
+            int kept = start;
+            for (int k = start; k < nnz; ++k) {
+                if (v[k] != 0) {
+                    r[kept] = r[k];
+                    v[kept++] = v[k];
+                }
+            }
+            nnz = kept;
+            compressed[j + 1] = nnz;
+        }
+        return new MatlabSparseMatrix(rows, columns, compressed,
+                                      Arrays.copyOf(r, nnz),
+                                      Arrays.copyOf(v, nnz));
+    }
+
+    /**
+     * Creates a new sparse matrix from the non-zero elements of a dense
+     * matrix.
+     *
+     * @param columnMajor the elements in column-major order
+     * @param rows        the number of rows
+     * @param columns     the number of columns
+     *
+     * @return the sparse matrix
+     */
+    public static MatlabSparseMatrix fromDense(double[] columnMajor, int rows,
+                                               int columns) {
+        checkArgument(checkNotNull(columnMajor).length == rows * columns);
+        int nnz = 0;
+        for (double v : columnMajor) {
+            if (v != 0) {
+                ++nnz;
+            }
+        }
+        int[] pointers = new int[columns + 1];
+        int[] r = new int[nnz];
+        double[] v = new double[nnz];
+        int k = 0;
+        for (int j = 0; j < columns; ++j) {
+            for (int i = 0; i < rows; ++i) {
+                double value = columnMajor[j * rows + i];
+                if (value != 0) {
+                    r[k] = i;
+                    v[k++] = value;
+                }
+            }
+            pointers[j + 1] = k;
+        }
+        return new MatlabSparseMatrix(rows, columns, pointers, r, v);
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return the number of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of stored (non-zero) elements.
+     *
+     * @return the number of non-zero elements
+     */
+    public int getNonZeros() {
+        return values.length;
+    }
+
+    /**
+     * Returns the column pointers. This is a backing array of this matrix.
+     *
+     * @return the column pointers
+     */
+    public int[] getColumnPointers() {
+        return columnPointers;
+    }
+
+    /**
+     * Returns the zero-based row indices. This is a backing array of this
+     * matrix.
+     *
+     * @return the row indices
+     */
+    public int[] getRowIndices() {
+        return rowIndices;
+    }
+
+    /**
+     * Returns the non-zero elements. This is a backing array of this matrix.
+     *
+     * @return the non-zero elements
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * Returns the element at the given position.
+     *
+     * @param row    the zero-based row
+     * @param column the zero-based column
+     *
+     * @return the element
+     */
+    public double get(int row, int column) {
+        checkElementIndex(row, rows);
+        checkElementIndex(column, columns);
+        int k = Arrays.binarySearch(rowIndices, columnPointers[column],
+                                    columnPointers[column + 1], row);
+        return k < 0 ? 0 : values[k];
+    }
+
+    /**
+     * Creates a dense copy of this matrix.
+     *
+     * @return the dense matrix
+     */
+    public MatlabMatrix toMatrix() {
+        double[] dense = new double[rows * columns];
+        for (int j = 0; j < columns; ++j) {
+            for (int k = columnPointers[j]; k < columnPointers[j + 1]; ++k) {
+                dense[j * rows + rowIndices[k]] = values[k];
+            }
+        }
+        return new MatlabMatrix(dense, rows, columns);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof MatlabSparseMatrix) {
+            MatlabSparseMatrix other = (MatlabSparseMatrix) o;
+            return rows == other.rows && columns == other.columns &&
+                   Arrays.equals(columnPointers, other.columnPointers) &&
+                   Arrays.equals(rowIndices, other.rowIndices) &&
+                   Arrays.equals(values, other.values);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 31 * rows + columns;
+        hash = 31 * hash + Arrays.hashCode(columnPointers);
+        hash = 31 * hash + Arrays.hashCode(rowIndices);
+        return 31 * hash + Arrays.hashCode(values);
+    }
+
+    @Override
+    public void accept(MatlabValueVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public <T> T accept(ReturningMatlabValueVisitor<T> visitor) {
+        return visitor.visit(this);
+    }
+
+    @Override
+    public MatlabType getType() {
+        return MatlabType.SPARSE;
+    }
+}
@@ -90,13 +90,19 @@ public class MatlabString extends MatlabValue implements
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Returns the file at the path this string denotes without loading it.
+     *
+     * @param delete if the file should be moved out of its location into a
+     *               temporary file, see {@link MatlabFile#spool(boolean)}
+     *
+     * @return the file
+     *
+     * @throws IOException if the file can not be moved
+     */
     public MatlabFile toFile(boolean delete) throws IOException {
         MatlabFile file = new MatlabFile(Paths.get(value()));
-        file.load();
-        if (delete) {
-            file.delete();
-        }
-        return file;
+        return delete ? file.spool(false) : file;
     }
 
 }
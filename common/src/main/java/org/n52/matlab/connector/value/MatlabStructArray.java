@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.value;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Represents a MATLAB struct array. All elements share the same field names,
+ * which are stored once (and interned across arrays). The values are stored
+ * column-wise: one array per field holding the value of that field for every
+ * element in column-major order.
+ *
+ * @author Christian Autermann
+ */
+public class MatlabStructArray extends MatlabValue {
+    private static final Interner<List<MatlabString>> SCHEMAS
+            = Interners.newWeakInterner();
+    private final List<MatlabString> fields;
+    private final MatlabValue[][] columns;
+    private final int[] shape;
+
+    /**
+     * Creates a new struct array from the given columns. The column arrays
+     * are not copied.
+     *
+     * @param columns the values of every field in column-major order
+     * @param shape   the size of each dimension, at least two
+     */
+    public MatlabStructArray(Map<MatlabString, MatlabValue[]> columns,
+                             int... shape) {
+        checkArgument(checkNotNull(shape).length >= 2,
+                      "Expected at least two dimensions.");
+        long numel = 1;
+        for (int dim : shape) {
+            checkArgument(dim >= 0, "Negative dimension: %s", dim);
+            numel *= dim;
+        }
+        Map<MatlabString, MatlabValue[]> sorted
+                = new TreeMap<>(checkNotNull(columns));
+        this.columns = new MatlabValue[sorted.size()][];
+        int i = 0;
+        for (Entry<MatlabString, MatlabValue[]> e : sorted.entrySet()) {
+            MatlabValue[] column = checkNotNull(e.getValue());
+            checkArgument(column.length == numel,
+                          "Expected %s values for field %s but got %s.",
+                          numel, e.getKey().value(), column.length);
+            for (MatlabValue value : column) {
+                checkNotNull(value);
+            }
+            this.columns[i++] = column;
+        }
+        this.fields = SCHEMAS.intern(ImmutableList.copyOf(sorted.keySet()));
+        this.shape = shape.clone();
+    }
+
+    /**
+     * Creates a new struct array from structs that all have the same fields.
+     *
+     * @param structs the elements in column-major order
+     * @param shape   the size of each dimension, at least two
+     *
+     * @return the struct array
+     */
+    public static MatlabStructArray fromStructs(List<MatlabStruct> structs,
+                                                int... shape) {
+        Map<MatlabString, MatlabValue[]> columns = new TreeMap<>();
+        if (!checkNotNull(structs).isEmpty()) {
+            for (MatlabString field : structs.get(0).value().keySet()) {
+                columns.put(field, new MatlabValue[structs.size()]);
+            }
+        }
+        for (int i = 0; i < structs.size(); ++i) {
+            Map<MatlabString, MatlabValue> struct = structs.get(i).value();
+            checkArgument(struct.keySet().equals(columns.keySet()),
+                          "Element %s differs in its fields.", i);
+            for (Entry<MatlabString, MatlabValue> e : struct.entrySet()) {
+                columns.get(e.getKey())[i] = e.getValue();
+            }
+        }
+        return new MatlabStructArray(columns, shape);
+    }
+
+    /**
+     * Returns the sorted field names shared by all elements.
+     *
+     * @return the field names
+     */
+    public List<MatlabString> getFieldNames() {
+        return fields;
+    }
+
+    /**
+     * Returns the shape of this array.
+     *
+     * @return the shape
+     */
+    public int[] getShape() {
+        return shape.clone();
+    }
+
+    /**
+     * Returns the number of elements.
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        int size = 1;
+        for (int dim : shape) {
+            size *= dim;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the values of a field for all elements in column-major order.
+     *
+     * @param field the field name
+     *
+     * @return the values or <code>null</code> if there is no such field
+     */
+    public List<MatlabValue> getColumn(String field) {
+        return getColumn(new MatlabString(checkNotNull(field)));
+    }
+
+    /**
+     * Returns the values of a field for all elements in column-major order.
+     *
+     * @param field the field name
+     *
+     * @return the values or <code>null</code> if there is no such field
+     */
+    public List<MatlabValue> getColumn(MatlabString field) {
+        int i = Collections.binarySearch(fields, checkNotNull(field));
+        if (i < 0) {
+            return null;
+        }
+        return Collections.unmodifiableList(Arrays.asList(columns[i]));
+    }
+
+    /**
+     * Returns the value of a field of a single element.
+     *
+     * @param index the linear index of the element
+     * @param field the field name
+     *
+     * @return the value or <code>null</code> if there is no such field
+     */
+    public MatlabValue get(int index, String field) {
+        checkElementIndex(index, size());
+        List<MatlabValue> column = getColumn(field);
+        return column == null ? null : column.get(index);
+    }
+
+    /**
+     * Creates a struct of the values of a single element.
+     *
+     * @param index the linear index of the element
+     *
+     * @return the struct
+     */
+    public MatlabStruct get(int index) {
+        checkElementIndex(index, size());
+        MatlabStruct struct = new MatlabStruct();
+        for (int i = 0; i < columns.length; ++i) {
+            struct.set(fields.get(i), columns[i][index]);
+        }
+        return struct;
+    }
+
+    /**
+     * Returns the values of all fields of all elements, field by field.
+     *
+     * @return the values
+     */
+    public Stream<MatlabValue> stream() {
+        return Arrays.stream(columns).flatMap(Arrays::stream);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof MatlabStructArray) {
+            MatlabStructArray other = (MatlabStructArray) o;
+            return Arrays.equals(shape, other.shape) &&
+                   fields.equals(other.fields) &&
+                   Arrays.deepEquals(columns, other.columns);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 31 * Arrays.hashCode(shape) + fields.hashCode();
+        return 31 * hash + Arrays.deepHashCode(columns);
+    }
+
+    @Override
+    public void accept(MatlabValueVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public <T> T accept(ReturningMatlabValueVisitor<T> visitor) {
+        return visitor.visit(this);
+    }
+
+    @Override
+    public MatlabType getType() {
+        return MatlabType.STRUCT_ARRAY;
+    }
+}
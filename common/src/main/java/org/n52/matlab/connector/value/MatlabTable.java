@@ -0,0 +1,418 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.value;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents a MATLAB table. The values are stored column by column in
+ * primitive arrays and can be accessed by row and column or using a
+ * {@link Cursor} without boxing.
+ *
+ * @author Christian Autermann
+ */
+public class MatlabTable extends MatlabValue {
+    /** <code>datenum(1970, 1, 1)</code> */
+    private static final double DATENUM_EPOCH = 719529;
+    private static final double MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+    private final int rows;
+    private final List<String> names;
+    private final ColumnType[] types;
+    private final Object[] columns;
+
+    private MatlabTable(Builder builder) {
+        this.rows = builder.rows;
+        this.names = Collections.unmodifiableList(builder.names);
+        this.types = builder.types.toArray(new ColumnType[builder.types.size()]);
+        this.columns = builder.columns.toArray();
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the number of rows
+     */
+    public int getRowCount() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return the number of columns
+     */
+    public int getColumnCount() {
+        return types.length;
+    }
+
+    /**
+     * Returns the variable names of the columns.
+     *
+     * @return the names
+     */
+    public List<String> getColumnNames() {
+        return names;
+    }
+
+    /**
+     * Returns the index of a column.
+     *
+     * @param name the variable name of the column
+     *
+     * @return the index or <code>-1</code> if there is no such column
+     */
+    public int getColumnIndex(String name) {
+        return names.indexOf(checkNotNull(name));
+    }
+
+    /**
+     * Returns the type of a column.
+     *
+     * @param column the index of the column
+     *
+     * @return the type
+     */
+    public ColumnType getColumnType(int column) {
+        checkElementIndex(column, types.length);
+        return types[column];
+    }
+
+    /**
+     * Returns the values of a numeric column. This is a backing array of
+     * this table.
+     *
+     * @param column the index of the column
+     *
+     * @return the values
+     */
+    public double[] getNumericColumn(int column) {
+        return (double[]) column(column, ColumnType.NUMERIC);
+    }
+
+    /**
+     * Returns the values of a string column. This is a backing array of this
+     * table.
+     *
+     * @param column the index of the column
+     *
+     * @return the values
+     */
+    public String[] getStringColumn(int column) {
+        return (String[]) column(column, ColumnType.STRING);
+    }
+
+    /**
+     * Returns the values of a date time column as milliseconds since the
+     * epoch (UTC). This is a backing array of this table.
+     *
+     * @param column the index of the column
+     *
+     * @return the values
+     */
+    public long[] getDateTimeColumn(int column) {
+        return (long[]) column(column, ColumnType.DATE_TIME);
+    }
+
+    /**
+     * Returns the values of a logical column as a bitset, see
+     * {@link MatlabLogicalArray#getBits()}. This is a backing array of this
+     * table.
+     *
+     * @param column the index of the column
+     *
+     * @return the values
+     */
+    public long[] getLogicalColumn(int column) {
+        return (long[]) column(column, ColumnType.LOGICAL);
+    }
+
+    /**
+     * Returns a value of a numeric column.
+     *
+     * @param row    the index of the row
+     * @param column the index of the column
+     *
+     * @return the value
+     */
+    public double getDouble(int row, int column) {
+        return getNumericColumn(column)[checkElementIndex(row, rows)];
+    }
+
+    /**
+     * Returns a value of a string column.
+     *
+     * @param row    the index of the row
+     * @param column the index of the column
+     *
+     * @return the value
+     */
+    public String getString(int row, int column) {
+        return getStringColumn(column)[checkElementIndex(row, rows)];
+    }
+
+    /**
+     * Returns a value of a date time column.
+     *
+     * @param row    the index of the row
+     * @param column the index of the column
+     *
+     * @return the milliseconds since the epoch (UTC)
+     */
+    public long getDateTime(int row, int column) {
+        return getDateTimeColumn(column)[checkElementIndex(row, rows)];
+    }
+
+    /**
+     * Returns a value of a logical column.
+     *
+     * @param row    the index of the row
+     * @param column the index of the column
+     *
+     * @return the value
+     */
+    public boolean getBoolean(int row, int column) {
+        long[] bits = getLogicalColumn(column);
+        checkElementIndex(row, rows);
+        return (bits[row >>> 6] & 1L << row) != 0;
+    }
+
+    /**
+     * Creates a new cursor positioned before the first row.
+     *
+     * @return the cursor
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    private Object column(int column, ColumnType type) {
+        checkElementIndex(column, types.length);
+        checkArgument(types[column] == type, "Column %s is of type %s.",
+                      names.get(column), types[column]);
+        return columns[column];
+    }
+
+    /**
+     * Converts a MATLAB date number to milliseconds since the epoch (UTC).
+     *
+     * @param datenum the date number
+     *
+     * @return the milliseconds
+     */
+    public static long fromDatenum(double datenum) {
+        return Math.round((datenum - DATENUM_EPOCH) * MILLIS_PER_DAY);
+    }
+
+    /**
+     * Converts milliseconds since the epoch (UTC) to a MATLAB date number.
+     *
+     * @param millis the milliseconds
+     *
+     * @return the date number
+     */
+    public static double toDatenum(long millis) {
+        return DATENUM_EPOCH + millis / MILLIS_PER_DAY;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof MatlabTable) {
+            MatlabTable other = (MatlabTable) o;
+            return rows == other.rows && names.equals(other.names) &&
+                   Arrays.equals(types, other.types) &&
+                   Arrays.deepEquals(columns, other.columns);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 31 * rows + names.hashCode();
+        hash = 31 * hash + Arrays.hashCode(types);
+        return 31 * hash + Arrays.deepHashCode(columns);
+    }
+
+    @Override
+    public void accept(MatlabValueVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public <T> T accept(ReturningMatlabValueVisitor<T> visitor) {
+        return visitor.visit(this);
+    }
+
+    @Override
+    public MatlabType getType() {
+        return MatlabType.TABLE;
+    }
+
+    public static Builder builder(int rows) {
+        return new Builder(rows);
+    }
+
+    /**
+     * The types of table columns.
+     */
+    public enum ColumnType {
+        NUMERIC,
+        STRING,
+        DATE_TIME,
+        LOGICAL;
+
+        @Override
+        public String toString() {
+            return name().toLowerCase();
+        }
+
+        public static ColumnType fromString(String string) {
+            for (ColumnType type : values()) {
+                if (type.toString().equals(string)) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Iterates over the rows of a table. The values of the current row are
+     * accessed by the index of their column.
+     */
+    public class Cursor {
+        private int row = -1;
+
+        private Cursor() {
+        }
+
+        /**
+         * Moves to the next row.
+         *
+         * @return <code>false</code> if there are no more rows
+         */
+        public boolean next() {
+            if (row < rows) {
+                ++row;
+            }
+            return row < rows;
+        }
+
+        /**
+         * Returns the index of the current row.
+         *
+         * @return the row
+         */
+        public int getRow() {
+            checkState(row >= 0 && row < rows, "Not positioned on a row.");
+            return row;
+        }
+
+        public double getDouble(int column) {
+            return MatlabTable.this.getDouble(getRow(), column);
+        }
+
+        public String getString(int column) {
+            return MatlabTable.this.getString(getRow(), column);
+        }
+
+        public long getDateTime(int column) {
+            return MatlabTable.this.getDateTime(getRow(), column);
+        }
+
+        public boolean getBoolean(int column) {
+            return MatlabTable.this.getBoolean(getRow(), column);
+        }
+    }
+
+    public static class Builder {
+        private final int rows;
+        private final List<String> names = new ArrayList<>();
+        private final List<ColumnType> types = new ArrayList<>();
+        private final List<Object> columns = new ArrayList<>();
+
+        private Builder(int rows) {
+            checkArgument(rows >= 0);
+            this.rows = rows;
+        }
+
+        /**
+         * Adds a numeric column. The values are not copied.
+         */
+        public Builder addNumeric(String name, double[] values) {
+            return add(name, ColumnType.NUMERIC, values, values.length);
+        }
+
+        /**
+         * Adds a string column. The values are not copied.
+         */
+        public Builder addString(String name, String[] values) {
+            for (String value : values) {
+                checkNotNull(value);
+            }
+            return add(name, ColumnType.STRING, values, values.length);
+        }
+
+        /**
+         * Adds a date time column of milliseconds since the epoch (UTC). The
+         * values are not copied.
+         */
+        public Builder addDateTime(String name, long[] values) {
+            return add(name, ColumnType.DATE_TIME, values, values.length);
+        }
+
+        public Builder addLogical(String name, boolean[] values) {
+            return addLogical(name, new MatlabLogicalArray(
+                              values, values.length, 1).getBits());
+        }
+
+        /**
+         * Adds a logical column given as a bitset, see
+         * {@link MatlabLogicalArray#getBits()}. The bits are not copied.
+         */
+        public Builder addLogical(String name, long[] bits) {
+            // validates the bits
+            new MatlabLogicalArray(bits, rows, 1);
+            return add(name, ColumnType.LOGICAL, bits, rows);
+        }
+
+        private Builder add(String name, ColumnType type, Object values,
+                            int length) {
+            checkArgument(!names.contains(checkNotNull(name)),
+                          "Duplicate column %s.", name);
+            checkArgument(length == rows,
+                          "Expected %s values for column %s but got %s.",
+                          rows, name, length);
+            names.add(name);
+            types.add(type);
+            columns.add(values);
+            return this;
+        }
+
+        public MatlabTable build() {
+            return new MatlabTable(this);
+        }
+    }
+}
@@ -30,7 +30,21 @@ public enum MatlabType {
     SCALAR,
     STRING,
     STRUCT,
-    DATE_TIME;
+    DATE_TIME,
+    ND_ARRAY,
+    INT8,
+    INT16,
+    INT32,
+    INT64,
+    UINT8,
+    UINT16,
+    UINT32,
+    UINT64,
+    SINGLE,
+    LOGICAL,
+    SPARSE,
+    STRUCT_ARRAY,
+    TABLE;
 
     @Override
     public String toString() {
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.value;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+/**
+ * Base class for MATLAB arrays that keep their native element class. The
+ * elements are stored in column-major order in a primitive array of the
+ * matching Java type.
+ *
+ * @author Christian Autermann
+ */
+public abstract class MatlabTypedArray extends MatlabValue {
+    private final int[] shape;
+
+    /**
+     * Creates a new typed array.
+     *
+     * @param length the number of elements of the backing array
+     * @param shape  the size of each dimension, at least two
+     */
+    protected MatlabTypedArray(int length, int[] shape) {
+        checkArgument(checkNotNull(shape).length >= 2,
+                      "At least two dimensions are required.");
+        long numel = 1;
+        for (int dim : shape) {
+            checkArgument(dim >= 0, "Invalid dimension: %s", dim);
+            numel *= dim;
+        }
+        checkArgument(length == numel,
+                      "Expected %s elements for shape %s but got %s.",
+                      numel, Arrays.toString(shape), length);
+        this.shape = shape.clone();
+    }
+
+    /**
+     * Returns the size of each dimension.
+     *
+     * @return the shape
+     */
+    public int[] getShape() {
+        return shape.clone();
+    }
+
+    /**
+     * Returns the number of dimensions.
+     *
+     * @return the number of dimensions
+     */
+    public int getDimensions() {
+        return shape.length;
+    }
+
+    /**
+     * Returns the size of the given dimension.
+     *
+     * @param dimension the zero-based dimension
+     *
+     * @return the size of the dimension
+     */
+    public int getSize(int dimension) {
+        checkElementIndex(dimension, shape.length);
+        return shape[dimension];
+    }
+
+    /**
+     * Returns the number of elements.
+     *
+     * @return the number of elements
+     */
+    public abstract int size();
+
+    /**
+     * Returns the element at the given linear index converted to
+     * <code>double</code>.
+     *
+     * @param index the zero-based linear index
+     *
+     * @return the element
+     */
+    public abstract double getDouble(int index);
+
+    /**
+     * Returns the MATLAB class name of the elements.
+     *
+     * @return the class name
+     */
+    public String getMatlabClass() {
+        return getType().toString();
+    }
+
+    protected boolean hasShape(MatlabTypedArray other) {
+        return Arrays.equals(shape, other.shape);
+    }
+
+    protected int shapeHashCode() {
+        return Arrays.hashCode(shape);
+    }
+}
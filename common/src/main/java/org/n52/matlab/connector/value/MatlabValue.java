@@ -125,6 +125,76 @@ public abstract class MatlabValue {
         return getType() == MatlabType.DATE_TIME;
     }
 
+    /**
+     * Checks if this value is a N-dimensional array.
+     *
+     * @return <code>true</code> if this value is a N-dimensional array,
+     *         <code>false</code> otherwise
+     */
+    public boolean isNDArray() {
+        return getType() == MatlabType.ND_ARRAY;
+    }
+
+    /**
+     * Checks if this value is an array of a MATLAB integer class.
+     *
+     * @return <code>true</code> if this value is an integer array,
+     *         <code>false</code> otherwise
+     */
+    public boolean isIntegerArray() {
+        return this instanceof MatlabIntegerArray;
+    }
+
+    /**
+     * Checks if this value is a single-precision array.
+     *
+     * @return <code>true</code> if this value is a single-precision array,
+     *         <code>false</code> otherwise
+     */
+    public boolean isSingleArray() {
+        return getType() == MatlabType.SINGLE;
+    }
+
+    /**
+     * Checks if this value is a logical array.
+     *
+     * @return <code>true</code> if this value is a logical array,
+     *         <code>false</code> otherwise
+     */
+    public boolean isLogicalArray() {
+        return getType() == MatlabType.LOGICAL;
+    }
+
+    /**
+     * Checks if this value is a sparse matrix.
+     *
+     * @return <code>true</code> if this value is a sparse matrix,
+     *         <code>false</code> otherwise
+     */
+    public boolean isSparse() {
+        return getType() == MatlabType.SPARSE;
+    }
+
+    /**
+     * Checks if this value is a struct array.
+     *
+     * @return <code>true</code> if this value is a struct array,
+     *         <code>false</code> otherwise
+     */
+    public boolean isStructArray() {
+        return getType() == MatlabType.STRUCT_ARRAY;
+    }
+
+    /**
+     * Checks if this value is a table.
+     *
+     * @return <code>true</code> if this value is a table, <code>false</code>
+     *         otherwise
+     */
+    public boolean isTable() {
+        return getType() == MatlabType.TABLE;
+    }
+
     /**
      * Returns this value as a scalar. Will throw a
      * {@link UnsupportedOperationException}
@@ -264,6 +334,111 @@ public abstract class MatlabValue {
         }
     }
 
+    /**
+     * Returns this value as a N-dimensional array. Will throw a
+     * {@link UnsupportedOperationException}
+     * if this value is not a N-dimensional array.
+     *
+     * @return this value as a {@link MatlabNDArray}
+     */
+    public MatlabNDArray asNDArray() {
+        if (isNDArray()) {
+            return (MatlabNDArray) this;
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Returns this value as an integer array. Will throw a
+     * {@link UnsupportedOperationException}
+     * if this value is not an integer array.
+     *
+     * @return this value as a {@link MatlabIntegerArray}
+     */
+    public MatlabIntegerArray asIntegerArray() {
+        if (isIntegerArray()) {
+            return (MatlabIntegerArray) this;
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Returns this value as a single-precision array. Will throw a
+     * {@link UnsupportedOperationException}
+     * if this value is not a single-precision array.
+     *
+     * @return this value as a {@link MatlabSingleArray}
+     */
+    public MatlabSingleArray asSingleArray() {
+        if (isSingleArray()) {
+            return (MatlabSingleArray) this;
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Returns this value as a logical array. Will throw a
+     * {@link UnsupportedOperationException}
+     * if this value is not a logical array.
+     *
+     * @return this value as a {@link MatlabLogicalArray}
+     */
+    public MatlabLogicalArray asLogicalArray() {
+        if (isLogicalArray()) {
+            return (MatlabLogicalArray) this;
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Returns this value as a sparse matrix. Will throw a
+     * {@link UnsupportedOperationException}
+     * if this value is not a sparse matrix.
+     *
+     * @return this value as a {@link MatlabSparseMatrix}
+     */
+    public MatlabSparseMatrix asSparse() {
+        if (isSparse()) {
+            return (MatlabSparseMatrix) this;
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Returns this value as a struct array. Will throw a
+     * {@link UnsupportedOperationException}
+     * if this value is not a struct array.
+     *
+     * @return this value as a {@link MatlabStructArray}
+     */
+    public MatlabStructArray asStructArray() {
+        if (isStructArray()) {
+            return (MatlabStructArray) this;
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Returns this value as a table. Will throw a
+     * {@link UnsupportedOperationException}
+     * if this value is not a table.
+     *
+     * @return this value as a {@link MatlabTable}
+     */
+    public MatlabTable asTable() {
+        if (isTable()) {
+            return (MatlabTable) this;
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     @Override
     public String toString() {
         return String.format("%s[%s]", getClass().getSimpleName(),
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.value;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * An immutable SHA-256 digest of the content of a tree of
+ * {@link MatlabValue}s. Equal trees have equal digests, so a digest can stand
+ * in for the tree as a key: once computed it is compared and hashed in
+ * constant time, regardless of the size of the arrays and files it covers.
+ * Files contribute the digest of their content (see
+ * {@link MatlabFile#getDigest()}).
+ * <p>
+ * A digest is a snapshot: later changes to the values are not reflected.
+ *
+ * @author Christian Autermann
+ */
+public final class MatlabValueDigest {
+    private final HashCode hash;
+
+    private MatlabValueDigest(HashCode hash) {
+        this.hash = hash;
+    }
+
+    /**
+     * @return the bytes of the digest
+     */
+    public byte[] asBytes() {
+        return hash.asBytes();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof MatlabValueDigest) {
+            return hash.equals(((MatlabValueDigest) o).hash);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash.asInt();
+    }
+
+    @Override
+    public String toString() {
+        return hash.toString();
+    }
+
+    /**
+     * Computes the digest of a value.
+     *
+     * @param value the value
+     *
+     * @return the digest
+     */
+    public static MatlabValueDigest of(MatlabValue value) {
+        DigestingVisitor visitor = new DigestingVisitor();
+        checkNotNull(value).accept(visitor);
+        return new MatlabValueDigest(visitor.hasher.hash());
+    }
+
+    /**
+     * Computes the digest of a sequence of values, e.g. the parameters of a
+     * request.
+     *
+     * @param values the values
+     *
+     * @return the digest
+     */
+    public static MatlabValueDigest of(List<? extends MatlabValue> values) {
+        DigestingVisitor visitor = new DigestingVisitor();
+        visitor.hasher.putInt(values.size());
+        values.forEach(v -> v.accept(visitor));
+        return new MatlabValueDigest(visitor.hasher.hash());
+    }
+
+    /**
+     * Feeds every value with its type and, for variable-length content, its
+     * length, so that different trees produce different input.
+     */
+    private static class DigestingVisitor implements MatlabValueVisitor {
+        private final Hasher hasher = Hashing.sha256().newHasher();
+
+        private void putType(MatlabValue value) {
+            putString(value.getType().toString());
+        }
+
+        private void putString(String string) {
+            hasher.putInt(string.length())
+                    .putString(string, StandardCharsets.UTF_8);
+        }
+
+        private void putShape(int[] shape) {
+            hasher.putInt(shape.length);
+            for (int dim : shape) {
+                hasher.putInt(dim);
+            }
+        }
+
+        private void putDouble(double value) {
+            // collapse NaNs like Arrays.equals(double[], double[])
+            hasher.putLong(Double.doubleToLongBits(value));
+        }
+
+        private void putDoubles(DoubleBuffer buffer) {
+            hasher.putInt(buffer.remaining());
+            while (buffer.hasRemaining()) {
+                putDouble(buffer.get());
+            }
+        }
+
+        private void putDoubles(double[] values) {
+            hasher.putInt(values.length);
+            for (double value : values) {
+                putDouble(value);
+            }
+        }
+
+        private void putInts(int[] values) {
+            hasher.putInt(values.length);
+            for (int value : values) {
+                hasher.putInt(value);
+            }
+        }
+
+        private void putLongs(long[] values) {
+            hasher.putInt(values.length);
+            for (long value : values) {
+                hasher.putLong(value);
+            }
+        }
+
+        @Override
+        public void visit(MatlabArray array) {
+            putType(array);
+            putDoubles(array.getBuffer());
+        }
+
+        @Override
+        public void visit(MatlabBoolean bool) {
+            putType(bool);
+            hasher.putBoolean(bool.value());
+        }
+
+        @Override
+        public void visit(MatlabCell cell) {
+            putType(cell);
+            hasher.putInt(cell.size());
+            cell.forEach(v -> v.accept(this));
+        }
+
+        @Override
+        public void visit(MatlabMatrix matrix) {
+            putType(matrix);
+            hasher.putInt(matrix.getRows()).putInt(matrix.getColumns());
+            putDoubles(matrix.getBuffer());
+        }
+
+        @Override
+        public void visit(MatlabScalar scalar) {
+            putType(scalar);
+            putDouble(scalar.value());
+        }
+
+        @Override
+        public void visit(MatlabString string) {
+            putType(string);
+            putString(string.value());
+        }
+
+        @Override
+        public void visit(MatlabStruct struct) {
+            putType(struct);
+            // the fields are kept sorted
+            hasher.putInt(struct.value().size());
+            for (Map.Entry<MatlabString, MatlabValue> e : struct.value()
+                    .entrySet()) {
+                putString(e.getKey().value());
+                e.getValue().accept(this);
+            }
+        }
+
+        @Override
+        public void visit(MatlabFile file) {
+            putType(file);
+            try {
+                hasher.putBytes(file.getDigest().asBytes());
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        @Override
+        public void visit(MatlabDateTime time) {
+            putType(time);
+            DateTime value = time.value();
+            hasher.putLong(value.getMillis());
+            putString(value.getChronology().toString());
+        }
+
+        @Override
+        public void visit(MatlabNDArray array) {
+            putType(array);
+            putShape(array.getShape());
+            putDoubles(array.getColumnMajor());
+        }
+
+        @Override
+        public void visit(MatlabIntegerArray array) {
+            putType(array);
+            putShape(array.getShape());
+            hasher.putInt(array.size());
+            for (int i = 0; i < array.size(); ++i) {
+                hasher.putLong(array.getLong(i));
+            }
+        }
+
+        @Override
+        public void visit(MatlabSingleArray array) {
+            putType(array);
+            putShape(array.getShape());
+            float[] values = array.getColumnMajor();
+            hasher.putInt(values.length);
+            for (float value : values) {
+                hasher.putInt(Float.floatToIntBits(value));
+            }
+        }
+
+        @Override
+        public void visit(MatlabLogicalArray array) {
+            putType(array);
+            putShape(array.getShape());
+            putLongs(array.getBits());
+        }
+
+        @Override
+        public void visit(MatlabSparseMatrix matrix) {
+            putType(matrix);
+            hasher.putInt(matrix.getRows()).putInt(matrix.getColumns());
+            putInts(matrix.getColumnPointers());
+            putInts(matrix.getRowIndices());
+            putDoubles(matrix.getValues());
+        }
+
+        @Override
+        public void visit(MatlabStructArray array) {
+            putType(array);
+            putShape(array.getShape());
+            List<MatlabString> fields = array.getFieldNames();
+            hasher.putInt(fields.size());
+            for (MatlabString field : fields) {
+                putString(field.value());
+                array.getColumn(field).forEach(v -> v.accept(this));
+            }
+        }
+
+        @Override
+        public void visit(MatlabTable table) {
+            putType(table);
+            hasher.putInt(table.getRowCount())
+                    .putInt(table.getColumnCount());
+            for (int i = 0; i < table.getColumnCount(); ++i) {
+                putString(table.getColumnNames().get(i));
+                putString(table.getColumnType(i).toString());
+                switch (table.getColumnType(i)) {
+                    case NUMERIC:
+                        putDoubles(table.getNumericColumn(i));
+                        break;
+                    case STRING:
+                        for (String value : table.getStringColumn(i)) {
+                            putString(value);
+                        }
+                        break;
+                    case DATE_TIME:
+                        putLongs(table.getDateTimeColumn(i));
+                        break;
+                    default:
+                        putLongs(table.getLogicalColumn(i));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.value;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+
+/**
+ * An immutable copy of a sequence of {@link MatlabValue}s together with its
+ * {@link MatlabValueDigest}. Cells, structs and struct arrays are copied into
+ * instances that can not be changed, so the digest stays valid if the
+ * original values are changed later. All other values are immutable or, like
+ * arrays backed by a caller's array, deliberately not copied; they are
+ * shared.
+ *
+ * @author Christian Autermann
+ */
+public final class MatlabValueSnapshot {
+    private final List<MatlabValue> values;
+    private final MatlabValueDigest digest;
+
+    private MatlabValueSnapshot(List<MatlabValue> values) {
+        this.values = values;
+        this.digest = MatlabValueDigest.of(values);
+    }
+
+    /**
+     * @return the copied values
+     */
+    public List<MatlabValue> getValues() {
+        return values;
+    }
+
+    /**
+     * @return the digest of the values
+     */
+    public MatlabValueDigest getDigest() {
+        return digest;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof MatlabValueSnapshot) {
+            return digest.equals(((MatlabValueSnapshot) o).digest);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return digest.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return digest.toString();
+    }
+
+    /**
+     * Takes a snapshot of a sequence of values, e.g. the parameters of a
+     * request.
+     *
+     * @param values the values
+     *
+     * @return the snapshot
+     */
+    public static MatlabValueSnapshot of(List<? extends MatlabValue> values) {
+        ImmutableList.Builder<MatlabValue> copies = ImmutableList.builder();
+        for (MatlabValue value : checkNotNull(values)) {
+            copies.add(copy(value));
+        }
+        return new MatlabValueSnapshot(copies.build());
+    }
+
+    private static MatlabValue copy(MatlabValue value) {
+        return value.accept(CopyingVisitor.INSTANCE);
+    }
+
+    /**
+     * Copies the containers of a tree; all other values are returned as they
+     * are.
+     */
+    private static class CopyingVisitor
+            implements ReturningMatlabValueVisitor<MatlabValue> {
+        private static final CopyingVisitor INSTANCE = new CopyingVisitor();
+
+        @Override
+        public MatlabValue visit(MatlabCell cell) {
+            ImmutableList.Builder<MatlabValue> copies = ImmutableList.builder();
+            for (MatlabValue value : cell) {
+                copies.add(copy(value));
+            }
+            return MatlabCell.unmodifiable(copies.build());
+        }
+
+        @Override
+        public MatlabValue visit(MatlabStruct struct) {
+            ImmutableSortedMap.Builder<MatlabString, MatlabValue> copies
+                    = ImmutableSortedMap.naturalOrder();
+            for (Entry<MatlabString, MatlabValue> e : struct.value().entrySet()) {
+                copies.put(e.getKey(), copy(e.getValue()));
+            }
+            return new MatlabStruct(copies.build());
+        }
+
+        @Override
+        public MatlabValue visit(MatlabStructArray array) {
+            Map<MatlabString, MatlabValue[]> columns = new TreeMap<>();
+            for (MatlabString field : array.getFieldNames()) {
+                List<MatlabValue> column = array.getColumn(field);
+                MatlabValue[] copies = new MatlabValue[column.size()];
+                for (int i = 0; i < copies.length; ++i) {
+                    copies[i] = copy(column.get(i));
+                }
+                columns.put(field, copies);
+            }
+            return new MatlabStructArray(columns, array.getShape());
+        }
+
+        @Override
+        public MatlabValue visit(MatlabArray array) {
+            return array;
+        }
+
+        @Override
+        public MatlabValue visit(MatlabBoolean bool) {
+            return bool;
+        }
+
+        @Override
+        public MatlabValue visit(MatlabMatrix matrix) {
+            return matrix;
+        }
+
+        @Override
+        public MatlabValue visit(MatlabScalar scalar) {
+            return scalar;
+        }
+
+        @Override
+        public MatlabValue visit(MatlabString string) {
+            return string;
+        }
+
+        @Override
+        public MatlabValue visit(MatlabFile file) {
+            return file;
+        }
+
+        @Override
+        public MatlabValue visit(MatlabDateTime time) {
+            return time;
+        }
+
+        @Override
+        public MatlabValue visit(MatlabNDArray array) {
+            return array;
+        }
+
+        @Override
+        public MatlabValue visit(MatlabIntegerArray array) {
+            return array;
+        }
+
+        @Override
+        public MatlabValue visit(MatlabSingleArray array) {
+            return array;
+        }
+
+        @Override
+        public MatlabValue visit(MatlabLogicalArray array) {
+            return array;
+        }
+
+        @Override
+        public MatlabValue visit(MatlabSparseMatrix matrix) {
+            return matrix;
+        }
+
+        @Override
+        public MatlabValue visit(MatlabTable table) {
+            return table;
+        }
+    }
+}
@@ -40,4 +40,18 @@ public interface MatlabValueVisitor {
     void visit(MatlabFile file);
 
     void visit(MatlabDateTime time);
+
+    void visit(MatlabNDArray array);
+
+    void visit(MatlabIntegerArray array);
+
+    void visit(MatlabSingleArray array);
+
+    void visit(MatlabLogicalArray array);
+
+    void visit(MatlabSparseMatrix matrix);
+
+    void visit(MatlabStructArray array);
+
+    void visit(MatlabTable table);
 }
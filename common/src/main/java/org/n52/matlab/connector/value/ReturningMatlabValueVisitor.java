@@ -40,4 +40,18 @@ public interface ReturningMatlabValueVisitor<T> {
     T visit(MatlabFile file);
 
     T visit(MatlabDateTime time);
+
+    T visit(MatlabNDArray array);
+
+    T visit(MatlabIntegerArray array);
+
+    T visit(MatlabSingleArray array);
+
+    T visit(MatlabLogicalArray array);
+
+    T visit(MatlabSparseMatrix matrix);
+
+    T visit(MatlabStructArray array);
+
+    T visit(MatlabTable table);
 }
@@ -28,7 +28,7 @@ import org.n52.matlab.connector.json.MatlabJSONEncoding;
  *
  * @author Christian Autermann
  */
-public abstract class AbstractEncoder<T> implements Encoder.Text<T> {
+public abstract class AbstractEncoder<T> implements Encoder.TextStream<T> {
 
     private final MatlabEncoding delegate = new MatlabJSONEncoding();
 
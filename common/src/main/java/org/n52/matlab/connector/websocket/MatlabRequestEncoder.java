@@ -16,6 +16,9 @@
  */
 package org.n52.matlab.connector.websocket;
 
+import java.io.IOException;
+import java.io.Writer;
+
 import javax.websocket.EncodeException;
 
 import org.n52.matlab.connector.MatlabRequest;
@@ -27,8 +30,9 @@ import org.n52.matlab.connector.MatlabRequest;
  */
 public class MatlabRequestEncoder extends AbstractEncoder<MatlabRequest> {
     @Override
-    public String encode(MatlabRequest object) throws EncodeException {
-        return getDelegate().encodeRequest(object);
+    public void encode(MatlabRequest object, Writer writer)
+            throws EncodeException, IOException {
+        getDelegate().encodeRequest(object, writer);
     }
 
 }
@@ -16,6 +16,9 @@
  */
 package org.n52.matlab.connector.websocket;
 
+import java.io.IOException;
+import java.io.Writer;
+
 import javax.websocket.EncodeException;
 
 import org.n52.matlab.connector.MatlabResponse;
@@ -28,8 +31,9 @@ import org.n52.matlab.connector.MatlabResponse;
 public class MatlabResponseEncoder extends AbstractEncoder<MatlabResponse> {
 
     @Override
-    public String encode(MatlabResponse object) throws EncodeException {
-        return getDelegate().encodeResponse(object);
+    public void encode(MatlabResponse object, Writer writer)
+            throws EncodeException, IOException {
+        getDelegate().encodeResponse(object, writer);
     }
 
 }
@@ -0,0 +1,40 @@
+function [kind, values] = matlab_connector_column(t, k)
+%MATLAB_CONNECTOR_COLUMN Extracts a column of a table.
+%   [KIND, VALUES] = MATLAB_CONNECTOR_COLUMN(T, K) returns the K-th
+%   variable of table T as a row vector together with its kind:
+%
+%   0  numeric, as double
+%   1  logical, as the words of MATLAB_CONNECTOR_PACK
+%   2  text (char rows, strings or categoricals), as a cell of char vectors
+%   3  datetime, as date numbers
+%
+%   Used by the MATLAB connector to transfer tables one column at a time.
+
+    v = t.(k);
+    if ischar(v)
+        kind = 2;
+        values = reshape(cellstr(v), 1, []);
+        return;
+    end
+    if ndims(v) > 2 || size(v, 2) ~= 1
+        error('connector:unsupported', ...
+              'Unable to transfer multi-column variable %s.', ...
+              t.Properties.VariableNames{k});
+    end
+    if isnumeric(v)
+        kind = 0;
+        values = reshape(real(full(double(v))), 1, []);
+    elseif islogical(v)
+        kind = 1;
+        values = matlab_connector_pack(full(v));
+    elseif iscellstr(v) || isa(v, 'string') || isa(v, 'categorical')
+        kind = 2;
+        values = reshape(cellstr(v), 1, []);
+    elseif isa(v, 'datetime')
+        kind = 3;
+        values = reshape(datenum(v), 1, []);
+    else
+        error('connector:unsupported', ...
+              'Unable to transfer columns of type %s.', class(v));
+    end
+end
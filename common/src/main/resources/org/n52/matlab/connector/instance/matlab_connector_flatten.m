@@ -0,0 +1,119 @@
+function [tags, dims, doubles, chars] = matlab_connector_flatten(value)
+%MATLAB_CONNECTOR_FLATTEN Flattens a value into typed buffers.
+%   [TAGS, DIMS, DOUBLES, CHARS] = MATLAB_CONNECTOR_FLATTEN(VALUE) walks
+%   VALUE in pre-order and appends every node to the returned buffers:
+%
+%   TAGS     one type tag per node: 0 double, 1 logical, 2 char, 3 cell,
+%            4 struct, 5 other numeric classes, 6 sparse, 7 struct array
+%   DIMS     for every node the number of dimensions followed by the
+%            dimensions; struct and struct array nodes are followed by the
+%            number of fields and the length of every field name, nodes of
+%            other numeric classes by the length of the class name, sparse
+%            nodes by the number of non-zero elements
+%   DOUBLES  the column-major data of numeric nodes; for int64 and uint64
+%            nodes every element as the two 32 bit words of TYPECAST, low
+%            word first; for logical nodes the words of
+%            MATLAB_CONNECTOR_PACK; for sparse nodes the row indices, column
+%            indices and values of FIND
+%   CHARS    the data of char nodes, the struct field names and the class
+%            names of other numeric nodes; char arrays with more than one
+%            row are rejected
+%
+%   Cell elements (in linear order) and struct fields directly follow their
+%   parent node; the values of struct arrays follow field by field, each
+%   field in linear order. Used by the MATLAB connector to transfer nested
+%   values in a single call.
+
+    % every node adds one piece to each buffer; the pieces are joined once
+    % at the end and all working arrays grow by doubling
+    capacity = 64;
+    tags = zeros(1, capacity);
+    dimParts = cell(1, capacity);
+    doubleParts = cell(1, capacity);
+    charParts = cell(1, capacity);
+    stack = cell(1, capacity);
+    stack{1} = value;
+    top = 1;
+    n = 0;
+    while top > 0
+        v = stack{top};
+        stack{top} = [];
+        top = top - 1;
+        n = n + 1;
+        if n > capacity
+            capacity = 2 * capacity;
+            tags(capacity) = 0;
+            dimParts{capacity} = [];
+            doubleParts{capacity} = [];
+            charParts{capacity} = [];
+        end
+        s = size(v);
+        d = [numel(s), s];
+        x = [];
+        c = [];
+        children = {};
+        if issparse(v)
+            tag = 6;
+            [i, j, nz] = find(v);
+            d(end + 1) = numel(nz);
+            x = [reshape(i, 1, []), reshape(j, 1, []), ...
+                 reshape(real(double(nz)), 1, [])];
+        elseif isa(v, 'double')
+            tag = 0;
+            x = reshape(real(v), 1, []);
+        elseif isnumeric(v)
+            tag = 5;
+            d(end + 1) = numel(class(v));
+            c = class(v);
+            if isa(v, 'int64') || isa(v, 'uint64')
+                % doubles are only exact up to 2^53
+                x = double(typecast(reshape(real(v), 1, []), 'uint32'));
+            else
+                x = reshape(real(double(v)), 1, []);
+            end
+        elseif islogical(v)
+            tag = 1;
+            x = matlab_connector_pack(v);
+        elseif ischar(v)
+            if ~isempty(v) && (ndims(v) > 2 || size(v, 1) ~= 1)
+                error('connector:unsupported', ...
+                      'Unable to transfer multi-row char arrays.');
+            end
+            tag = 2;
+            c = reshape(v, 1, []);
+        elseif iscell(v)
+            tag = 3;
+            children = reshape(v, 1, []);
+        elseif isstruct(v)
+            if numel(v) == 1
+                tag = 4;
+            else
+                tag = 7;
+            end
+            names = fieldnames(v);
+            d = [d, numel(names), reshape(cellfun(@numel, names), 1, [])];
+            c = [names{:}];
+            values = reshape(struct2cell(v), numel(names), numel(v))';
+            children = reshape(values, 1, []);
+        else
+            error('connector:unsupported', ...
+                  'Unable to transfer values of type %s.', class(v));
+        end
+        tags(n) = tag;
+        dimParts{n} = d;
+        doubleParts{n} = x;
+        charParts{n} = c;
+        k = numel(children);
+        if k > 0
+            if top + k > numel(stack)
+                stack{2 * (top + k)} = [];
+            end
+            stack(top + 1:top + k) = fliplr(children);
+            top = top + k;
+        end
+    end
+    tags = tags(1:n);
+    dims = [zeros(1, 0), dimParts{1:n}];
+    doubles = [zeros(1, 0), doubleParts{1:n}];
+    chars = ['', charParts{1:n}];
+end
@@ -0,0 +1,13 @@
+function words = matlab_connector_pack(value)
+%MATLAB_CONNECTOR_PACK Packs a logical array into 32 bit words.
+%   WORDS = MATLAB_CONNECTOR_PACK(VALUE) returns a row vector of doubles
+%   holding 32 elements of VALUE each, in column-major order and starting
+%   with the least significant bit. Unused bits of the last word are zero.
+%   Used by the MATLAB connector to transfer logical arrays without one
+%   element per byte or double.
+
+    n = numel(value);
+    bits = false(32, ceil(n / 32));
+    bits(1:n) = value(:);
+    words = 2 .^ (0:31) * bits;
+end
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.engine;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks how the stand-in engine converts values between MATLAB classes and
+ * Java types.
+ *
+ * @author Christian Autermann
+ */
+public class StandInMatlabEngineTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private MatlabEngine engine;
+
+    @Before
+    public void start() {
+        engine = new StandInMatlabEngine(folder.getRoot().getAbsolutePath(), 0);
+    }
+
+    @Test
+    public void saturatesSignedIntegers() throws MatlabEngineException {
+        assertThat(eval("int8([-1000, 1000])"),
+                   is(new byte[] { Byte.MIN_VALUE, Byte.MAX_VALUE }));
+        assertThat(eval("int16([-1e6, 1e6])"),
+                   is(new short[] { Short.MIN_VALUE, Short.MAX_VALUE }));
+        assertThat(eval("int32([-1e12, 1e12])"),
+                   is(new int[] { Integer.MIN_VALUE, Integer.MAX_VALUE }));
+        assertThat(eval("int64([-1e19, 1e19])"),
+                   is(new long[] { Long.MIN_VALUE, Long.MAX_VALUE }));
+    }
+
+    @Test
+    public void saturatesUnsignedIntegers() throws MatlabEngineException {
+        assertThat(eval("uint8([-1, 1000])"),
+                   is(new byte[] { 0, (byte) 0xff }));
+        assertThat(eval("uint16([-1, 1e6])"),
+                   is(new short[] { 0, (short) 0xffff }));
+        assertThat(eval("uint32([-1, 1e12])"),
+                   is(new int[] { 0, 0xffffffff }));
+        assertThat(eval("uint64([-1, 1e20])"),
+                   is(new long[] { 0, 0xffffffffffffffffL }));
+    }
+
+    @Test
+    public void roundsHalfAwayFromZero() throws MatlabEngineException {
+        assertThat(eval("int8([2.5, -2.5, NaN])"),
+                   is(new byte[] { 3, -3, 0 }));
+    }
+
+    @Test
+    public void keepsInt64LimitsOfJavaValues() throws MatlabEngineException {
+        long[] limits = { Long.MIN_VALUE, Long.MAX_VALUE };
+        engine.setVariable("x", limits);
+        assertThat(eval("class(x)"), is("int64"));
+        assertThat(engine.getVariable("x"), is(limits));
+    }
+
+    @Test
+    public void overflowsSingleToInfinity() throws MatlabEngineException {
+        assertThat(eval("single([1e39, -1e39])"),
+                   is(new float[] { Float.POSITIVE_INFINITY,
+                                    Float.NEGATIVE_INFINITY }));
+    }
+
+    @Test
+    public void convertsEmptyMatrix() throws MatlabEngineException {
+        engine.eval("x = [];");
+        assertThat(eval("class(x)"), is("double"));
+        assertThat(eval("size(x)"), is(new double[] { 0, 0 }));
+        assertThat(engine.getVariable("x"), is(new double[0]));
+    }
+
+    @Test
+    public void convertsEmptyString() throws MatlabEngineException {
+        engine.eval("x = '';");
+        assertThat(eval("class(x)"), is("char"));
+        assertThat(eval("size(x)"), is(new double[] { 0, 0 }));
+        assertThat(engine.getVariable("x"), is(""));
+    }
+
+    @Test
+    public void convertsEmptyCell() throws MatlabEngineException {
+        engine.eval("x = {};");
+        assertThat(eval("class(x)"), is("cell"));
+        assertThat(eval("size(x)"), is(new double[] { 0, 0 }));
+        assertThat(((Object[]) engine.getVariable("x")).length, is(0));
+    }
+
+    @Test
+    public void reshapesEmptyValues() throws MatlabEngineException {
+        assertThat(eval("size(reshape([], 0, 3))"), is(new double[] { 0, 3 }));
+        assertThat(eval("size(reshape({}, 3, 0))"), is(new double[] { 3, 0 }));
+    }
+
+    @Test
+    public void flattensEmptyValues() throws MatlabEngineException {
+        Object[] buffers = engine.returningEval(
+                "matlab_connector_flatten({[], '', {}})", 4);
+        assertThat(buffers[0], is(new double[] { 3, 0, 2, 3 }));
+        assertThat(buffers[1], is(new double[] { 2, 1, 3, 2, 0, 0, 2, 0, 0,
+                                                 2, 0, 0 }));
+        assertThat(buffers[2], is(new double[0]));
+        assertThat(buffers[3], is(""));
+    }
+
+    @Test
+    public void reshapesToNDimensions() throws MatlabEngineException {
+        engine.eval("x = reshape([1, 2, 3, 4, 5, 6, 7, 8], 2, 2, 2);");
+        assertThat(eval("size(x)"), is(new double[] { 2, 2, 2 }));
+        assertThat(eval("size(x, 3)"), is(new double[] { 2 }));
+        assertThat(eval("size(x, 4)"), is(new double[] { 1 }));
+        assertThat(eval("x(2, 1, 2)"), is(new double[] { 6 }));
+        assertThat(engine.getNumericArray("x").getRealArray3D()[1][0][1],
+                   is(6.0));
+    }
+
+    @Test
+    public void dropsTrailingSingletonDimensions() throws MatlabEngineException {
+        assertThat(eval("size(reshape([1, 2, 3, 4], 2, 2, 1))"),
+                   is(new double[] { 2, 2 }));
+    }
+
+    @Test
+    public void flattensNDimensionalArrays() throws MatlabEngineException {
+        Object[] buffers = engine.returningEval(
+                "matlab_connector_flatten(int8(reshape([1, 2, 3, 4, 5, 6, 7, 8], 2, 2, 2)))", 4);
+        assertThat(buffers[0], is(new double[] { 5 }));
+        assertThat(buffers[1], is(new double[] { 3, 2, 2, 2, 4 }));
+        assertThat(buffers[2], is(new double[] { 1, 2, 3, 4, 5, 6, 7, 8 }));
+        assertThat(buffers[3], is("int8"));
+    }
+
+    @Test
+    public void stacksCharacterRows() throws MatlabEngineException {
+        engine.eval("x = ['ab'; 'cd'];");
+        assertThat(eval("class(x)"), is("char"));
+        assertThat(eval("size(x)"), is(new double[] { 2, 2 }));
+        assertThat(eval("x(2)"), is("c"));
+        assertThat(engine.getVariable("x"), is(new String[] { "ab", "cd" }));
+    }
+
+    @Test
+    public void skipsEmptyCharacterRows() throws MatlabEngineException {
+        assertThat(eval("size(['ab'; ''])"), is(new double[] { 1, 2 }));
+    }
+
+    @Test(expected = MatlabEngineException.class)
+    public void rejectsRaggedCharacterRows() throws MatlabEngineException {
+        engine.eval("x = ['ab'; 'c'];");
+    }
+
+    @Test(expected = MatlabEngineException.class)
+    public void doesNotFlattenCharacterMatrices() throws MatlabEngineException {
+        engine.eval("x = {['ab'; 'cd']};");
+        engine.returningEval("matlab_connector_flatten(x)", 4);
+    }
+
+    private Object eval(String expression) throws MatlabEngineException {
+        return engine.returningEval(expression, 1)[0];
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.MatlabResponse;
+import org.n52.matlab.connector.MatlabResult;
+import org.n52.matlab.connector.engine.StandInMatlabEngineFactory;
+import org.n52.matlab.connector.value.MatlabScalar;
+import org.n52.matlab.connector.value.MatlabString;
+import org.n52.matlab.connector.value.MatlabType;
+import org.n52.matlab.connector.value.MatlabValue;
+
+/**
+ * Checks that a failing request of a batch does not affect the other
+ * requests of the batch or the following batches.
+ *
+ * @author Christian Autermann
+ */
+@RunWith(Parameterized.class)
+public class BatchErrorIsolationTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private final boolean flattening;
+    private final boolean declaredTypes;
+    private final boolean batchedProbing;
+    private final int injectionThreshold;
+    private MatlabInstance instance;
+
+    public BatchErrorIsolationTest(boolean flattening, boolean declaredTypes,
+                                   boolean batchedProbing,
+                                   int injectionThreshold) {
+        this.flattening = flattening;
+        this.declaredTypes = declaredTypes;
+        this.batchedProbing = batchedProbing;
+        this.injectionThreshold = injectionThreshold;
+    }
+
+    @Parameters(name = "flattening={0}, declaredTypes={1}, batchedProbing={2}, injectionThreshold={3}")
+    public static List<Object[]> configurations() {
+        return IntegerRoundTripTest.configurations();
+    }
+
+    @Before
+    public void start() throws MatlabException {
+        instance = new MatlabInstance(MatlabInstanceConfiguration.builder()
+                .withBaseDir(folder.getRoot())
+                .withEngineFactory(new StandInMatlabEngineFactory(
+                        0, 0, TimeUnit.MILLISECONDS))
+                .withFlattening(flattening)
+                .withDeclaredTypes(declaredTypes)
+                .withBatchedProbing(batchedProbing)
+                .withInjectionThreshold(injectionThreshold)
+                .build());
+    }
+
+    @After
+    public void stop() throws MatlabException {
+        instance.destroy();
+    }
+
+    @Test
+    public void failingFunction() throws MatlabException {
+        MatlabRequest failing = new MatlabRequest("error")
+                .addParameter(new MatlabString("request failed"));
+        List<MatlabResponse> responses = instance.handle(Arrays.asList(
+                identity(1), failing, identity(3)));
+        assertThat(result(responses.get(0)), is(new MatlabScalar(1)));
+        assertFailure(responses.get(1), failing, "request failed");
+        assertThat(result(responses.get(2)), is(new MatlabScalar(3)));
+        assertFollowingBatch();
+    }
+
+    @Test
+    public void undefinedFunction() throws MatlabException {
+        MatlabRequest failing = new MatlabRequest("undefined")
+                .addResult("x", MatlabType.SCALAR);
+        List<MatlabResponse> responses = instance.handle(Arrays.asList(
+                identity(1), failing, identity(3)));
+        assertThat(result(responses.get(0)), is(new MatlabScalar(1)));
+        assertFailure(responses.get(1), failing, "undefined");
+        assertThat(result(responses.get(2)), is(new MatlabScalar(3)));
+        assertFollowingBatch();
+    }
+
+    @Test
+    public void tooManyResults() throws MatlabException {
+        MatlabRequest failing = identity(2).addResult("y", MatlabType.SCALAR);
+        List<MatlabResponse> responses = instance.handle(Arrays.asList(
+                identity(1), failing, identity(3)));
+        assertThat(result(responses.get(0)), is(new MatlabScalar(1)));
+        assertFailure(responses.get(1), failing, "Too many output arguments");
+        assertThat(result(responses.get(2)), is(new MatlabScalar(3)));
+        assertFollowingBatch();
+    }
+
+    private void assertFollowingBatch() {
+        List<MatlabResponse> responses = instance.handle(Arrays.asList(
+                identity(4), identity(5)));
+        assertThat(result(responses.get(0)), is(new MatlabScalar(4)));
+        assertThat(result(responses.get(1)), is(new MatlabScalar(5)));
+    }
+
+    private static void assertFailure(MatlabResponse response,
+                                      MatlabRequest request, String message) {
+        assertThat(response, is(instanceOf(MatlabException.class)));
+        assertThat(response.getId(), is(request.getId()));
+        assertThat(((MatlabException) response).getCause().getMessage(),
+                   containsString(message));
+    }
+
+    private static MatlabValue result(MatlabResponse response) {
+        assertThat(response, is(instanceOf(MatlabResult.class)));
+        return ((MatlabResult) response).getResult("x");
+    }
+
+    private static MatlabRequest identity(double value) {
+        return new MatlabRequest("identity")
+                .addParameter(new MatlabScalar(value))
+                .addResult("x", MatlabType.SCALAR);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.engine.StandInMatlabEngineFactory;
+import org.n52.matlab.connector.value.MatlabArray;
+import org.n52.matlab.connector.value.MatlabMatrix;
+import org.n52.matlab.connector.value.MatlabScalar;
+import org.n52.matlab.connector.value.MatlabType;
+import org.n52.matlab.connector.value.MatlabValue;
+
+/**
+ * Checks that a result is converted to its declared type in the same way
+ * whether it is fetched directly or probed first.
+ *
+ * @author Christian Autermann
+ */
+@RunWith(Parameterized.class)
+public class DeclaredTypeTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private final boolean flattening;
+    private final boolean declaredTypes;
+    private final boolean batchedProbing;
+    private final int injectionThreshold;
+    private MatlabInstance instance;
+
+    public DeclaredTypeTest(boolean flattening, boolean declaredTypes,
+                            boolean batchedProbing, int injectionThreshold) {
+        this.flattening = flattening;
+        this.declaredTypes = declaredTypes;
+        this.batchedProbing = batchedProbing;
+        this.injectionThreshold = injectionThreshold;
+    }
+
+    @Parameters(name = "flattening={0}, declaredTypes={1}, batchedProbing={2}, injectionThreshold={3}")
+    public static List<Object[]> configurations() {
+        return IntegerRoundTripTest.configurations();
+    }
+
+    @Before
+    public void start() throws MatlabException {
+        instance = new MatlabInstance(MatlabInstanceConfiguration.builder()
+                .withBaseDir(folder.getRoot())
+                .withEngineFactory(new StandInMatlabEngineFactory(
+                        0, 0, TimeUnit.MILLISECONDS))
+                .withFlattening(flattening)
+                .withDeclaredTypes(declaredTypes)
+                .withBatchedProbing(batchedProbing)
+                .withInjectionThreshold(injectionThreshold)
+                .build());
+    }
+
+    @After
+    public void stop() throws MatlabException {
+        instance.destroy();
+    }
+
+    @Test
+    public void scalarAsArray() throws MatlabException {
+        assertDeclared(new MatlabScalar(3), MatlabType.ARRAY,
+                       new MatlabArray(new double[] { 3 }));
+    }
+
+    @Test
+    public void scalarAsMatrix() throws MatlabException {
+        assertDeclared(new MatlabScalar(3), MatlabType.MATRIX,
+                       new MatlabMatrix(new double[] { 3 }, 1, 1));
+    }
+
+    @Test
+    public void rowAsArray() throws MatlabException {
+        assertDeclared(new MatlabArray(new double[] { 1, 2, 3 }),
+                       MatlabType.ARRAY, new MatlabArray(new double[] { 1, 2, 3 }));
+    }
+
+    @Test
+    public void rowAsMatrix() throws MatlabException {
+        assertDeclared(new MatlabArray(new double[] { 1, 2, 3 }),
+                       MatlabType.MATRIX,
+                       new MatlabMatrix(new double[] { 1, 2, 3 }, 1, 3));
+    }
+
+    @Test
+    public void columnAsArray() throws MatlabException {
+        assertDeclared(new MatlabMatrix(new double[] { 1, 2, 3 }, 3, 1),
+                       MatlabType.ARRAY, new MatlabArray(new double[] { 1, 2, 3 }));
+    }
+
+    @Test
+    public void columnAsMatrix() throws MatlabException {
+        assertDeclared(new MatlabMatrix(new double[] { 1, 2, 3 }, 3, 1),
+                       MatlabType.MATRIX,
+                       new MatlabMatrix(new double[] { 1, 2, 3 }, 3, 1));
+    }
+
+    @Test(expected = MatlabException.class)
+    public void matrixAsArray() throws MatlabException {
+        instance.handle(new MatlabRequest("identity")
+                .addParameter(new MatlabMatrix(new double[][] {
+                    { 1, 2 }, { 3, 4 }
+                }))
+                .addResult("value", MatlabType.ARRAY));
+    }
+
+    private void assertDeclared(MatlabValue value, MatlabType type,
+                                MatlabValue expected) throws MatlabException {
+        MatlabRequest request = new MatlabRequest("identity")
+                .addParameter(value)
+                .addResult("value", type);
+        assertThat(instance.handle(request).getResult("value"), is(expected));
+    }
+}
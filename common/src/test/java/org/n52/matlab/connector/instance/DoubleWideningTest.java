@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.engine.StandInMatlabEngineFactory;
+import org.n52.matlab.connector.value.MatlabArray;
+import org.n52.matlab.connector.value.MatlabByteArray;
+import org.n52.matlab.connector.value.MatlabIntArray;
+import org.n52.matlab.connector.value.MatlabLongArray;
+import org.n52.matlab.connector.value.MatlabMatrix;
+import org.n52.matlab.connector.value.MatlabNDArray;
+import org.n52.matlab.connector.value.MatlabScalar;
+import org.n52.matlab.connector.value.MatlabSingleArray;
+import org.n52.matlab.connector.value.MatlabType;
+import org.n52.matlab.connector.value.MatlabValue;
+
+/**
+ * Checks that integer and single-precision results declared as
+ * <code>double</code> types are widened to <code>double</code> with every
+ * transfer configuration.
+ *
+ * @author Christian Autermann
+ */
+@RunWith(Parameterized.class)
+public class DoubleWideningTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private final boolean flattening;
+    private final boolean declaredTypes;
+    private final boolean batchedProbing;
+    private final int injectionThreshold;
+    private MatlabInstance instance;
+
+    public DoubleWideningTest(boolean flattening, boolean declaredTypes,
+                              boolean batchedProbing, int injectionThreshold) {
+        this.flattening = flattening;
+        this.declaredTypes = declaredTypes;
+        this.batchedProbing = batchedProbing;
+        this.injectionThreshold = injectionThreshold;
+    }
+
+    @Parameters(name = "flattening={0}, declaredTypes={1}, batchedProbing={2}, injectionThreshold={3}")
+    public static List<Object[]> configurations() {
+        return IntegerRoundTripTest.configurations();
+    }
+
+    @Before
+    public void start() throws MatlabException {
+        instance = new MatlabInstance(MatlabInstanceConfiguration.builder()
+                .withBaseDir(folder.getRoot())
+                .withEngineFactory(new StandInMatlabEngineFactory(
+                        0, 0, TimeUnit.MILLISECONDS))
+                .withFlattening(flattening)
+                .withDeclaredTypes(declaredTypes)
+                .withBatchedProbing(batchedProbing)
+                .withInjectionThreshold(injectionThreshold)
+                .build());
+    }
+
+    @After
+    public void stop() throws MatlabException {
+        instance.destroy();
+    }
+
+    @Test
+    public void int32AsScalar() throws MatlabException {
+        assertWidened(new MatlabIntArray(new int[] { -7 }, false, 1, 1),
+                      MatlabType.SCALAR, new MatlabScalar(-7));
+    }
+
+    @Test
+    public void uint8AsArray() throws MatlabException {
+        assertWidened(new MatlabByteArray(new byte[] { 0, 1, (byte) 0xff },
+                                          true, 1, 3),
+                      MatlabType.ARRAY, new MatlabArray(new double[] { 0, 1, 255 }));
+    }
+
+    @Test
+    public void int64AsMatrix() throws MatlabException {
+        assertWidened(new MatlabLongArray(new long[] { 1, -2, 3, 1L << 40 },
+                                          false, 2, 2),
+                      MatlabType.MATRIX, new MatlabMatrix(new double[][] {
+                          { 1, 3 }, { -2, 1L << 40 }
+                      }));
+    }
+
+    @Test
+    public void singleAsArray() throws MatlabException {
+        assertWidened(new MatlabSingleArray(new float[] { 0.5f, -1.25f }, 1, 2),
+                      MatlabType.ARRAY, new MatlabArray(new double[] { 0.5, -1.25 }));
+    }
+
+    @Test
+    public void singleAsNDArray() throws MatlabException {
+        assertWidened(new MatlabSingleArray(
+                new float[] { 1, 2, 3, 4, 5, 6, 7, 8 }, 2, 2, 2),
+                      MatlabType.ND_ARRAY, new MatlabNDArray(
+                              new double[] { 1, 2, 3, 4, 5, 6, 7, 8 }, 2, 2, 2));
+    }
+
+    @Test
+    public void castResultAsArray() throws MatlabException {
+        MatlabRequest request = new MatlabRequest("int16")
+                .addParameter(new MatlabArray(new double[] { 1.4, -2.6, 40000 }))
+                .addResult("value", MatlabType.ARRAY);
+        assertThat(instance.handle(request).getResult("value"),
+                   is((MatlabValue) new MatlabArray(
+                           new double[] { 1, -3, Short.MAX_VALUE })));
+    }
+
+    private void assertWidened(MatlabValue value, MatlabType type,
+                               MatlabValue expected) throws MatlabException {
+        MatlabRequest request = new MatlabRequest("identity")
+                .addParameter(value)
+                .addResult("value", type);
+        assertThat(instance.handle(request).getResult("value"), is(expected));
+    }
+}
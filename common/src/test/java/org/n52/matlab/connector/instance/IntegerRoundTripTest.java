@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.engine.StandInMatlabEngineFactory;
+import org.n52.matlab.connector.value.MatlabByteArray;
+import org.n52.matlab.connector.value.MatlabCell;
+import org.n52.matlab.connector.value.MatlabIntArray;
+import org.n52.matlab.connector.value.MatlabLongArray;
+import org.n52.matlab.connector.value.MatlabShortArray;
+import org.n52.matlab.connector.value.MatlabStruct;
+import org.n52.matlab.connector.value.MatlabValue;
+
+/**
+ * Checks that the limits of every integer class survive the way to the
+ * stand-in engine and back with every transfer configuration.
+ *
+ * @author Christian Autermann
+ */
+@RunWith(Parameterized.class)
+public class IntegerRoundTripTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private final boolean flattening;
+    private final boolean declaredTypes;
+    private final boolean batchedProbing;
+    private final int injectionThreshold;
+    private MatlabInstance instance;
+
+    public IntegerRoundTripTest(boolean flattening, boolean declaredTypes,
+                                boolean batchedProbing, int injectionThreshold) {
+        this.flattening = flattening;
+        this.declaredTypes = declaredTypes;
+        this.batchedProbing = batchedProbing;
+        this.injectionThreshold = injectionThreshold;
+    }
+
+    @Parameters(name = "flattening={0}, declaredTypes={1}, batchedProbing={2}, injectionThreshold={3}")
+    public static List<Object[]> configurations() {
+        List<Object[]> configurations = new ArrayList<>();
+        for (boolean flattening : new boolean[] { true, false }) {
+            for (boolean declaredTypes : new boolean[] { true, false }) {
+                for (boolean batchedProbing : new boolean[] { true, false }) {
+                    for (int threshold : new int[] { 1, Integer.MAX_VALUE }) {
+                        configurations.add(new Object[] {
+                            flattening, declaredTypes, batchedProbing, threshold
+                        });
+                    }
+                }
+            }
+        }
+        return configurations;
+    }
+
+    @Before
+    public void start() throws MatlabException {
+        instance = new MatlabInstance(MatlabInstanceConfiguration.builder()
+                .withBaseDir(folder.getRoot())
+                .withEngineFactory(new StandInMatlabEngineFactory(
+                        0, 0, TimeUnit.MILLISECONDS))
+                .withFlattening(flattening)
+                .withDeclaredTypes(declaredTypes)
+                .withBatchedProbing(batchedProbing)
+                .withInjectionThreshold(injectionThreshold)
+                .build());
+    }
+
+    @After
+    public void stop() throws MatlabException {
+        instance.destroy();
+    }
+
+    @Test
+    public void int8() throws MatlabException {
+        assertRoundTrip(new MatlabByteArray(
+                new byte[] { Byte.MIN_VALUE, Byte.MAX_VALUE }, false, 1, 2));
+    }
+
+    @Test
+    public void uint8() throws MatlabException {
+        assertRoundTrip(new MatlabByteArray(
+                new byte[] { 0, (byte) 0xff }, true, 1, 2));
+    }
+
+    @Test
+    public void int16() throws MatlabException {
+        assertRoundTrip(new MatlabShortArray(
+                new short[] { Short.MIN_VALUE, Short.MAX_VALUE }, false, 1, 2));
+    }
+
+    @Test
+    public void uint16() throws MatlabException {
+        assertRoundTrip(new MatlabShortArray(
+                new short[] { 0, (short) 0xffff }, true, 1, 2));
+    }
+
+    @Test
+    public void int32() throws MatlabException {
+        assertRoundTrip(new MatlabIntArray(
+                new int[] { Integer.MIN_VALUE, Integer.MAX_VALUE }, false, 1, 2));
+    }
+
+    @Test
+    public void uint32() throws MatlabException {
+        assertRoundTrip(new MatlabIntArray(
+                new int[] { 0, 0xffffffff }, true, 1, 2));
+    }
+
+    @Test
+    public void int64() throws MatlabException {
+        assertRoundTrip(int64Limits());
+    }
+
+    @Test
+    public void uint64() throws MatlabException {
+        assertRoundTrip(uint64Limits());
+    }
+
+    @Test
+    public void int64InCell() throws MatlabException {
+        assertRoundTrip(new MatlabCell(int64Limits(), uint64Limits()));
+    }
+
+    @Test
+    public void int64InStruct() throws MatlabException {
+        assertRoundTrip(new MatlabStruct()
+                .set("signed", int64Limits())
+                .set("unsigned", uint64Limits()));
+    }
+
+    private static MatlabLongArray int64Limits() {
+        return new MatlabLongArray(
+                new long[] { Long.MIN_VALUE, Long.MAX_VALUE, 1 }, false, 1, 3);
+    }
+
+    private static MatlabLongArray uint64Limits() {
+        return new MatlabLongArray(
+                new long[] { 0, 0xffffffffffffffffL, 1 }, true, 1, 3);
+    }
+
+    private void assertRoundTrip(MatlabValue value) throws MatlabException {
+        MatlabRequest request = new MatlabRequest("identity")
+                .addParameter(value)
+                .addResult("value", value.getType());
+        assertThat(instance.handle(request).getResult("value"), is(value));
+    }
+}
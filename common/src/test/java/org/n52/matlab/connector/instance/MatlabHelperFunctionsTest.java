@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.engine.ProxyMatlabEngineFactory;
+import org.n52.matlab.connector.engine.StandInMatlabEngineFactory;
+import org.n52.matlab.connector.value.MatlabArray;
+import org.n52.matlab.connector.value.MatlabCell;
+import org.n52.matlab.connector.value.MatlabIntArray;
+import org.n52.matlab.connector.value.MatlabLogicalArray;
+import org.n52.matlab.connector.value.MatlabLongArray;
+import org.n52.matlab.connector.value.MatlabMatrix;
+import org.n52.matlab.connector.value.MatlabScalar;
+import org.n52.matlab.connector.value.MatlabSparseMatrix;
+import org.n52.matlab.connector.value.MatlabString;
+import org.n52.matlab.connector.value.MatlabStruct;
+import org.n52.matlab.connector.value.MatlabStructArray;
+import org.n52.matlab.connector.value.MatlabTable;
+import org.n52.matlab.connector.value.MatlabType;
+import org.n52.matlab.connector.value.MatlabValue;
+
+/**
+ * Compares the <code>matlab_connector_*</code> helpers shipped with the
+ * connector to the native implementations of the stand-in engine. The
+ * stand-in does not run the shipped <code>.m</code> files, so they are only
+ * verified by this test. It needs a local MATLAB installation and is skipped
+ * unless the system property <code>matlab.connector.test.matlab</code> is
+ * <code>true</code>.
+ *
+ * @author Christian Autermann
+ */
+public class MatlabHelperFunctionsTest {
+    @ClassRule
+    public static final TemporaryFolder folder = new TemporaryFolder();
+    private static MatlabInstance matlab;
+    private static MatlabInstance standIn;
+
+    @BeforeClass
+    public static void start() throws Exception {
+        assumeTrue(Boolean.getBoolean("matlab.connector.test.matlab"));
+        standIn = new MatlabInstance(MatlabInstanceConfiguration.builder()
+                .withBaseDir(folder.newFolder())
+                .withEngineFactory(new StandInMatlabEngineFactory(
+                        0, 0, TimeUnit.MILLISECONDS))
+                .build());
+        matlab = new MatlabInstance(MatlabInstanceConfiguration.builder()
+                .withBaseDir(folder.newFolder())
+                .withEngineFactory(new ProxyMatlabEngineFactory())
+                .hidden()
+                .build());
+    }
+
+    @AfterClass
+    public static void stop() throws MatlabException {
+        if (standIn != null) {
+            standIn.destroy();
+        }
+        if (matlab != null) {
+            matlab.destroy();
+        }
+    }
+
+    @Test
+    public void flattenNested() throws MatlabException {
+        assertFlattenAgrees(new MatlabCell(
+                new MatlabString("abc"),
+                new MatlabMatrix(new double[][] { { 1, 2, 3 }, { 4, 5, 6 } }),
+                new MatlabCell(new MatlabScalar(7), new MatlabString("de")),
+                new MatlabStruct()
+                        .set("b", new MatlabArray(new double[] { 1, 2 }))
+                        .set("a", new MatlabString("f"))));
+    }
+
+    @Test
+    public void flattenTypedArrays() throws MatlabException {
+        assertFlattenAgrees(new MatlabCell(
+                new MatlabString("x"),
+                new MatlabIntArray(new int[] { Integer.MIN_VALUE, 1 },
+                                   false, 1, 2),
+                new MatlabLongArray(new long[] { Long.MIN_VALUE, Long.MAX_VALUE },
+                                    false, 1, 2),
+                new MatlabLongArray(new long[] { 0, 0xffffffffffffffffL },
+                                    true, 2, 1)));
+    }
+
+    @Test
+    public void flattenLogicalAndSparse() throws MatlabException {
+        boolean[] bits = new boolean[40];
+        bits[0] = bits[31] = bits[32] = bits[39] = true;
+        assertFlattenAgrees(new MatlabCell(
+                new MatlabString("y"),
+                new MatlabLogicalArray(bits, 5, 8),
+                new MatlabSparseMatrix(3, 2, new int[] { 0, 1, 3 },
+                                       new int[] { 2, 0, 1 },
+                                       new double[] { 1.5, -2, 3 })));
+    }
+
+    @Test
+    public void flattenStructArray() throws MatlabException {
+        assertFlattenAgrees(new MatlabStructArray(
+                Collections.singletonMap(new MatlabString("name"),
+                                         new MatlabValue[] {
+                                             new MatlabString("a"),
+                                             new MatlabString("bc"),
+                                             new MatlabScalar(3)
+                                         }), 1, 3));
+    }
+
+    @Test
+    public void pack() throws MatlabException {
+        boolean[] bits = new boolean[70];
+        for (int i = 0; i < bits.length; i += 3) {
+            bits[i] = true;
+        }
+        assertAgrees(new MatlabRequest("matlab_connector_pack")
+                .addParameter(new MatlabLogicalArray(bits, 7, 10))
+                .addResult("words", MatlabType.ARRAY));
+    }
+
+    @Test
+    public void column() throws MatlabException {
+        MatlabTable table = MatlabTable.builder(3)
+                .addNumeric("n", new double[] { 1, 2.5, -3 })
+                .addString("s", new String[] { "a", "", "cd" })
+                .addLogical("l", new boolean[] { true, false, true })
+                .build();
+        for (int k = 1; k <= table.getColumnCount(); ++k) {
+            MatlabType type = k == 2 ? MatlabType.CELL : MatlabType.ARRAY;
+            assertAgrees(new MatlabRequest("matlab_connector_column")
+                    .addParameter(table)
+                    .addParameter(new MatlabScalar(k))
+                    .addResult("kind", MatlabType.SCALAR)
+                    .addResult("values", type));
+        }
+    }
+
+    private static void assertFlattenAgrees(MatlabValue value)
+            throws MatlabException {
+        assertAgrees(new MatlabRequest("matlab_connector_flatten")
+                .addParameter(value)
+                .addResult("tags", MatlabType.ARRAY)
+                .addResult("dims", MatlabType.ARRAY)
+                .addResult("doubles", MatlabType.ARRAY)
+                .addResult("chars", MatlabType.STRING));
+    }
+
+    private static void assertAgrees(MatlabRequest request)
+            throws MatlabException {
+        assertThat(matlab.handle(request).getResults(),
+                   is(standIn.handle(request).getResults()));
+    }
+}
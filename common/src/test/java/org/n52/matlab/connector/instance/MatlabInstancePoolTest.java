@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.MatlabResponse;
+import org.n52.matlab.connector.MatlabResult;
+import org.n52.matlab.connector.engine.MatlabEngine;
+import org.n52.matlab.connector.engine.MatlabEngineFactory;
+import org.n52.matlab.connector.engine.StandInMatlabEngineFactory;
+import org.n52.matlab.connector.value.MatlabScalar;
+import org.n52.matlab.connector.value.MatlabType;
+import org.n52.matlab.connector.value.MatlabValue;
+
+/**
+ * Checks how the pool manages its instances.
+ *
+ * @author Christian Autermann
+ */
+public class MatlabInstancePoolTest {
+    private static final int MAX_INSTANCES = 2;
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private final CountingEngineFactory engines = new CountingEngineFactory();
+    private MatlabInstancePool pool;
+
+    @After
+    public void stop() {
+        if (pool != null) {
+            pool.destroy();
+        }
+    }
+
+    @Test
+    public void timesOutWaitingForInstance() throws MatlabException {
+        pool = new MatlabInstancePool(configuration()
+                .withMaximalNumInstances(1)
+                .withBorrowTimeout(50, TimeUnit.MILLISECONDS)
+                .build());
+        MatlabInstance instance = pool.getInstance();
+        try {
+            pool.getInstance();
+            fail("borrow did not time out");
+        } catch (MatlabException e) {
+            assertThat(e.getMessage(),
+                       is("Timed out waiting for a MATLAB instance."));
+        }
+        assertThat(pool.getStatistics().getTimeouts(), is(1L));
+        pool.returnInstance(instance);
+        assertThat(pool.getInstance(), is(sameInstance(instance)));
+    }
+
+    @Test
+    public void rejectsTooManyWaitingBorrows() throws Exception {
+        pool = new MatlabInstancePool(configuration()
+                .withMaximalNumInstances(1)
+                .withMaxWaiting(1)
+                .build());
+        MatlabInstance instance = pool.getInstance();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<MatlabInstance> waiting = executor.submit(
+                    () -> pool.getInstance());
+            while (pool.getStatistics().getWaiting() == 0) {
+                Thread.sleep(1);
+            }
+            try {
+                pool.getInstance();
+                fail("borrow was not rejected");
+            } catch (MatlabException e) {
+                assertThat(e.getMessage(), is("Too many requests (1) " +
+                                              "waiting for a MATLAB instance."));
+            }
+            assertThat(pool.getStatistics().getRejected(), is(1L));
+            pool.returnInstance(instance);
+            assertThat(waiting.get(1, TimeUnit.SECONDS),
+                       is(sameInstance(instance)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void prefersInstanceThatEvaluatedFunction() throws MatlabException {
+        pool = new MatlabInstancePool(configuration().withAffinity().build());
+        MatlabInstance first = pool.getInstance();
+        MatlabInstance second = pool.getInstance();
+        first.handle(identity());
+        second.handle(sleep(0));
+        // the most recently returned instance is the first idle one
+        pool.returnInstance(first);
+        pool.returnInstance(second);
+        MatlabInstance preferred = pool.getInstance("identity");
+        assertThat(preferred, is(sameInstance(first)));
+        pool.returnInstance(preferred);
+        MatlabInstance other = pool.getInstance("add");
+        assertThat(other, is(sameInstance(first)));
+        pool.returnInstance(other);
+        assertThat(pool.getStatistics().getAffinityHits(), is(1L));
+        assertThat(pool.getStatistics().getAffinityMisses(), is(1L));
+    }
+
+    @Test
+    public void ignoresFunctionWithoutAffinity() throws MatlabException {
+        pool = new MatlabInstancePool(configuration().build());
+        MatlabInstance first = pool.getInstance();
+        MatlabInstance second = pool.getInstance();
+        first.handle(identity());
+        pool.returnInstance(first);
+        pool.returnInstance(second);
+        assertThat(pool.getInstance("identity"), is(sameInstance(second)));
+        assertThat(pool.getStatistics().getAffinityHits(), is(0L));
+    }
+
+    @Test
+    public void killsInstancesThatTimedOut() throws MatlabException {
+        pool = new MatlabInstancePool(configuration()
+                .withRequestTimeout(100, TimeUnit.MILLISECONDS)
+                .build());
+        for (int i = 0; i < 2 * MAX_INSTANCES + 1; ++i) {
+            try {
+                pool.handle(sleep(60));
+                fail("request did not time out");
+            } catch (MatlabException e) {
+                assertThat(e.getMessage(), is("Request timed out after 100ms."));
+            }
+            assertThat(engines.live(), is(lessThanOrEqualTo(MAX_INSTANCES)));
+        }
+        assertThat(pool.handle(sleep(0)).getResult("x"),
+                   is(new MatlabScalar(0)));
+        assertThat(engines.live(), is(lessThanOrEqualTo(MAX_INSTANCES)));
+    }
+
+    @Test
+    public void batchesRequestsSubjectToTimeout() {
+        pool = new MatlabInstancePool(configuration()
+                .withRequestTimeout(1, TimeUnit.SECONDS)
+                .build());
+        List<MatlabResponse> responses = pool.handle(Arrays.asList(
+                sleep(0), sleep(0.01), sleep(0.02)));
+        assertThat(result(responses.get(0)), is(new MatlabScalar(0)));
+        assertThat(result(responses.get(1)), is(new MatlabScalar(0.01)));
+        assertThat(result(responses.get(2)), is(new MatlabScalar(0.02)));
+        assertThat(pool.getStatistics().getBorrowed(), is(1L));
+    }
+
+    @Test
+    public void batchesRequestsByTimeout() {
+        pool = new MatlabInstancePool(configuration().build());
+        List<MatlabResponse> responses = pool.handle(Arrays.asList(
+                sleep(0), sleep(0.01).setTimeout(1, TimeUnit.SECONDS),
+                sleep(0.02), sleep(0.03).setTimeout(1, TimeUnit.SECONDS)));
+        assertThat(result(responses.get(0)), is(new MatlabScalar(0)));
+        assertThat(result(responses.get(1)), is(new MatlabScalar(0.01)));
+        assertThat(result(responses.get(2)), is(new MatlabScalar(0.02)));
+        assertThat(result(responses.get(3)), is(new MatlabScalar(0.03)));
+        assertThat(pool.getStatistics().getBorrowed(), is(2L));
+    }
+
+    @Test
+    public void timesOutBatchAsWhole() throws MatlabException {
+        pool = new MatlabInstancePool(configuration()
+                .withRequestTimeout(100, TimeUnit.MILLISECONDS)
+                .build());
+        MatlabRequest fast = sleep(0);
+        MatlabRequest slow = sleep(60);
+        List<MatlabResponse> responses = pool.handle(Arrays.asList(fast, slow));
+        assertThat(responses.get(0), is(instanceOf(MatlabException.class)));
+        assertThat(responses.get(0).getId(), is(fast.getId()));
+        assertThat(responses.get(1), is(instanceOf(MatlabException.class)));
+        assertThat(responses.get(1).getId(), is(slow.getId()));
+        assertThat(pool.getStatistics().getRequestTimeouts(), is(1L));
+        assertThat(engines.live(), is(lessThanOrEqualTo(MAX_INSTANCES)));
+        assertThat(pool.handle(sleep(0)).getResult("x"),
+                   is(new MatlabScalar(0)));
+    }
+
+    private MatlabInstancePoolConfiguration.Builder configuration() {
+        return MatlabInstancePoolConfiguration.builder()
+                .withMaximalNumInstances(MAX_INSTANCES)
+                .withInstanceConfig(MatlabInstanceConfiguration.builder()
+                        .withBaseDir(folder.getRoot())
+                        .withEngineFactory(engines)
+                        .build());
+    }
+
+    private static MatlabValue result(MatlabResponse response) {
+        assertThat(response, is(instanceOf(MatlabResult.class)));
+        return ((MatlabResult) response).getResult("x");
+    }
+
+    private static MatlabRequest identity() {
+        return new MatlabRequest("identity")
+                .addParameter(new MatlabScalar(1))
+                .addResult("x", MatlabType.SCALAR);
+    }
+
+    private static MatlabRequest sleep(double seconds) {
+        return new MatlabRequest("sleep")
+                .addParameter(new MatlabScalar(seconds))
+                .addResult("x", MatlabType.SCALAR);
+    }
+
+    /**
+     * Keeps track of the engines that are still connected to their session.
+     */
+    private static class CountingEngineFactory implements MatlabEngineFactory {
+        private final MatlabEngineFactory delegate
+                = new StandInMatlabEngineFactory();
+        private final List<MatlabEngine> engines = new CopyOnWriteArrayList<>();
+
+        @Override
+        public MatlabEngine create(MatlabInstanceConfiguration config)
+                throws MatlabException {
+            MatlabEngine engine = delegate.create(config);
+            engines.add(engine);
+            return engine;
+        }
+
+        int live() {
+            int live = 0;
+            for (MatlabEngine engine : engines) {
+                if (engine.isConnected()) {
+                    ++live;
+                }
+            }
+            return live;
+        }
+    }
+}
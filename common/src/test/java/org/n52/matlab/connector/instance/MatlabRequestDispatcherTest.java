@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.MatlabResult;
+import org.n52.matlab.connector.engine.StandInMatlabEngineFactory;
+import org.n52.matlab.connector.value.MatlabScalar;
+import org.n52.matlab.connector.value.MatlabType;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Checks how the dispatcher batches and coalesces requests.
+ *
+ * @author Christian Autermann
+ */
+public class MatlabRequestDispatcherTest {
+    private static final int REQUESTS = 4;
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private MatlabInstancePool pool;
+    private MatlabRequestDispatcher dispatcher;
+
+    @After
+    public void stop() {
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+        if (pool != null) {
+            pool.destroy();
+        }
+    }
+
+    @Test
+    public void coalescesScalarRequests()
+            throws InterruptedException, ExecutionException {
+        pool = new MatlabInstancePool(configuration().build());
+        dispatcher = new MatlabRequestDispatcher(pool, 1, 16,
+                vectorization("add"));
+        List<MatlabRequest> requests = new ArrayList<>();
+        List<ListenableFuture<MatlabResult>> futures = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; ++i) {
+            requests.add(add(i, 1));
+            futures.add(dispatcher.submit(requests.get(i)));
+        }
+        for (int i = 0; i < REQUESTS; ++i) {
+            MatlabResult result = futures.get(i).get();
+            assertThat(result.getId(), is(requests.get(i).getId()));
+            assertThat(result.getResult("sum"), is(new MatlabScalar(i + 1)));
+        }
+        assertThat(pool.getStatistics().getBorrowed(), is(1L));
+    }
+
+    @Test
+    public void coalescesOnlyRequestsWithSameTimeout()
+            throws InterruptedException, ExecutionException {
+        pool = new MatlabInstancePool(configuration().build());
+        dispatcher = new MatlabRequestDispatcher(pool, 1, 16,
+                vectorization("add"));
+        List<ListenableFuture<MatlabResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 2 * REQUESTS; ++i) {
+            MatlabRequest request = add(i, 1);
+            if (i % 2 == 0) {
+                request.setTimeout(1, TimeUnit.SECONDS);
+            }
+            futures.add(dispatcher.submit(request));
+        }
+        for (int i = 0; i < 2 * REQUESTS; ++i) {
+            assertThat(futures.get(i).get().getResult("sum"),
+                       is(new MatlabScalar(i + 1)));
+        }
+        assertThat(pool.getStatistics().getBorrowed(), is(2L));
+    }
+
+    @Test
+    public void evaluatesIndividuallyIfCombinedRequestFails()
+            throws InterruptedException, ExecutionException {
+        pool = new MatlabInstancePool(configuration().build());
+        // sleep does not accept arrays, the combined request fails
+        dispatcher = new MatlabRequestDispatcher(pool, 1, 16,
+                vectorization("sleep"));
+        List<ListenableFuture<MatlabResult>> futures = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; ++i) {
+            futures.add(dispatcher.submit(new MatlabRequest("sleep")
+                    .addParameter(new MatlabScalar(i / 1000.0))
+                    .addResult("x", MatlabType.SCALAR)));
+        }
+        for (int i = 0; i < REQUESTS; ++i) {
+            assertThat(futures.get(i).get().getResult("x"),
+                       is(new MatlabScalar(i / 1000.0)));
+        }
+        assertThat(pool.getStatistics().getBorrowed(),
+                   is(greaterThan(1L)));
+    }
+
+    @Test
+    public void coalescesRequestsSubjectToTimeout()
+            throws InterruptedException, ExecutionException {
+        pool = new MatlabInstancePool(configuration()
+                .withRequestTimeout(1, TimeUnit.SECONDS)
+                .build());
+        dispatcher = new MatlabRequestDispatcher(pool, 1, 16,
+                vectorization("add"));
+        List<ListenableFuture<MatlabResult>> futures = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; ++i) {
+            futures.add(dispatcher.submit(add(i, 1)));
+        }
+        for (int i = 0; i < REQUESTS; ++i) {
+            assertThat(futures.get(i).get().getResult("sum"),
+                       is(new MatlabScalar(i + 1)));
+        }
+        assertThat(pool.getStatistics().getBorrowed(), is(1L));
+    }
+
+    private MatlabInstancePoolConfiguration.Builder configuration() {
+        return MatlabInstancePoolConfiguration.builder()
+                .withMaximalNumInstances(1)
+                .withInstanceConfig(MatlabInstanceConfiguration.builder()
+                        .withBaseDir(folder.getRoot())
+                        .withEngineFactory(new StandInMatlabEngineFactory())
+                        .build());
+    }
+
+    private static MatlabVectorizationConfiguration vectorization(
+            String function) {
+        return MatlabVectorizationConfiguration.builder()
+                .withFunction(function)
+                .withWindow(1, TimeUnit.SECONDS)
+                .withMaxBatchSize(REQUESTS)
+                .build();
+    }
+
+    private static MatlabRequest add(double a, double b) {
+        return new MatlabRequest("add")
+                .addParameter(new MatlabScalar(a))
+                .addParameter(new MatlabScalar(b))
+                .addResult("sum", MatlabType.SCALAR);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.MatlabResult;
+import org.n52.matlab.connector.value.MatlabArray;
+import org.n52.matlab.connector.value.MatlabType;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Checks which results the cache keeps and for how long.
+ *
+ * @author Christian Autermann
+ */
+public class MatlabResultCacheTest {
+    private static final String FUNCTION = "echo";
+    private final AtomicInteger evaluations = new AtomicInteger();
+
+    @Test
+    public void servesCachedResult()
+            throws InterruptedException, ExecutionException {
+        MatlabResultCache cache = new MatlabResultCache(configuration().build());
+        MatlabRequest second = request(1);
+        get(cache, request(1));
+        MatlabResult result = get(cache, second);
+        assertThat(evaluations.get(), is(1));
+        assertThat(result.getId(), is(second.getId()));
+        assertThat(result.getResult("x"), is(new MatlabArray(value(1))));
+        assertThat(cache.getStatistics().hitCount(), is(1L));
+    }
+
+    @Test
+    public void sharesRunningEvaluation()
+            throws InterruptedException, ExecutionException {
+        MatlabResultCache cache = new MatlabResultCache(configuration().build());
+        SettableFuture<MatlabResult> running = SettableFuture.create();
+        MatlabRequest first = request(1);
+        MatlabRequest second = request(1);
+        ListenableFuture<MatlabResult> f1 = cache.get(first, r -> running);
+        ListenableFuture<MatlabResult> f2 = cache.get(second, this::evaluate);
+        running.set(evaluate(first).get());
+        assertThat(f1.get().getId(), is(first.getId()));
+        assertThat(f2.get().getId(), is(second.getId()));
+        assertThat(evaluations.get(), is(1));
+        assertThat(cache.getSharedEvaluations(), is(1L));
+    }
+
+    @Test
+    public void expiresAfterTimeToLive()
+            throws InterruptedException, ExecutionException {
+        MatlabResultCache cache = new MatlabResultCache(configuration()
+                .withTimeToLive(50, TimeUnit.MILLISECONDS).build());
+        get(cache, request(1));
+        get(cache, request(1));
+        assertThat(evaluations.get(), is(1));
+        Thread.sleep(100);
+        get(cache, request(1));
+        assertThat(evaluations.get(), is(2));
+    }
+
+    @Test
+    public void evictsBeyondMaximumSize()
+            throws InterruptedException, ExecutionException {
+        // every result holds at least 2 * 100 doubles
+        MatlabResultCache cache = new MatlabResultCache(configuration()
+                .withMaximumSize(16 * 1024).build());
+        for (int i = 0; i < 100; ++i) {
+            get(cache, request(i));
+        }
+        assertThat(cache.size(), is(lessThan(100L)));
+        assertThat(cache.getStatistics().evictionCount(), is(greaterThan(0L)));
+        get(cache, request(99));
+        assertThat(evaluations.get(), is(100));
+    }
+
+    @Test
+    public void doesNotKeepResultsLargerThanMaximumSize()
+            throws InterruptedException, ExecutionException {
+        MatlabResultCache cache = new MatlabResultCache(configuration()
+                .withMaximumSize(1024).build());
+        get(cache, request(1));
+        get(cache, request(1));
+        assertThat(cache.size(), is(0L));
+        assertThat(evaluations.get(), is(2));
+    }
+
+    @Test
+    public void doesNotCacheFailures()
+            throws InterruptedException, ExecutionException {
+        MatlabResultCache cache = new MatlabResultCache(configuration().build());
+        ListenableFuture<MatlabResult> failed = cache.get(request(1),
+                r -> Futures.immediateFailedFuture(
+                        new MatlabException("request failed")));
+        try {
+            failed.get();
+            fail("evaluation did not fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), is("request failed"));
+        }
+        get(cache, request(1));
+        assertThat(evaluations.get(), is(1));
+        assertThat(cache.size(), is(1L));
+    }
+
+    @Test
+    public void acceptsDeterministicFunctionsWithoutFiles() {
+        MatlabResultCache cache = new MatlabResultCache(configuration().build());
+        assertThat(cache.accepts(request(1)), is(true));
+        assertThat(cache.accepts(new MatlabRequest("rand")
+                .addResult("x", MatlabType.SCALAR)), is(false));
+        assertThat(cache.accepts(new MatlabRequest(FUNCTION)
+                .addResult("x", MatlabType.FILE)), is(false));
+    }
+
+    private MatlabResult get(MatlabResultCache cache, MatlabRequest request)
+            throws InterruptedException, ExecutionException {
+        return cache.get(request, this::evaluate).get();
+    }
+
+    private ListenableFuture<MatlabResult> evaluate(MatlabRequest request) {
+        evaluations.incrementAndGet();
+        MatlabResult result = new MatlabResult(request.getId());
+        result.addResult("x", new MatlabArray(
+                ((MatlabArray) request.getParameter(0)).value()));
+        return Futures.immediateFuture(result);
+    }
+
+    private static MatlabResultCacheConfiguration.Builder configuration() {
+        return MatlabResultCacheConfiguration.builder().withFunction(FUNCTION);
+    }
+
+    private static MatlabRequest request(int seed) {
+        return new MatlabRequest(FUNCTION)
+                .addParameter(new MatlabArray(value(seed)))
+                .addResult("x", MatlabType.ARRAY);
+    }
+
+    private static double[] value(int seed) {
+        double[] value = new double[100];
+        for (int i = 0; i < value.length; ++i) {
+            value[i] = seed + i;
+        }
+        return value;
+    }
+}
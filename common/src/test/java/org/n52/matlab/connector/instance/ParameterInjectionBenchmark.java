@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.engine.StandInMatlabEngineFactory;
+import org.n52.matlab.connector.value.MatlabArray;
+import org.n52.matlab.connector.value.MatlabType;
+
+/**
+ * Compares rendering numeric parameters into the evaluated command with
+ * transferring them as variables for increasing parameter sizes to find the
+ * crossover point for {@link MatlabInstanceConfiguration#getInjectionThreshold()}.
+ * <p>
+ * Usage: <code>ParameterInjectionBenchmark [matlab|latency-in-ms]</code>;
+ * without arguments a {@link StandInMatlabEngineFactory} with a latency of one
+ * millisecond per call is used.
+ *
+ * @author Christian Autermann
+ */
+public class ParameterInjectionBenchmark {
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 20;
+    private static final int MAX_SIZE = 1000000;
+
+    public static void main(String[] args) throws MatlabException {
+        MatlabInstanceConfiguration.Builder builder
+                = MatlabInstanceConfiguration.builder();
+        if (args.length == 0 || !args[0].equals("matlab")) {
+            long latency = args.length == 0 ? 1 : Long.parseLong(args[0]);
+            builder.withEngineFactory(new StandInMatlabEngineFactory(
+                    latency, 0, TimeUnit.MILLISECONDS));
+        }
+        MatlabInstance rendering = new MatlabInstance(builder
+                .withInjectionThreshold(Integer.MAX_VALUE).build());
+        MatlabInstance injecting = new MatlabInstance(builder
+                .withInjectionThreshold(1).build());
+        try {
+            System.out.printf("%10s %15s %15s%n", "elements",
+                              "rendering [ms]", "injecting [ms]");
+            Random random = new Random(42);
+            for (int size = 1; size <= MAX_SIZE; size *= 10) {
+                double[] values = new double[size];
+                for (int i = 0; i < size; ++i) {
+                    values[i] = random.nextDouble();
+                }
+                MatlabRequest request = new MatlabRequest("numel")
+                        .addParameter(new MatlabArray(values))
+                        .addResult("n", MatlabType.SCALAR);
+                System.out.printf("%10d %15.3f %15.3f%n", size,
+                                  measure(rendering, request),
+                                  measure(injecting, request));
+            }
+        } finally {
+            rendering.destroy();
+            injecting.destroy();
+        }
+    }
+
+    private static double measure(MatlabInstance instance,
+                                  MatlabRequest request)
+            throws MatlabException {
+        for (int i = 0; i < WARMUP; ++i) {
+            instance.handle(request);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            instance.handle(request);
+        }
+        return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.MatlabResult;
+import org.n52.matlab.connector.engine.StandInMatlabEngineFactory;
+import org.n52.matlab.connector.json.MatlabJSONEncoding;
+import org.n52.matlab.connector.value.MatlabCell;
+import org.n52.matlab.connector.value.MatlabSparseMatrix;
+import org.n52.matlab.connector.value.MatlabStruct;
+import org.n52.matlab.connector.value.MatlabValue;
+
+/**
+ * Checks that sparse matrices survive the way to the stand-in engine and back
+ * with every transfer configuration as well as the JSON encoding.
+ *
+ * @author Christian Autermann
+ */
+@RunWith(Parameterized.class)
+public class SparseMatrixRoundTripTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private final MatlabJSONEncoding encoding = new MatlabJSONEncoding();
+    private final boolean flattening;
+    private final boolean declaredTypes;
+    private final boolean batchedProbing;
+    private final int injectionThreshold;
+    private MatlabInstance instance;
+
+    public SparseMatrixRoundTripTest(boolean flattening, boolean declaredTypes,
+                                     boolean batchedProbing,
+                                     int injectionThreshold) {
+        this.flattening = flattening;
+        this.declaredTypes = declaredTypes;
+        this.batchedProbing = batchedProbing;
+        this.injectionThreshold = injectionThreshold;
+    }
+
+    @Parameters(name = "flattening={0}, declaredTypes={1}, batchedProbing={2}, injectionThreshold={3}")
+    public static List<Object[]> configurations() {
+        return IntegerRoundTripTest.configurations();
+    }
+
+    @Before
+    public void start() throws MatlabException {
+        instance = new MatlabInstance(MatlabInstanceConfiguration.builder()
+                .withBaseDir(folder.getRoot())
+                .withEngineFactory(new StandInMatlabEngineFactory(
+                        0, 0, TimeUnit.MILLISECONDS))
+                .withFlattening(flattening)
+                .withDeclaredTypes(declaredTypes)
+                .withBatchedProbing(batchedProbing)
+                .withInjectionThreshold(injectionThreshold)
+                .build());
+    }
+
+    @After
+    public void stop() throws MatlabException {
+        instance.destroy();
+    }
+
+    @Test
+    public void matrix() throws MatlabException {
+        assertRoundTrip(matrixWithEmptyColumn());
+    }
+
+    @Test
+    public void rowVector() throws MatlabException {
+        assertRoundTrip(MatlabSparseMatrix.fromDense(
+                new double[] { 0, 1.5, 0, 0, -2 }, 1, 5));
+    }
+
+    @Test
+    public void allZeros() throws MatlabException {
+        assertRoundTrip(MatlabSparseMatrix.fromDense(new double[6], 2, 3));
+    }
+
+    @Test
+    public void fromTriplets() throws MatlabException {
+        assertRoundTrip(MatlabSparseMatrix.fromTriplets(
+                1000, 1000, new int[] { 999, 0, 500 },
+                new int[] { 0, 999, 500 }, new double[] { 1, 2, 3 }));
+    }
+
+    @Test
+    public void inCell() throws MatlabException {
+        assertRoundTrip(new MatlabCell(matrixWithEmptyColumn()));
+    }
+
+    @Test
+    public void inStruct() throws MatlabException {
+        assertRoundTrip(new MatlabStruct().set("sparse",
+                                               matrixWithEmptyColumn()));
+    }
+
+    private static MatlabSparseMatrix matrixWithEmptyColumn() {
+        return MatlabSparseMatrix.fromDense(new double[] {
+            1, 0, 0,
+            0, 0, 0,
+            0, 2, 3,
+            4, 0, 5
+        }, 3, 4);
+    }
+
+    private void assertRoundTrip(MatlabValue value) throws MatlabException {
+        MatlabRequest request = new MatlabRequest("identity")
+                .addParameter(value)
+                .addResult("value", value.getType());
+        MatlabResult result = instance.handle(request);
+        assertThat(result.getResult("value"), is(value));
+        MatlabRequest decoded = encoding.decodeRequest(
+                encoding.encodeRequest(request));
+        assertThat(decoded.getParameter(0), is(value));
+        assertThat(((MatlabResult) encoding.decodeResponse(
+                encoding.encodeResponse(result))).getResult("value"),
+                   is(value));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.MatlabResponse;
+import org.n52.matlab.connector.MatlabResult;
+import org.n52.matlab.connector.engine.StandInMatlabEngineFactory;
+import org.n52.matlab.connector.value.MatlabCell;
+import org.n52.matlab.connector.value.MatlabScalar;
+import org.n52.matlab.connector.value.MatlabString;
+import org.n52.matlab.connector.value.MatlabStruct;
+import org.n52.matlab.connector.value.MatlabType;
+import org.n52.matlab.connector.value.MatlabValue;
+
+import com.google.common.base.Strings;
+
+/**
+ * Checks that long result names and deeply nested results do not produce
+ * variable names beyond <code>namelengthmax</code>, which MATLAB (and the
+ * stand-in) would truncate.
+ *
+ * @author Christian Autermann
+ */
+@RunWith(Parameterized.class)
+public class VariableNameTest {
+    private static final String LONG_NAME = Strings.repeat("result", 12);
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private final boolean flattening;
+    private final boolean declaredTypes;
+    private final boolean batchedProbing;
+    private final int injectionThreshold;
+    private MatlabInstance instance;
+
+    public VariableNameTest(boolean flattening, boolean declaredTypes,
+                            boolean batchedProbing, int injectionThreshold) {
+        this.flattening = flattening;
+        this.declaredTypes = declaredTypes;
+        this.batchedProbing = batchedProbing;
+        this.injectionThreshold = injectionThreshold;
+    }
+
+    @Parameters(name = "flattening={0}, declaredTypes={1}, batchedProbing={2}, injectionThreshold={3}")
+    public static List<Object[]> configurations() {
+        return IntegerRoundTripTest.configurations();
+    }
+
+    @Before
+    public void start() throws MatlabException {
+        instance = new MatlabInstance(MatlabInstanceConfiguration.builder()
+                .withBaseDir(folder.getRoot())
+                .withEngineFactory(new StandInMatlabEngineFactory(
+                        0, 0, TimeUnit.MILLISECONDS))
+                .withFlattening(flattening)
+                .withDeclaredTypes(declaredTypes)
+                .withBatchedProbing(batchedProbing)
+                .withInjectionThreshold(injectionThreshold)
+                .build());
+    }
+
+    @After
+    public void stop() throws MatlabException {
+        instance.destroy();
+    }
+
+    @Test
+    public void longResultNames() throws MatlabException {
+        MatlabRequest request = new MatlabRequest("identity")
+                .addParameter(new MatlabScalar(1))
+                .addParameter(new MatlabScalar(2))
+                .addResult(LONG_NAME + "a", MatlabType.SCALAR)
+                .addResult(LONG_NAME + "b", MatlabType.SCALAR);
+        assertThat(instance.handle(request).getResult(LONG_NAME + "b"),
+                   is((MatlabValue) new MatlabScalar(2)));
+    }
+
+    @Test
+    public void deeplyNestedCell() throws MatlabException {
+        assertRoundTrip(nestedCell(20));
+    }
+
+    @Test
+    public void deeplyNestedStruct() throws MatlabException {
+        assertRoundTrip(nestedStruct(20));
+    }
+
+    @Test
+    public void deeplyNestedResultsInBatch() throws MatlabException {
+        MatlabValue value = nestedCell(20);
+        List<MatlabResponse> responses = instance.handle(Arrays.asList(
+                request(value), request(value)));
+        for (MatlabResponse response : responses) {
+            assertThat(response, is(instanceOf(MatlabResult.class)));
+            assertThat(((MatlabResult) response).getResult(LONG_NAME),
+                       is(value));
+        }
+    }
+
+    private static MatlabValue nestedCell(int depth) {
+        MatlabValue value = new MatlabString("leaf");
+        for (int i = 0; i < depth; ++i) {
+            value = new MatlabCell(new MatlabScalar(i), value);
+        }
+        return value;
+    }
+
+    private static MatlabValue nestedStruct(int depth) {
+        MatlabValue value = new MatlabString("leaf");
+        for (int i = 0; i < depth; ++i) {
+            value = new MatlabStruct().set("a", new MatlabScalar(i))
+                    .set("b", value);
+        }
+        return value;
+    }
+
+    private static MatlabRequest request(MatlabValue value) {
+        return new MatlabRequest("identity")
+                .addParameter(value)
+                .addResult(LONG_NAME, value.getType());
+    }
+
+    private void assertRoundTrip(MatlabValue value) throws MatlabException {
+        assertThat(instance.handle(request(value)).getResult(LONG_NAME),
+                   is(value));
+    }
+}
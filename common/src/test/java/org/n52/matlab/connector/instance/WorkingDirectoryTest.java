@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2012-2015 by it's authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.n52.matlab.connector.instance;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.n52.matlab.connector.MatlabException;
+import org.n52.matlab.connector.MatlabRequest;
+import org.n52.matlab.connector.MatlabResult;
+import org.n52.matlab.connector.engine.StandInMatlabEngineFactory;
+import org.n52.matlab.connector.value.MatlabString;
+import org.n52.matlab.connector.value.MatlabType;
+import org.n52.matlab.connector.value.MatlabValue;
+
+/**
+ * Checks that a request that changes the working directory does not affect
+ * the following requests.
+ *
+ * @author Christian Autermann
+ */
+@RunWith(Parameterized.class)
+public class WorkingDirectoryTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private final MatlabResetPolicy resetPolicy;
+    private MatlabInstance instance;
+
+    public WorkingDirectoryTest(MatlabResetPolicy resetPolicy) {
+        this.resetPolicy = resetPolicy;
+    }
+
+    @Parameters(name = "{0}")
+    public static List<Object[]> policies() {
+        List<Object[]> policies = new ArrayList<>();
+        for (MatlabResetPolicy policy : MatlabResetPolicy.values()) {
+            policies.add(new Object[] { policy });
+        }
+        return policies;
+    }
+
+    @Before
+    public void start() throws MatlabException {
+        instance = new MatlabInstance(MatlabInstanceConfiguration.builder()
+                .withBaseDir(folder.getRoot())
+                .withEngineFactory(new StandInMatlabEngineFactory(
+                        0, 0, TimeUnit.MILLISECONDS))
+                .withResetPolicy(resetPolicy)
+                .build());
+    }
+
+    @After
+    public void stop() throws MatlabException {
+        instance.destroy();
+    }
+
+    @Test
+    public void restoredAfterRequest() throws MatlabException {
+        instance.handle(changeDir());
+        assertThat(instance.handle(pwd()).getResult("pwd"), is(baseDir()));
+    }
+
+    @Test
+    public void restoredAfterBatch() throws MatlabException {
+        instance.handle(Arrays.asList(pwd(), changeDir()));
+        assertThat(((MatlabResult) instance.handle(Arrays.asList(pwd()))
+                    .get(0)).getResult("pwd"), is(baseDir()));
+    }
+
+    private MatlabRequest changeDir() {
+        return new MatlabRequest("cd")
+                .addParameter(new MatlabString(folder.getRoot().getParent()));
+    }
+
+    private static MatlabRequest pwd() {
+        return new MatlabRequest("pwd").addResult("pwd", MatlabType.STRING);
+    }
+
+    private MatlabValue baseDir() {
+        return new MatlabString(folder.getRoot().getAbsolutePath());
+    }
+}
@@ -16,13 +16,21 @@
  */
 package org.n52.matlab.connector.server;
 
+import org.n52.matlab.connector.engine.StandInMatlabEngineFactory;
 import org.n52.matlab.connector.instance.MatlabInstanceConfiguration;
 import org.n52.matlab.connector.instance.MatlabInstancePool;
 import org.n52.matlab.connector.instance.MatlabInstancePoolConfiguration;
+import org.n52.matlab.connector.instance.MatlabRequestDispatcher;
+import org.n52.matlab.connector.instance.MatlabResultCache;
+import org.n52.matlab.connector.instance.MatlabResultCacheConfiguration;
+import org.n52.matlab.connector.instance.MatlabVectorizationConfiguration;
 
 import static com.google.common.base.Preconditions.checkState;
 
 import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletException;
 import javax.websocket.DeploymentException;
@@ -37,9 +45,12 @@ import org.eclipse.jetty.websocket.jsr356.server.deploy.WebSocketServerContainer
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 public class MatlabServer {
     private static final Logger log = LoggerFactory
             .getLogger(MatlabServer.class);
+    private static final long EVICTION_INTERVAL = 30;
     private final MatlabServerConfiguration options;
     private Server server;
 
@@ -73,40 +84,117 @@ public class MatlabServer {
         synchronized (this) {
             checkState(server == null, "Server already started.");
         }
-        MatlabInstancePool pool
-                = new MatlabInstancePool(MatlabInstancePoolConfiguration
-                        .builder()
-                        .withMaximalNumInstances(getOptions().getThreads())
-                        .withInstanceConfig(MatlabInstanceConfiguration
-                                .builder()
-                                .withBaseDir(getOptions().getPath())
-                                .hidden(getOptions().isHidden())
-                                .build())
-                        .build());
+        MatlabInstanceConfiguration.Builder instanceConfig
+                = MatlabInstanceConfiguration.builder()
+                .withBaseDir(getOptions().getPath())
+                .hidden(getOptions().isHidden());
+        if (getOptions().isStandIn()) {
+            log.info("Using stand-in MATLAB engine with a latency of {}ms.",
+                     getOptions().getStandInLatency());
+            instanceConfig.withEngineFactory(new StandInMatlabEngineFactory(
+                    getOptions().getStandInLatency(),
+                    getOptions().getStandInStartupLatency(),
+                    TimeUnit.MILLISECONDS));
+        }
+        MatlabInstancePoolConfiguration.Builder poolConfig
+                = MatlabInstancePoolConfiguration.builder()
+                .withMaximalNumInstances(getOptions().getThreads())
+                .withMinIdle(getOptions().getMinIdle())
+                .prestart(getOptions().isPrestart())
+                .testOnBorrow(getOptions().isValidate())
+                .testWhileIdle(getOptions().isValidate())
+                .withMinEvictableIdleTime(getOptions().getMaxIdleTime(),
+                                          TimeUnit.SECONDS)
+                .withMaxRequestsPerInstance(getOptions().getRecycleRequests())
+                .withMaxInstanceAge(getOptions().getRecycleMinutes(),
+                                    TimeUnit.MINUTES)
+                .withMaxWaiting(getOptions().getMaxWaiting())
+                .withBorrowTimeout(getOptions().getBorrowTimeout(),
+                                   TimeUnit.MILLISECONDS)
+                .withRequestTimeout(getOptions().getRequestTimeout(),
+                                    TimeUnit.MILLISECONDS)
+                .withAffinity(getOptions().isAffinity())
+                .withInstanceConfig(instanceConfig.build());
+        if (getOptions().isValidate() || getOptions().getMaxIdleTime() > 0) {
+            poolConfig.withEvictionInterval(EVICTION_INTERVAL, TimeUnit.SECONDS);
+        }
+        MatlabInstancePool pool = new MatlabInstancePool(poolConfig.build());
+        MatlabVectorizationConfiguration vectorization
+                = MatlabVectorizationConfiguration.builder()
+                .withFunctions(getOptions().getVectorizableFunctions())
+                .withWindow(getOptions().getCoalescingWindow(),
+                            TimeUnit.MILLISECONDS)
+                .withMaxBatchSize(getOptions().getMaxCoalescedRequests())
+                .build();
+        MatlabResultCache cache = null;
+        if (!getOptions().getDeterministicFunctions().isEmpty()) {
+            cache = new MatlabResultCache(MatlabResultCacheConfiguration
+                    .builder()
+                    .withFunctions(getOptions().getDeterministicFunctions())
+                    .withMaximumSize(getOptions().getCacheSize() * 1024 * 1024)
+                    .withTimeToLive(getOptions().getCacheTimeToLive(),
+                                    TimeUnit.SECONDS)
+                    .build());
+        }
+        MatlabRequestDispatcher dispatcher = new MatlabRequestDispatcher(
+                pool, getOptions().getThreads(), getOptions().getMaxBatchSize(),
+                vectorization, cache);
         Server jetty = new Server(getOptions().getPort());
         ServletContextHandler handler
                 = new ServletContextHandler(ServletContextHandler.SESSIONS);
         handler.setContextPath("/");
         jetty.setHandler(handler);
-        handler.addLifeCycleListener(new MatlabInstancePoolDestroyer(pool));
+        handler.addLifeCycleListener(new MatlabInstancePoolDestroyer(pool, dispatcher, cache));
         ServerContainer sc = WebSocketServerContainerInitializer.configureContext(handler);
         sc.addEndpoint(ServerEndpointConfig.Builder.create(MatlabServerEndpoint.class, "/")
-                .configurator(new MatlabServerEndpointConfigurator(pool)).build());
+                .configurator(new MatlabServerEndpointConfigurator(dispatcher)).build());
         return jetty;
     }
 
     private class MatlabInstancePoolDestroyer extends AbstractLifeCycleListener {
         private final MatlabInstancePool pool;
+        private final MatlabRequestDispatcher dispatcher;
+        private final MatlabResultCache cache;
+        private ScheduledExecutorService reporter;
 
-        MatlabInstancePoolDestroyer(MatlabInstancePool pool) {
+        MatlabInstancePoolDestroyer(MatlabInstancePool pool,
+                                    MatlabRequestDispatcher dispatcher,
+                                    MatlabResultCache cache) {
             this.pool = pool;
+            this.dispatcher = dispatcher;
+            this.cache = cache;
+        }
+
+        @Override
+        public void lifeCycleStarted(LifeCycle event) {
+            long interval = getOptions().getStatisticsInterval();
+            if (interval > 0) {
+                reporter = Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder()
+                        .setNameFormat("matlab-pool-statistics-%d")
+                        .setDaemon(true).build());
+                reporter.scheduleAtFixedRate(this::logStatistics,
+                                             interval, interval, TimeUnit.SECONDS);
+            }
         }
 
         @Override
         public void lifeCycleStopped(LifeCycle event) {
+            if (reporter != null) {
+                reporter.shutdownNow();
+            }
+            dispatcher.close();
+            logStatistics();
             log.info("Destroying Matlab instance pool...");
             pool.destroy();
             log.info("Destroyed Matlab instance pool...");
         }
+
+        private void logStatistics() {
+            log.info("Pool statistics: {}", pool.getStatistics());
+            if (cache != null) {
+                log.info("Cache statistics: {}", cache);
+            }
+        }
     }
 }
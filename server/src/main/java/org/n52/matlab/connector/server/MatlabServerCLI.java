@@ -20,6 +20,8 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
@@ -93,7 +95,28 @@ public class MatlabServerCLI {
                 .setPort(options.getPort())
                 .setThreads(options.getThreads())
                 .setDebug(options.isDebug())
-                .setHidden(!options.isShowInstances());
+                .setHidden(!options.isShowInstances())
+                .setStandIn(options.isStandIn())
+                .setStandInLatency(options.getStandInLatency())
+                .setStandInStartupLatency(options.getStandInStartupLatency())
+                .setMinIdle(options.getMinIdle())
+                .setPrestart(options.isPrestart())
+                .setValidate(options.isValidate())
+                .setMaxIdleTime(options.getMaxIdleTime())
+                .setRecycleRequests(options.getRecycleRequests())
+                .setRecycleMinutes(options.getRecycleMinutes())
+                .setMaxWaiting(options.getMaxWaiting())
+                .setBorrowTimeout(options.getBorrowTimeout())
+                .setRequestTimeout(options.getRequestTimeout())
+                .setMaxBatchSize(options.getMaxBatchSize())
+                .setVectorizableFunctions(options.getVectorizableFunctions())
+                .setCoalescingWindow(options.getCoalescingWindow())
+                .setMaxCoalescedRequests(options.getMaxCoalescedRequests())
+                .setDeterministicFunctions(options.getDeterministicFunctions())
+                .setCacheSize(options.getCacheSize())
+                .setCacheTimeToLive(options.getCacheTimeToLive())
+                .setStatisticsInterval(options.getStatisticsInterval())
+                .setAffinity(options.isAffinity());
     }
 
     private static <T> T printAndExit(Throwable e) {
@@ -121,6 +144,69 @@ public class MatlabServerCLI {
         @Parameter(names = { "--no-hidden" },
                    description = "Don't start hidden Matlab instances.")
         private boolean showInstances = false;
+        @Parameter(names = { "--stand-in" },
+                   description = "Use an in-process stand-in instead of Matlab.")
+        private boolean standIn = false;
+        @Parameter(names = { "--stand-in-latency" },
+                   description = "The latency of every call into the stand-in in milliseconds.")
+        private long standInLatency = 0;
+        @Parameter(names = { "--stand-in-startup-latency" },
+                   description = "The startup time of a stand-in instance in milliseconds.")
+        private long standInStartupLatency = 0;
+        @Parameter(names = { "--min-idle" },
+                   description = "The amount of idle Matlab instances to keep available.")
+        private int minIdle = 0;
+        @Parameter(names = { "--prestart" },
+                   description = "Start the idle Matlab instances on server startup.")
+        private boolean prestart = false;
+        @Parameter(names = { "--validate" },
+                   description = "Check Matlab instances for liveness on borrow and while idle.")
+        private boolean validate = false;
+        @Parameter(names = { "--max-idle-time" },
+                   description = "The time in seconds after which idle Matlab instances are stopped.")
+        private long maxIdleTime = 0;
+        @Parameter(names = { "--recycle-requests" },
+                   description = "Replace Matlab instances after this amount of requests.")
+        private long recycleRequests = 0;
+        @Parameter(names = { "--recycle-minutes" },
+                   description = "Replace Matlab instances after this amount of minutes.")
+        private long recycleMinutes = 0;
+        @Parameter(names = { "--max-waiting" },
+                   description = "The maximal amount of requests waiting for a Matlab instance.")
+        private int maxWaiting = Integer.MAX_VALUE;
+        @Parameter(names = { "--borrow-timeout" },
+                   description = "The time in milliseconds a request waits for a Matlab instance.")
+        private long borrowTimeout = 0;
+        @Parameter(names = { "--request-timeout" },
+                   description = "The time in milliseconds a request may take if it does not specify a timeout. Applies to batched and coalesced requests as a whole.")
+        private long requestTimeout = 0;
+        @Parameter(names = { "--max-batch-size" },
+                   description = "The maximal amount of queued requests to evaluate at once.")
+        private int maxBatchSize = 16;
+        @Parameter(names = { "--vectorizable" },
+                   description = "Comma separated list of element-wise functions whose scalar requests may be combined.")
+        private List<String> vectorizableFunctions = new ArrayList<>();
+        @Parameter(names = { "--coalescing-window" },
+                   description = "The time in milliseconds to wait for requests to vectorizable functions to combine.")
+        private long coalescingWindow = 5;
+        @Parameter(names = { "--max-coalesced" },
+                   description = "The maximal amount of requests to vectorizable functions to combine.")
+        private int maxCoalescedRequests = 256;
+        @Parameter(names = { "--cache" },
+                   description = "Comma separated list of deterministic functions whose results may be cached.")
+        private List<String> deterministicFunctions = new ArrayList<>();
+        @Parameter(names = { "--cache-size" },
+                   description = "The maximal size of the result cache in megabytes.")
+        private long cacheSize = 64;
+        @Parameter(names = { "--cache-ttl" },
+                   description = "The time in seconds results are cached, 0 to cache them until they are evicted.")
+        private long cacheTimeToLive = 600;
+        @Parameter(names = { "--stats-interval" },
+                   description = "The interval in seconds to log pool statistics in.")
+        private long statisticsInterval = 60;
+        @Parameter(names = { "--affinity" },
+                   description = "Prefer Matlab instances that recently evaluated the requested function.")
+        private boolean affinity = false;
         public int getPort() {
             return port;
         }
@@ -178,5 +264,216 @@ public class MatlabServerCLI {
             return this;
         }
 
+        public boolean isStandIn() {
+            return standIn;
+        }
+
+        public MatlabServerCLIOptions setStandIn(boolean standIn) {
+            this.standIn = standIn;
+            return this;
+        }
+
+        public long getStandInLatency() {
+            return standInLatency;
+        }
+
+        public MatlabServerCLIOptions setStandInLatency(long standInLatency) {
+            checkArgument(standInLatency >= 0);
+            this.standInLatency = standInLatency;
+            return this;
+        }
+
+        public long getStandInStartupLatency() {
+            return standInStartupLatency;
+        }
+
+        public MatlabServerCLIOptions setStandInStartupLatency(
+                long standInStartupLatency) {
+            checkArgument(standInStartupLatency >= 0);
+            this.standInStartupLatency = standInStartupLatency;
+            return this;
+        }
+
+        public int getMinIdle() {
+            return minIdle;
+        }
+
+        public MatlabServerCLIOptions setMinIdle(int minIdle) {
+            checkArgument(minIdle >= 0);
+            this.minIdle = minIdle;
+            return this;
+        }
+
+        public boolean isPrestart() {
+            return prestart;
+        }
+
+        public MatlabServerCLIOptions setPrestart(boolean prestart) {
+            this.prestart = prestart;
+            return this;
+        }
+
+        public boolean isValidate() {
+            return validate;
+        }
+
+        public MatlabServerCLIOptions setValidate(boolean validate) {
+            this.validate = validate;
+            return this;
+        }
+
+        public long getMaxIdleTime() {
+            return maxIdleTime;
+        }
+
+        public MatlabServerCLIOptions setMaxIdleTime(long maxIdleTime) {
+            checkArgument(maxIdleTime >= 0);
+            this.maxIdleTime = maxIdleTime;
+            return this;
+        }
+
+        public long getRecycleRequests() {
+            return recycleRequests;
+        }
+
+        public MatlabServerCLIOptions setRecycleRequests(long recycleRequests) {
+            checkArgument(recycleRequests >= 0);
+            this.recycleRequests = recycleRequests;
+            return this;
+        }
+
+        public long getRecycleMinutes() {
+            return recycleMinutes;
+        }
+
+        public MatlabServerCLIOptions setRecycleMinutes(long recycleMinutes) {
+            checkArgument(recycleMinutes >= 0);
+            this.recycleMinutes = recycleMinutes;
+            return this;
+        }
+
+        public int getMaxWaiting() {
+            return maxWaiting;
+        }
+
+        public MatlabServerCLIOptions setMaxWaiting(int maxWaiting) {
+            checkArgument(maxWaiting >= 0);
+            this.maxWaiting = maxWaiting;
+            return this;
+        }
+
+        public long getBorrowTimeout() {
+            return borrowTimeout;
+        }
+
+        public MatlabServerCLIOptions setBorrowTimeout(long borrowTimeout) {
+            checkArgument(borrowTimeout >= 0);
+            this.borrowTimeout = borrowTimeout;
+            return this;
+        }
+
+        public long getRequestTimeout() {
+            return requestTimeout;
+        }
+
+        public MatlabServerCLIOptions setRequestTimeout(long requestTimeout) {
+            checkArgument(requestTimeout >= 0);
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public MatlabServerCLIOptions setMaxBatchSize(int maxBatchSize) {
+            checkArgument(maxBatchSize > 0);
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        public List<String> getVectorizableFunctions() {
+            return vectorizableFunctions;
+        }
+
+        public MatlabServerCLIOptions setVectorizableFunctions(
+                List<String> vectorizableFunctions) {
+            checkArgument(vectorizableFunctions != null);
+            this.vectorizableFunctions = vectorizableFunctions;
+            return this;
+        }
+
+        public long getCoalescingWindow() {
+            return coalescingWindow;
+        }
+
+        public MatlabServerCLIOptions setCoalescingWindow(long coalescingWindow) {
+            checkArgument(coalescingWindow >= 0);
+            this.coalescingWindow = coalescingWindow;
+            return this;
+        }
+
+        public int getMaxCoalescedRequests() {
+            return maxCoalescedRequests;
+        }
+
+        public MatlabServerCLIOptions setMaxCoalescedRequests(
+                int maxCoalescedRequests) {
+            checkArgument(maxCoalescedRequests > 0);
+            this.maxCoalescedRequests = maxCoalescedRequests;
+            return this;
+        }
+
+        public List<String> getDeterministicFunctions() {
+            return deterministicFunctions;
+        }
+
+        public MatlabServerCLIOptions setDeterministicFunctions(
+                List<String> deterministicFunctions) {
+            checkArgument(deterministicFunctions != null);
+            this.deterministicFunctions = deterministicFunctions;
+            return this;
+        }
+
+        public long getCacheSize() {
+            return cacheSize;
+        }
+
+        public MatlabServerCLIOptions setCacheSize(long cacheSize) {
+            checkArgument(cacheSize >= 0);
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        public long getCacheTimeToLive() {
+            return cacheTimeToLive;
+        }
+
+        public MatlabServerCLIOptions setCacheTimeToLive(long cacheTimeToLive) {
+            checkArgument(cacheTimeToLive >= 0);
+            this.cacheTimeToLive = cacheTimeToLive;
+            return this;
+        }
+
+        public long getStatisticsInterval() {
+            return statisticsInterval;
+        }
+
+        public MatlabServerCLIOptions setStatisticsInterval(
+                long statisticsInterval) {
+            checkArgument(statisticsInterval >= 0);
+            this.statisticsInterval = statisticsInterval;
+            return this;
+        }
+
+        public boolean isAffinity() {
+            return affinity;
+        }
+
+        public MatlabServerCLIOptions setAffinity(boolean affinity) {
+            this.affinity = affinity;
+            return this;
+        }
+
     }
 }
@@ -18,6 +18,8 @@ package org.n52.matlab.connector.server;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import java.util.Collections;
+import java.util.List;
 
 /**
  * TODO JavaDoc
@@ -30,6 +32,27 @@ public class MatlabServerConfiguration {
     private String path;
     private boolean debug;
     private boolean hidden;
+    private boolean standIn;
+    private long standInLatency;
+    private long standInStartupLatency;
+    private int minIdle;
+    private boolean prestart;
+    private boolean validate;
+    private long maxIdleTime;
+    private long recycleRequests;
+    private long recycleMinutes;
+    private int maxWaiting = Integer.MAX_VALUE;
+    private long borrowTimeout;
+    private long requestTimeout;
+    private int maxBatchSize = 1;
+    private List<String> vectorizableFunctions = Collections.emptyList();
+    private long coalescingWindow;
+    private int maxCoalescedRequests = 1;
+    private List<String> deterministicFunctions = Collections.emptyList();
+    private long cacheSize;
+    private long cacheTimeToLive;
+    private long statisticsInterval;
+    private boolean affinity;
 
     public int getPort() {
         return this.port;
@@ -79,4 +102,215 @@ public class MatlabServerConfiguration {
         return this;
     }
 
+    public boolean isStandIn() {
+        return standIn;
+    }
+
+    public MatlabServerConfiguration setStandIn(boolean standIn) {
+        this.standIn = standIn;
+        return this;
+    }
+
+    public long getStandInLatency() {
+        return standInLatency;
+    }
+
+    public MatlabServerConfiguration setStandInLatency(long standInLatency) {
+        checkArgument(standInLatency >= 0);
+        this.standInLatency = standInLatency;
+        return this;
+    }
+
+    public long getStandInStartupLatency() {
+        return standInStartupLatency;
+    }
+
+    public MatlabServerConfiguration setStandInStartupLatency(
+            long standInStartupLatency) {
+        checkArgument(standInStartupLatency >= 0);
+        this.standInStartupLatency = standInStartupLatency;
+        return this;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public MatlabServerConfiguration setMinIdle(int minIdle) {
+        checkArgument(minIdle >= 0);
+        this.minIdle = minIdle;
+        return this;
+    }
+
+    public boolean isPrestart() {
+        return prestart;
+    }
+
+    public MatlabServerConfiguration setPrestart(boolean prestart) {
+        this.prestart = prestart;
+        return this;
+    }
+
+    public boolean isValidate() {
+        return validate;
+    }
+
+    public MatlabServerConfiguration setValidate(boolean validate) {
+        this.validate = validate;
+        return this;
+    }
+
+    public long getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    public MatlabServerConfiguration setMaxIdleTime(long maxIdleTime) {
+        checkArgument(maxIdleTime >= 0);
+        this.maxIdleTime = maxIdleTime;
+        return this;
+    }
+
+    public long getRecycleRequests() {
+        return recycleRequests;
+    }
+
+    public MatlabServerConfiguration setRecycleRequests(long recycleRequests) {
+        checkArgument(recycleRequests >= 0);
+        this.recycleRequests = recycleRequests;
+        return this;
+    }
+
+    public long getRecycleMinutes() {
+        return recycleMinutes;
+    }
+
+    public MatlabServerConfiguration setRecycleMinutes(long recycleMinutes) {
+        checkArgument(recycleMinutes >= 0);
+        this.recycleMinutes = recycleMinutes;
+        return this;
+    }
+
+    public int getMaxWaiting() {
+        return maxWaiting;
+    }
+
+    public MatlabServerConfiguration setMaxWaiting(int maxWaiting) {
+        checkArgument(maxWaiting >= 0);
+        this.maxWaiting = maxWaiting;
+        return this;
+    }
+
+    public long getBorrowTimeout() {
+        return borrowTimeout;
+    }
+
+    public MatlabServerConfiguration setBorrowTimeout(long borrowTimeout) {
+        checkArgument(borrowTimeout >= 0);
+        this.borrowTimeout = borrowTimeout;
+        return this;
+    }
+
+    public long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public MatlabServerConfiguration setRequestTimeout(long requestTimeout) {
+        checkArgument(requestTimeout >= 0);
+        this.requestTimeout = requestTimeout;
+        return this;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public MatlabServerConfiguration setMaxBatchSize(int maxBatchSize) {
+        checkArgument(maxBatchSize > 0);
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    public List<String> getVectorizableFunctions() {
+        return Collections.unmodifiableList(vectorizableFunctions);
+    }
+
+    public MatlabServerConfiguration setVectorizableFunctions(
+            List<String> vectorizableFunctions) {
+        checkArgument(vectorizableFunctions != null);
+        this.vectorizableFunctions = vectorizableFunctions;
+        return this;
+    }
+
+    public long getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
+    public MatlabServerConfiguration setCoalescingWindow(long coalescingWindow) {
+        checkArgument(coalescingWindow >= 0);
+        this.coalescingWindow = coalescingWindow;
+        return this;
+    }
+
+    public int getMaxCoalescedRequests() {
+        return maxCoalescedRequests;
+    }
+
+    public MatlabServerConfiguration setMaxCoalescedRequests(
+            int maxCoalescedRequests) {
+        checkArgument(maxCoalescedRequests > 0);
+        this.maxCoalescedRequests = maxCoalescedRequests;
+        return this;
+    }
+
+    public List<String> getDeterministicFunctions() {
+        return Collections.unmodifiableList(deterministicFunctions);
+    }
+
+    public MatlabServerConfiguration setDeterministicFunctions(
+            List<String> deterministicFunctions) {
+        checkArgument(deterministicFunctions != null);
+        this.deterministicFunctions = deterministicFunctions;
+        return this;
+    }
+
+    public long getCacheSize() {
+        return cacheSize;
+    }
+
+    public MatlabServerConfiguration setCacheSize(long cacheSize) {
+        checkArgument(cacheSize >= 0);
+        this.cacheSize = cacheSize;
+        return this;
+    }
+
+    public long getCacheTimeToLive() {
+        return cacheTimeToLive;
+    }
+
+    public MatlabServerConfiguration setCacheTimeToLive(long cacheTimeToLive) {
+        checkArgument(cacheTimeToLive >= 0);
+        this.cacheTimeToLive = cacheTimeToLive;
+        return this;
+    }
+
+    public long getStatisticsInterval() {
+        return statisticsInterval;
+    }
+
+    public MatlabServerConfiguration setStatisticsInterval(
+            long statisticsInterval) {
+        checkArgument(statisticsInterval >= 0);
+        this.statisticsInterval = statisticsInterval;
+        return this;
+    }
+
+    public boolean isAffinity() {
+        return affinity;
+    }
+
+    public MatlabServerConfiguration setAffinity(boolean affinity) {
+        this.affinity = affinity;
+        return this;
+    }
+
 }
@@ -33,14 +33,22 @@ import org.slf4j.LoggerFactory;
 import org.n52.matlab.connector.MatlabException;
 import org.n52.matlab.connector.MatlabRequest;
 import org.n52.matlab.connector.MatlabResponse;
-import org.n52.matlab.connector.instance.MatlabInstance;
-import org.n52.matlab.connector.instance.MatlabInstancePool;
+import org.n52.matlab.connector.MatlabResult;
+import org.n52.matlab.connector.instance.MatlabRequestDispatcher;
+import org.n52.matlab.connector.value.AbstractMatlabValueVisitor;
+import org.n52.matlab.connector.value.MatlabCell;
+import org.n52.matlab.connector.value.MatlabFile;
+import org.n52.matlab.connector.value.MatlabStruct;
+import org.n52.matlab.connector.value.MatlabStructArray;
 import org.n52.matlab.connector.websocket.Configuration;
 import org.n52.matlab.connector.websocket.MatlabRequestDecoder;
 import org.n52.matlab.connector.websocket.MatlabRequestEncoder;
 import org.n52.matlab.connector.websocket.MatlabResponseDecoder;
 import org.n52.matlab.connector.websocket.MatlabResponseEncoder;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+
 /**
  * TODO JavaDoc
  *
@@ -55,10 +63,10 @@ public class MatlabServerEndpoint {
     private final Logger log = LoggerFactory
             .getLogger(MatlabServerEndpoint.class);
 
-    private final MatlabInstancePool pool;
+    private final MatlabRequestDispatcher dispatcher;
 
-    public MatlabServerEndpoint(MatlabInstancePool pool) {
-        this.pool = pool;
+    public MatlabServerEndpoint(MatlabRequestDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
     }
 
     @OnOpen
@@ -73,34 +81,83 @@ public class MatlabServerEndpoint {
     }
 
     @OnMessage
-    public MatlabResponse onMessage(Session session, MatlabRequest request)
-            throws MatlabException {
+    public void onMessage(Session session, MatlabRequest request) {
         log.info("Session {} requests function '{}'.",
                  session.getId(), request.getFunction());
-        MatlabInstance instance = null;
-        try {
-            instance = this.pool.getInstance();
-            MatlabResponse response = instance.handle(request);
-            log.info("Handled request for session {} successfully.",
-                     session.getId());
-            return response;
-        } catch (MatlabException e) {
-            e.setId(request.getId());
-            throw e;
-        } finally {
-            this.pool.returnInstance(instance);
+        // respond asynchronously, so that further requests of the session can
+        // be queued and batched while this one is executed
+        Futures.addCallback(this.dispatcher.submit(request),
+                            new FutureCallback<MatlabResult>() {
+            @Override
+            public void onSuccess(MatlabResult result) {
+                log.info("Handled request for session {} successfully.",
+                         session.getId());
+                try {
+                    send(session, result);
+                } finally {
+                    // spooled result files were streamed into the response
+                    result.visitResults(new TemporaryFileDeleter());
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.error("Caught exception while handling request for session " + session.getId(), t);
+                MatlabException e = t instanceof MatlabException
+                                    ? (MatlabException) t
+                                    : new MatlabException("Could not execute request", t);
+                e.setId(request.getId());
+                send(session, e);
+            }
+        });
+    }
+
+    private void send(Session session, MatlabResponse response) {
+        // responses are sent from different threads
+        synchronized (session) {
+            try {
+                session.getBasicRemote().sendObject(response);
+            } catch (IOException | EncodeException e) {
+                log.error("Could not send response to session " + session.getId(), e);
+            }
         }
     }
 
     @OnError
-    public void onError(Session session, Throwable t)
-            throws IOException, EncodeException {
+    public void onError(Session session, Throwable t) {
         log.error("Caught exception while handling request for session " + session.getId(), t);
         if (t instanceof MatlabException) {
-            session.getBasicRemote().sendObject(t);
+            send(session, (MatlabException) t);
         } else {
-            session.getBasicRemote()
-                    .sendObject(new MatlabException("Could not execute request", t));
+            send(session, new MatlabException("Could not execute request", t));
+        }
+    }
+
+    private class TemporaryFileDeleter extends AbstractMatlabValueVisitor {
+        @Override
+        public void visit(MatlabCell cell) {
+            cell.stream().forEach(v -> v.accept(this));
+        }
+
+        @Override
+        public void visit(MatlabStruct struct) {
+            struct.value().values().forEach(v -> v.accept(this));
+        }
+
+        @Override
+        public void visit(MatlabStructArray array) {
+            array.stream().forEach(v -> v.accept(this));
+        }
+
+        @Override
+        public void visit(MatlabFile file) {
+            if (file.isTemporary()) {
+                try {
+                    file.delete();
+                } catch (IOException e) {
+                    log.warn("Could not delete " + file.getFile(), e);
+                }
+            }
         }
     }
 
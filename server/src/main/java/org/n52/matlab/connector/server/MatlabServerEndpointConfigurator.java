@@ -16,7 +16,7 @@
  */
 package org.n52.matlab.connector.server;
 
-import org.n52.matlab.connector.instance.MatlabInstancePool;
+import org.n52.matlab.connector.instance.MatlabRequestDispatcher;
 
 import javax.websocket.server.ServerEndpointConfig;
 
@@ -28,10 +28,10 @@ import javax.websocket.server.ServerEndpointConfig;
  */
 public class MatlabServerEndpointConfigurator extends ServerEndpointConfig.Configurator {
 
-    private final MatlabInstancePool pool;
+    private final MatlabRequestDispatcher dispatcher;
 
-    public MatlabServerEndpointConfigurator(MatlabInstancePool pool) {
-        this.pool = pool;
+    public MatlabServerEndpointConfigurator(MatlabRequestDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
     }
 
     @Override
@@ -39,7 +39,7 @@ public class MatlabServerEndpointConfigurator extends ServerEndpointConfig.Confi
     public <T> T getEndpointInstance(Class<T> endpointClass) throws
             InstantiationException {
         if (MatlabServerEndpoint.class.isAssignableFrom(endpointClass)) {
-            return (T) new MatlabServerEndpoint(pool);
+            return (T) new MatlabServerEndpoint(dispatcher);
         }
         return super.getEndpointInstance(endpointClass);
     }